@@ -8,7 +8,10 @@ import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryPoolMXBean;
 import java.lang.management.MemoryUsage;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 
 import javax.management.MBeanServer;
 
@@ -22,15 +25,22 @@ import gears.operations.AccumulateOperation;
 import gears.operations.AsyncFilterOperation;
 import gears.operations.AsyncForeachOperation;
 import gears.operations.AsyncMapOperation;
+import gears.operations.ComparatorOperation;
+import gears.operations.DoubleExtractorOperation;
 import gears.operations.ExtractorOperation;
 import gears.operations.FilterOperation;
 import gears.operations.FlatMapOperation;
 import gears.operations.ForeachOperation;
+import gears.operations.LongAccumulateOperation;
+import gears.operations.LongExtractorOperation;
 import gears.operations.MapOperation;
 import gears.operations.OnRegisteredOperation;
 import gears.operations.OnUnregisteredOperation;
 import gears.operations.ValueInitializerOperation;
+import gears.collections.StringLongHashMap;
 import gears.readers.BaseReader;
+import gears.sketches.HyperLogLog;
+import gears.sketches.TDigest;
 
 /**
  * A RedisGears pipe builder. The data pass in the pipe
@@ -282,6 +292,89 @@ public class GearsBuilder<T extends Serializable>{
 	 */
 	public native <I extends Serializable> GearsBuilder<I> localAccumulateBy(ExtractorOperation<T> extractor, AccumulateByOperation<T, I> accumulator);
 	
+	/**
+	 * Two phases accumulateBy. The records are first accumulated locally on each shard
+	 * using the accumulator operation, then only the partial accumulated values are moved
+	 * to the shard that owns the group and merged there using the combiner operation.
+	 * Comparing to accumulateBy, only one record per group per shard is sent over the
+	 * network instead of all the records. The initial value of both the accumulator and
+	 * the combiner is null.
+	 * 
+	 * Example (counting the number of unique values):
+	 * <pre>{@code
+	 * 		GearsBuilder.CreateGearsBuilder(reader).
+	 *   	aggregateBy(r->{
+	 *   		return r.getStringVal();
+	 *   	},(k, a, r)->{
+	 *   		return (a == null ? 0 : a) + 1;
+	 *   	},(k, a, r)->{
+	 *   		return (a == null ? 0 : a) + r;
+	 *   	});
+	 * }</pre>
+	 * 
+	 * @param <I> - The template type of the returned builder
+	 * @param extractor - the extractor operation
+	 * @param accumulator - the accumulator operation, runs on each shard on the original records
+	 * @param combiner - the combiner operation, merges the partial accumulated values of a group
+	 * @return GearsBuilder with a new template type, notice that the return object might be the same as the previous.
+	 */
+	public native <I extends Serializable> GearsBuilder<I> aggregateBy(ExtractorOperation<T> extractor, AccumulateByOperation<T, I> accumulator, AccumulateByOperation<I, I> combiner);
+	
+	/**
+	 * A sugar syntax for the previous aggregateBy that gets a valueInitiator callback
+	 * so there is no need to check if the accumulated value is null.
+	 * 
+	 * Example (same example of counting the number of unique values):
+	 * <pre>{@code
+	 * 		GearsBuilder.CreateGearsBuilder(reader).
+	 *   	aggregateBy(()->{
+	 *   		return 0;
+	 *   	},r->{
+	 *   		return r.getStringVal();
+	 *   	},(k, a, r)->{
+	 *   		return a + 1;
+	 *   	},(k, a, r)->{
+	 *   		return a + r;
+	 *   	});
+	 * }</pre>
+	 * 
+	 * @param <I> - The template type of the returned builder
+	 * @param valueInitializer - an initiator operation, 
+	 * whenever the accumulated values is null we will use this function to initialize it.
+	 * @param extractor - the extractor operation
+	 * @param accumulator - the accumulator operation, runs on each shard on the original records
+	 * @param combiner - the combiner operation, merges the partial accumulated values of a group
+	 * @return GearsBuilder with a new template type, notice that the return object might be the same as the previous.
+	 */
+	public <I extends Serializable> GearsBuilder<I> aggregateBy(ValueInitializerOperation<I> valueInitializer, ExtractorOperation<T> extractor, 
+			AccumulateByOperation<T, I> accumulator, AccumulateByOperation<I, I> combiner){
+		return this.aggregateBy(extractor, new AccumulateByOperation<T, I>() {
+			
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public I accumulateby(String k, I a, T r) throws Exception {
+				if(a == null) {
+					a = valueInitializer.getInitialValue();
+				}
+				return accumulator.accumulateby(k, a, r);
+			}
+			
+		}, new AccumulateByOperation<I, I>() {
+			
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public I accumulateby(String k, I a, I r) throws Exception {
+				if(a == null) {
+					a = valueInitializer.getInitialValue();
+				}
+				return combiner.accumulateby(k, a, r);
+			}
+			
+		});
+	}
+	
 	/**
 	 * A many to one mapped, reduce the record in the pipe to a single record.
 	 * The initial accumulator object is null (same as for accumulateBy)
@@ -333,12 +426,378 @@ public class GearsBuilder<T extends Serializable>{
 		});
 	}
 	
+	/**
+	 * Two phases accumulate. The records are first accumulated locally on each shard
+	 * using the accumulator operation, then the partial accumulated values are collected
+	 * to the shard that started the execution and merged there using the combiner operation.
+	 * 
+	 * Example (counting the number of records):
+	 * <pre>{@code
+	 *  	GearsBuilder.CreateGearsBuilder(reader).
+	 *   	aggregate(0, (a, r)->{
+	 *   		return a + 1;
+	 *   	}, (a, r)->{
+	 *   		return a + r;
+	 *   	});
+	 * }</pre>
+	 * 
+	 * @param <I> - The template type of the returned builder
+	 * @param initialValue - the initial value of the accumulated object (used by both the accumulator and the combiner)
+	 * @param accumulator - the accumulate operation, runs on each shard on the original records
+	 * @param combiner - the combiner operation, merges the partial accumulated values
+	 * @return GearsBuilder with a new template type, notice that the return object might be the same as the previous.
+	 */
+	public <I extends Serializable> GearsBuilder<I> aggregate(I initialValue, AccumulateOperation<T, I> accumulator, AccumulateOperation<I, I> combiner){
+		return this.accumulate(initialValue, accumulator).collect().accumulate(initialValue, combiner);
+	}
+	
 	/**
 	 * Collects all the records to the shard that started the execution.
 	 * @return GearsBuilder with the same template type as the input builder, notice that the return object might be the same as the previous.
 	 */
 	public native GearsBuilder<T> collect();
 	
+	/**
+	 * Limit the number of records in the pipe on each shard (without moving data between shards).
+	 * Skips the first offset records and pass at most len records. Once the limit is reached, 
+	 * the previous steps and the reader are not asked for more records, so for example the
+	 * KeysReader stops scanning the keyspace.
+	 * 
+	 * @param offset - the number of records to skip
+	 * @param len - the maximum number of records to pass
+	 * @return GearsBuilder with the same template type as the input builder, notice that the return object might be the same as the previous.
+	 */
+	public native GearsBuilder<T> localLimit(int offset, int len);
+	
+	/**
+	 * Limit the number of records in the pipe. Each shard passes at most offset + len records
+	 * to the shard that started the execution, where the offset and the len are applied on the
+	 * collected records.
+	 * 
+	 * Example (return 10 keys):
+	 * <pre>{@code
+	 *  	GearsBuilder.CreateGearsBuilder(reader).
+	 *   	map(r->r.getKey()).
+	 *   	limit(0, 10);
+	 * }</pre>
+	 * 
+	 * @param offset - the number of records to skip
+	 * @param len - the maximum number of records to return
+	 * @return GearsBuilder with the same template type as the input builder, notice that the return object might be the same as the previous.
+	 */
+	public GearsBuilder<T> limit(int offset, int len){
+		if(offset < 0 || len < 0) {
+			throw new IllegalArgumentException("offset and len must not be negative");
+		}
+		int localLen = (int)Math.min((long)offset + len, Integer.MAX_VALUE);
+		return this.localLimit(0, localLen).collect().localLimit(offset, len);
+	}
+	
+	/**
+	 * Return the first k records according to the given comparator, sorted by it.
+	 * Each shard keeps only its best k records (using a bounded heap), so only k
+	 * records per shard are moved to the shard that started the execution.
+	 * 
+	 * Example (return the 10 biggest values):
+	 * <pre>{@code
+	 *  	GearsBuilder.CreateGearsBuilder(reader).
+	 *   	map(r->Integer.parseInt(r.getStringVal())).
+	 *   	topK(10, (r1, r2)->r2.compareTo(r1));
+	 * }</pre>
+	 * 
+	 * @param k - the number of records to return
+	 * @param comparator - the comparator operation, defines the records order
+	 * @return GearsBuilder with the same template type as the input builder, notice that the return object might be the same as the previous.
+	 */
+	public GearsBuilder<T> topK(int k, ComparatorOperation<T> comparator){
+		if(k <= 0) {
+			throw new IllegalArgumentException("k must be positive");
+		}
+		// the heap head is the worst record we keep so it can be evicted in O(log(k))
+		ComparatorOperation<T> reversed = (r1, r2)->comparator.compare(r2, r1);
+		return this.accumulate((PriorityQueue<T> a, T r)->{
+			if(a == null) {
+				a = new PriorityQueue<T>(Math.min(k, 16) + 1, reversed);
+			}
+			a.add(r);
+			if(a.size() > k) {
+				a.poll();
+			}
+			return a;
+		}).collect().accumulate((PriorityQueue<T> a, PriorityQueue<T> r)->{
+			if(a == null) {
+				return r;
+			}
+			for(T record : r) {
+				a.add(record);
+				if(a.size() > k) {
+					a.poll();
+				}
+			}
+			return a;
+		}).flatMap(r->{
+			List<T> res = new ArrayList<T>(r);
+			res.sort(comparator);
+			return res;
+		});
+	}
+	
+	/**
+	 * Estimate the number of distinct values in the pipe. Each shard builds a HyperLogLog
+	 * sketch of the extracted values and only the sketches are moved to the shard that
+	 * started the execution, where they are merged.
+	 * 
+	 * Example (estimate the number of distinct values):
+	 * <pre>{@code
+	 *  	GearsBuilder.CreateGearsBuilder(reader).
+	 *   	approxCountDistinct(r->r.getStringVal());
+	 * }</pre>
+	 * 
+	 * @param extractor - the extractor operation, returns the value to count
+	 * @param precision - the sketch precision (see {@link HyperLogLog#HyperLogLog(int)})
+	 * @return GearsBuilder with a new template type (Long), notice that the return object might be the same as the previous.
+	 */
+	public GearsBuilder<Long> approxCountDistinct(ExtractorOperation<T> extractor, int precision){
+		HyperLogLog.checkPrecision(precision);
+		return this.accumulate((HyperLogLog a, T r)->{
+			if(a == null) {
+				a = new HyperLogLog(precision);
+			}
+			return a.add(extractor.extract(r));
+		}).collect().accumulate((HyperLogLog a, HyperLogLog r)->{
+			if(a == null) {
+				return r;
+			}
+			return a.merge(r);
+		}).map(r->r.count());
+	}
+	
+	/**
+	 * Same as approxCountDistinct with the default precision ({@link HyperLogLog#DEFAULT_PRECISION})
+	 * 
+	 * @param extractor - the extractor operation, returns the value to count
+	 * @return GearsBuilder with a new template type (Long), notice that the return object might be the same as the previous.
+	 */
+	public GearsBuilder<Long> approxCountDistinct(ExtractorOperation<T> extractor){
+		return approxCountDistinct(extractor, HyperLogLog.DEFAULT_PRECISION);
+	}
+	
+	/**
+	 * Estimate the number of distinct values for each group. The sketches are built
+	 * locally on each shard (see {@link #aggregateBy(ExtractorOperation, AccumulateByOperation, AccumulateByOperation)})
+	 * so only one sketch per group per shard is moved between the shards.
+	 * The return records are maps with a single entry from the group to the estimated count.
+	 * 
+	 * Example (estimate the number of distinct users per country):
+	 * <pre>{@code
+	 *  	GearsBuilder.CreateGearsBuilder(reader).
+	 *   	approxCountDistinctBy(r->r.getHashVal().get("country"), r->r.getHashVal().get("user"));
+	 * }</pre>
+	 * 
+	 * @param groupExtractor - the extractor operation, returns the group
+	 * @param valueExtractor - the extractor operation, returns the value to count
+	 * @param precision - the sketch precision (see {@link HyperLogLog#HyperLogLog(int)})
+	 * @return GearsBuilder with a new template type, notice that the return object might be the same as the previous.
+	 */
+	public GearsBuilder<HashMap<String, Long>> approxCountDistinctBy(ExtractorOperation<T> groupExtractor, ExtractorOperation<T> valueExtractor, int precision){
+		HyperLogLog.checkPrecision(precision);
+		return this.aggregateBy(()->new HyperLogLog(precision), groupExtractor, (k, a, r)->{
+			return a.add(valueExtractor.extract(r));
+		}, (k, a, r)->{
+			return a.merge(r);
+		}).map(r->{
+			// accumulate by records reach the next step as a map from the group to the accumulated value
+			@SuppressWarnings("unchecked")
+			HashMap<String, HyperLogLog> sketches = (HashMap<String, HyperLogLog>)(Object)r;
+			HashMap<String, Long> res = new HashMap<String, Long>();
+			sketches.forEach((k, v)->res.put(k, v.count()));
+			return res;
+		});
+	}
+	
+	/**
+	 * Same as approxCountDistinctBy with the default precision ({@link HyperLogLog#DEFAULT_PRECISION})
+	 * 
+	 * @param groupExtractor - the extractor operation, returns the group
+	 * @param valueExtractor - the extractor operation, returns the value to count
+	 * @return GearsBuilder with a new template type, notice that the return object might be the same as the previous.
+	 */
+	public GearsBuilder<HashMap<String, Long>> approxCountDistinctBy(ExtractorOperation<T> groupExtractor, ExtractorOperation<T> valueExtractor){
+		return approxCountDistinctBy(groupExtractor, valueExtractor, HyperLogLog.DEFAULT_PRECISION);
+	}
+	
+	/**
+	 * Estimate quantiles of the values in the pipe. Each shard builds a t-digest
+	 * sketch of the extracted values and only the sketches are moved to the shard
+	 * that started the execution, where they are merged.
+	 * 
+	 * Example (estimate the p50 and p99 latency):
+	 * <pre>{@code
+	 *  	GearsBuilder.CreateGearsBuilder(reader).
+	 *   	quantiles(r->Double.parseDouble(r.getHashVal().get("latency")), 0.5, 0.99);
+	 * }</pre>
+	 * 
+	 * @param extractor - the extractor operation, returns the value
+	 * @param qs - the quantiles to estimate, each one between 0 and 1
+	 * @return GearsBuilder with a new template type, the estimated values in the same order as the given quantiles, 
+	 * notice that the return object might be the same as the previous.
+	 */
+	public GearsBuilder<double[]> quantiles(DoubleExtractorOperation<T> extractor, double... qs){
+		verifyQuantiles(qs);
+		return this.accumulate((TDigest a, T r)->{
+			if(a == null) {
+				a = new TDigest();
+			}
+			return a.add(extractor.extract(r));
+		}).collect().accumulate((TDigest a, TDigest r)->{
+			if(a == null) {
+				return r;
+			}
+			return a.merge(r);
+		}).map(r->{
+			return estimateQuantiles(r, qs);
+		});
+	}
+	
+	/**
+	 * Estimate quantiles of the values for each group. The sketches are built locally
+	 * on each shard (see {@link #aggregateBy(ExtractorOperation, AccumulateByOperation, AccumulateByOperation)})
+	 * so only one sketch per group per shard is moved between the shards.
+	 * The return records are maps with a single entry from the group to the estimated values.
+	 * 
+	 * Example (estimate the p50 and p99 latency per endpoint):
+	 * <pre>{@code
+	 *  	GearsBuilder.CreateGearsBuilder(reader).
+	 *   	quantilesBy(r->r.getHashVal().get("endpoint"), r->Double.parseDouble(r.getHashVal().get("latency")), 0.5, 0.99);
+	 * }</pre>
+	 * 
+	 * @param groupExtractor - the extractor operation, returns the group
+	 * @param valueExtractor - the extractor operation, returns the value
+	 * @param qs - the quantiles to estimate, each one between 0 and 1
+	 * @return GearsBuilder with a new template type, notice that the return object might be the same as the previous.
+	 */
+	public GearsBuilder<HashMap<String, double[]>> quantilesBy(ExtractorOperation<T> groupExtractor, DoubleExtractorOperation<T> valueExtractor, double... qs){
+		verifyQuantiles(qs);
+		return this.aggregateBy(()->new TDigest(), groupExtractor, (k, a, r)->{
+			return a.add(valueExtractor.extract(r));
+		}, (k, a, r)->{
+			return a.merge(r);
+		}).map(r->{
+			// accumulate by records reach the next step as a map from the group to the accumulated value
+			@SuppressWarnings("unchecked")
+			HashMap<String, TDigest> sketches = (HashMap<String, TDigest>)(Object)r;
+			HashMap<String, double[]> res = new HashMap<String, double[]>();
+			sketches.forEach((k, v)->res.put(k, estimateQuantiles(v, qs)));
+			return res;
+		});
+	}
+	
+	private static void verifyQuantiles(double[] qs) {
+		if(qs.length == 0) {
+			throw new IllegalArgumentException("No quantiles given");
+		}
+		for(double q : qs) {
+			if(q < 0 || q > 1) {
+				throw new IllegalArgumentException("quantile must be between 0 and 1");
+			}
+		}
+	}
+	
+	private static double[] estimateQuantiles(TDigest digest, double[] qs) {
+		double[] res = new double[qs.length];
+		for(int i = 0 ; i < qs.length ; ++i) {
+			res[i] = digest.quantile(qs[i]);
+		}
+		return res;
+	}
+	
+	/**
+	 * Accumulate a primitive long value per group. Unlike {@link #accumulateBy(ExtractorOperation, AccumulateByOperation)}
+	 * the groups are kept in a Java map of primitive values, so records are accumulated without
+	 * boxing and without passing the group back and forth between Java and the engine. The groups
+	 * are emitted once all the local records were accumulated, moved to the shard that owns them
+	 * and merged there using the same accumulator.
+	 * A group starts with its first value, so the result does not depend on how the records are spread between the shards.
+	 * The return records are maps with a single entry from the group to the accumulated value.
+	 * 
+	 * Example (sum the sold items per category):
+	 * <pre>{@code
+	 *  	GearsBuilder.CreateGearsBuilder(reader).
+	 *   	accumulateByLong(r->r.getHashVal().get("category"), r->Long.parseLong(r.getHashVal().get("items")), (a, v)->a + v);
+	 * }</pre>
+	 * 
+	 * @param groupExtractor - the extractor operation, returns the group
+	 * @param valueExtractor - the extractor operation, returns the value
+	 * @param accumulator - combines the group value with a value, must be associative
+	 * @return GearsBuilder with a new template type, notice that the return object might be the same as the previous.
+	 */
+	public GearsBuilder<HashMap<String, Long>> accumulateByLong(ExtractorOperation<T> groupExtractor, LongExtractorOperation<T> valueExtractor,
+			LongAccumulateOperation accumulator){
+		return this.accumulate((StringLongHashMap a, T r)->{
+			if(a == null) {
+				a = new StringLongHashMap();
+			}
+			return a.accumulate(groupExtractor.extract(r), valueExtractor.extract(r), accumulator);
+		}).flatMap(r->{
+			return r.toRecords();
+		}).repartition(r->{
+			return r.keySet().iterator().next();
+		}).accumulate((StringLongHashMap a, HashMap<String, Long> r)->{
+			if(a == null) {
+				a = new StringLongHashMap();
+			}
+			for(Map.Entry<String, Long> e : r.entrySet()) {
+				a.accumulate(e.getKey(), e.getValue(), accumulator);
+			}
+			return a;
+		}).flatMap(r->{
+			return r.toRecords();
+		});
+	}
+	
+	/**
+	 * Sum the values of each group, see {@link #accumulateByLong(ExtractorOperation, LongExtractorOperation, LongAccumulateOperation)}
+	 * 
+	 * @param groupExtractor - the extractor operation, returns the group
+	 * @param valueExtractor - the extractor operation, returns the value
+	 * @return GearsBuilder with a new template type, notice that the return object might be the same as the previous.
+	 */
+	public GearsBuilder<HashMap<String, Long>> sumBy(ExtractorOperation<T> groupExtractor, LongExtractorOperation<T> valueExtractor){
+		return accumulateByLong(groupExtractor, valueExtractor, (a, v)->a + v);
+	}
+	
+	/**
+	 * Count the records of each group, see {@link #accumulateByLong(ExtractorOperation, LongExtractorOperation, LongAccumulateOperation)}
+	 * 
+	 * @param groupExtractor - the extractor operation, returns the group
+	 * @return GearsBuilder with a new template type, notice that the return object might be the same as the previous.
+	 */
+	public GearsBuilder<HashMap<String, Long>> countBy(ExtractorOperation<T> groupExtractor){
+		return accumulateByLong(groupExtractor, r->1, (a, v)->a + v);
+	}
+	
+	/**
+	 * Find the minimal value of each group, see {@link #accumulateByLong(ExtractorOperation, LongExtractorOperation, LongAccumulateOperation)}
+	 * 
+	 * @param groupExtractor - the extractor operation, returns the group
+	 * @param valueExtractor - the extractor operation, returns the value
+	 * @return GearsBuilder with a new template type, notice that the return object might be the same as the previous.
+	 */
+	public GearsBuilder<HashMap<String, Long>> minBy(ExtractorOperation<T> groupExtractor, LongExtractorOperation<T> valueExtractor){
+		return accumulateByLong(groupExtractor, valueExtractor, (a, v)->Math.min(a, v));
+	}
+	
+	/**
+	 * Find the maximal value of each group, see {@link #accumulateByLong(ExtractorOperation, LongExtractorOperation, LongAccumulateOperation)}
+	 * 
+	 * @param groupExtractor - the extractor operation, returns the group
+	 * @param valueExtractor - the extractor operation, returns the value
+	 * @return GearsBuilder with a new template type, notice that the return object might be the same as the previous.
+	 */
+	public GearsBuilder<HashMap<String, Long>> maxBy(ExtractorOperation<T> groupExtractor, LongExtractorOperation<T> valueExtractor){
+		return accumulateByLong(groupExtractor, valueExtractor, (a, v)->Math.max(a, v));
+	}
+	
 	/**
 	 * Add a count operation to the pipe, the operation returns a single record
 	 * which is the number of records in the pipe.
@@ -0,0 +1,179 @@
+package gears.collections;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import gears.operations.LongAccumulateOperation;
+
+/**
+ * An open addressing (linear probing) hash map from String to primitive long.
+ * 
+ * The values are kept in a primitive array so updating a value does not allocate,
+ * this makes it suitable for accumulating a value per group over many records.
+ */
+public class StringLongHashMap implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	
+	private static final int INITIAL_CAPACITY = 16;
+	
+	private transient String[] keys;
+	private transient long[] values;
+	private transient int size;
+	
+	public StringLongHashMap() {
+		init(INITIAL_CAPACITY);
+	}
+	
+	private void init(int capacity) {
+		keys = new String[capacity];
+		values = new long[capacity];
+		size = 0;
+	}
+	
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		return h;
+	}
+	
+	/**
+	 * Returns the slot of the key or the empty slot where it should be added
+	 */
+	private int slot(String key) {
+		int mask = keys.length - 1;
+		int i = mix(key.hashCode()) & mask;
+		while(keys[i] != null && !keys[i].equals(key)) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+	
+	private void grow() {
+		String[] oldKeys = keys;
+		long[] oldValues = values;
+		init(oldKeys.length * 2);
+		for(int i = 0 ; i < oldKeys.length ; ++i) {
+			if(oldKeys[i] != null) {
+				int s = slot(oldKeys[i]);
+				keys[s] = oldKeys[i];
+				values[s] = oldValues[i];
+				++size;
+			}
+		}
+	}
+	
+	/**
+	 * Accumulate a value into the key value, a key seen for the first
+	 * time takes the value as is.
+	 * 
+	 * @param key - the key, can not be null
+	 * @param value - the value to accumulate
+	 * @param accumulator - combines the current value with the given value
+	 * @return the map itself
+	 * @throws Exception 
+	 */
+	public StringLongHashMap accumulate(String key, long value, LongAccumulateOperation accumulator) throws Exception {
+		if(key == null) {
+			throw new NullPointerException("key can not be null");
+		}
+		int s = slot(key);
+		if(keys[s] == null) {
+			keys[s] = key;
+			values[s] = value;
+			++size;
+			// keep the load factor below 0.5 so probing stays short
+			if(size * 2 > keys.length) {
+				grow();
+			}
+		}else {
+			values[s] = accumulator.accumulate(values[s], value);
+		}
+		return this;
+	}
+	
+	/**
+	 * Merge another map into this map, values of keys that appear on both maps
+	 * are combined with the given accumulator.
+	 * 
+	 * @param other - the map to merge
+	 * @param accumulator - combines the values of a key that appears on both maps
+	 * @return the map itself
+	 * @throws Exception 
+	 */
+	public StringLongHashMap merge(StringLongHashMap other, LongAccumulateOperation accumulator) throws Exception {
+		for(int i = 0 ; i < other.keys.length ; ++i) {
+			if(other.keys[i] != null) {
+				accumulate(other.keys[i], other.values[i], accumulator);
+			}
+		}
+		return this;
+	}
+	
+	public boolean containsKey(String key) {
+		return keys[slot(key)] != null;
+	}
+	
+	/**
+	 * @param key - the key
+	 * @param defaultValue - returned if the key does not exist
+	 * @return the value of the key
+	 */
+	public long get(String key, long defaultValue) {
+		int s = slot(key);
+		return keys[s] == null ? defaultValue : values[s];
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns the entries as a list of maps with a single entry each,
+	 * this is the format used for accumulate by records.
+	 */
+	public ArrayList<HashMap<String, Long>> toRecords(){
+		ArrayList<HashMap<String, Long>> res = new ArrayList<HashMap<String, Long>>(size);
+		for(int i = 0 ; i < keys.length ; ++i) {
+			if(keys[i] != null) {
+				HashMap<String, Long> r = new HashMap<String, Long>();
+				r.put(keys[i], values[i]);
+				res.add(r);
+			}
+		}
+		return res;
+	}
+	
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(size);
+		for(int i = 0 ; i < keys.length ; ++i) {
+			if(keys[i] != null) {
+				out.writeObject(keys[i]);
+				out.writeLong(values[i]);
+			}
+		}
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		int n = in.readInt();
+		int capacity = INITIAL_CAPACITY;
+		while(n * 2 > capacity) {
+			capacity *= 2;
+		}
+		init(capacity);
+		for(int i = 0 ; i < n ; ++i) {
+			String key = (String)in.readObject();
+			int s = slot(key);
+			keys[s] = key;
+			values[s] = in.readLong();
+			++size;
+		}
+	}
+}
@@ -0,0 +1,10 @@
+package gears.operations;
+
+import java.io.Serializable;
+import java.util.Comparator;
+
+public interface ComparatorOperation<T extends Serializable> extends Comparator<T>, Serializable {
+
+	public int compare(T r1, T r2);
+	
+}
@@ -0,0 +1,9 @@
+package gears.operations;
+
+import java.io.Serializable;
+
+public interface DoubleExtractorOperation<I extends Serializable> extends Serializable {
+	
+	public double extract(I record) throws Exception;
+	
+}
@@ -0,0 +1,13 @@
+package gears.operations;
+
+import java.io.Serializable;
+
+/**
+ * Combine two primitive long values, the operation must be associative
+ * as it is used both to accumulate the values and to merge partial results.
+ */
+public interface LongAccumulateOperation extends Serializable {
+	
+	public long accumulate(long accumulator, long value) throws Exception;
+	
+}
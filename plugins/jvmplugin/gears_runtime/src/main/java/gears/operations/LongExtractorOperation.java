@@ -0,0 +1,9 @@
+package gears.operations;
+
+import java.io.Serializable;
+
+public interface LongExtractorOperation<I extends Serializable> extends Serializable {
+	
+	public long extract(I record) throws Exception;
+	
+}
@@ -0,0 +1,23 @@
+package gears.readers;
+
+import java.util.Iterator;
+
+/**
+ * An iterator that can return multiple records on a single call.
+ * 
+ * When the iterator returned by a JavaReader implements this interface,
+ * RedisGears pulls the records using nextBatch instead of calling hasNext
+ * and next for each record, which reduce the number of crossings between
+ * RedisGears and the JVM.
+ *
+ * @param <T> - the returned record type
+ */
+public interface BatchingIterator<T> extends Iterator<T> {
+
+	/**
+	 * Fill the given buffer with the next records.
+	 * @param buf - the buffer to fill
+	 * @return the number of records placed on the buffer, 0 if there are no more records
+	 */
+	int nextBatch(Object[] buf);
+}
@@ -14,12 +14,14 @@ public class CommandReader extends BaseReader<Object[]> {
 	private static final long serialVersionUID = 1L;
 	
 	private String trigger;
+	private boolean fastPath;
 
 	/**
 	 * Creates a new command reader
 	 */
 	public CommandReader() {
 		this.setTrigger(null);
+		this.setFastPath(false);
 	}
 	
 	@Override
@@ -45,6 +47,28 @@ public class CommandReader extends BaseReader<Object[]> {
 	public String getTrigger() {
 		return trigger;
 	}
+
+	/**
+	 * Set whether or not to run triggers on the fast path. On the fast path, a SYNC
+	 * registration that contains only map, filter and foreach operations is invoked
+	 * directly on the trigger arguments and replied right away, without creating an
+	 * execution. Async operations (GearsFuture) are not allowed on the fast path.
+	 * Registrations that are not SYNC or contain other operations ignore this flag.
+	 * @param fastPath - whether or not to run triggers on the fast path
+	 * @return the reader
+	 */
+	public CommandReader setFastPath(boolean fastPath) {
+		this.fastPath = fastPath;
+		return this;
+	}
+
+	/**
+	 * Returns whether or not triggers run on the fast path.
+	 * @return whether or not triggers run on the fast path
+	 */
+	public boolean isFastPath() {
+		return fastPath;
+	}
 	
 	
 }
@@ -11,6 +11,14 @@ import java.util.Iterator;
  * returned records through Gears pipe.
  * 
  * Look at the KeysOnlyReader implementation for example.
+ * 
+ * If the returned iterator implements {@link BatchingIterator}, RedisGears pulls
+ * up to 'batchSize' records on each call to the iterator. If prefetch is enabled,
+ * the iterator is consumed on a background thread into a bounded buffer so I/O
+ * done by the iterator overlaps with the processing of the records.
+ * 
+ * Notice: a prefetched iterator is consumed on a thread other then the execution
+ * thread, so it should not access Redis data (for example using GearsBuilder.execute).
  *
  * @param <T> - the returned record type
  */
@@ -20,8 +28,62 @@ public abstract class JavaReader<T extends Serializable> extends BaseReader<T> i
 	 */
 	private static final long serialVersionUID = 1L;
 
+	private int batchSize = 100;
+	private int prefetchSize = 0;
+
 	@Override
 	public final String getName() {
 		return "JavaReader";
 	}
+
+	/**
+	 * Returns the maximum number of records pulled on each call to a {@link BatchingIterator}
+	 * @return the maximum number of records pulled on each call to a {@link BatchingIterator}
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Set the maximum number of records pulled on each call to a {@link BatchingIterator}
+	 * @param batchSize - the maximum number of records pulled on each call
+	 * @return the reader
+	 */
+	public JavaReader<T> setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+		return this;
+	}
+
+	/**
+	 * Returns the prefetch buffer size, 0 means prefetch is disabled
+	 * @return the prefetch buffer size
+	 */
+	public int getPrefetchSize() {
+		return prefetchSize;
+	}
+
+	/**
+	 * Enable prefetch, the iterator will be consumed on a background thread
+	 * into a buffer of the given size. The iterator must not access Redis data
+	 * when prefetch is enabled.
+	 * @param prefetchSize - the prefetch buffer size, 0 disables prefetch
+	 * @return the reader
+	 */
+	public JavaReader<T> setPrefetchSize(int prefetchSize) {
+		this.prefetchSize = prefetchSize;
+		return this;
+	}
+
+	/**
+	 * Returns the iterator that RedisGears consumes, wrapped with a prefetch
+	 * iterator if prefetch is enabled.
+	 * @return the iterator that RedisGears consumes
+	 */
+	final Iterator<T> readerIterator() {
+		Iterator<T> iter = iterator();
+		if(prefetchSize > 0) {
+			return new PrefetchIterator<T>(iter, prefetchSize);
+		}
+		return iter;
+	}
 }
@@ -15,17 +15,19 @@ public class KeysOnlyReader extends JavaReader<String> {
 	 */
 	private static final long serialVersionUID = 1L;
 	
-	private String scanSize;
+	private int scanSize;
 	private String pattern;
+	private long maxLockHoldMicros;
 	
 	/**
 	 * Create a new KeysOnlyReade reader
-	 * @param scanSize - the size to use with the scan command
+	 * @param scanSize - the maximum amount of keys to read on each Redis GIL hold
 	 * @param pattern - the patter of the keys to read
 	 */
 	public KeysOnlyReader(int scanSize, String pattern) {
-		this.scanSize = Integer.toString(scanSize);
+		this.scanSize = scanSize;
 		this.pattern = pattern;
+		this.maxLockHoldMicros = 1000;
 	}
 	
 	/**
@@ -35,9 +37,38 @@ public class KeysOnlyReader extends JavaReader<String> {
 	public KeysOnlyReader() {
 		this(10000, "*");
 	}
+	
+	/**
+	 * Returns the target maximum time (in microseconds) to hold the Redis GIL on each scan
+	 * @return the target maximum time to hold the Redis GIL on each scan
+	 */
+	public long getMaxLockHoldMicros() {
+		return maxLockHoldMicros;
+	}
+
+	/**
+	 * Set the target maximum time (in microseconds) to hold the Redis GIL on each scan,
+	 * the amount of keys read on each GIL hold is adjusted according to this value (default 1000)
+	 * @param maxLockHoldMicros - the target maximum time to hold the Redis GIL on each scan
+	 * @return the reader
+	 */
+	public KeysOnlyReader setMaxLockHoldMicros(long maxLockHoldMicros) {
+		this.maxLockHoldMicros = maxLockHoldMicros;
+		return this;
+	}
 
 	@Override
 	public Iterator<String> iterator() {
+		KeysScanner scanner = new KeysScanner(pattern, scanSize, maxLockHoldMicros);
+		if(scanner.init()) {
+			return scanner;
+		}
+		// scan api is not available, fall back to the scan command
+		return scanCommandIterator();
+	}
+	
+	private Iterator<String> scanCommandIterator() {
+		final String scanSizeStr = Integer.toString(scanSize);
 		return new Iterator<String>() {
 
 			String cursor = "0";
@@ -51,7 +82,7 @@ public class KeysOnlyReader extends JavaReader<String> {
 					if(keys == null) {
 						Object[] res = (Object[]) GearsBuilder.execute("scan", 
 										cursor == null ? "0" : cursor,
-										"MATCH", pattern, "COUNT", scanSize);
+										"MATCH", pattern, "COUNT", scanSizeStr);
 						keys = (Object[])res[1];
 						cursor = (String)res[0];
 						currIndex = 0;
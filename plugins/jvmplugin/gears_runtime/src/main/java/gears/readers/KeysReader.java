@@ -20,6 +20,10 @@ public class KeysReader extends BaseReader<KeysReaderRecord> {
 	private String[] eventTypes;
 	private String[] keyTypes;
 	private String[] commands;
+	private String[] fields;
+	private long coalesceWindowMs;
+	private int batchSize;
+	private long batchDurationMs;
 
 	/**
 	 * Create a new KeysReader object
@@ -205,4 +209,75 @@ public class KeysReader extends BaseReader<KeysReaderRecord> {
 		this.commands = commands;
 		return this;
 	}
+
+	/**
+	 * Returns the hash fields this reader fetches, null means all fields.
+	 * @return the hash fields this reader fetches
+	 */
+	public String[] getFields() {
+		return fields;
+	}
+
+	/**
+	 * Set the hash fields to fetch, on hashes only those fields will be read
+	 * into the record instead of the entire hash. Applies to both run and register.
+	 * @param fields - the hash fields to fetch
+	 * @return the reader
+	 */
+	public KeysReader setFields(String... fields) {
+		this.fields = fields;
+		return this;
+	}
+
+	/**
+	 * On register, returns the coalesce window in milliseconds, 0 means no coalescing.
+	 * @return the coalesce window in milliseconds
+	 */
+	public long getCoalesceWindowMs() {
+		return coalesceWindowMs;
+	}
+
+	/**
+	 * On register, collapse all the events on the same key that arrive within the given
+	 * window into a single execution that reads the latest value. The number of coalesced
+	 * events is available on the record ({@link KeysReaderRecord#getCoalescedEvents()}).
+	 * Only applies to async registrations without commands hooks.
+	 * @param coalesceWindowMs - the coalesce window in milliseconds, 0 means no coalescing
+	 * @return the reader
+	 */
+	public KeysReader setCoalesceWindowMs(long coalesceWindowMs) {
+		this.coalesceWindowMs = coalesceWindowMs;
+		return this;
+	}
+
+	/**
+	 * On register, returns the maximum number of events fired as a single execution.
+	 * @return the batch size
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * On register, returns the maximum time in milliseconds events are held before firing the batch.
+	 * @return the batch duration in milliseconds
+	 */
+	public long getBatchDurationMs() {
+		return batchDurationMs;
+	}
+
+	/**
+	 * On register, fire a single execution for up to batchSize events, or for the events
+	 * that arrived within batchDurationMs of the first one. The execution reader returns a
+	 * record for each of the batched events. Only applies to {@link gears.ExecutionMode#ASYNC_LOCAL}
+	 * registrations without commands hooks.
+	 * @param batchSize - the maximum number of events on a single execution
+	 * @param batchDurationMs - the maximum time in milliseconds to wait for the batch to fill
+	 * @return the reader
+	 */
+	public KeysReader setBatch(int batchSize, long batchDurationMs) {
+		this.batchSize = batchSize;
+		this.batchDurationMs = batchDurationMs;
+		return this;
+	}
 }
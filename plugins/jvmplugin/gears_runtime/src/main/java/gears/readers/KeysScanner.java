@@ -0,0 +1,85 @@
+package gears.readers;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Natively backed key space scanner, used by the KeysOnlyReader.
+ *
+ * Each call to the native side holds the Redis GIL and scans the key space
+ * using the Redis scan API, the scanned keys are filled into a reusable buffer.
+ * The amount of keys scanned on each GIL hold is adjusted so the lock will not
+ * be held for more then the given maxLockHoldMicros.
+ *
+ */
+class KeysScanner implements Iterator<String> {
+
+	private transient long nativeScannerPtr;
+
+	private String pattern;
+	private String[] keys;
+	private long maxLockHoldMicros;
+	private int len;
+	private int index;
+	private boolean isDone;
+
+	private native boolean scannerCreate();
+	private native int scannerNext(String pattern, String[] keys, long maxLockHoldMicros);
+	private native void scannerFree();
+
+	/**
+	 * Create a new KeysScanner
+	 * @param pattern - the pattern of the keys to read
+	 * @param bufferSize - the maximum amount of keys to read on each GIL hold
+	 * @param maxLockHoldMicros - the target maximum time to hold the GIL on each scan
+	 */
+	KeysScanner(String pattern, int bufferSize, long maxLockHoldMicros) {
+		this.pattern = pattern;
+		this.keys = new String[bufferSize];
+		this.maxLockHoldMicros = maxLockHoldMicros;
+		this.len = 0;
+		this.index = 0;
+		this.isDone = false;
+	}
+
+	/**
+	 * Initialize the native scanner
+	 * @return true on success, false if the Redis scan API is not available
+	 */
+	boolean init() {
+		return scannerCreate();
+	}
+
+	@Override
+	public boolean hasNext() {
+		while(index == len) {
+			if(isDone) {
+				return false;
+			}
+			index = 0;
+			len = scannerNext(pattern, keys, maxLockHoldMicros);
+			if(len < 0) {
+				len = 0;
+				isDone = true;
+				scannerFree();
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String next() {
+		if(!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		String key = keys[index];
+		keys[index++] = null;
+		return key;
+	}
+
+	@Override
+	protected void finalize() throws Throwable {
+		scannerFree();
+	}
+
+}
@@ -0,0 +1,173 @@
+package gears.readers;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consume a given iterator on a background thread into a bounded buffer,
+ * used by the JavaReader when prefetch is enabled so the iterator I/O
+ * will overlap with the processing of the already read records.
+ * 
+ * RedisGears closes the iterator when the execution is freed, closing it stops
+ * the background thread even if the records were not fully consumed.
+ *
+ */
+class PrefetchIterator<T> implements BatchingIterator<T>, AutoCloseable {
+
+	private static final Object DONE = new Object();
+	private static final long OFFER_TIMEOUT_MS = 100;
+
+	private BlockingQueue<Object> queue;
+	private ArrayList<Object> drained;
+	private volatile Throwable error;
+	private Thread thread;
+	private boolean isDone;
+	private Object next;
+	private volatile boolean closed;
+
+	/**
+	 * Create a new PrefetchIterator and start consuming the given iterator
+	 * @param iterator - the iterator to consume
+	 * @param bufferSize - the maximum number of records that was read and not yet consumed
+	 */
+	PrefetchIterator(Iterator<T> iterator, int bufferSize) {
+		this.queue = new ArrayBlockingQueue<>(Math.max(bufferSize, 1));
+		this.drained = new ArrayList<>();
+		this.error = null;
+		this.isDone = false;
+		this.next = null;
+		this.closed = false;
+		this.thread = new Thread(() -> {
+			try {
+				while(iterator.hasNext()) {
+					if(!put(iterator.next())) {
+						// the iterator was closed
+						return;
+					}
+				}
+			} catch (InterruptedException e) {
+				// the iterator was abandoned
+				return;
+			} catch (Throwable e) {
+				error = e;
+			}
+			try {
+				put(DONE);
+			} catch (InterruptedException e) {
+				// the iterator was abandoned
+			}
+		});
+		this.thread.setDaemon(true);
+		this.thread.setContextClassLoader(Thread.currentThread().getContextClassLoader());
+		this.thread.start();
+	}
+
+	/**
+	 * Wait for a free slot on the queue until the iterator is closed
+	 * @param o - the object to put on the queue
+	 * @return true if the object was added to the queue, false if the iterator was closed
+	 * @throws InterruptedException
+	 */
+	private boolean put(Object o) throws InterruptedException {
+		while(!closed) {
+			if(queue.offer(o, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private Object take() {
+		if(isDone) {
+			return DONE;
+		}
+		Object o;
+		try {
+			o = queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		if(o == DONE) {
+			isDone = true;
+			if(error != null) {
+				throw new RuntimeException("Failed prefetching records", error);
+			}
+		}
+		return o;
+	}
+
+	@Override
+	public int nextBatch(Object[] buf) {
+		int len = 0;
+		if(next != null) {
+			buf[len++] = next;
+			next = null;
+		}
+		if(len == 0) {
+			Object o = take();
+			if(o == DONE) {
+				return 0;
+			}
+			buf[len++] = o;
+		}
+		drained.clear();
+		queue.drainTo(drained, buf.length - len);
+		for(Object o : drained) {
+			if(o == DONE) {
+				// source is done, the next call will return 0
+				isDone = true;
+				if(error != null) {
+					throw new RuntimeException("Failed prefetching records", error);
+				}
+				break;
+			}
+			buf[len++] = o;
+		}
+		drained.clear();
+		return len;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if(next == null) {
+			Object o = take();
+			if(o == DONE) {
+				return false;
+			}
+			next = o;
+		}
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T next() {
+		if(!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		T res = (T)next;
+		next = null;
+		return res;
+	}
+
+	/**
+	 * Stop the background thread, records that was not yet consumed are dropped.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		thread.interrupt();
+		queue.clear();
+	}
+
+	@Override
+	protected void finalize() throws Throwable {
+		close();
+	}
+
+}
@@ -0,0 +1,156 @@
+package gears.readers;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reads the splits of a SplittableJavaReader on a thread pool and merges
+ * the records into a single iterator, used by the SplittableJavaReader.
+ * 
+ * RedisGears closes the iterator when the execution is freed, closing it stops
+ * the reading threads even if the records were not fully consumed.
+ *
+ */
+class SplitsIterator<T> implements Iterator<T>, AutoCloseable {
+
+	private static final Object SPLIT_DONE = new Object();
+	private static final long OFFER_TIMEOUT_MS = 100;
+
+	private ExecutorService pool;
+	private BlockingQueue<Object> queue;
+	private AtomicReference<Throwable> error;
+	private int numSplits;
+	private int numDone;
+	private Object next;
+	private volatile boolean closed;
+
+	/**
+	 * Create a new SplitsIterator and start reading the splits
+	 * @param splits - the splits to read
+	 * @param parallelism - the maximum number of splits to read concurrently
+	 * @param bufferSize - the maximum number of records that was read and not yet consumed
+	 */
+	SplitsIterator(List<? extends Iterable<T>> splits, int parallelism, int bufferSize) {
+		this.numSplits = splits.size();
+		this.numDone = 0;
+		this.next = null;
+		this.error = new AtomicReference<>();
+		this.closed = false;
+		this.queue = new ArrayBlockingQueue<>(Math.max(bufferSize, 1));
+		if(numSplits == 0) {
+			return;
+		}
+
+		ClassLoader cl = Thread.currentThread().getContextClassLoader();
+		this.pool = Executors.newFixedThreadPool(Math.max(Math.min(parallelism, numSplits), 1), r -> {
+			Thread t = new Thread(r);
+			t.setDaemon(true);
+			t.setContextClassLoader(cl);
+			return t;
+		});
+		for(Iterable<T> split : splits) {
+			pool.execute(() -> readSplit(split));
+		}
+		pool.shutdown();
+	}
+
+	private void readSplit(Iterable<T> split) {
+		try {
+			for(T record : split) {
+				if(error.get() != null) {
+					// another split failed, no need to continue
+					break;
+				}
+				if(!put(record)) {
+					// the iterator was closed
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			// the iterator was abandoned
+			return;
+		} catch (Throwable e) {
+			error.compareAndSet(null, e);
+		}
+		try {
+			put(SPLIT_DONE);
+		} catch (InterruptedException e) {
+			// the iterator was abandoned
+		}
+	}
+
+	/**
+	 * Wait for a free slot on the queue until the iterator is closed
+	 * @param o - the object to put on the queue
+	 * @return true if the object was added to the queue, false if the iterator was closed
+	 * @throws InterruptedException
+	 */
+	private boolean put(Object o) throws InterruptedException {
+		while(!closed) {
+			if(queue.offer(o, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean hasNext() {
+		while(next == null) {
+			if(numDone == numSplits) {
+				Throwable e = error.get();
+				if(e != null) {
+					throw new RuntimeException("Failed reading split", e);
+				}
+				return false;
+			}
+			try {
+				next = queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+			if(next == SPLIT_DONE) {
+				next = null;
+				numDone++;
+			}
+		}
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T next() {
+		if(!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		T res = (T)next;
+		next = null;
+		return res;
+	}
+
+	/**
+	 * Stop the reading threads, records that was not yet consumed are dropped.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		if(pool != null) {
+			pool.shutdownNow();
+		}
+		queue.clear();
+	}
+
+	@Override
+	protected void finalize() throws Throwable {
+		close();
+	}
+
+}
@@ -0,0 +1,84 @@
+package gears.readers;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A JavaReader that is split into multiple independent parts which are read in parallel.
+ * In order to implement a splittable reader one need to extend this class and implement
+ * the 'public List&lt;? extends Iterable&lt;T&gt;&gt; splits()' function.
+ *
+ * On each shard, RedisGears reads the returned splits on multiple threads and merges
+ * the records into the Gears pipe (before any other step is performed). There is no
+ * guarantee on the order of records between different splits.
+ *
+ * Notice: the splits are read on threads other then the execution thread, so they
+ * should not access Redis data. This reader is good for reading partitioned external
+ * data sources (files, remote services, ...).
+ *
+ * @param <T> - the returned record type
+ */
+public abstract class SplittableJavaReader<T extends Serializable> extends JavaReader<T> {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private int parallelism;
+	private int bufferSize;
+
+	public SplittableJavaReader() {
+		this.parallelism = Runtime.getRuntime().availableProcessors();
+		this.bufferSize = 1000;
+	}
+
+	/**
+	 * Returns the splits to read, each split is read by a single thread.
+	 * @return the splits to read
+	 */
+	public abstract List<? extends Iterable<T>> splits();
+
+	/**
+	 * Returns the maximum number of splits that are read concurrently
+	 * @return the maximum number of splits that are read concurrently
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Set the maximum number of splits that are read concurrently
+	 * @param parallelism - the maximum number of splits that are read concurrently
+	 * @return the reader
+	 */
+	public SplittableJavaReader<T> setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+		return this;
+	}
+
+	/**
+	 * Returns the maximum number of records that was read and not yet consumed
+	 * @return the maximum number of records that was read and not yet consumed
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Set the maximum number of records that was read and not yet consumed, when
+	 * the buffer is full the reading threads waits for the pipe to consume records.
+	 * @param bufferSize - the maximum number of records that was read and not yet consumed
+	 * @return the reader
+	 */
+	public SplittableJavaReader<T> setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+		return this;
+	}
+
+	@Override
+	public final Iterator<T> iterator() {
+		return new SplitsIterator<T>(splits(), parallelism, bufferSize);
+	}
+}
@@ -2,6 +2,9 @@ package gears.readers;
 
 import java.util.HashMap;
 
+import gears.records.StreamRecord;
+import gears.records.StreamRecordBatch;
+
 /**
  * A reader that reads Redis Stream data.
  * 
@@ -14,6 +17,13 @@ import java.util.HashMap;
  *             of using byte[] and not String is that there is not garentee that 
  *             those values will be String and they might be blobs (images for example).
  *
+ * If the record type is set to {@link RecordType#STREAM_RECORD}, the reader returns
+ * {@link StreamRecord} objects instead, use {@link #asStreamRecordReader()} to
+ * get a reader with the matching type.
+ * 
+ * If deliver as batch is set, the reader returns a single {@link StreamRecordBatch}
+ * per batch, use {@link #asStreamRecordBatchReader()} to get a reader with the matching type.
+ *
  */
 public class StreamReader extends BaseReader<HashMap<String, Object>> {
 	
@@ -26,6 +36,10 @@ public class StreamReader extends BaseReader<HashMap<String, Object>> {
 		CONTINUE, ABORT, RETRY
 	}
 	
+	public enum RecordType{
+		MAP, STREAM_RECORD
+	}
+	
 	private String pattern;
 	private String startId;
 	private int batchSize;
@@ -33,6 +47,14 @@ public class StreamReader extends BaseReader<HashMap<String, Object>> {
 	private FailurePolicy failurePolicy;
 	private int failureRertyInterval;
 	private boolean trimStream;
+	private RecordType recordType;
+	private boolean deliverAsBatch;
+	private boolean adaptive;
+	private int minBatchSize;
+	private int maxBatchSize;
+	private int targetLatencyMS;
+	private int maxConcurrentBatches;
+	private boolean orderedPerStream;
 
 	/**
 	 * Create a StreamReader object
@@ -46,6 +68,14 @@ public class StreamReader extends BaseReader<HashMap<String, Object>> {
 		this.failurePolicy = FailurePolicy.CONTINUE;
 		this.failureRertyInterval = 5000;
 		this.trimStream = true;
+		this.recordType = RecordType.MAP;
+		this.deliverAsBatch = false;
+		this.adaptive = false;
+		this.minBatchSize = 1;
+		this.maxBatchSize = 1;
+		this.targetLatencyMS = 0;
+		this.maxConcurrentBatches = 0;
+		this.orderedPerStream = false;
 	}
 
 	@Override
@@ -113,6 +143,101 @@ public class StreamReader extends BaseReader<HashMap<String, Object>> {
 		return this;
 	}
 
+	/**
+	 * Indicate whether or not the reader batch size and duration are adaptive
+	 * @return true if the reader batch size and duration are adaptive
+	 */
+	public boolean isAdaptive() {
+		return adaptive;
+	}
+
+	/**
+	 * Returns the minimal batch size of an adaptive reader
+	 * @return the minimal batch size of an adaptive reader
+	 */
+	public int getMinBatchSize() {
+		return minBatchSize;
+	}
+
+	/**
+	 * Returns the maximal batch size of an adaptive reader
+	 * @return the maximal batch size of an adaptive reader
+	 */
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	/**
+	 * Returns the target end to end latency of an adaptive reader
+	 * @return the target end to end latency of an adaptive reader (in ms)
+	 */
+	public int getTargetLatencyMS() {
+		return targetLatencyMS;
+	}
+
+	/**
+	 * Set the reader to adapt its batch size and duration (relevant only for register).
+	 * After each batch, the reader grows or shrinks the batch size within the given bounds
+	 * according to the measured batch lag and processing time and the stream backlog.
+	 * The duration is set so that a partial batch will not wait more than the target latency.
+	 * The configured batch size is used as the initial batch size. The current effective
+	 * batch size and duration are shown on RG.DUMPREGISTRATIONS.
+	 * @param minBatchSize - the minimal batch size
+	 * @param maxBatchSize - the maximal batch size
+	 * @param targetLatencyMS - the target end to end latency (in ms)
+	 * @return the reader
+	 */
+	public StreamReader setAdaptiveBatch(int minBatchSize, int maxBatchSize, int targetLatencyMS) {
+		this.adaptive = true;
+		this.minBatchSize = minBatchSize;
+		this.maxBatchSize = maxBatchSize;
+		this.targetLatencyMS = targetLatencyMS;
+		return this;
+	}
+
+	/**
+	 * Returns the maximum number of batches, across all the matched streams,
+	 * that are processed concurrently
+	 * @return the maximum number of concurrent batches (0 means no limit)
+	 */
+	public int getMaxConcurrentBatches() {
+		return maxConcurrentBatches;
+	}
+
+	/**
+	 * Set the maximum number of batches, across all the matched streams, that are
+	 * processed concurrently by the registration (relevant only for register).
+	 * When the limit is reached, streams with new data wait for their turn and are
+	 * served in round robin order, each stream gets a single batch per round so a
+	 * hot stream can not starve the others.
+	 * @param maxConcurrentBatches - the maximum number of concurrent batches (0 means no limit)
+	 * @return the reader
+	 */
+	public StreamReader setMaxConcurrentBatches(int maxConcurrentBatches) {
+		this.maxConcurrentBatches = maxConcurrentBatches;
+		return this;
+	}
+
+	/**
+	 * Indicate whether or not batches of the same stream are processed one at a time
+	 * @return true if batches of the same stream are processed one at a time
+	 */
+	public boolean isOrderedPerStream() {
+		return orderedPerStream;
+	}
+
+	/**
+	 * Set whether or not batches of the same stream are processed one at a time,
+	 * in the stream order (relevant only for register). Batches of different
+	 * streams are still processed concurrently.
+	 * @param orderedPerStream - if true, process batches of the same stream one at a time
+	 * @return the reader
+	 */
+	public StreamReader setOrderedPerStream(boolean orderedPerStream) {
+		this.orderedPerStream = orderedPerStream;
+		return this;
+	}
+
 	/**
 	 * Returns the reader duration
 	 * @return the reader duration
@@ -198,4 +323,68 @@ public class StreamReader extends BaseReader<HashMap<String, Object>> {
 		return this;
 	}
 
+	/**
+	 * Returns the type of the records returned by the reader
+	 * @return the type of the records returned by the reader
+	 */
+	public RecordType getRecordType() {
+		return recordType;
+	}
+
+	/**
+	 * Set the type of the records returned by the reader.
+	 * 	1. MAP - {@code HashMap<String, Object>} records (the default)
+	 * 	2. STREAM_RECORD - {@link StreamRecord} records, created directly from the stream
+	 * 	                   entry with a single call into the JVM.
+	 * 
+	 * @param recordType - the type of the records returned by the reader
+	 * @return the reader
+	 */
+	public StreamReader setRecordType(RecordType recordType) {
+		this.recordType = recordType;
+		return this;
+	}
+
+	/**
+	 * Set the record type to STREAM_RECORD and return the reader typed accordingly,
+	 * so it can be passed to {@link gears.GearsBuilder#CreateGearsBuilder(BaseReader)}.
+	 * @return the reader
+	 */
+	@SuppressWarnings("unchecked")
+	public BaseReader<StreamRecord> asStreamRecordReader() {
+		this.recordType = RecordType.STREAM_RECORD;
+		return (BaseReader<StreamRecord>)(BaseReader<?>)this;
+	}
+
+	/**
+	 * Indicate whether or not the reader delivers the entire batch as a single record
+	 * @return true if the reader delivers the entire batch as a single record
+	 */
+	public boolean isDeliverAsBatch() {
+		return deliverAsBatch;
+	}
+
+	/**
+	 * Set the reader to deliver the entire batch as a single {@link StreamRecordBatch} record
+	 * instead of a record per entry. The record type setting is ignored when deliver as batch
+	 * is set.
+	 * @param deliverAsBatch - if true, deliver the entire batch as a single record
+	 * @return the reader
+	 */
+	public StreamReader setDeliverAsBatch(boolean deliverAsBatch) {
+		this.deliverAsBatch = deliverAsBatch;
+		return this;
+	}
+
+	/**
+	 * Set deliver as batch to true and return the reader typed accordingly,
+	 * so it can be passed to {@link gears.GearsBuilder#CreateGearsBuilder(BaseReader)}.
+	 * @return the reader
+	 */
+	@SuppressWarnings("unchecked")
+	public BaseReader<StreamRecordBatch> asStreamRecordBatchReader() {
+		this.deliverAsBatch = true;
+		return (BaseReader<StreamRecordBatch>)(BaseReader<?>)this;
+	}
+
 }
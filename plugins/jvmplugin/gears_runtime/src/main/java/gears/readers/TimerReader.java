@@ -0,0 +1,120 @@
+package gears.readers;
+
+/**
+ * A reader that runs the registered pipe periodically, on each shard, without
+ * the need of an external client that triggers the execution.
+ * 
+ * On each run the reader returns a single record which is the time (in milliseconds)
+ * the run was scheduled to. The execution runs on the RedisGears execution pool like
+ * any other registration, use ExecutionMode.ASYNC_LOCAL to run it on each shard
+ * independently.
+ * 
+ * The schedule can be:
+ * 
+ * 	1. FIXED_RATE - run every 'interval' milliseconds, if the last run did not yet
+ *                  finished the run is skipped.
+ * 	2. FIXED_DELAY - run 'interval' milliseconds after the last run finished.
+ * 
+ * Setting a jitter will offset the first run on each shard by a different amount
+ * (up to 'jitter' milliseconds) so the runs will be spread evenly across the shards.
+ * 
+ * This reader only supports register.
+ *
+ */
+public class TimerReader extends BaseReader<Long> {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+
+	public enum Schedule{
+		FIXED_RATE, FIXED_DELAY
+	}
+
+	private long interval;
+	private Schedule schedule;
+	private long jitter;
+
+	/**
+	 * Create a new TimerReader that runs every second
+	 */
+	public TimerReader() {
+		super();
+		this.interval = 1000;
+		this.schedule = Schedule.FIXED_RATE;
+		this.jitter = 0;
+	}
+
+	/**
+	 * Create a new TimerReader
+	 * @param interval - the interval in milliseconds
+	 * @param schedule - the schedule type
+	 */
+	public TimerReader(long interval, Schedule schedule) {
+		this();
+		this.interval = interval;
+		this.schedule = schedule;
+	}
+
+	@Override
+	public String getName() {
+		return "TimerReader";
+	}
+
+	/**
+	 * Returns the interval in milliseconds
+	 * @return the interval in milliseconds
+	 */
+	public long getInterval() {
+		return interval;
+	}
+
+	/**
+	 * Set the interval in milliseconds
+	 * @param interval - the interval in milliseconds
+	 * @return the reader
+	 */
+	public TimerReader setInterval(long interval) {
+		this.interval = interval;
+		return this;
+	}
+
+	/**
+	 * Returns the schedule type
+	 * @return the schedule type
+	 */
+	public Schedule getSchedule() {
+		return schedule;
+	}
+
+	/**
+	 * Set the schedule type
+	 * @param schedule - the schedule type
+	 * @return the reader
+	 */
+	public TimerReader setSchedule(Schedule schedule) {
+		this.schedule = schedule;
+		return this;
+	}
+
+	/**
+	 * Returns the maximum offset (in milliseconds) of the first run on each shard
+	 * @return the maximum offset of the first run on each shard
+	 */
+	public long getJitter() {
+		return jitter;
+	}
+
+	/**
+	 * Set the maximum offset (in milliseconds) of the first run on each shard,
+	 * 0 means no jitter.
+	 * @param jitter - the maximum offset of the first run on each shard
+	 * @return the reader
+	 */
+	public TimerReader setJitter(long jitter) {
+		this.jitter = jitter;
+		return this;
+	}
+
+}
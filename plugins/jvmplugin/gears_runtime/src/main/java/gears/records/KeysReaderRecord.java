@@ -2,7 +2,9 @@ package gears.records;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -10,6 +12,9 @@ import java.util.Set;
 /**
  * A record type that returns by the KeysReader.
  * Currently supports or reader values of Hashes and Strings
+ * 
+ * When a key space event triggers more then one async registration, the value
+ * is read once and each registration gets its own copy of the record.
  *
  */
 public class KeysReaderRecord extends BaseRecord {
@@ -35,10 +40,16 @@ public class KeysReaderRecord extends BaseRecord {
 	private Map<String,String> hashVal;
 	private List<String> listVal;
 	private Set<String> setVal;
+	private long coalescedEvents;
 	
 	public KeysReaderRecord(String key, String event, boolean readVal, ByteBuffer buff) {
+		this(key, event, readVal, buff, 0);
+	}
+	
+	public KeysReaderRecord(String key, String event, boolean readVal, ByteBuffer buff, long coalescedEvents) {
 		this.key = key;
 		this.event = event;
+		this.coalescedEvents = coalescedEvents;
 		if(readVal) {
 			buff.order(ByteOrder.LITTLE_ENDIAN);
 			this.type = buff.getLong();
@@ -68,6 +79,26 @@ public class KeysReaderRecord extends BaseRecord {
 		}
 	}
 
+	private KeysReaderRecord(KeysReaderRecord other) {
+		this.key = other.key;
+		this.event = other.event;
+		this.type = other.type;
+		this.stringVal = other.stringVal;
+		this.hashVal = other.hashVal != null ? new HashMap<>(other.hashVal) : null;
+		this.listVal = other.listVal != null ? new ArrayList<>(other.listVal) : null;
+		this.setVal = other.setVal != null ? new HashSet<>(other.setVal) : null;
+		this.coalescedEvents = other.coalescedEvents;
+	}
+
+	/**
+	 * Internal use, called by RedisGears to give each registration its own copy of
+	 * a record that was read once for all the registrations fired by the same event.
+	 * @return a deep copy of the record
+	 */
+	KeysReaderRecord copy() {
+		return new KeysReaderRecord(this);
+	}
+
 	public void setKey(String key) {
 		this.key = key;
 	}
@@ -89,6 +120,15 @@ public class KeysReaderRecord extends BaseRecord {
 		return event;
 	}
 
+	/**
+	 * If the registration coalesces events, return the number of events on the key
+	 * that were collapsed into this record (0 if the registration does not coalesce events)
+	 * @return the number of coalesced events
+	 */
+	public long getCoalescedEvents() {
+		return coalescedEvents;
+	}
+
 	/**
 	 * Return the key type:
 	 * 		REDISMODULE_KEYTYPE_EMPTY = 0;
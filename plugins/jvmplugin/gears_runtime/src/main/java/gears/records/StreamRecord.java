@@ -0,0 +1,126 @@
+package gears.records;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A record type that returns by the StreamReader when the reader record type
+ * is set to {@link gears.readers.StreamReader.RecordType#STREAM_RECORD}.
+ *
+ * The record is created directly from the stream entry and holds the stream key,
+ * the entry id (as milliseconds and sequence number) and the entry fields and values.
+ * The values are kept as byte[] because there is no guarantee that they are Strings,
+ * they might be blobs (images for example).
+ *
+ */
+public class StreamRecord extends BaseRecord {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private String key;
+	private long idMs;
+	private long idSeq;
+	private String[] fields;
+	private byte[][] values;
+
+	public StreamRecord(String key, long idMs, long idSeq, ByteBuffer buff) {
+		this.key = key;
+		this.idMs = idMs;
+		this.idSeq = idSeq;
+		buff.order(ByteOrder.LITTLE_ENDIAN);
+		readFields(buff);
+	}
+
+	/**
+	 * Create a StreamRecord from a buffer that starts with the entry id,
+	 * used when reading a whole batch out of a single buffer.
+	 */
+	StreamRecord(String key, ByteBuffer buff) {
+		this.key = key;
+		this.idMs = buff.getLong();
+		this.idSeq = buff.getLong();
+		readFields(buff);
+	}
+
+	private void readFields(ByteBuffer buff) {
+		int size = (int)buff.getLong();
+		this.fields = new String[size];
+		this.values = new byte[size][];
+		for(int i = 0 ; i < size ; i++) {
+			long fieldSize = buff.getLong();
+			byte[] dst = new byte[(int)fieldSize];
+			buff.get(dst);
+			this.fields[i] = new String(dst);
+			long valSize = buff.getLong();
+			dst = new byte[(int)valSize];
+			buff.get(dst);
+			this.values[i] = dst;
+		}
+	}
+
+	/**
+	 *
+	 * @return the stream key
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * Return the milliseconds part of the entry id
+	 * @return the milliseconds part of the entry id
+	 */
+	public long getIdMs() {
+		return idMs;
+	}
+
+	/**
+	 * Return the sequence number part of the entry id
+	 * @return the sequence number part of the entry id
+	 */
+	public long getIdSeq() {
+		return idSeq;
+	}
+
+	/**
+	 * Return the entry id in its String form (&lt;ms&gt;-&lt;seq&gt;)
+	 * @return the entry id
+	 */
+	public String getId() {
+		return idMs + "-" + idSeq;
+	}
+
+	/**
+	 * Return the entry fields, the i'th field matches the i'th value
+	 * @return the entry fields
+	 */
+	public String[] getFields() {
+		return fields;
+	}
+
+	/**
+	 * Return the entry values, the i'th value matches the i'th field
+	 * @return the entry values
+	 */
+	public byte[][] getValues() {
+		return values;
+	}
+
+	/**
+	 * Return the value of the given field (null if the field does not exists)
+	 * @param field - the field name
+	 * @return the value of the given field
+	 */
+	public byte[] getValue(String field) {
+		for(int i = 0 ; i < fields.length ; i++) {
+			if(fields[i].equals(field)) {
+				return values[i];
+			}
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,66 @@
+package gears.records;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A record type that returns by the StreamReader when deliver as batch is set.
+ * The record holds all the entries that was read on a single batch, ordered
+ * by their ids.
+ *
+ */
+public class StreamRecordBatch extends BaseRecord {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private String key;
+	private ArrayList<StreamRecord> records;
+
+	public StreamRecordBatch(String key, ByteBuffer buff) {
+		this.key = key;
+		buff.order(ByteOrder.LITTLE_ENDIAN);
+		int size = (int)buff.getLong();
+		this.records = new ArrayList<>(size);
+		for(int i = 0 ; i < size ; i++) {
+			this.records.add(new StreamRecord(key, buff));
+		}
+	}
+
+	/**
+	 *
+	 * @return the stream key
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * Return the batch entries
+	 * @return the batch entries
+	 */
+	public List<StreamRecord> getRecords() {
+		return records;
+	}
+
+	/**
+	 * Return the id of the first entry in the batch
+	 * @return the id of the first entry in the batch
+	 */
+	public String getFirstId() {
+		return records.isEmpty() ? null : records.get(0).getId();
+	}
+
+	/**
+	 * Return the id of the last entry in the batch
+	 * @return the id of the last entry in the batch
+	 */
+	public String getLastId() {
+		return records.isEmpty() ? null : records.get(records.size() - 1).getId();
+	}
+
+}
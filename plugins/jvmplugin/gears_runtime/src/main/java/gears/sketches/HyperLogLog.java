@@ -0,0 +1,227 @@
+package gears.sketches;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A mergeable HyperLogLog sketch used to estimate the number of distinct values.
+ * 
+ * The sketch starts with a sparse representation (a sorted array of the non zero
+ * registers) and moves to the dense representation (a register per byte) once
+ * the sparse representation is no longer smaller. The standard error of the
+ * estimation is about 1.04/sqrt(2^precision).
+ */
+public class HyperLogLog implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	
+	public static final int MIN_PRECISION = 4;
+	public static final int MAX_PRECISION = 18;
+	public static final int DEFAULT_PRECISION = 14;
+	
+	private static final int RANK_BITS = 6;
+	private static final int RANK_MASK = (1 << RANK_BITS) - 1;
+	
+	private final int precision;
+	
+	// sparse representation, each entry is (register index << RANK_BITS) | rank sorted by index
+	private int[] sparse;
+	private int sparseLen;
+	
+	// dense representation, null as long as the sketch is sparse
+	private byte[] registers;
+	
+	/**
+	 * Create a new sketch with the default precision
+	 */
+	public HyperLogLog() {
+		this(DEFAULT_PRECISION);
+	}
+	
+	/**
+	 * Create a new sketch
+	 * @param precision - number of bits used to pick a register (between 4 and 18),
+	 * the sketch uses 2^precision registers
+	 */
+	public HyperLogLog(int precision) {
+		checkPrecision(precision);
+		this.precision = precision;
+		this.sparse = new int[4];
+		this.sparseLen = 0;
+		this.registers = null;
+	}
+	
+	/**
+	 * Verify that the given precision can be used to create a sketch
+	 * @param precision - the precision to verify
+	 * @throws IllegalArgumentException if the precision is out of range
+	 */
+	public static void checkPrecision(int precision) {
+		if(precision < MIN_PRECISION || precision > MAX_PRECISION) {
+			throw new IllegalArgumentException(String.format("precision must be between %d and %d", MIN_PRECISION, MAX_PRECISION));
+		}
+	}
+	
+	/**
+	 * @return the sketch precision
+	 */
+	public int getPrecision() {
+		return precision;
+	}
+	
+	/**
+	 * @return true if the sketch uses the sparse representation
+	 */
+	public boolean isSparse() {
+		return registers == null;
+	}
+	
+	/**
+	 * Add a value to the sketch
+	 * @param value - the value to add
+	 * @return the sketch itself
+	 */
+	public HyperLogLog add(String value) {
+		return add(value.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Add a value to the sketch
+	 * @param value - the value to add
+	 * @return the sketch itself
+	 */
+	public HyperLogLog add(byte[] value) {
+		long hash = hash(value);
+		int index = (int)(hash >>> (64 - precision));
+		int rank = Math.min(Long.numberOfLeadingZeros(hash << precision), 64 - precision) + 1;
+		setRegister(index, rank);
+		return this;
+	}
+	
+	/**
+	 * Merge another sketch into this sketch, the other sketch is not changed.
+	 * @param other - the sketch to merge, must have the same precision
+	 * @return the sketch itself
+	 */
+	public HyperLogLog merge(HyperLogLog other) {
+		if(other.precision != precision) {
+			throw new IllegalArgumentException(String.format("Can not merge sketches with different precision (%d != %d)", precision, other.precision));
+		}
+		if(other.registers != null) {
+			for(int i = 0 ; i < other.registers.length ; ++i) {
+				if(other.registers[i] != 0) {
+					setRegister(i, other.registers[i]);
+				}
+			}
+		}else {
+			for(int i = 0 ; i < other.sparseLen ; ++i) {
+				setRegister(other.sparse[i] >>> RANK_BITS, other.sparse[i] & RANK_MASK);
+			}
+		}
+		return this;
+	}
+	
+	/**
+	 * @return the estimated number of distinct values added to the sketch
+	 */
+	public long count() {
+		int m = 1 << precision;
+		double sum = 0;
+		int zeros = 0;
+		if(registers != null) {
+			for(int i = 0 ; i < m ; ++i) {
+				sum += 1.0 / (1L << registers[i]);
+				if(registers[i] == 0) {
+					++zeros;
+				}
+			}
+		}else {
+			zeros = m - sparseLen;
+			sum = zeros;
+			for(int i = 0 ; i < sparseLen ; ++i) {
+				sum += 1.0 / (1L << (sparse[i] & RANK_MASK));
+			}
+		}
+		
+		double estimate = alpha(m) * m * m / sum;
+		if(estimate <= 2.5 * m && zeros > 0) {
+			// small range correction (linear counting)
+			estimate = m * Math.log((double)m / zeros);
+		}
+		return Math.round(estimate);
+	}
+	
+	private void setRegister(int index, int rank) {
+		if(registers != null) {
+			if(registers[index] < rank) {
+				registers[index] = (byte)rank;
+			}
+			return;
+		}
+		
+		int key = index << RANK_BITS;
+		int pos = Arrays.binarySearch(sparse, 0, sparseLen, key | RANK_MASK);
+		// the entry with the same index (if exists) is the one right before the insertion point
+		pos = -pos - 1;
+		if(pos > 0 && (sparse[pos - 1] >>> RANK_BITS) == index) {
+			if((sparse[pos - 1] & RANK_MASK) < rank) {
+				sparse[pos - 1] = key | rank;
+			}
+			return;
+		}
+		
+		if(sparseLen + 1 > (1 << precision) / 4) {
+			// sparse entry takes 4 bytes and dense register takes 1 byte
+			toDense();
+			registers[index] = (byte)rank;
+			return;
+		}
+		
+		if(sparseLen == sparse.length) {
+			sparse = Arrays.copyOf(sparse, sparse.length * 2);
+		}
+		System.arraycopy(sparse, pos, sparse, pos + 1, sparseLen - pos);
+		sparse[pos] = key | rank;
+		++sparseLen;
+	}
+	
+	private void toDense() {
+		registers = new byte[1 << precision];
+		for(int i = 0 ; i < sparseLen ; ++i) {
+			registers[sparse[i] >>> RANK_BITS] = (byte)(sparse[i] & RANK_MASK);
+		}
+		sparse = null;
+		sparseLen = 0;
+	}
+	
+	private static double alpha(int m) {
+		switch(m) {
+		case 16:
+			return 0.673;
+		case 32:
+			return 0.697;
+		case 64:
+			return 0.709;
+		default:
+			return 0.7213 / (1 + 1.079 / m);
+		}
+	}
+	
+	/**
+	 * 64 bit FNV-1a followed by the murmur3 finalizer to spread the bits
+	 */
+	private static long hash(byte[] data) {
+		long h = 0xcbf29ce484222325L;
+		for(byte b : data) {
+			h ^= (b & 0xff);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb93fe53e4b5bL;
+		h ^= h >>> 33;
+		return h;
+	}
+}
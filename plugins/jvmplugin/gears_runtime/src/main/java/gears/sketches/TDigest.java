@@ -0,0 +1,222 @@
+package gears.sketches;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A mergeable t-digest sketch used to estimate quantiles of a stream of values.
+ * 
+ * Values are buffered and periodically merged into a sorted list of centroids,
+ * the size of each centroid is bounded by the scale function so centroids near
+ * the edges (q close to 0 or 1) are small and the tail quantiles are accurate.
+ * The number of centroids is bounded by the compression (about 2 * compression).
+ */
+public class TDigest implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	
+	public static final double DEFAULT_COMPRESSION = 100;
+	
+	private final double compression;
+	
+	// merged centroids sorted by mean
+	private double[] means;
+	private double[] weights;
+	private int centroidsLen;
+	
+	// values (or centroids of other digests) that was not yet merged
+	private double[] bufferMeans;
+	private double[] bufferWeights;
+	private int bufferLen;
+	
+	private double totalWeight;
+	private double min;
+	private double max;
+	
+	/**
+	 * Create a new sketch with the default compression
+	 */
+	public TDigest() {
+		this(DEFAULT_COMPRESSION);
+	}
+	
+	/**
+	 * Create a new sketch
+	 * @param compression - bounds the number of centroids, larger value gives 
+	 * better accuracy but uses more memory (must be at least 10)
+	 */
+	public TDigest(double compression) {
+		if(compression < 10) {
+			throw new IllegalArgumentException("compression must be at least 10");
+		}
+		this.compression = compression;
+		int size = (int)Math.ceil(compression) * 2 + 10;
+		this.means = new double[size];
+		this.weights = new double[size];
+		this.centroidsLen = 0;
+		this.bufferMeans = new double[size * 5];
+		this.bufferWeights = new double[size * 5];
+		this.bufferLen = 0;
+		this.totalWeight = 0;
+		this.min = Double.POSITIVE_INFINITY;
+		this.max = Double.NEGATIVE_INFINITY;
+	}
+	
+	/**
+	 * @return the sketch compression
+	 */
+	public double getCompression() {
+		return compression;
+	}
+	
+	/**
+	 * @return the number of values added to the sketch
+	 */
+	public long size() {
+		return (long)totalWeight;
+	}
+	
+	/**
+	 * Add a value to the sketch
+	 * @param value - the value to add
+	 * @return the sketch itself
+	 */
+	public TDigest add(double value) {
+		if(Double.isNaN(value)) {
+			throw new IllegalArgumentException("Can not add NaN to a t-digest");
+		}
+		add(value, 1);
+		return this;
+	}
+	
+	/**
+	 * Merge another sketch into this sketch, the other sketch is not changed.
+	 * @param other - the sketch to merge
+	 * @return the sketch itself
+	 */
+	public TDigest merge(TDigest other) {
+		for(int i = 0 ; i < other.centroidsLen ; ++i) {
+			add(other.means[i], other.weights[i]);
+		}
+		for(int i = 0 ; i < other.bufferLen ; ++i) {
+			add(other.bufferMeans[i], other.bufferWeights[i]);
+		}
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		return this;
+	}
+	
+	/**
+	 * Estimate the value at the given quantile
+	 * @param q - the quantile, between 0 and 1
+	 * @return the estimated value, NaN if the sketch is empty
+	 */
+	public double quantile(double q) {
+		if(q < 0 || q > 1) {
+			throw new IllegalArgumentException("quantile must be between 0 and 1");
+		}
+		compress();
+		if(centroidsLen == 0) {
+			return Double.NaN;
+		}
+		if(centroidsLen == 1) {
+			return means[0];
+		}
+		
+		double index = q * totalWeight;
+		
+		// before the center of the first centroid, interpolate from the min value
+		double cumulative = weights[0] / 2;
+		if(index < cumulative) {
+			return min + (means[0] - min) * (index / cumulative);
+		}
+		
+		// between the centers of two centroids
+		for(int i = 0 ; i < centroidsLen - 1 ; ++i) {
+			double delta = (weights[i] + weights[i + 1]) / 2;
+			if(cumulative + delta > index) {
+				return means[i] + (means[i + 1] - means[i]) * ((index - cumulative) / delta);
+			}
+			cumulative += delta;
+		}
+		
+		// after the center of the last centroid, interpolate to the max value
+		int last = centroidsLen - 1;
+		double rest = weights[last] / 2;
+		return means[last] + (max - means[last]) * Math.min(1, (index - cumulative) / rest);
+	}
+	
+	private void add(double mean, double weight) {
+		if(bufferLen == bufferMeans.length) {
+			compress();
+		}
+		bufferMeans[bufferLen] = mean;
+		bufferWeights[bufferLen] = weight;
+		++bufferLen;
+		totalWeight += weight;
+		min = Math.min(min, mean);
+		max = Math.max(max, mean);
+	}
+	
+	/**
+	 * Merge the buffered values into the centroids
+	 */
+	private void compress() {
+		if(bufferLen == 0) {
+			return;
+		}
+		
+		int n = centroidsLen + bufferLen;
+		double[] allMeans = Arrays.copyOf(means, n);
+		double[] allWeights = Arrays.copyOf(weights, n);
+		System.arraycopy(bufferMeans, 0, allMeans, centroidsLen, bufferLen);
+		System.arraycopy(bufferWeights, 0, allWeights, centroidsLen, bufferLen);
+		bufferLen = 0;
+		
+		Integer[] order = new Integer[n];
+		for(int i = 0 ; i < n ; ++i) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (i1, i2)->Double.compare(allMeans[i1], allMeans[i2]));
+		
+		centroidsLen = 0;
+		double currMean = allMeans[order[0]];
+		double currWeight = allWeights[order[0]];
+		double cumulative = 0;
+		double limit = totalWeight * qLimit(0);
+		for(int i = 1 ; i < n ; ++i) {
+			double mean = allMeans[order[i]];
+			double weight = allWeights[order[i]];
+			if(cumulative + currWeight + weight <= limit) {
+				currWeight += weight;
+				currMean += (mean - currMean) * weight / currWeight;
+			}else {
+				cumulative += currWeight;
+				appendCentroid(currMean, currWeight);
+				limit = totalWeight * qLimit(cumulative / totalWeight);
+				currMean = mean;
+				currWeight = weight;
+			}
+		}
+		appendCentroid(currMean, currWeight);
+	}
+	
+	private void appendCentroid(double mean, double weight) {
+		if(centroidsLen == means.length) {
+			means = Arrays.copyOf(means, means.length * 2);
+			weights = Arrays.copyOf(weights, weights.length * 2);
+		}
+		means[centroidsLen] = mean;
+		weights[centroidsLen] = weight;
+		++centroidsLen;
+	}
+	
+	/**
+	 * The maximal quantile a centroid that starts at quantile q can reach, using
+	 * the scale function k(q) = compression / (2 * PI) * asin(2q - 1).
+	 */
+	private double qLimit(double q) {
+		double k = compression / (2 * Math.PI) * Math.asin(2 * Math.min(1, Math.max(0, q)) - 1);
+		return (Math.sin((k + 1) * 2 * Math.PI / compression) + 1) / 2;
+	}
+}
@@ -0,0 +1,13 @@
+package gears_tests;
+
+import gears.GearsBuilder;
+import gears.readers.KeysReader;
+import gears.records.KeysReaderRecord;
+
+public class testAccumulateByLongAcrossShards {
+	public static void main() {
+		KeysReader reader = new KeysReader();
+		new GearsBuilder<KeysReaderRecord>(reader).
+		accumulateByLong(r->r.getHashVal().get("category"), r->Long.parseLong(r.getHashVal().get("items")), (a, v)->a + v).run();
+	}
+}
@@ -0,0 +1,18 @@
+package gears_tests;
+
+import gears.GearsBuilder;
+import gears.readers.KeysReader;
+import gears.records.KeysReaderRecord;
+
+public class testAccumulateBySpill {
+	
+	public static void main() {
+		// with a low AccumulateByMaxGroupsInMemory the groups are spilled, the spilled
+		// accumulators are read back while records arrive from other shards
+		new GearsBuilder<KeysReaderRecord>(new KeysReader()).
+		<Integer>accumulateBy(r->r.getStringVal(), (k, a, r)->{
+			return a == null ? 1 : a + 1;
+		}).
+		run();
+	}
+}
@@ -0,0 +1,17 @@
+package gears_tests;
+
+import gears.GearsBuilder;
+import gears.readers.KeysReader;
+import gears.records.KeysReaderRecord;
+
+public class testAggregate {
+	public static void main() {
+		KeysReader reader = new KeysReader();
+		new GearsBuilder<KeysReaderRecord>(reader).
+		aggregate(0, (a, r)->{
+			return a + 1;
+		}, (a, r)->{
+			return a + r;
+		}).run();
+	}
+}
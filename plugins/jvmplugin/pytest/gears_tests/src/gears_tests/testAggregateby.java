@@ -0,0 +1,24 @@
+package gears_tests;
+
+import gears.GearsBuilder;
+import gears.readers.KeysReader;
+import gears.records.KeysReaderRecord;
+
+public class testAggregateby {
+	
+	public static void main() {
+		KeysReader reader = new KeysReader();
+		new GearsBuilder<KeysReaderRecord>(reader).
+		aggregateBy(()->{
+			return Integer.valueOf(0);
+		},r->{
+			return r.getStringVal();
+		},(k,a,r)->{
+			return a + 1;
+		},(k,a,r)->{
+			return a + r;
+		}).
+		run();
+	}
+	
+}
@@ -0,0 +1,13 @@
+package gears_tests;
+
+import gears.GearsBuilder;
+import gears.readers.KeysReader;
+import gears.records.KeysReaderRecord;
+
+public class testApproxCountDistinct {
+	public static void main() {
+		KeysReader reader = new KeysReader();
+		new GearsBuilder<KeysReaderRecord>(reader).
+		approxCountDistinct(r->r.getStringVal()).run();
+	}
+}
@@ -0,0 +1,13 @@
+package gears_tests;
+
+import gears.GearsBuilder;
+import gears.readers.KeysReader;
+import gears.records.KeysReaderRecord;
+
+public class testApproxCountDistinctBy {
+	public static void main() {
+		KeysReader reader = new KeysReader();
+		new GearsBuilder<KeysReaderRecord>(reader).
+		approxCountDistinctBy(r->r.getHashVal().get("country"), r->r.getHashVal().get("user")).run();
+	}
+}
@@ -0,0 +1,41 @@
+package gears_tests;
+
+import java.util.Iterator;
+
+import gears.GearsBuilder;
+import gears.readers.JavaReader;
+
+public class testApproxCountDistinctDense {
+	
+	/*
+	 * Returns more distinct values than a sparse sketch with
+	 * precision 8 can hold (2^8/4), so the sketch turns dense.
+	 */
+	static class ValuesReader extends JavaReader<String>{
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Iterator<String> iterator() {
+			return new Iterator<String>() {
+				
+				private int i = 0;
+
+				@Override
+				public boolean hasNext() {
+					return i < 5000;
+				}
+
+				@Override
+				public String next() {
+					return Integer.toString(i++);
+				}
+			};
+		}
+	}
+	
+	public static void main() {
+		GearsBuilder.CreateGearsBuilder(new ValuesReader()).
+		approxCountDistinct(r->r, 8).run();
+	}
+}
@@ -0,0 +1,36 @@
+package gears_tests;
+
+import gears.GearsBuilder;
+import gears.readers.ShardsIDReader;
+import gears.sketches.HyperLogLog;
+
+public class testApproxCountDistinctMerge {
+	public static void main() {
+		ShardsIDReader reader = new ShardsIDReader();
+		GearsBuilder.CreateGearsBuilder(reader).
+		map(r->{
+			HyperLogLog sparse = new HyperLogLog(8);
+			HyperLogLog dense = new HyperLogLog(8);
+			for(int i = 0 ; i < 10 ; ++i) {
+				sparse.add("sparse-" + i);
+			}
+			for(int i = 0 ; i < 2000 ; ++i) {
+				dense.add("dense-" + i);
+			}
+			if(!sparse.isSparse() || dense.isSparse()) {
+				throw new Exception("Unexpected sketches representation");
+			}
+			
+			// merge in both directions, the result must not depend on the order
+			long sparseIntoDense = new HyperLogLog(8).merge(dense).merge(sparse).count();
+			long denseIntoSparse = sparse.merge(dense).count();
+			if(sparse.isSparse()) {
+				throw new Exception("Sparse sketch did not turn dense on merge");
+			}
+			if(sparseIntoDense != denseIntoSparse) {
+				throw new Exception(String.format("Merge results differ (%d != %d)", sparseIntoDense, denseIntoSparse));
+			}
+			return denseIntoSparse;
+		}).run();
+	}
+}
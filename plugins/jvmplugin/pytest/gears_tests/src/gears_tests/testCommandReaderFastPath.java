@@ -0,0 +1,60 @@
+package gears_tests;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import gears.ExecutionMode;
+import gears.GearsBuilder;
+import gears.GearsFuture;
+import gears.readers.CommandReader;
+
+public class testCommandReaderFastPath {
+
+	public static void main() {
+		GearsBuilder.CreateGearsBuilder(new CommandReader().setTrigger("fast").setFastPath(true)).
+		map(r->{
+			return Arrays.stream(r).skip(1).map(a->{
+				return new String((byte[])a);
+			}).collect(Collectors.toCollection(ArrayList::new));
+		}).
+		filter(r->{
+			return !r.contains("skip");
+		}).
+		foreach(r->{
+			if(r.contains("fail")) {
+				throw new Exception("failed");
+			}
+		}).
+		map(r->{
+			return String.join(" ", r);
+		}).
+		register(ExecutionMode.SYNC);
+
+		GearsBuilder.CreateGearsBuilder(new CommandReader().setTrigger("fast_async").setFastPath(true)).
+		asyncMap(r->{
+			GearsFuture<Serializable> f = new GearsFuture<Serializable>();
+			try {
+				f.setResult("done");
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+			return f;
+		}).
+		register(ExecutionMode.SYNC);
+
+		// fast path executions are not triggered by a key space command, there is no command to get or override
+		GearsBuilder.CreateGearsBuilder(new CommandReader().setTrigger("fast_get_command").setFastPath(true)).
+		map(r->{
+			return GearsBuilder.getCommand().length;
+		}).
+		register(ExecutionMode.SYNC);
+
+		GearsBuilder.CreateGearsBuilder(new CommandReader().setTrigger("fast_override_reply").setFastPath(true)).
+		foreach(r->{
+			GearsBuilder.overrideReply("overridden");
+		}).
+		register(ExecutionMode.SYNC);
+	}
+}
@@ -0,0 +1,30 @@
+package gears_tests;
+
+import java.util.Iterator;
+
+import gears.GearsBuilder;
+import gears.readers.KeysReader;
+
+public class testFlatMapLazy {
+	public static void main() {
+		KeysReader reader = new KeysReader();
+		// the iterator never ends, the execution only ends if flatMap
+		// pulls the records lazily and stops once the limit is reached
+		new GearsBuilder<>(reader).
+		flatMap(r->{
+			return () -> new Iterator<Integer>() {
+				int curr = 0;
+
+				@Override
+				public boolean hasNext() {
+					return true;
+				}
+
+				@Override
+				public Integer next() {
+					return curr++;
+				}
+			};
+		}).localLimit(0, 5).run();
+	}
+}
@@ -0,0 +1,51 @@
+package gears_tests;
+
+import java.util.Iterator;
+
+import gears.GearsBuilder;
+import gears.readers.BatchingIterator;
+import gears.readers.JavaReader;
+
+public class testJavaReaderBatching {
+	
+	static class NumbersReader extends JavaReader<Integer>{
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Iterator<Integer> iterator() {
+			return new BatchingIterator<Integer>() {
+				
+				private int i = 0;
+
+				@Override
+				public int nextBatch(Object[] buf) {
+					if(buf.length != 7) {
+						throw new RuntimeException(String.format("Got batch of size %d, expected 7", buf.length));
+					}
+					int len = 0;
+					while(len < buf.length && i < 1000) {
+						buf[len++] = i++;
+					}
+					return len;
+				}
+
+				// records must be pulled with nextBatch only
+				@Override
+				public boolean hasNext() {
+					throw new UnsupportedOperationException("hasNext called on batching iterator");
+				}
+
+				@Override
+				public Integer next() {
+					throw new UnsupportedOperationException("next called on batching iterator");
+				}
+			};
+		}
+	}
+	
+	public static void main() {
+		JavaReader<Integer> reader = new NumbersReader().setBatchSize(7);
+		GearsBuilder.CreateGearsBuilder(reader).run();
+	}
+}
@@ -0,0 +1,45 @@
+package gears_tests;
+
+import java.util.Iterator;
+
+import gears.GearsBuilder;
+import gears.readers.JavaReader;
+
+public class testJavaReaderPrefetch {
+	
+	static class NumbersReader extends JavaReader<Integer>{
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Iterator<Integer> iterator() {
+			return new Iterator<Integer>() {
+				
+				private int i = 0;
+
+				@Override
+				public boolean hasNext() {
+					return i < 1000;
+				}
+
+				@Override
+				public Integer next() {
+					return i++;
+				}
+			};
+		}
+	}
+	
+	public static void main() {
+		JavaReader<Integer> reader = new NumbersReader().setPrefetchSize(50).setBatchSize(7);
+		// verify the records arrive in the order the iterator returned them
+		GearsBuilder.CreateGearsBuilder(reader).
+		<Integer>accumulate((a, r)->{
+			int expected = a == null ? 0 : a + 1;
+			if(r != expected) {
+				throw new Exception(String.format("Got record %d, expected %d", r, expected));
+			}
+			return r;
+		}).run();
+	}
+}
@@ -0,0 +1,18 @@
+package gears_tests;
+
+import java.util.HashMap;
+
+import gears.GearsBuilder;
+import gears.readers.KeysReader;
+import gears.records.KeysReaderRecord;
+
+public class testKeyReaderFields {
+	public static void main() {
+		KeysReader reader = new KeysReader().setPattern("h:*").setFields("f1", "f3", "f4");
+		new GearsBuilder(reader).
+		map(r->{ 
+			return new HashMap<>(((KeysReaderRecord)r).getHashVal());
+		}).
+		run();
+	}
+}
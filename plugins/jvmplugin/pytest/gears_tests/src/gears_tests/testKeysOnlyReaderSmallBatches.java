@@ -0,0 +1,11 @@
+package gears_tests;
+
+import gears.GearsBuilder;
+import gears.readers.KeysOnlyReader;
+
+public class testKeysOnlyReaderSmallBatches {
+	public static void main() {
+		KeysOnlyReader reader = new KeysOnlyReader(7, "pref1:*").setMaxLockHoldMicros(1);
+		GearsBuilder.CreateGearsBuilder(reader).count().run();
+	}
+}
@@ -0,0 +1,16 @@
+package gears_tests;
+
+import gears.ExecutionMode;
+import gears.GearsBuilder;
+import gears.readers.KeysReader;
+
+public class testKeysReaderBatchEvents {
+	public static void main() {
+		KeysReader reader = new KeysReader().setPattern("b:*").setBatch(10, 200);
+		GearsBuilder.CreateGearsBuilder(reader).
+		foreach(r->{
+			GearsBuilder.execute("incr", "batched_records");
+		}).
+		register(ExecutionMode.ASYNC_LOCAL);
+	}
+}
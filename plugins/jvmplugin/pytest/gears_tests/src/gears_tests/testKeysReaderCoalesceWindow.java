@@ -0,0 +1,17 @@
+package gears_tests;
+
+import gears.ExecutionMode;
+import gears.GearsBuilder;
+import gears.readers.KeysReader;
+
+public class testKeysReaderCoalesceWindow {
+	public static void main() {
+		KeysReader reader = new KeysReader().setPattern("c:*").setCoalesceWindowMs(500);
+		GearsBuilder.CreateGearsBuilder(reader).
+		foreach(r->{
+			GearsBuilder.execute("set", "coalesced_events", Long.toString(r.getCoalescedEvents()));
+			GearsBuilder.execute("set", "coalesced_value", r.getStringVal());
+		}).
+		register(ExecutionMode.ASYNC_LOCAL);
+	}
+}
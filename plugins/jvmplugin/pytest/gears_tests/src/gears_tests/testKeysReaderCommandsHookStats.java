@@ -0,0 +1,29 @@
+package gears_tests;
+
+import gears.ExecutionMode;
+import gears.GearsBuilder;
+import gears.readers.KeysReader;
+
+public class testKeysReaderCommandsHookStats {
+	public static void main() {
+		KeysReader reader = new KeysReader();
+
+		reader.setCommands(new String[] {"get"});
+		reader.setEventTypes(new String[] {"keymiss"});
+		reader.setPattern("x");
+		GearsBuilder.CreateGearsBuilder(reader).
+		foreach(r->{
+			GearsBuilder.overrideReply("exact");
+		}).
+		register(ExecutionMode.SYNC);
+
+		reader.setCommands(new String[] {"get"});
+		reader.setEventTypes(new String[] {"keymiss"});
+		reader.setPattern("prefix*");
+		GearsBuilder.CreateGearsBuilder(reader).
+		foreach(r->{
+			GearsBuilder.overrideReply("prefix");
+		}).
+		register(ExecutionMode.SYNC);
+	}
+}
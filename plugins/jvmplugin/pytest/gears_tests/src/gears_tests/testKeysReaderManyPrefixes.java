@@ -0,0 +1,26 @@
+package gears_tests;
+
+import gears.ExecutionMode;
+import gears.GearsBuilder;
+import gears.readers.KeysReader;
+
+public class testKeysReaderManyPrefixes {
+	public static void main() {
+		for(int i = 0 ; i < 50 ; i++) {
+			final String counter = "counter" + i;
+			KeysReader reader = new KeysReader().setPattern("p" + i + ":*").setEventTypes(new String[] {"set"});
+			GearsBuilder.CreateGearsBuilder(reader).
+			foreach(r->{
+				GearsBuilder.execute("incr", counter);
+			}).
+			register(ExecutionMode.SYNC);
+		}
+
+		KeysReader reader = new KeysReader().setPattern("p1:exact");
+		GearsBuilder.CreateGearsBuilder(reader).
+		foreach(r->{
+			GearsBuilder.execute("incr", "counter_exact");
+		}).
+		register(ExecutionMode.SYNC);
+	}
+}
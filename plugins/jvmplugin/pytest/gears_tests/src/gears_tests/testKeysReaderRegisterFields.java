@@ -0,0 +1,20 @@
+package gears_tests;
+
+import java.util.TreeSet;
+
+import gears.GearsBuilder;
+import gears.readers.KeysReader;
+import gears.records.KeysReaderRecord;
+
+public class testKeysReaderRegisterFields {
+	public static void main() {
+		KeysReader reader = new KeysReader().setPattern("h:*").setFields("f1", "f3");
+		new GearsBuilder<KeysReaderRecord>(reader).
+		foreach(r->{
+			String fields = String.join(",", new TreeSet<String>(r.getHashVal().keySet()));
+			// the hash tag keeps the result on the slot of the triggering key
+			GearsBuilder.execute("set", "{" + r.getKey() + "}fields", fields);
+		}).
+		register();
+	}
+}
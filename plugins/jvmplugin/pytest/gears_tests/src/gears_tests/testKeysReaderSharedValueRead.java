@@ -0,0 +1,34 @@
+package gears_tests;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import gears.ExecutionMode;
+import gears.GearsBuilder;
+import gears.readers.KeysReader;
+import gears.records.KeysReaderRecord;
+
+public class testKeysReaderSharedValueRead {
+	
+	private static Set<KeysReaderRecord> records = Collections.newSetFromMap(new IdentityHashMap<>());
+	
+	public static void main() {
+		for(int i = 0 ; i < 2 ; i++) {
+			GearsBuilder.CreateGearsBuilder(new KeysReader().setPattern("s:*")).
+			foreach(r->{
+				GearsBuilder.execute("rpush", "values", r.getHashVal().get("f"));
+				GearsBuilder.execute("rpush", "keys", r.getKey());
+				// changes must not be visible to the other registration
+				r.getHashVal().put("f", "changed");
+				r.setKey("changed");
+				synchronized (records) {
+					records.add(r);
+					GearsBuilder.execute("set", "distinct_records", Integer.toString(records.size()));
+				}
+				GearsBuilder.execute("incr", "fired");
+			}).
+			register(ExecutionMode.ASYNC_LOCAL);
+		}
+	}
+}
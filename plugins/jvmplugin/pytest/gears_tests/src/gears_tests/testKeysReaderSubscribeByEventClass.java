@@ -0,0 +1,23 @@
+package gears_tests;
+
+import gears.ExecutionMode;
+import gears.GearsBuilder;
+import gears.readers.KeysReader;
+
+public class testKeysReaderSubscribeByEventClass {
+	public static void main() {
+		KeysReader reader = new KeysReader().setEventTypes(new String[] {"hset"});
+		GearsBuilder.CreateGearsBuilder(reader).
+		foreach(r->{
+			GearsBuilder.execute("incr", "hset_counter");
+		}).
+		register(ExecutionMode.SYNC);
+
+		reader = new KeysReader().setPattern("s").setKeyTypes(new String[] {"set"});
+		GearsBuilder.CreateGearsBuilder(reader).
+		foreach(r->{
+			GearsBuilder.execute("incr", "set_type_counter");
+		}).
+		register(ExecutionMode.SYNC);
+	}
+}
@@ -0,0 +1,41 @@
+package gears_tests;
+
+import java.util.Iterator;
+
+import gears.GearsBuilder;
+import gears.readers.JavaReader;
+
+public class testLimit {
+	
+	/*
+	 * Never ending reader, the execution only ends if the
+	 * limit stops pulling records once it is reached.
+	 */
+	static class NumbersReader extends JavaReader<Integer>{
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Iterator<Integer> iterator() {
+			return new Iterator<Integer>() {
+				
+				private int i = 0;
+
+				@Override
+				public boolean hasNext() {
+					return true;
+				}
+
+				@Override
+				public Integer next() {
+					return i++;
+				}
+			};
+		}
+	}
+	
+	public static void main() {
+		GearsBuilder.CreateGearsBuilder(new NumbersReader()).
+		limit(1, 2).run();
+	}
+}
@@ -0,0 +1,17 @@
+package gears_tests;
+
+import gears.GearsBuilder;
+import gears.readers.KeysReader;
+import gears.records.KeysReaderRecord;
+
+public class testMinBy {
+	public static void main() {
+		KeysReader reader = new KeysReader();
+		new GearsBuilder<KeysReaderRecord>(reader).
+		minBy(r->r.getHashVal().get("category"), r->Long.parseLong(r.getHashVal().get("items"))).
+		map(r->{
+			String category = r.keySet().iterator().next();
+			return String.format("min-%s-%d", category, r.get(category));
+		}).run();
+	}
+}
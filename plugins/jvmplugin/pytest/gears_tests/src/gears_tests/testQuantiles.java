@@ -0,0 +1,13 @@
+package gears_tests;
+
+import gears.GearsBuilder;
+import gears.readers.KeysReader;
+import gears.records.KeysReaderRecord;
+
+public class testQuantiles {
+	public static void main() {
+		KeysReader reader = new KeysReader();
+		new GearsBuilder<KeysReaderRecord>(reader).
+		quantiles(r->Double.parseDouble(r.getStringVal()), 0, 0.5, 1).run();
+	}
+}
@@ -0,0 +1,13 @@
+package gears_tests;
+
+import gears.GearsBuilder;
+import gears.readers.KeysReader;
+import gears.records.KeysReaderRecord;
+
+public class testQuantilesBy {
+	public static void main() {
+		KeysReader reader = new KeysReader();
+		new GearsBuilder<KeysReaderRecord>(reader).
+		quantilesBy(r->r.getHashVal().get("endpoint"), r->Double.parseDouble(r.getHashVal().get("latency")), 0.5).run();
+	}
+}
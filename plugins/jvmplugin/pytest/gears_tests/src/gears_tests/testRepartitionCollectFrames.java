@@ -0,0 +1,40 @@
+package gears_tests;
+
+import java.io.Serializable;
+
+import gears.GearsBuilder;
+import gears.readers.KeysReader;
+import gears.records.KeysReaderRecord;
+
+public class testRepartitionCollectFrames {
+	
+	static class Value implements Serializable{
+
+		private static final long serialVersionUID = 1L;
+		
+		public String key;
+		public int val;
+		
+		public Value(String key, int val) {
+			this.key = key;
+			this.val = val;
+		}
+	}
+	
+	public static void main() {
+		// error records are sent on the collect frames between the values,
+		// the values must still be deserialized correctly on the other side
+		new GearsBuilder<KeysReaderRecord>(new KeysReader()).
+		map(r->{
+			int val = Integer.parseInt(r.getStringVal());
+			if(val % 3 == 0) {
+				throw new Exception("bad value");
+			}
+			return new Value(r.getKey(), val);
+		}).
+		repartition(r->Integer.toString(r.val * 7)).
+		collect().
+		map(r->r.val).
+		run();
+	}
+}
@@ -0,0 +1,58 @@
+package gears_tests;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import gears.GearsBuilder;
+import gears.readers.SplittableJavaReader;
+
+public class testSplittableJavaReader {
+	
+	static class NumbersReader extends SplittableJavaReader<String>{
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public List<? extends Iterable<String>> splits() {
+			// each split waits for all the others before returning records,
+			// the read fails unless all the splits are read concurrently.
+			CyclicBarrier barrier = new CyclicBarrier(4);
+			List<Iterable<String>> splits = new ArrayList<>();
+			for(int i = 0 ; i < 4 ; i++) {
+				final int split = i;
+				splits.add(() -> new Iterator<String>() {
+					
+					private int j = 0;
+					private boolean started = false;
+
+					@Override
+					public boolean hasNext() {
+						if(!started) {
+							started = true;
+							try {
+								barrier.await(10, TimeUnit.SECONDS);
+							} catch (Exception e) {
+								throw new RuntimeException("Splits are not read concurrently", e);
+							}
+						}
+						return j < 250;
+					}
+
+					@Override
+					public String next() {
+						return String.format("%d-%d", split, j++);
+					}
+				});
+			}
+			return splits;
+		}
+	}
+	
+	public static void main() {
+		SplittableJavaReader<String> reader = new NumbersReader().setParallelism(4).setBufferSize(10);
+		GearsBuilder.CreateGearsBuilder(reader).run();
+	}
+}
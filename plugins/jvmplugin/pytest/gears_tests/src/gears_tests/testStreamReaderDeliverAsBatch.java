@@ -0,0 +1,24 @@
+package gears_tests;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+import gears.GearsBuilder;
+import gears.readers.StreamReader;
+
+public class testStreamReaderDeliverAsBatch {
+	
+	public static void main() throws IOException {
+		StreamReader reader = new StreamReader();
+		reader.setPattern("s").setStartId("0-0");
+		GearsBuilder.CreateGearsBuilder(reader.asStreamRecordBatchReader()).
+		map(r->{
+			HashMap<String, Object> res = new HashMap<>();
+			res.put("size", r.getRecords().size());
+			res.put("firstId", r.getFirstId());
+			res.put("lastId", r.getLastId());
+			return res;
+		}).
+		run();
+	}
+}
@@ -0,0 +1,28 @@
+package gears_tests;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+import gears.GearsBuilder;
+import gears.readers.StreamReader;
+
+public class testStreamReaderStreamRecord {
+	
+	public static void main() throws IOException {
+		StreamReader reader = new StreamReader();
+		reader.setPattern("s").setStartId("0-0");
+		GearsBuilder.CreateGearsBuilder(reader.asStreamRecordReader()).
+		map(r->{
+			HashMap<String, Object> res = new HashMap<>();
+			HashMap<String, String> value = new HashMap<>();
+			for(int i = 0 ; i < r.getFields().length ; i++) {
+				value.put(r.getFields()[i], new String(r.getValues()[i]));
+			}
+			res.put("key", r.getKey());
+			res.put("id", r.getId());
+			res.put("value", value);
+			return res;
+		}).
+		run();
+	}
+}
@@ -0,0 +1,17 @@
+package gears_tests;
+
+import java.io.IOException;
+
+import gears.GearsBuilder;
+import gears.readers.StreamReader;
+
+public class testStreamRegisterAdaptiveArgs {
+	public static void main() throws IOException {
+		StreamReader reader = new StreamReader();
+		reader.setPattern("s").
+		setDuration(1000).setBatchSize(100).
+		setAdaptiveBatch(10, 1000, 500);
+		new GearsBuilder(reader).
+		register();
+	}
+}
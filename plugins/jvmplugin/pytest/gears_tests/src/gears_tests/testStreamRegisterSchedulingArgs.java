@@ -0,0 +1,17 @@
+package gears_tests;
+
+import java.io.IOException;
+
+import gears.GearsBuilder;
+import gears.readers.StreamReader;
+
+public class testStreamRegisterSchedulingArgs {
+	public static void main() throws IOException {
+		StreamReader reader = new StreamReader();
+		reader.setPattern("s").
+		setMaxConcurrentBatches(2).
+		setOrderedPerStream(true);
+		new GearsBuilder(reader).
+		register();
+	}
+}
@@ -0,0 +1,18 @@
+package gears_tests;
+
+import java.io.IOException;
+
+import gears.ExecutionMode;
+import gears.GearsBuilder;
+import gears.readers.TimerReader;
+
+public class testTimerReader {
+	public static void main() throws IOException {
+		TimerReader reader = new TimerReader(100, TimerReader.Schedule.FIXED_DELAY).setJitter(50);
+		new GearsBuilder(reader).
+		map(r->{
+			return r.toString();
+		}).
+		register(ExecutionMode.ASYNC_LOCAL);
+	}
+}
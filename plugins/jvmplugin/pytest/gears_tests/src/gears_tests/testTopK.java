@@ -0,0 +1,14 @@
+package gears_tests;
+
+import gears.GearsBuilder;
+import gears.readers.KeysReader;
+import gears.records.KeysReaderRecord;
+
+public class testTopK {
+	public static void main() {
+		KeysReader reader = new KeysReader();
+		new GearsBuilder<KeysReaderRecord>(reader).
+		map(r->Integer.parseInt(r.getStringVal())).
+		topK(2, (r1, r2)->r2.compareTo(r1)).run();
+	}
+}
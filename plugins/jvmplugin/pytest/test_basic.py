@@ -46,7 +46,143 @@ def testAccumulateby(env, results, errs, **kargs):
     env.assertEqual(len(results), 2)
     env.assertEqual(results, [{'bar':1}, {'foo':2}])
 
+@jvmTestDecorator(preExecute=putKeys({'x':'foo', 'y':'bar', 'z':'foo'}))
+def testAggregateby(env, results, errs, **kargs):
+    env.assertEqual(len(errs), 0)
+    env.assertEqual(len(results), 2)
+    env.assertEqual(results, [{'bar':1}, {'foo':2}])
+
+@jvmTestDecorator(preExecute=putKeys({'x':'1', 'y':'2', 'z':'3'}))
+def testAggregate(env, results, errs, **kargs):
+    env.assertEqual(len(errs), 0)
+    env.assertEqual(len(results), 1)
+    env.assertEqual(results[0], 3)
+
+@jvmTestDecorator()
+def testLimit(env, results, errs, **kargs):
+    # the reader never ends, getting here means the limit stopped pulling records
+    env.assertEqual(len(errs), 0)
+    env.assertEqual(len(results), 2)
+    # each shard returns only its first 3 records
+    env.assertTrue(all(r in [0, 1, 2] for r in results))
+    if env.shardsCount == 1:
+        env.assertEqual(results, [1, 2])
+
+@jvmTestDecorator(preExecute=putKeys({'x':'1', 'y':'2', 'z':'3', 'w':'4', 'v':'5'}))
+def testTopK(env, results, errs, **kargs):
+    env.assertEqual(len(errs), 0)
+    env.assertEqual(results, [5, 4])
+
+@jvmTestDecorator(preExecute=putKeys({'x':'foo', 'y':'bar', 'z':'foo'}))
+def testApproxCountDistinct(env, results, errs, **kargs):
+    env.assertEqual(len(errs), 0)
+    env.assertEqual(results, [2])
+
+@jvmTestDecorator()
+def testApproxCountDistinctDense(env, results, errs, **kargs):
+    env.assertEqual(len(errs), 0)
+    env.assertEqual(len(results), 1)
+    # all shards return the same 5000 values, standard error with precision 8 is about 6.5%
+    env.assertTrue(abs(results[0] - 5000) < 5000 * 0.2)
+
+@jvmTestDecorator()
+def testApproxCountDistinctMerge(env, results, errs, **kargs):
+    env.assertEqual(len(errs), 0)
+    env.assertEqual(len(results), env.shardsCount)
+    for r in results:
+        env.assertTrue(abs(r - 2010) < 2010 * 0.2)
+
+@jvmTestDecorator(preExecute=putKeys({'x':{'country':'il', 'user':'1'}, 'y':{'country':'il', 'user':'2'}, 'z':{'country':'il', 'user':'1'}, 'w':{'country':'us', 'user':'1'}}))
+def testApproxCountDistinctBy(env, results, errs, **kargs):
+    env.assertEqual(len(errs), 0)
+    env.assertEqual(sorted(results, key=lambda r: list(r.keys())[0]), [{'il':2}, {'us':1}])
+
+@jvmTestDecorator(preExecute=putKeys({'k%d' % i: str(i) for i in range(1, 101)}))
+def testQuantiles(env, results, errs, **kargs):
+    env.assertEqual(len(errs), 0)
+    env.assertEqual(results, [[1.0, 50.5, 100.0]])
+
+@jvmTestDecorator(preExecute=putKeys({'x':{'endpoint':'a', 'latency':'1'}, 'y':{'endpoint':'a', 'latency':'3'}, 'z':{'endpoint':'b', 'latency':'5'}}))
+def testQuantilesBy(env, results, errs, **kargs):
+    env.assertEqual(len(errs), 0)
+    env.assertEqual(sorted(results, key=lambda r: list(r.keys())[0]), [{'a':[2.0]}, {'b':[5.0]}])
+
+@jvmTestDecorator(preExecute=putKeys({'x':{'category':'a', 'items':'1'}, 'y':{'category':'a', 'items':'3'}, 'z':{'category':'b', 'items':'5'}}))
+def testSumBy(env, results, errs, **kargs):
+    env.assertEqual(len(errs), 0)
+    env.assertEqual(sorted(results, key=lambda r: list(r.keys())[0]), [{'a':4}, {'b':5}])
+
+# the keys of each group are spread between the shards
+@jvmTestDecorator(preExecute=putKeys(dict([('x%d' % i, {'category':'c%d' % (i % 3), 'items':str(i)}) for i in range(100)])))
+def testAccumulateByLongAcrossShards(env, results, errs, **kargs):
+    env.assertEqual(len(errs), 0)
+    env.assertEqual(sorted(results, key=lambda r: list(r.keys())[0]), [{'c%d' % c: sum([i for i in range(100) if i % 3 == c])} for c in range(3)])
+
+@jvmTestDecorator(preExecute=putKeys({'x':{'category':'a', 'items':'1'}, 'y':{'category':'a', 'items':'3'}, 'z':{'category':'b', 'items':'5'}}))
+def testMinBy(env, results, errs, **kargs):
+    env.assertEqual(len(errs), 0)
+    env.assertEqual(sorted(results), ['min-a-1', 'min-b-5'])
+
+@jvmTestDecorator(preExecute=putKeys({'x':'1'}))
+def testFlatMapLazy(env, results, errs, **kargs):
+    env.assertEqual(len(errs), 0)
+    env.assertEqual(results, [0, 1, 2, 3, 4])
+
+def setShuffleFrameSize(frameSize):
+    def func(env, **kargs):
+        env.broadcast('RG.CONFIGSET', 'ShuffleFrameSize', frameSize)
+    return func
+
+def putKeysWithSmallFrames(env, conn, **kargs):
+    setShuffleFrameSize('3')(env)
+    putKeys(dict([(str(i), str(i)) for i in range(100)]))(conn)
+
+@jvmTestDecorator(preExecute=putKeysWithSmallFrames, postExecution=setShuffleFrameSize('100'))
+def testRepartitionCollectFrames(env, results, errs, **kargs):
+    env.assertEqual(sorted(results), [i for i in range(100) if i % 3 != 0])
+    env.assertEqual(len(errs), len([i for i in range(100) if i % 3 == 0]))
+    env.assertTrue(all(['bad value' in e for e in errs]))
+
+def getAccumulateBySpills(env):
+    return sum([env.getConnection(shardId=s).execute_command('info', 'rg')['rg_naccumulatebyspills'] for s in range(1, env.shardsCount + 1)])
+
+def setMaxGroupsInMemory(maxGroups):
+    def func(env, **kargs):
+        env.broadcast('RG.CONFIGSET', 'AccumulateByMaxGroupsInMemory', maxGroups)
+    return func
+
+def putKeysWithSpill(env, conn, **kargs):
+    setMaxGroupsInMemory('10')(env)
+    putKeys(dict([(str(i), str(i % 500)) for i in range(1000)]))(conn)
+
+@jvmTestDecorator(preExecute=putKeysWithSpill, postExecution=setMaxGroupsInMemory('0'))
+def testAccumulateBySpill(env, results, errs, **kargs):
+    env.assertEqual(len(errs), 0)
+    env.assertEqual(sorted(results, key=lambda r: int(list(r.keys())[0])), [{str(i): 2} for i in range(500)])
+    env.assertTrue(getAccumulateBySpills(env) > 0)
+
 @jvmTestDecorator(mainArgs=['foo', 'bar'])
 def testMainArguments(env, results, errs, **kargs):
     env.assertEqual(results, 'OK')
     env.expect('RG.TRIGGER', 'test').equal(['bar', 'foo'])
+
+@jvmTestDecorator()
+def testSplittableJavaReader(env, results, errs, **kargs):
+    env.assertEqual(len(errs), 0)
+    # each record of each split arrives exactly once from each shard
+    counts = {}
+    for r in results:
+        counts[r] = counts.get(r, 0) + 1
+    env.assertEqual(sorted(counts.keys()), sorted(['%d-%d' % (i, j) for i in range(4) for j in range(250)]))
+    env.assertEqual(set(counts.values()), set([env.shardsCount]))
+
+@jvmTestDecorator()
+def testJavaReaderPrefetch(env, results, errs, **kargs):
+    env.assertEqual(len(errs), 0)
+    # each shard verifies the records order and returns the last record
+    env.assertEqual(results, [999] * env.shardsCount)
+
+@jvmTestDecorator()
+def testJavaReaderBatching(env, results, errs, **kargs):
+    env.assertEqual(len(errs), 0)
+    env.assertEqual(sorted(results), sorted(list(range(1000)) * env.shardsCount))
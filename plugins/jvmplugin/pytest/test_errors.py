@@ -137,3 +137,7 @@ def testNoJarPayload(env, executionError, **kargs):
 @jvmTestDecorator()
 def testNoMainClass(env, executionError, **kargs):
 	env.assertContains('NoSuchMethodError: main', executionError)
+
+@jvmTestDecorator()
+def testApproxCountDistinctBadPrecision(env, executionError, **kargs):
+	env.assertIn('precision must be between 4 and 18', executionError)
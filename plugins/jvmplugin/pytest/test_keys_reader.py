@@ -21,3 +21,13 @@ def testKeysOnlyReader(env, results, errs, **kargs):
 @jvmTestDecorator(preExecute=putKeys({'pref1:1':'1', 'pref2:1':'1', 'pref3:1':'1'}))
 def testKeysOnlyReaderPattern(env, results, errs, **kargs):
 	env.assertEqual(len(results), 1)	
+
+@jvmTestDecorator(preExecute=putKeys({'h:1':{'f1':'1', 'f2':'2', 'f3':'3'}}))
+def testKeyReaderFields(env, results, errs, **kargs):
+	env.assertEqual(len(results), 1)
+	env.assertEqual(results[0], {'f1':'1', 'f3':'3'})
+
+@jvmTestDecorator(preExecute=putKeys(dict([('pref1:%d' % i, str(i)) for i in range(1000)] + [('pref2:%d' % i, str(i)) for i in range(100)])))
+def testKeysOnlyReaderSmallBatches(env, results, errs, **kargs):
+	env.assertEqual(len(errs), 0)
+	env.assertEqual(sum(results), 1000)
@@ -230,6 +230,21 @@ def testKeysReaderKeyTypeFilter(env, conn, **kargs):
     except Exception as e:
         pass
 
+@jvmTestDecorator()
+def testKeysReaderRegisterFields(env, conn, **kargs):
+    conn.execute_command('hset', 'h:x', 'f1', '1', 'f2', '2', 'f3', '3')
+
+    try:
+        with TimeLimit(10):
+            fields = None
+            while fields is None:
+                fields = conn.get('{h:x}fields')
+                time.sleep(0.1)
+    except Exception as e:
+        env.assertTrue(False, message='Failed waiting for the projected fields')
+
+    env.assertEqual(fields, 'f1,f3')
+
 @jvmTestDecorator()
 def testCommandReaderBasic(env, **kargs):
     env.expect('RG.TRIGGER', 'test1', 'this', 'is', 'a', 'test').equal(['a', 'is', 'test', 'test1', 'this'])
@@ -259,6 +274,23 @@ def testKeysReaderCommandsOption(env, results, errs, conn, **kargs):
     env.assertEqual(conn.execute_command('get', 'y'), ['get', 'y'])
     env.assertEqual(conn.execute_command('get', 'z'), ['get', 'z'])
     
+@jvmTestDecorator()
+def testKeysReaderCommandsHookStats(env, results, errs, conn, **kargs):
+    env.assertEqual(len(errs), 0)
+
+    env.assertEqual(conn.execute_command('get', 'x'), 'exact')
+    env.assertEqual(conn.execute_command('get', 'prefix1'), 'prefix')
+    env.assertEqual(conn.execute_command('get', 'prefix2'), 'prefix')
+    env.assertEqual(conn.execute_command('get', 'xx'), None)
+    env.assertEqual(conn.execute_command('get', 'pre'), None)
+
+    res = env.cmd('RG.DUMPREGISTRATIONS')
+    stats = {r[7][19][1]: r[7][21] for r in res}
+    env.assertEqual(stats['x'][0][1], 'get')
+    env.assertEqual(stats['x'][0][3], 1)
+    env.assertEqual(stats['prefix*'][0][1], 'get')
+    env.assertEqual(stats['prefix*'][0][3], 2)
+
 @jvmTestDecorator()
 def testKeysReaderCommandsOptionReturnError(env, results, errs, conn, **kargs):
     env.assertEqual(len(errs), 0)
@@ -297,3 +329,133 @@ def testKeysReaderCommandsOptionBadArgsError(env, results, errs, conn, **kargs):
     except Exception as e:
         env.assertContains('Can not hook a command which are not allowed inside a script', str(e))
     
+
+@jvmTestDecorator()
+def testTimerReader(env, conn, **kargs):
+    res = env.cmd('RG.DUMPREGISTRATIONS')
+    env.assertEqual(res[0][3], 'TimerReader')
+    env.assertEqual(res[0][7][21], ['intervalMS', 100, 'schedule', 'fixed_delay', 'jitterMS', 50])
+    try:
+        with TimeLimit(5):
+            numSuccess = 0
+            while numSuccess < 3:
+                res = env.cmd('RG.DUMPREGISTRATIONS')
+                numSuccess = res[0][7][5]
+                time.sleep(0.1)
+    except Exception as e:
+        env.assertTrue(False, message='Failed waiting for timer registration to run')
+    env.assertEqual(res[0][7][7], 0)
+
+@jvmTestDecorator()
+def testCommandReaderFastPath(env, **kargs):
+    env.expect('RG.TRIGGER', 'fast', 'this', 'is', 'a', 'test').equal(['this is a test'])
+    env.expect('RG.TRIGGER', 'fast', 'skip', 'me').equal([])
+    env.expect('RG.TRIGGER', 'fast', 'fail').error().contains('failed')
+    env.expect('RG.TRIGGER', 'fast_async').error().contains('not allowed')
+    env.expect('RG.TRIGGER', 'fast_get_command').error().contains('Can no get command ctx')
+    env.expect('RG.TRIGGER', 'fast_override_reply').error().contains('Can no get command ctx')
+
+    res = env.cmd('RG.DUMPREGISTRATIONS')
+    fastRegistration = [r for r in res if r[7][19][1] == 'fast'][0]
+    env.assertEqual(fastRegistration[7][19][5], 1)
+    env.assertEqual(fastRegistration[7][3], 3)
+    env.assertEqual(fastRegistration[7][5], 2)
+    env.assertEqual(fastRegistration[7][7], 1)
+
+@jvmTestDecorator()
+def testKeysReaderManyPrefixes(env, results, errs, conn, **kargs):
+    env.assertEqual(len(errs), 0)
+
+    conn.execute_command('set', 'p3:x', '1')
+    conn.execute_command('set', 'p3:y', '1')
+    conn.execute_command('set', 'p33:x', '1')
+    conn.execute_command('hset', 'p3:h', 'foo', 'bar')
+    conn.execute_command('set', 'p1:exact', '1')
+    conn.execute_command('set', 'p1:exact2', '1')
+    conn.execute_command('set', 'x', '1')
+
+    env.assertEqual(conn.execute_command('get', 'counter3'), '2')
+    env.assertEqual(conn.execute_command('get', 'counter33'), '1')
+    env.assertEqual(conn.execute_command('get', 'counter1'), '2')
+    env.assertEqual(conn.execute_command('get', 'counter_exact'), '1')
+    env.assertEqual(conn.execute_command('get', 'counter2'), None)
+
+@jvmTestDecorator()
+def testKeysReaderSubscribeByEventClass(env, results, errs, conn, **kargs):
+    env.assertEqual(len(errs), 0)
+
+    conn.execute_command('get', 'missing')
+    conn.execute_command('set', 'x', '1')
+    conn.execute_command('lpush', 'l', '1')
+    conn.execute_command('hset', 'h', 'foo', 'bar')
+    conn.execute_command('sadd', 's', 'foo')
+    conn.execute_command('del', 's')
+
+    env.assertEqual(conn.execute_command('get', 'hset_counter'), '1')
+    env.assertEqual(conn.execute_command('get', 'set_type_counter'), '1')
+
+    # each registration subscribes only to the classes it can fire on
+    eventsClasses = {}
+    for r in env.cmd('RG.DUMPREGISTRATIONS'):
+        registrationData = r[7]
+        eventsClasses[registrationData[19][1]] = registrationData[25]
+    env.assertEqual(eventsClasses['*'], ['hash'])
+    env.assertEqual(eventsClasses['s'], ['generic', 'set', 'expired', 'evicted'])
+
+@jvmTestDecorator()
+def testKeysReaderCoalesceWindow(env, results, errs, conn, **kargs):
+    env.assertEqual(len(errs), 0)
+
+    for i in range(50):
+        conn.execute_command('incr', 'c:x')
+
+    try:
+        with TimeLimit(5):
+            while conn.execute_command('get', 'coalesced_value') != '50':
+                time.sleep(0.1)
+    except Exception as e:
+        env.assertTrue(False, message='Failed waiting for coalesced execution')
+
+    env.assertEqual(conn.execute_command('get', 'coalesced_events'), '50')
+
+    res = env.cmd('RG.DUMPREGISTRATIONS')
+    env.assertEqual(res[0][7][3], 1) # numTriggered
+    env.assertEqual(res[0][7][19][9], 500) # coalesceWindowMS
+    env.assertEqual(res[0][7][23], 49) # numCoalesced
+
+@jvmTestDecorator()
+def testKeysReaderBatchEvents(env, results, errs, conn, **kargs):
+    env.assertEqual(len(errs), 0)
+
+    for i in range(25):
+        conn.execute_command('set', 'b:%d' % i, '1')
+
+    try:
+        with TimeLimit(5):
+            while conn.execute_command('get', 'batched_records') != '25':
+                time.sleep(0.1)
+    except Exception as e:
+        env.assertTrue(False, message='Failed waiting for batched executions')
+
+    res = env.cmd('RG.DUMPREGISTRATIONS')
+    env.assertEqual(res[0][7][3], 3) # numTriggered, 2 full batches and one on timeout
+    env.assertEqual(res[0][7][19][11], 10) # batchSize
+    env.assertEqual(res[0][7][19][13], 200) # batchDurationMS
+
+@jvmTestDecorator()
+def testKeysReaderSharedValueRead(env, results, errs, conn, **kargs):
+    env.assertEqual(len(errs), 0)
+
+    conn.execute_command('hset', 's:x', 'f', '1')
+
+    try:
+        with TimeLimit(5):
+            while conn.execute_command('get', 'fired') != '2':
+                time.sleep(0.1)
+    except Exception as e:
+        env.assertTrue(False, message='Failed waiting for registrations to fire')
+
+    # each registration gets its own copy of the record
+    env.assertEqual(conn.execute_command('get', 'distinct_records'), '2')
+    env.assertEqual(conn.execute_command('lrange', 'values', '0', '-1'), ['1', '1'])
+    env.assertEqual(conn.execute_command('lrange', 'keys', '0', '-1'), ['s:x', 's:x'])
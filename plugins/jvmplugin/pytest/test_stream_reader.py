@@ -1,5 +1,7 @@
 from common import jvmTestDecorator
 from common import putKeys
+from common import TimeLimit
+import time
 
 def putStream(s):
 	def func(conn, **kargs):
@@ -18,3 +20,43 @@ def testStreamReaderFromId(env, conn, results, **kargs):
 def testStreamRegisterArgs(env, **kargs):
 	res = env.cmd('RG.DUMPREGISTRATIONS')
 	env.assertEqual(res[0][7][23], ['batchSize', 100, 'durationMS', 1000, 'stream', 's'])
+
+@jvmTestDecorator(preExecute=putStream({'s':[{'foo':'bar', 'foo1':'bar1'}, {'foo2':'bar2', 'foo3':'bar3'}]}))
+def testStreamReaderStreamRecord(env, conn, results, **kargs):
+	expectedRes = [{u'foo': u'bar', u'foo1': u'bar1'}, {u'foo2': u'bar2', u'foo3': u'bar3'}]
+	env.assertEqual(len(results), 2)
+	for res in results:
+		env.assertEqual(res['key'], 's')
+		env.assertIn(res['value'], expectedRes)
+
+@jvmTestDecorator(preExecute=putStream({'s':[{'foo':'bar', 'foo1':'bar1'}, {'foo2':'bar2', 'foo3':'bar3'}]}))
+def testStreamReaderDeliverAsBatch(env, conn, results, **kargs):
+	ids = [e[0] for e in conn.execute_command('XRANGE', 's', '-', '+')]
+	env.assertEqual(len(results), 1)
+	env.assertEqual(results[0]['size'], 2)
+	env.assertEqual(results[0]['firstId'], ids[0])
+	env.assertEqual(results[0]['lastId'], ids[1])
+
+@jvmTestDecorator()
+def testStreamRegisterAdaptiveArgs(env, **kargs):
+	res = env.cmd('RG.DUMPREGISTRATIONS')
+	env.assertEqual(res[0][7][23], ['batchSize', 100, 'durationMS', 1000, 'stream', 's', 'minBatchSize', 10, 'maxBatchSize', 1000, 'targetLatencyMS', 500])
+	env.assertEqual(res[0][7][26:30], ['effectiveBatchSize', 100, 'effectiveDurationMS', 1000])
+
+@jvmTestDecorator()
+def testStreamRegisterSchedulingArgs(env, conn, **kargs):
+	for i in range(10):
+		for s in ['s1', 's2', 's3']:
+			conn.execute_command('XADD', s, '*', 'foo', 'bar')
+	def getLen():
+		return sum([int(conn.execute_command('XLEN', s)) for s in ['s1', 's2', 's3']])
+	try:
+		with TimeLimit(5):
+			while getLen() > 0:
+				time.sleep(0.1)
+	except Exception as e:
+		env.assertTrue(False, message='Failed waiting for streams to be trimmed')
+	res = env.cmd('RG.DUMPREGISTRATIONS')
+	env.assertEqual(res[0][7][23], ['batchSize', 1, 'durationMS', 0, 'stream', 's', 'maxConcurrentBatches', 2, 'orderedPerStream', 1])
+	streams = sorted([s[1] for s in res[0][7][33]])
+	env.assertEqual(streams, ['s1', 's2', 's3'])
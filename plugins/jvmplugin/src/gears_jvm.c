@@ -11,6 +11,7 @@
 #include "utils/arr_rm_alloc.h"
 
 #include <pthread.h>
+#include <time.h>
 
 #define JOBJECT_TYPE_VERSION 1
 #define JSESSION_TYPE_VERSION 1
@@ -27,6 +28,9 @@ static void JVM_ARCreate(JNIEnv *env, jobject objectOrClass);
 static void JVM_ARFree(JNIEnv *env, jobject objectOrClass);
 static void JVM_ARSetResult(JNIEnv *env, jobject objectOrClass, jobject res);
 static void JVM_ARSetError(JNIEnv *env, jobject objectOrClass, jstring error);
+static jboolean JVM_KSCreate(JNIEnv *env, jobject objectOrClass);
+static jint JVM_KSNext(JNIEnv *env, jobject objectOrClass, jstring pattern, jobjectArray keys, jlong maxLockHoldMicros);
+static void JVM_KSFree(JNIEnv *env, jobject objectOrClass);
 static void JVM_GBDestroy(JNIEnv *env, jobject objectOrClass);
 static jobject JVM_GBMap(JNIEnv *env, jobject objectOrClass, jobject mapper);
 static void JVM_GBRun(JNIEnv *env, jobject objectOrClass, jobject reader);
@@ -45,8 +49,10 @@ static jstring JVM_GBRegister(JNIEnv *env, jobject objectOrClass, jobject reader
 static jobject JVM_GBAccumulateby(JNIEnv *env, jobject objectOrClass, jobject extractor, jobject accumulator);
 static jobject JVM_GBRepartition(JNIEnv *env, jobject objectOrClass, jobject extractor);
 static jobject JVM_GBLocalAccumulateby(JNIEnv *env, jobject objectOrClass, jobject extractor, jobject accumulator);
+static jobject JVM_GBAggregateby(JNIEnv *env, jobject objectOrClass, jobject extractor, jobject accumulator, jobject combiner);
 static jobject JVM_GBAccumulate(JNIEnv *env, jobject objectOrClass, jobject accumulator);
 static jobject JVM_GBCollect(JNIEnv *env, jobject objectOrClass);
+static jobject JVM_GBLocalLimit(JNIEnv *env, jobject objectOrClass, jint offset, jint len);
 static jobject JVM_GBForeach(JNIEnv *env, jobject objectOrClass, jobject foreach);
 static jobject JVM_GBFilter(JNIEnv *env, jobject objectOrClass, jobject filter);
 static jobject JVM_GBFlatMap(JNIEnv *env, jobject objectOrClass, jobject mapper);
@@ -223,6 +229,9 @@ jclass futureRecordCls = NULL;
 jfieldID futureRecordPtrFieldId = NULL;
 jfieldID futureRecordTypeFieldId = NULL;
 
+jclass keysScannerCls = NULL;
+jfieldID keysScannerPtrFieldId = NULL;
+
 jclass gearsBuilderCls = NULL;
 jmethodID gearsBuilderSerializeObjectMethodId = NULL;
 jmethodID gearsBuilderDeserializeObjectMethodId = NULL;
@@ -286,6 +295,16 @@ jclass iteratorCls = NULL;
 jmethodID iteratorNextMethodId = NULL;
 jmethodID iteratorHasNextMethodId = NULL;
 
+jclass gearsJavaReaderCls = NULL;
+jmethodID gearsJavaReaderIteratorMethodId = NULL;
+jfieldID gearsJavaReaderBatchSizeFieldId = NULL;
+
+jclass gearsBatchingIteratorCls = NULL;
+jmethodID gearsBatchingIteratorNextBatchMethodId = NULL;
+
+jclass autoCloseableCls = NULL;
+jmethodID autoCloseableCloseMethodId = NULL;
+
 jclass arrayCls = NULL;
 
 jclass gearsBaseReaderCls = NULL;
@@ -297,9 +316,14 @@ jfieldID keysReaderReadValuesField = NULL;
 jfieldID keysReaderEventTypesField = NULL;
 jfieldID keysReaderKeyTypesField = NULL;
 jfieldID keysReaderCommandsField = NULL;
+jfieldID keysReaderFieldsField = NULL;
+jfieldID keysReaderCoalesceWindowMsField = NULL;
+jfieldID keysReaderBatchSizeField = NULL;
+jfieldID keysReaderBatchDurationMsField = NULL;
 
 jclass gearsKeyReaderRecordCls = NULL;
 jmethodID gearsKeyReaderRecordCtrMethodId = NULL;
+jmethodID gearsKeyReaderRecordCopyMethodId = NULL;
 
 jclass gearsExecutionModeCls = NULL;
 jobject gearsExecutionModeAsync = NULL;
@@ -314,13 +338,39 @@ jfieldID streamReaderDurationField = NULL;
 jfieldID streamReaderFailurePolicyField = NULL;
 jfieldID streamReaderRetryIntervalField = NULL;
 jfieldID streamReaderTrimStreamField = NULL;
+jfieldID streamReaderRecordTypeField = NULL;
+jfieldID streamReaderDeliverAsBatchField = NULL;
+jfieldID streamReaderAdaptiveField = NULL;
+jfieldID streamReaderMinBatchSizeField = NULL;
+jfieldID streamReaderMaxBatchSizeField = NULL;
+jfieldID streamReaderTargetLatencyField = NULL;
+jfieldID streamReaderMaxConcurrentBatchesField = NULL;
+jfieldID streamReaderOrderedPerStreamField = NULL;
+
+jclass gearsStreamRecordCls = NULL;
+jmethodID gearsStreamRecordCtrMethodId = NULL;
+
+jclass gearsStreamRecordBatchCls = NULL;
+jmethodID gearsStreamRecordBatchCtrMethodId = NULL;
+
+jclass gearsStreamReaderRecordTypeCls = NULL;
+jobject gearsStreamReaderRecordTypeStreamRecord = NULL;
 
 jclass gearsCommandReaderCls = NULL;
 jclass gearsCommandOverriderCls = NULL;
 jfieldID commandReaderTriggerField = NULL;
+jfieldID commandReaderFastPathField = NULL;
 jfieldID commandOverriderCommandField = NULL;
 jfieldID commandOverriderPrefixField = NULL;
 
+jclass gearsTimerReaderCls = NULL;
+jfieldID timerReaderIntervalField = NULL;
+jfieldID timerReaderScheduleField = NULL;
+jfieldID timerReaderJitterField = NULL;
+
+jclass gearsTimerReaderScheduleCls = NULL;
+jobject gearsTimerReaderScheduleFixedDelay = NULL;
+
 jclass gearsStreamReaderFailedPolicyCls = NULL;
 jclass gearsStreamReaderFailedPolicyContinueCls = NULL;
 jclass gearsStreamReaderFailedPolicyAbortCls = NULL;
@@ -360,6 +410,24 @@ JNINativeMethod futureRecordNativeMethod[] = {
         },
 };
 
+JNINativeMethod keysScannerNativeMethod[] = {
+        {
+            .name = "scannerCreate",
+            .signature = "()Z",
+            .fnPtr = JVM_KSCreate,
+        },
+        {
+            .name = "scannerNext",
+            .signature = "(Ljava/lang/String;[Ljava/lang/String;J)I",
+            .fnPtr = JVM_KSNext,
+        },
+        {
+            .name = "scannerFree",
+            .signature = "()V",
+            .fnPtr = JVM_KSFree,
+        },
+};
+
 JNINativeMethod gearsBuilderNativeMethod[] = {
         {
             .name = "init",
@@ -391,6 +459,11 @@ JNINativeMethod gearsBuilderNativeMethod[] = {
             .signature = "(Lgears/operations/ExtractorOperation;)Lgears/GearsBuilder;",
             .fnPtr = JVM_GBRepartition,
         },
+        {
+            .name = "aggregateBy",
+            .signature = "(Lgears/operations/ExtractorOperation;Lgears/operations/AccumulateByOperation;Lgears/operations/AccumulateByOperation;)Lgears/GearsBuilder;",
+            .fnPtr = JVM_GBAggregateby,
+        },
         {
             .name = "localAccumulateBy",
             .signature = "(Lgears/operations/ExtractorOperation;Lgears/operations/AccumulateByOperation;)Lgears/GearsBuilder;",
@@ -416,6 +489,11 @@ JNINativeMethod gearsBuilderNativeMethod[] = {
             .signature = "()Lgears/GearsBuilder;",
             .fnPtr = JVM_GBCollect,
         },
+        {
+            .name = "localLimit",
+            .signature = "(II)Lgears/GearsBuilder;",
+            .fnPtr = JVM_GBLocalLimit,
+        },
         {
             .name = "innerRun",
             .signature = "(Lgears/readers/BaseReader;)V",
@@ -1136,6 +1214,18 @@ static JVM_ThreadLocalData* JVM_GetThreadLocalData(JVM_ExecutionCtx* jectx){
                 return NULL;
             }
 
+            JVM_TryFindClass(jvm_tld->env, "gears/readers/KeysScanner", keysScannerCls);
+
+            res = (*jvm_tld->env)->RegisterNatives(jvm_tld->env, keysScannerCls, keysScannerNativeMethod, sizeof(keysScannerNativeMethod)/sizeof(JNINativeMethod));
+
+            if(res != JNI_OK){
+                (*jvm_tld->env)->ExceptionDescribe(jvm_tld->env);
+                RedisModule_Log(NULL, "warning", "could not initialize keysScanner natives");
+                return NULL;
+            }
+
+            JVM_TryFindField(jvm_tld->env, keysScannerCls, "nativeScannerPtr", "J", keysScannerPtrFieldId);
+
             JVM_TryFindClass(jvm_tld->env, "gears/GearsObjectInputStream", gearsObjectInputStreamCls);
             JVM_TryFindStaticMethod(jvm_tld->env, gearsObjectInputStreamCls, "getGearsObjectInputStream", "(Ljava/lang/ClassLoader;)Lgears/GearsObjectInputStream;", gearsObjectInputStreamGetMethodId);
 
@@ -1204,6 +1294,16 @@ static JVM_ThreadLocalData* JVM_GetThreadLocalData(JVM_ExecutionCtx* jectx){
             JVM_TryFindMethod(jvm_tld->env, iteratorCls, "hasNext", "()Z", iteratorHasNextMethodId);
             JVM_TryFindMethod(jvm_tld->env, iteratorCls, "next", "()Ljava/lang/Object;", iteratorNextMethodId);
 
+            JVM_TryFindClass(jvm_tld->env, "gears/readers/JavaReader", gearsJavaReaderCls);
+            JVM_TryFindMethod(jvm_tld->env, gearsJavaReaderCls, "readerIterator", "()Ljava/util/Iterator;", gearsJavaReaderIteratorMethodId);
+            JVM_TryFindField(jvm_tld->env, gearsJavaReaderCls, "batchSize", "I", gearsJavaReaderBatchSizeFieldId);
+
+            JVM_TryFindClass(jvm_tld->env, "gears/readers/BatchingIterator", gearsBatchingIteratorCls);
+            JVM_TryFindMethod(jvm_tld->env, gearsBatchingIteratorCls, "nextBatch", "([Ljava/lang/Object;)I", gearsBatchingIteratorNextBatchMethodId);
+
+            JVM_TryFindClass(jvm_tld->env, "java/lang/AutoCloseable", autoCloseableCls);
+            JVM_TryFindMethod(jvm_tld->env, autoCloseableCls, "close", "()V", autoCloseableCloseMethodId);
+
 //            JVM_TryFindClass(jvm_tld->env, "java/lang/reglect/Array", arrayCls);
 
             JVM_TryFindMethod(jvm_tld->env, hashRecordCls, "<init>", "()V", hashRecordCtor);
@@ -1219,9 +1319,14 @@ static JVM_ThreadLocalData* JVM_GetThreadLocalData(JVM_ExecutionCtx* jectx){
             JVM_TryFindField(jvm_tld->env, gearsKeyReaderCls, "eventTypes", "[Ljava/lang/String;", keysReaderEventTypesField);
             JVM_TryFindField(jvm_tld->env, gearsKeyReaderCls, "keyTypes", "[Ljava/lang/String;", keysReaderKeyTypesField);
             JVM_TryFindField(jvm_tld->env, gearsKeyReaderCls, "commands", "[Ljava/lang/String;", keysReaderCommandsField);
+            JVM_TryFindField(jvm_tld->env, gearsKeyReaderCls, "fields", "[Ljava/lang/String;", keysReaderFieldsField);
+            JVM_TryFindField(jvm_tld->env, gearsKeyReaderCls, "coalesceWindowMs", "J", keysReaderCoalesceWindowMsField);
+            JVM_TryFindField(jvm_tld->env, gearsKeyReaderCls, "batchSize", "I", keysReaderBatchSizeField);
+            JVM_TryFindField(jvm_tld->env, gearsKeyReaderCls, "batchDurationMs", "J", keysReaderBatchDurationMsField);
 
             JVM_TryFindClass(jvm_tld->env, "gears/records/KeysReaderRecord", gearsKeyReaderRecordCls);
-            JVM_TryFindMethod(jvm_tld->env, gearsKeyReaderRecordCls, "<init>", "(Ljava/lang/String;Ljava/lang/String;ZLjava/nio/ByteBuffer;)V", gearsKeyReaderRecordCtrMethodId);
+            JVM_TryFindMethod(jvm_tld->env, gearsKeyReaderRecordCls, "<init>", "(Ljava/lang/String;Ljava/lang/String;ZLjava/nio/ByteBuffer;J)V", gearsKeyReaderRecordCtrMethodId);
+            JVM_TryFindMethod(jvm_tld->env, gearsKeyReaderRecordCls, "copy", "()Lgears/records/KeysReaderRecord;", gearsKeyReaderRecordCopyMethodId);
 
             JVM_TryFindClass(jvm_tld->env, "gears/readers/StreamReader", gearsStreamReaderCls);
             JVM_TryFindField(jvm_tld->env, gearsStreamReaderCls, "pattern", "Ljava/lang/String;", streamReaderPatternField);
@@ -1231,14 +1336,34 @@ static JVM_ThreadLocalData* JVM_GetThreadLocalData(JVM_ExecutionCtx* jectx){
             JVM_TryFindField(jvm_tld->env, gearsStreamReaderCls, "failurePolicy", "Lgears/readers/StreamReader$FailurePolicy;", streamReaderFailurePolicyField);
             JVM_TryFindField(jvm_tld->env, gearsStreamReaderCls, "failureRertyInterval", "I", streamReaderRetryIntervalField);
             JVM_TryFindField(jvm_tld->env, gearsStreamReaderCls, "trimStream", "Z", streamReaderTrimStreamField);
+            JVM_TryFindField(jvm_tld->env, gearsStreamReaderCls, "recordType", "Lgears/readers/StreamReader$RecordType;", streamReaderRecordTypeField);
+            JVM_TryFindField(jvm_tld->env, gearsStreamReaderCls, "deliverAsBatch", "Z", streamReaderDeliverAsBatchField);
+            JVM_TryFindField(jvm_tld->env, gearsStreamReaderCls, "adaptive", "Z", streamReaderAdaptiveField);
+            JVM_TryFindField(jvm_tld->env, gearsStreamReaderCls, "minBatchSize", "I", streamReaderMinBatchSizeField);
+            JVM_TryFindField(jvm_tld->env, gearsStreamReaderCls, "maxBatchSize", "I", streamReaderMaxBatchSizeField);
+            JVM_TryFindField(jvm_tld->env, gearsStreamReaderCls, "targetLatencyMS", "I", streamReaderTargetLatencyField);
+            JVM_TryFindField(jvm_tld->env, gearsStreamReaderCls, "maxConcurrentBatches", "I", streamReaderMaxConcurrentBatchesField);
+            JVM_TryFindField(jvm_tld->env, gearsStreamReaderCls, "orderedPerStream", "Z", streamReaderOrderedPerStreamField);
+
+            JVM_TryFindClass(jvm_tld->env, "gears/records/StreamRecord", gearsStreamRecordCls);
+            JVM_TryFindMethod(jvm_tld->env, gearsStreamRecordCls, "<init>", "(Ljava/lang/String;JJLjava/nio/ByteBuffer;)V", gearsStreamRecordCtrMethodId);
+
+            JVM_TryFindClass(jvm_tld->env, "gears/records/StreamRecordBatch", gearsStreamRecordBatchCls);
+            JVM_TryFindMethod(jvm_tld->env, gearsStreamRecordBatchCls, "<init>", "(Ljava/lang/String;Ljava/nio/ByteBuffer;)V", gearsStreamRecordBatchCtrMethodId);
 
             JVM_TryFindClass(jvm_tld->env, "gears/readers/CommandReader", gearsCommandReaderCls);
             JVM_TryFindField(jvm_tld->env, gearsCommandReaderCls, "trigger", "Ljava/lang/String;", commandReaderTriggerField);
+            JVM_TryFindField(jvm_tld->env, gearsCommandReaderCls, "fastPath", "Z", commandReaderFastPathField);
 
             JVM_TryFindClass(jvm_tld->env, "gears/readers/CommandOverrider", gearsCommandOverriderCls);
             JVM_TryFindField(jvm_tld->env, gearsCommandOverriderCls, "command", "Ljava/lang/String;", commandOverriderCommandField);
             JVM_TryFindField(jvm_tld->env, gearsCommandOverriderCls, "prefix", "Ljava/lang/String;", commandOverriderPrefixField);
 
+            JVM_TryFindClass(jvm_tld->env, "gears/readers/TimerReader", gearsTimerReaderCls);
+            JVM_TryFindField(jvm_tld->env, gearsTimerReaderCls, "interval", "J", timerReaderIntervalField);
+            JVM_TryFindField(jvm_tld->env, gearsTimerReaderCls, "schedule", "Lgears/readers/TimerReader$Schedule;", timerReaderScheduleField);
+            JVM_TryFindField(jvm_tld->env, gearsTimerReaderCls, "jitter", "J", timerReaderJitterField);
+
             JVM_TryFindClass(jvm_tld->env, "gears/readers/StreamReader$FailurePolicy", gearsStreamReaderFailedPolicyCls);
             jfieldID temp = (*jvm_tld->env)->GetStaticFieldID(jvm_tld->env, gearsStreamReaderFailedPolicyCls, "CONTINUE", "Lgears/readers/StreamReader$FailurePolicy;");
             if(!temp){
@@ -1276,6 +1401,32 @@ static JVM_ThreadLocalData* JVM_GetThreadLocalData(JVM_ExecutionCtx* jectx){
             }
             gearsStreamReaderFailedPolicyRetryCls = JVM_TurnToGlobal(jvm_tld->env, gearsStreamReaderFailedPolicyRetryCls);
 
+            JVM_TryFindClass(jvm_tld->env, "gears/readers/StreamReader$RecordType", gearsStreamReaderRecordTypeCls);
+            temp = (*jvm_tld->env)->GetStaticFieldID(jvm_tld->env, gearsStreamReaderRecordTypeCls, "STREAM_RECORD", "Lgears/readers/StreamReader$RecordType;");
+            if(!temp){
+                RedisModule_Log(NULL, "warning", "Failed finding RecordType.STREAM_RECORD enum");
+                return NULL;
+            }
+            gearsStreamReaderRecordTypeStreamRecord = (*jvm_tld->env)->GetStaticObjectField(jvm_tld->env, gearsStreamReaderRecordTypeCls, temp);
+            if(!gearsStreamReaderRecordTypeStreamRecord){
+                RedisModule_Log(NULL, "warning", "Failed loading RecordType.STREAM_RECORD enum");
+                return NULL;
+            }
+            gearsStreamReaderRecordTypeStreamRecord = JVM_TurnToGlobal(jvm_tld->env, gearsStreamReaderRecordTypeStreamRecord);
+
+            JVM_TryFindClass(jvm_tld->env, "gears/readers/TimerReader$Schedule", gearsTimerReaderScheduleCls);
+            temp = (*jvm_tld->env)->GetStaticFieldID(jvm_tld->env, gearsTimerReaderScheduleCls, "FIXED_DELAY", "Lgears/readers/TimerReader$Schedule;");
+            if(!temp){
+                RedisModule_Log(NULL, "warning", "Failed finding Schedule.FIXED_DELAY enum");
+                return NULL;
+            }
+            gearsTimerReaderScheduleFixedDelay = (*jvm_tld->env)->GetStaticObjectField(jvm_tld->env, gearsTimerReaderScheduleCls, temp);
+            if(!gearsTimerReaderScheduleFixedDelay){
+                RedisModule_Log(NULL, "warning", "Failed loading Schedule.FIXED_DELAY enum");
+                return NULL;
+            }
+            gearsTimerReaderScheduleFixedDelay = JVM_TurnToGlobal(jvm_tld->env, gearsTimerReaderScheduleFixedDelay);
+
             JVM_TryFindClass(jvm_tld->env, "gears/ExecutionMode", gearsExecutionModeCls);
             temp = (*jvm_tld->env)->GetStaticFieldID(jvm_tld->env, gearsExecutionModeCls, "ASYNC", "Lgears/ExecutionMode;");
             if(!temp){
@@ -1636,6 +1787,158 @@ static void JVM_ARFree(JNIEnv *env, jobject objectOrClass){
     RedisGears_FreeRecord(asyncRecord);
 }
 
+#define JVM_KEYS_SCANNER_INIT_BATCH_SIZE 100
+#define JVM_KEYS_SCANNER_TIME_CHECK_INTERVAL 16
+
+typedef struct JVMKeysScanner{
+    RedisModuleScanCursor* cursor;
+    char** pending; // keys that was scanned but not yet passed to java
+    size_t batchSize;
+    bool isDone;
+    const char* pattern;
+    size_t patternLen;
+}JVMKeysScanner;
+
+static long long JVM_UsTime(){
+    struct timespec ts;
+    clock_gettime(CLOCK_MONOTONIC, &ts);
+    return ((long long)ts.tv_sec) * 1000000 + ts.tv_nsec / 1000;
+}
+
+static void JVM_KeysScannerScanCallback(RedisModuleCtx *ctx, RedisModuleString *keyname, RedisModuleKey *key, void *privdata){
+    JVMKeysScanner* scanner = privdata;
+    size_t len;
+    const char* keyStr = RedisModule_StringPtrLen(keyname, &len);
+    if(!RedisGears_KeysReaderPatternMatch(scanner->pattern, scanner->patternLen, keyStr, len)){
+        return;
+    }
+    char* keyCStr = RG_ALLOC(len + 1);
+    memcpy(keyCStr, keyStr, len);
+    keyCStr[len] = '\0';
+    scanner->pending = array_append(scanner->pending, keyCStr);
+}
+
+static jboolean JVM_KSCreate(JNIEnv *env, jobject objectOrClass){
+    RedisVersion* redisVersion = RedisGears_GetRedisVersion();
+    bool hasScanAPI = redisVersion->redisMajorVersion > 6 ||
+            (redisVersion->redisMajorVersion == 6 && redisVersion->redisMinorVersion > 0) ||
+            (redisVersion->redisMajorVersion == 6 && redisVersion->redisMinorVersion == 0 && redisVersion->redisPatchVersion >= 6);
+    if(!hasScanAPI || !RedisModule_Scan){
+        return JNI_FALSE;
+    }
+
+    JVMKeysScanner* scanner = RG_ALLOC(sizeof(*scanner));
+    *scanner = (JVMKeysScanner){
+        .cursor = RedisModule_ScanCursorCreate(),
+        .pending = array_new(char*, JVM_KEYS_SCANNER_INIT_BATCH_SIZE),
+        .batchSize = JVM_KEYS_SCANNER_INIT_BATCH_SIZE,
+        .isDone = false,
+        .pattern = NULL,
+        .patternLen = 0,
+    };
+
+    (*env)->SetLongField(env, objectOrClass, keysScannerPtrFieldId, (jlong)scanner);
+    return JNI_TRUE;
+}
+
+/*
+ * Fill the given keys array with scanned keys, return the amount of keys filled
+ * or -1 if the scan is done. The Redis GIL is held for one scan round, the amount
+ * of keys read on each round is adjusted so the lock will be held for no more then
+ * maxLockHoldMicros.
+ */
+static jint JVM_KSNext(JNIEnv *env, jobject objectOrClass, jstring pattern, jobjectArray keys, jlong maxLockHoldMicros){
+    JVMKeysScanner* scanner = (JVMKeysScanner*)(*env)->GetLongField(env, objectOrClass, keysScannerPtrFieldId);
+    if(!scanner){
+        (*env)->ThrowNew(env, exceptionCls, "NULL keys scanner was given");
+        return -1;
+    }
+
+    if(!pattern){
+        (*env)->ThrowNew(env, exceptionCls, "NULL pattern was given");
+        return -1;
+    }
+
+    if(!keys){
+        (*env)->ThrowNew(env, exceptionCls, "NULL keys array was given");
+        return -1;
+    }
+
+    size_t keysLen = (*env)->GetArrayLength(env, keys);
+    if(keysLen == 0){
+        (*env)->ThrowNew(env, exceptionCls, "Empty keys array was given");
+        return -1;
+    }
+
+    if(array_len(scanner->pending) == 0 && !scanner->isDone){
+        const char* patternStr = (*env)->GetStringUTFChars(env, pattern, NULL);
+        scanner->pattern = patternStr;
+        scanner->patternLen = strlen(patternStr);
+
+        size_t batchSize = scanner->batchSize < keysLen ? scanner->batchSize : keysLen;
+        size_t iterations = 0;
+
+        RedisModuleCtx *ctx = RedisModule_GetThreadSafeContext(NULL);
+        RedisGears_LockHanlderAcquire(ctx);
+
+        long long start = JVM_UsTime();
+        while(array_len(scanner->pending) < batchSize){
+            if(!RedisModule_Scan(ctx, scanner->cursor, JVM_KeysScannerScanCallback, scanner)){
+                scanner->isDone = true;
+                break;
+            }
+            if((++iterations % JVM_KEYS_SCANNER_TIME_CHECK_INTERVAL) == 0 &&
+                    JVM_UsTime() - start >= maxLockHoldMicros){
+                break;
+            }
+        }
+        long long duration = JVM_UsTime() - start;
+
+        RedisGears_LockHanlderRelease(ctx);
+        RedisModule_FreeThreadSafeContext(ctx);
+
+        (*env)->ReleaseStringUTFChars(env, pattern, patternStr);
+        scanner->pattern = NULL;
+        scanner->patternLen = 0;
+
+        // adjust the next batch size according to the time we held the lock
+        if(duration > maxLockHoldMicros){
+            scanner->batchSize = scanner->batchSize > 1 ? scanner->batchSize / 2 : 1;
+        }else if(duration < maxLockHoldMicros / 2 && array_len(scanner->pending) >= batchSize){
+            scanner->batchSize = scanner->batchSize * 2 < keysLen ? scanner->batchSize * 2 : keysLen;
+        }
+    }
+
+    if(array_len(scanner->pending) == 0){
+        return scanner->isDone ? -1 : 0;
+    }
+
+    size_t n = array_len(scanner->pending) < keysLen ? array_len(scanner->pending) : keysLen;
+    for(size_t i = 0 ; i < n ; ++i){
+        char* keyCStr = array_pop(scanner->pending);
+        jstring jkey = (*env)->NewStringUTF(env, keyCStr);
+        RG_FREE(keyCStr);
+        (*env)->SetObjectArrayElement(env, keys, i, jkey);
+        (*env)->DeleteLocalRef(env, jkey);
+    }
+
+    return n;
+}
+
+static void JVM_KSFree(JNIEnv *env, jobject objectOrClass){
+    JVMKeysScanner* scanner = (JVMKeysScanner*)(*env)->GetLongField(env, objectOrClass, keysScannerPtrFieldId);
+    if(!scanner){
+        // already freed
+        return;
+    }
+
+    RedisModule_ScanCursorDestroy(scanner->cursor);
+    array_free_ex(scanner->pending, RG_FREE(*(char**)ptr));
+    RG_FREE(scanner);
+
+    (*env)->SetLongField(env, objectOrClass, keysScannerPtrFieldId, 0);
+}
+
 static void JVM_ARCreate(JNIEnv *env, jobject objectOrClass){
     JVM_ThreadLocalData* tld = JVM_GetThreadLocalData(NULL);
 
@@ -1732,6 +2035,20 @@ static jobject JVM_GBCollect(JNIEnv *env, jobject objectOrClass){
     return objectOrClass;
 }
 
+static jobject JVM_GBLocalLimit(JNIEnv *env, jobject objectOrClass, jint offset, jint len){
+    if(offset < 0){
+        (*env)->ThrowNew(env, exceptionCls, "Negative offset given");
+        return NULL;
+    }
+    if(len < 0){
+        (*env)->ThrowNew(env, exceptionCls, "Negative len given");
+        return NULL;
+    }
+    FlatExecutionPlan* fep = (FlatExecutionPlan*)(*env)->GetLongField(env, objectOrClass, ptrFieldId);
+    RGM_Limit(fep, (size_t)offset, (size_t)len);
+    return objectOrClass;
+}
+
 static jobject JVM_GBForeach(JNIEnv *env, jobject objectOrClass, jobject foreach){
     if(!foreach){
         (*env)->ThrowNew(env, exceptionCls, "Null foreach function given");
@@ -1803,6 +2120,29 @@ static jobject JVM_GBAccumulateby(JNIEnv *env, jobject objectOrClass, jobject ex
     return objectOrClass;
 }
 
+static jobject JVM_GBAggregateby(JNIEnv *env, jobject objectOrClass, jobject extractor, jobject accumulator, jobject combiner){
+    if(!extractor){
+        (*env)->ThrowNew(env, exceptionCls, "Null extractor given");
+        return NULL;
+    }
+    if(!accumulator){
+        (*env)->ThrowNew(env, exceptionCls, "Null accumulator given");
+        return NULL;
+    }
+    if(!combiner){
+        (*env)->ThrowNew(env, exceptionCls, "Null combiner given");
+        return NULL;
+    }
+
+    FlatExecutionPlan* fep = (FlatExecutionPlan*)(*env)->GetLongField(env, objectOrClass, ptrFieldId);
+    extractor = JVM_TurnToGlobal(env, extractor);
+    accumulator = JVM_TurnToGlobal(env, accumulator);
+    combiner = JVM_TurnToGlobal(env, combiner);
+    RGM_AggregateBy(fep, JVM_Extractor, extractor, JVM_AccumulateByKey, accumulator, JVM_AccumulateByKey, combiner);
+    RGM_Map(fep, JVM_ToJavaRecordMapper, NULL);
+    return objectOrClass;
+}
+
 static jobject JVM_GBFlatMap(JNIEnv *env, jobject objectOrClass, jobject mapper){
     if(!mapper){
         (*env)->ThrowNew(env, exceptionCls, "Null mapper given");
@@ -1834,6 +2174,127 @@ static void JVM_OnExecutionDoneCallback(ExecutionPlan* ctx, void* privateData){
     RedisModule_FreeThreadSafeContext(rctx);
 }
 
+static bool JVM_StreamReaderParseId(RedisModuleCallReply* entry, long long* idMs, long long* idSeq){
+    RedisModuleCallReply *id = RedisModule_CallReplyArrayElement(entry, 0);
+    size_t idLen;
+    const char* idStr = RedisModule_CallReplyStringPtr(id, &idLen);
+    char* idCStr = RG_ALLOC(idLen + 1);
+    memcpy(idCStr, idStr, idLen);
+    idCStr[idLen] = '\0';
+    bool res = true;
+    if(sscanf(idCStr, "%lld-%lld", idMs, idSeq) != 2){
+        RedisModule_Log(NULL, "warning", "Failed parsing stream id '%s'", idCStr);
+        res = false;
+    }
+    RG_FREE(idCStr);
+    return res;
+}
+
+static void JVM_StreamReaderWriteEntryValues(Gears_BufferWriter* bw, RedisModuleCallReply* entry){
+    RedisModuleCallReply *values = RedisModule_CallReplyArrayElement(entry, 1);
+    if(values && RedisModule_CallReplyType(values) == REDISMODULE_REPLY_ARRAY){
+        size_t valuesLen = RedisModule_CallReplyLength(values);
+        RedisGears_BWWriteLong(bw, valuesLen / 2);
+        for(size_t i = 0 ; i + 1 < valuesLen ; i += 2){
+            size_t len;
+            const char* str = RedisModule_CallReplyStringPtr(RedisModule_CallReplyArrayElement(values, i), &len);
+            RedisGears_BWWriteBuffer(bw, str, len);
+            str = RedisModule_CallReplyStringPtr(RedisModule_CallReplyArrayElement(values, i + 1), &len);
+            RedisGears_BWWriteBuffer(bw, str, len);
+        }
+    }else{
+        RedisGears_BWWriteLong(bw, 0);
+    }
+}
+
+static Record* JVM_StreamReaderCreateRecord(const char* streamKey, Gears_Buffer* buff, jclass cls, jmethodID ctr, bool withId, long long idMs, long long idSeq){
+    JVM_ThreadLocalData* jvm_tld = JVM_GetThreadLocalData(NULL);
+    JNIEnv *env  = jvm_tld->env;
+
+    JVM_PushFrame(env);
+
+    jstring jkey = (*env)->NewStringUTF(env, streamKey);
+    size_t dataLen;
+    const char* data = RedisGears_BufferGet(buff, &dataLen);
+    jobject jbuff = (*env)->NewDirectByteBuffer(env, (void*)data, dataLen);
+
+    jobject obj = NULL;
+    if(withId){
+        obj = (*env)->NewObject(env, cls, ctr, jkey, (jlong)idMs, (jlong)idSeq, jbuff);
+    }else{
+        obj = (*env)->NewObject(env, cls, ctr, jkey, jbuff);
+    }
+
+    char* err;
+    if((err = JVM_GetException(env))){
+        RedisModule_Log(NULL, "warning", "Exception occured when reading stream entry, error='%s'", err);
+        RG_FREE(err);
+        JVM_PopFrame(env);
+        return NULL;
+    }
+
+    obj = JVM_TurnToGlobal(env, obj);
+
+    JVM_PopFrame(env);
+
+    JVMRecord* r = (JVMRecord*)RedisGears_RecordCreate(JVMRecordType);
+    r->obj = obj;
+    return &r->baseRecord;
+}
+
+static Record* JVM_StreamReaderReadRecord(RedisModuleCtx* rctx, const char* streamKey, RedisModuleCallReply* entry){
+    long long idMs = 0, idSeq = 0;
+    if(!JVM_StreamReaderParseId(entry, &idMs, &idSeq)){
+        // fall back to map record
+        return NULL;
+    }
+
+    // stream reader might run concurrently on multiple threads, use a local buffer.
+    Gears_Buffer* buff = RedisGears_BufferCreate(100);
+    Gears_BufferWriter bw;
+    RedisGears_BufferWriterInit(&bw, buff);
+
+    JVM_StreamReaderWriteEntryValues(&bw, entry);
+
+    Record* r = JVM_StreamReaderCreateRecord(streamKey, buff, gearsStreamRecordCls, gearsStreamRecordCtrMethodId, true, idMs, idSeq);
+
+    RedisGears_BufferFree(buff);
+
+    return r;
+}
+
+static Record* JVM_StreamReaderReadBatch(RedisModuleCtx* rctx, const char* streamKey, RedisModuleCallReply* entries){
+    Gears_Buffer* buff = RedisGears_BufferCreate(100);
+    Gears_BufferWriter bw;
+    RedisGears_BufferWriterInit(&bw, buff);
+
+    size_t len = RedisModule_CallReplyLength(entries);
+    RedisGears_BWWriteLong(&bw, len);
+    for(size_t i = 0 ; i < len ; ++i){
+        RedisModuleCallReply* entry = RedisModule_CallReplyArrayElement(entries, i);
+        long long idMs = 0, idSeq = 0;
+        if(!JVM_StreamReaderParseId(entry, &idMs, &idSeq)){
+            // fall back to list of map records
+            RedisGears_BufferFree(buff);
+            return NULL;
+        }
+        RedisGears_BWWriteLong(&bw, idMs);
+        RedisGears_BWWriteLong(&bw, idSeq);
+        JVM_StreamReaderWriteEntryValues(&bw, entry);
+    }
+
+    Record* r = JVM_StreamReaderCreateRecord(streamKey, buff, gearsStreamRecordBatchCls, gearsStreamRecordBatchCtrMethodId, false, 0, 0);
+
+    RedisGears_BufferFree(buff);
+
+    return r;
+}
+
+static bool JVM_IsStreamRecordType(JNIEnv *env, jobject reader){
+    jobject jrecordType = (*env)->GetObjectField(env, reader, streamReaderRecordTypeField);
+    return (*env)->IsSameObject(env, jrecordType, gearsStreamReaderRecordTypeStreamRecord);
+}
+
 void* JVM_CreateRunStreamReaderArgs(JNIEnv *env, FlatExecutionPlan* fep, jobject reader){
     jclass readerCls = (*env)->GetObjectClass(env, reader);
     if(!(*env)->IsSameObject(env, readerCls, gearsStreamReaderCls)){
@@ -1858,6 +2319,13 @@ void* JVM_CreateRunStreamReaderArgs(JNIEnv *env, FlatExecutionPlan* fep, jobject
 
     StreamReaderCtx* readerCtx = RedisGears_StreamReaderCtxCreate(patternStr, startIdStr);
 
+    if((*env)->GetBooleanField(env, reader, streamReaderDeliverAsBatchField)){
+        RedisGears_StreamReaderSetDeliverAsBatch(readerCtx, true);
+        RGM_StreamReaderSetReadBatchCallback(readerCtx, JVM_StreamReaderReadBatch);
+    }else if(JVM_IsStreamRecordType(env, reader)){
+        RGM_StreamReaderSetReadRecordCallback(readerCtx, JVM_StreamReaderReadRecord);
+    }
+
     (*env)->ReleaseStringUTFChars(env, pattern, patternStr);
     (*env)->ReleaseStringUTFChars(env, startId, startIdStr);
 
@@ -1885,7 +2353,34 @@ static void JVM_ScanKeyCallback(RedisModuleKey *key, RedisModuleString *field, R
     RedisGears_BWWriteBuffer(bw, valCStr, valCStrLen);
 }
 
-static jobject JVM_GetSerializedVal(RedisModuleCtx* rctx, JNIEnv *env, RedisModuleKey* keyPtr, RedisModuleString* key, Gears_Buffer* buff){
+static void JVM_GetSerializedHashFields(RedisModuleCtx* rctx, RedisModuleKey* keyPtr, RedisModuleString* key, char** hashFields, Gears_BufferWriter* bw){
+    for(size_t i = 0 ; i < array_len(hashFields) ; ++i){
+        size_t valStrLen;
+        const char* valStr;
+        if(!RedisGears_IsCrdt()){
+            RedisModuleString* val = NULL;
+            RedisModule_HashGet(keyPtr, REDISMODULE_HASH_CFIELDS, hashFields[i], &val, NULL);
+            if(!val){
+                continue;
+            }
+            valStr = RedisModule_StringPtrLen(val, &valStrLen);
+            RedisGears_BWWriteBuffer(bw, hashFields[i], strlen(hashFields[i]));
+            RedisGears_BWWriteBuffer(bw, valStr, valStrLen);
+            RedisModule_FreeString(rctx, val);
+        }else{
+            // fall back to RM_Call
+            RedisModuleCallReply *reply = RedisModule_Call(rctx, "HGET", "sc", key, hashFields[i]);
+            if(RedisModule_CallReplyType(reply) == REDISMODULE_REPLY_STRING){
+                valStr = RedisModule_CallReplyStringPtr(reply, &valStrLen);
+                RedisGears_BWWriteBuffer(bw, hashFields[i], strlen(hashFields[i]));
+                RedisGears_BWWriteBuffer(bw, valStr, valStrLen);
+            }
+            RedisModule_FreeCallReply(reply);
+        }
+    }
+}
+
+static jobject JVM_GetSerializedVal(RedisModuleCtx* rctx, JNIEnv *env, RedisModuleKey* keyPtr, RedisModuleString* key, char** hashFields, Gears_Buffer* buff){
     Gears_BufferWriter bw;
     RedisGears_BufferWriterInit(&bw, buff);
     if(keyPtr == NULL){
@@ -1894,7 +2389,9 @@ static jobject JVM_GetSerializedVal(RedisModuleCtx* rctx, JNIEnv *env, RedisModu
         int keyType = RedisModule_KeyType(keyPtr);
         RedisGears_BWWriteLong(&bw, keyType);
         if(keyType == REDISMODULE_KEYTYPE_HASH){
-            if(!RedisGears_IsCrdt()){
+            if(hashFields){
+                JVM_GetSerializedHashFields(rctx, keyPtr, key, hashFields, &bw);
+            }else if(!RedisGears_IsCrdt()){
                 RedisModuleScanCursor* hashCursor = RedisModule_ScanCursorCreate();
                 while(RedisModule_ScanKey(keyPtr, hashCursor, JVM_ScanKeyCallback, &bw));
                 RedisModule_ScanCursorDestroy(hashCursor);
@@ -1941,7 +2438,7 @@ static jobject JVM_GetSerializedVal(RedisModuleCtx* rctx, JNIEnv *env, RedisModu
 
 static Gears_Buffer* recordBuff = NULL;
 
-static Record* JVM_KeyReaderReadRecord(RedisModuleCtx* rctx, RedisModuleString* key, RedisModuleKey* keyPtr, bool readValue, const char* event){
+static Record* JVM_KeyReaderReadRecord(RedisModuleCtx* rctx, RedisModuleString* key, RedisModuleKey* keyPtr, bool readValue, const char* event, char** hashFields){
     JVM_ThreadLocalData* jvm_tld = JVM_GetThreadLocalData(NULL);
     JNIEnv *env  = jvm_tld->env;
 
@@ -1962,12 +2459,13 @@ static Record* JVM_KeyReaderReadRecord(RedisModuleCtx* rctx, RedisModuleString*
             tmpPtr = RedisModule_OpenKey(rctx, key, REDISMODULE_READ);
             RedisGears_KeysReaderSetAvoidEvents(oldAvoidEvents);
         }
-        serializedValue = JVM_GetSerializedVal(rctx, env, tmpPtr, key, recordBuff);
+        serializedValue = JVM_GetSerializedVal(rctx, env, tmpPtr, key, hashFields, recordBuff);
         if(!keyPtr){
             RedisModule_CloseKey(tmpPtr);
         }
     }
-    jobject obj = (*env)->NewObject(env, gearsKeyReaderRecordCls, gearsKeyReaderRecordCtrMethodId, jkey, jevent, readValue, serializedValue);
+    jlong coalescedEvents = RedisGears_KeysReaderGetCoalescedEvents();
+    jobject obj = (*env)->NewObject(env, gearsKeyReaderRecordCls, gearsKeyReaderRecordCtrMethodId, jkey, jevent, readValue, serializedValue, coalescedEvents);
 
     char* err;
     if((err = JVM_GetException(env))){
@@ -1986,6 +2484,31 @@ static Record* JVM_KeyReaderReadRecord(RedisModuleCtx* rctx, RedisModuleString*
     return &r->baseRecord;
 }
 
+static char** JVM_GetKeysReaderHashFields(JNIEnv *env, jobject reader){
+    jobject jfields = (*env)->GetObjectField(env, reader, keysReaderFieldsField);
+    char** fields = NULL;
+    if(jfields){
+        jsize jfieldsLen = (*env)->GetArrayLength(env, jfields);
+        if(jfieldsLen > 0){
+            fields = array_new(char*, jfieldsLen);
+            for(size_t i = 0 ; i < jfieldsLen ; ++i){
+                jobject jfield = (*env)->GetObjectArrayElement(env, jfields, i);
+                if(!jfield){
+                    array_free_ex(fields, RG_FREE(*(char**)ptr));
+                    (*env)->ThrowNew(env, exceptionCls, "Null hash field given");
+                    return NULL;
+                }
+                const char* jfieldStr = (*env)->GetStringUTFChars(env, jfield, NULL);
+                fields = array_append(fields, RG_STRDUP(jfieldStr));
+                (*env)->ReleaseStringUTFChars(env, jfield, jfieldStr);
+                (*env)->DeleteLocalRef(env, jfield);
+            }
+        }
+        (*env)->DeleteLocalRef(env, jfields);
+    }
+    return fields;
+}
+
 static void* JVM_CreateRunKeyReaderArgs(JNIEnv *env, FlatExecutionPlan* fep, jobject reader){
     jclass readerCls = (*env)->GetObjectClass(env, reader);
     if(!(*env)->IsSameObject(env, readerCls, gearsKeyReaderCls)){
@@ -2004,10 +2527,20 @@ static void* JVM_CreateRunKeyReaderArgs(JNIEnv *env, FlatExecutionPlan* fep, job
     jboolean readValues = (*env)->GetBooleanField(env, reader, keysReaderReadValuesField);
     jboolean noScan = (*env)->GetBooleanField(env, reader, keysReaderNoscanField);
 
+    char** fields = JVM_GetKeysReaderHashFields(env, reader);
+    if((*env)->ExceptionCheck(env)){
+        (*env)->ReleaseStringUTFChars(env, pattern, patternStr);
+        return NULL;
+    }
+
     KeysReaderCtx* readerCtx = RedisGears_KeysReaderCtxCreate(patternStr, readValues, NULL, noScan);
 
     RGM_KeysReaderSetReadRecordCallback(readerCtx, JVM_KeyReaderReadRecord);
 
+    if(fields){
+        RedisGears_KeysReaderSetHashFields(readerCtx, fields);
+    }
+
     (*env)->ReleaseStringUTFChars(env, pattern, patternStr);
 
     return readerCtx;
@@ -2090,6 +2623,9 @@ void* JVM_CreateRegisterCommandReaderTriggerArgs(JNIEnv *env, FlatExecutionPlan*
 
     (*env)->ReleaseStringUTFChars(env, trigger, triggerStr);
 
+    jboolean fastPath = (*env)->GetBooleanField(env, reader, commandReaderFastPathField);
+    RedisGears_CommandReaderTriggerArgsSetFastPath(triggerArgs, fastPath);
+
     return triggerArgs;
 }
 
@@ -2107,6 +2643,35 @@ void* JVM_CreateRegisterCommandReaderArgs(JNIEnv *env, FlatExecutionPlan* fep, j
     return NULL;
 }
 
+void* JVM_CreateRegisterTimerReaderArgs(JNIEnv *env, FlatExecutionPlan* fep, jobject reader){
+    jclass readerCls = (*env)->GetObjectClass(env, reader);
+    if(!(*env)->IsSameObject(env, readerCls, gearsTimerReaderCls)){
+        (*env)->ThrowNew(env, exceptionCls, "Reader was changed!!!! Stop hacking!!!!");
+        return NULL;
+    }
+
+    jlong interval = (*env)->GetLongField(env, reader, timerReaderIntervalField);
+    if(interval <= 0){
+        (*env)->ThrowNew(env, exceptionCls, "timer reader interval must be positive");
+        return NULL;
+    }
+
+    jlong jitter = (*env)->GetLongField(env, reader, timerReaderJitterField);
+    if(jitter < 0){
+        (*env)->ThrowNew(env, exceptionCls, "timer reader jitter can not be negative");
+        return NULL;
+    }
+
+    jobject jschedule = (*env)->GetObjectField(env, reader, timerReaderScheduleField);
+    if(!jschedule){
+        (*env)->ThrowNew(env, exceptionCls, "timer reader schedule can not be NULL");
+        return NULL;
+    }
+    bool fixedDelay = (*env)->IsSameObject(env, jschedule, gearsTimerReaderScheduleFixedDelay);
+
+    return RedisGears_TimerReaderTriggerArgsCreate(interval, fixedDelay, jitter);
+}
+
 void* JVM_CreateRegisterStreamReaderArgs(JNIEnv *env, FlatExecutionPlan* fep, jobject reader){
     jclass readerCls = (*env)->GetObjectClass(env, reader);
     if(!(*env)->IsSameObject(env, readerCls, gearsStreamReaderCls)){
@@ -2126,6 +2691,28 @@ void* JVM_CreateRegisterStreamReaderArgs(JNIEnv *env, FlatExecutionPlan* fep, jo
     jint retryInterval = (*env)->GetIntField(env, reader, streamReaderRetryIntervalField);
     jboolean trimStream = (*env)->GetBooleanField(env, reader, streamReaderTrimStreamField);
 
+    jboolean adaptive = (*env)->GetBooleanField(env, reader, streamReaderAdaptiveField);
+    jint minBatchSize = (*env)->GetIntField(env, reader, streamReaderMinBatchSizeField);
+    jint maxBatchSize = (*env)->GetIntField(env, reader, streamReaderMaxBatchSizeField);
+    jint targetLatencyMS = (*env)->GetIntField(env, reader, streamReaderTargetLatencyField);
+    if(adaptive){
+        if(minBatchSize < 1 || maxBatchSize < minBatchSize){
+            (*env)->ThrowNew(env, exceptionCls, "stream reader adaptive batch bounds must satisfy 1 <= minBatchSize <= maxBatchSize");
+            return NULL;
+        }
+        if(targetLatencyMS < 1){
+            (*env)->ThrowNew(env, exceptionCls, "stream reader adaptive target latency must be positive");
+            return NULL;
+        }
+    }
+
+    jint maxConcurrentBatches = (*env)->GetIntField(env, reader, streamReaderMaxConcurrentBatchesField);
+    jboolean orderedPerStream = (*env)->GetBooleanField(env, reader, streamReaderOrderedPerStreamField);
+    if(maxConcurrentBatches < 0){
+        (*env)->ThrowNew(env, exceptionCls, "stream reader max concurrent batches can not be negative");
+        return NULL;
+    }
+
     jobject jfailurePolicy = (*env)->GetObjectField(env, reader, streamReaderFailurePolicyField);
 
     OnFailedPolicy failurePolicy = OnFailedPolicyContinue;
@@ -2150,11 +2737,46 @@ void* JVM_CreateRegisterStreamReaderArgs(JNIEnv *env, FlatExecutionPlan* fep, jo
                                                      retryInterval,
                                                      trimStream);
 
+    if(adaptive){
+        RedisGears_StreamReaderTriggerArgsSetAdaptiveBatch(triggerArgsCtx, minBatchSize, maxBatchSize, targetLatencyMS);
+    }
+
+    if(maxConcurrentBatches > 0 || orderedPerStream){
+        RedisGears_StreamReaderTriggerArgsSetScheduling(triggerArgsCtx, maxConcurrentBatches, orderedPerStream);
+    }
+
+    if((*env)->GetBooleanField(env, reader, streamReaderDeliverAsBatchField)){
+        RedisGears_StreamReaderTriggerArgsSetDeliverAsBatch(triggerArgsCtx, true);
+        RGM_StreamReaderTriggerArgsSetReadBatchCallback(triggerArgsCtx, JVM_StreamReaderReadBatch);
+    }else if(JVM_IsStreamRecordType(env, reader)){
+        RGM_StreamReaderTriggerArgsSetReadRecordCallback(triggerArgsCtx, JVM_StreamReaderReadRecord);
+    }
+
     (*env)->ReleaseStringUTFChars(env, pattern, patternStr);
 
     return triggerArgsCtx;
 }
 
+/*
+ * The KeysReaderRecord and its value collections can be changed by the registration
+ * steps, so each registration fired by the same event gets its own deep copy.
+ * Returns NULL on failure, in which case the execution reads the value itself.
+ */
+static Record* JVM_KeyReaderDupRecord(Record* base){
+    JVM_ThreadLocalData* jvm_tld = JVM_GetThreadLocalData(NULL);
+    JNIEnv *env  = jvm_tld->env;
+    jobject copy = (*env)->CallObjectMethod(env, ((JVMRecord*)base)->obj, gearsKeyReaderRecordCopyMethodId);
+    char* err = NULL;
+    if((err = JVM_GetException(env))){
+        RedisModule_Log(NULL, "warning", "Failed copying keys reader record, error='%s'", err);
+        RG_FREE(err);
+        return NULL;
+    }
+    JVMRecord* r = (JVMRecord*)RedisGears_RecordCreate(JVMRecordType);
+    r->obj = JVM_TurnToGlobal(env, copy);
+    return &r->baseRecord;
+}
+
 void* JVM_CreateRegisterKeysReaderArgs(JNIEnv *env, FlatExecutionPlan* fep, jobject reader){
     jclass readerCls = (*env)->GetObjectClass(env, reader);
     if(!(*env)->IsSameObject(env, readerCls, gearsKeyReaderCls)){
@@ -2162,6 +2784,19 @@ void* JVM_CreateRegisterKeysReaderArgs(JNIEnv *env, FlatExecutionPlan* fep, jobj
         return NULL;
     }
 
+    jlong coalesceWindowMs = (*env)->GetLongField(env, reader, keysReaderCoalesceWindowMsField);
+    if(coalesceWindowMs < 0){
+        (*env)->ThrowNew(env, exceptionCls, "Keys reader coalesce window can not be negative");
+        return NULL;
+    }
+
+    jint batchSize = (*env)->GetIntField(env, reader, keysReaderBatchSizeField);
+    jlong batchDurationMs = (*env)->GetLongField(env, reader, keysReaderBatchDurationMsField);
+    if(batchSize < 0 || batchDurationMs < 0){
+        (*env)->ThrowNew(env, exceptionCls, "Keys reader batch size and duration can not be negative");
+        return NULL;
+    }
+
     jobject pattern = (*env)->GetObjectField(env, reader, keysReaderPatternField);
 
     if(!pattern){
@@ -2226,6 +2861,21 @@ void* JVM_CreateRegisterKeysReaderArgs(JNIEnv *env, FlatExecutionPlan* fep, jobj
         }
     }
 
+    char** fields = JVM_GetKeysReaderHashFields(env, reader);
+    if((*env)->ExceptionCheck(env)){
+        if(eventTypes){
+            array_free_ex(eventTypes, RG_FREE(*(char**)ptr));
+        }
+        if(keyTypes){
+            array_free(keyTypes);
+        }
+        if(commands){
+            array_free_ex(commands, RG_FREE(*(char**)ptr));
+        }
+        (*env)->ReleaseStringUTFChars(env, pattern, patternStr);
+        return NULL;
+    }
+
     KeysReaderTriggerArgs* triggerArgsCtx = RedisGears_KeysReaderTriggerArgsCreate(patternStr, eventTypes, keyTypes, readValues);
 
     if(commands){
@@ -2234,6 +2884,18 @@ void* JVM_CreateRegisterKeysReaderArgs(JNIEnv *env, FlatExecutionPlan* fep, jobj
 
     RGM_KeysReaderTriggerArgsSetReadRecordCallback(triggerArgsCtx, JVM_KeyReaderReadRecord);
 
+    if(fields){
+        RedisGears_KeysReaderTriggerArgsSetHashFields(triggerArgsCtx, fields);
+    }
+
+    if(coalesceWindowMs > 0){
+        RedisGears_KeysReaderTriggerArgsSetCoalesceWindow(triggerArgsCtx, coalesceWindowMs);
+    }
+
+    if(batchSize > 1){
+        RedisGears_KeysReaderTriggerArgsSetBatch(triggerArgsCtx, batchSize, batchDurationMs);
+    }
+
     (*env)->ReleaseStringUTFChars(env, pattern, patternStr);
 
     return triggerArgsCtx;
@@ -2246,6 +2908,8 @@ void* JVM_CreateRegisterReaderArgs(JNIEnv *env, FlatExecutionPlan* fep, jobject
         return JVM_CreateRegisterStreamReaderArgs(env, fep, reader);
     }else if(strcmp(RedisGears_GetReader(fep), "CommandReader") == 0){
         return JVM_CreateRegisterCommandReaderArgs(env, fep, reader);
+    }else if(strcmp(RedisGears_GetReader(fep), "TimerReader") == 0){
+        return JVM_CreateRegisterTimerReaderArgs(env, fep, reader);
     }
     (*env)->ThrowNew(env, exceptionCls, "Given reader does not exists or does not support register");
     return NULL;
@@ -2626,6 +3290,8 @@ void RG_FreeRegisterReaderArgs(FlatExecutionPlan* fep, void* triggerCtx){
         RedisGears_StreamReaderTriggerArgsFree(triggerCtx);
     }else if(strcmp(RedisGears_GetReader(fep), "CommandReader") == 0){
         RedisGears_CommandReaderTriggerArgsFree(triggerCtx);
+    }else if(strcmp(RedisGears_GetReader(fep), "TimerReader") == 0){
+        RedisGears_TimerReaderTriggerArgsFree(triggerCtx);
     }
 }
 
@@ -3215,6 +3881,8 @@ static jobject JVM_ToJavaRecordMapperInternal(JNIEnv *env, ExecutionCtx* rctx, R
         char* str = RedisGears_StringRecordGet(data, &len);
         obj = (*env)->NewByteArray(env, len);
         (*env)->SetByteArrayRegion(env, obj, 0, len, str);
+    }else if(RedisGears_RecordGetType(data) == RedisGears_GetLongRecordType()){
+        obj = (*env)->CallStaticObjectMethod(env, gearsLongCls, gearsLongValueOfMethodId, (jlong)RedisGears_LongRecordGet(data));
     }else if(RedisGears_RecordGetType(data) == RedisGears_GetKeyRecordType()){
         obj = (*env)->NewObject(env, hashRecordCls, hashRecordCtor);
         size_t keyLen;
@@ -3511,9 +4179,56 @@ error:
     return NULL;
 }
 
+static Record* JVM_FlatMapperIteratorNext(ExecutionCtx* ectx, void* pd){
+    char* err = NULL;
+    Record* res = NULL;
+    JVMFlatExecutionSession* s = RedisGears_GetFlatExecutionPrivateData(ectx);
+    JVM_ExecutionCtx jectx = JVM_ExecutionCtxInit(s->session, ectx);
+    JVM_ThreadLocalData* jvm_tld = JVM_GetThreadLocalData(&jectx);
+
+    JVM_PushFrame(jvm_tld->env);
+
+    jobject iterator = pd;
+    JNIEnv *env = jvm_tld->env;
+
+    jboolean hasNext = (*env)->CallBooleanMethod(env, iterator, iteratorHasNextMethodId);
+    if((err = JVM_GetException(env))){
+        goto error;
+    }
+
+    if(!hasNext){
+        goto done;
+    }
+
+    jobject obj = (*env)->CallObjectMethod(env, iterator, iteratorNextMethodId);
+    if((err = JVM_GetException(env))){
+        goto error;
+    }
+
+    JVMRecord* innerRecord = (JVMRecord*)RedisGears_RecordCreate(JVMRecordType);
+    innerRecord->obj = JVM_TurnToGlobal(env, obj);
+    res = (Record*)innerRecord;
+
+done:
+    JVM_PopFrame(jvm_tld->env);
+    JVM_ThreadLocalDataRestor(jvm_tld, &jectx);
+    return res;
+
+error:
+    RedisGears_SetError(ectx, err);
+    JVM_PopFrame(jvm_tld->env);
+    JVM_ThreadLocalDataRestor(jvm_tld, &jectx);
+    return NULL;
+}
+
+static void JVM_FlatMapperIteratorFree(void* pd){
+    JVM_ThreadLocalData* jvm_tld = JVM_GetThreadLocalData(NULL);
+    JNIEnv *env = jvm_tld->env;
+    (*env)->DeleteGlobalRef(env, (jobject)pd);
+}
+
 static Record* JVM_FlatMapper(ExecutionCtx* ectx, Record *data, void* arg){
     char* err = NULL;
-    Record* listRecord = NULL;
     JVMFlatExecutionSession* s = RedisGears_GetFlatExecutionPrivateData(ectx);
     JVM_ExecutionCtx jectx = JVM_ExecutionCtxInit(s->session, ectx);
     JVM_ThreadLocalData* jvm_tld = JVM_GetThreadLocalData(&jectx);
@@ -3542,42 +4257,24 @@ static Record* JVM_FlatMapper(ExecutionCtx* ectx, Record *data, void* arg){
         goto error;
     }
 
-    listRecord = RedisGears_ListRecordCreate(20);
-    while((*env)->CallBooleanMethod(env, iterator, iteratorHasNextMethodId)){
-
-        if((err = JVM_GetException(env))){
-            goto error;
-        }
-
-        jobject obj = (*env)->CallObjectMethod(env, iterator, iteratorNextMethodId);
-
-        if((err = JVM_GetException(env))){
-            goto error;
-        }
-
-        obj = JVM_TurnToGlobal(env, obj);
-        JVMRecord* innerRecord = (JVMRecord*)RedisGears_RecordCreate(JVMRecordType);
-        innerRecord->obj = obj;
-        RedisGears_ListRecordAdd(listRecord, (Record*)innerRecord);
-    }
-
-    if((err = JVM_GetException(env))){
-        goto error;
-    }
+    /*
+     * Only the iterator is kept, elements are pulled one by one
+     * when the next steps ask for them.
+     */
+    Record* iteratorRecord = RedisGears_IteratorRecordCreate(JVM_FlatMapperIteratorNext,
+                                                             JVM_FlatMapperIteratorFree,
+                                                             JVM_TurnToGlobal(env, iterator));
 
     RedisGears_FreeRecord(data);
 
     JVM_PopFrame(jvm_tld->env);
 
     JVM_ThreadLocalDataRestor(jvm_tld, &jectx);
-    return listRecord;
+    return iteratorRecord;
 
 error:
     RedisGears_SetError(ectx, err);
     RedisGears_FreeRecord(data);
-    if(listRecord){
-        RedisGears_FreeRecord(listRecord);
-    }
     JVM_PopFrame(jvm_tld->env);
     JVM_ThreadLocalDataRestor(jvm_tld, &jectx);
     return NULL;
@@ -3835,7 +4532,10 @@ static int JVMRecord_Serialize(ExecutionCtx* ectx, Gears_BufferWriter* bw, Recor
     JVMExecutionSession* es = RedisGears_GetPrivateData(ectx);
     RedisModule_Assert(es);
     char* err = NULL;
-    int res = JVM_ObjectSerializeInternal(es->executionOutputStream, r->obj, bw, &err, true);
+    // records on the same frame are deserialized one after the other, no need to reset the stream
+    // between them, this way the class descriptors are written only once per frame.
+    bool reset = !RedisGears_ContinueSerializationFrame(ectx);
+    int res = JVM_ObjectSerializeInternal(es->executionOutputStream, r->obj, bw, &err, reset);
     if(err){
         RedisGears_SetError(ectx, err);
     }
@@ -4000,6 +4700,9 @@ static void JVM_OnUnpaused(ExecutionCtx* ectx, void* arg){
 typedef struct JVMReaderCtx{
     jobject reader;
     jobject iterator;
+    jobjectArray batch; // set if the iterator is a BatchingIterator
+    size_t batchLen;
+    size_t batchIndex;
 }JVMReaderCtx;
 
 static Record* JVM_ReaderNext(ExecutionCtx* ectx, void* ctx){
@@ -4013,15 +4716,55 @@ static Record* JVM_ReaderNext(ExecutionCtx* ectx, void* ctx){
     JVM_PushFrame(env);
 
     if(!readerCtx->iterator){
-        readerCtx->iterator = (*env)->CallObjectMethod(env, readerCtx->reader, iteratorMethodId);
+        readerCtx->iterator = (*env)->CallObjectMethod(env, readerCtx->reader, gearsJavaReaderIteratorMethodId);
         if((err = JVM_GetException(env))){
             goto error;
         }
+        if(!readerCtx->iterator){
+            err = RG_STRDUP("Got NULL iterator on reader");
+            goto error;
+        }
         readerCtx->iterator = JVM_TurnToGlobal(env, readerCtx->iterator);
+
+        if((*env)->IsInstanceOf(env, readerCtx->iterator, gearsBatchingIteratorCls)){
+            jint batchSize = (*env)->GetIntField(env, readerCtx->reader, gearsJavaReaderBatchSizeFieldId);
+            if(batchSize <= 0){
+                batchSize = 1;
+            }
+            readerCtx->batch = (*env)->NewObjectArray(env, batchSize, gearsObjectCls, NULL);
+            if((err = JVM_GetException(env))){
+                goto error;
+            }
+            readerCtx->batch = JVM_TurnToGlobal(env, readerCtx->batch);
+        }
     }
 
     jobject obj = NULL;
 
+    if(readerCtx->batch){
+        if(readerCtx->batchIndex == readerCtx->batchLen){
+            // pull the next batch, one call to the JVM for up to batchSize records
+            jint len = (*env)->CallIntMethod(env, readerCtx->iterator, gearsBatchingIteratorNextBatchMethodId, readerCtx->batch);
+            if((err = JVM_GetException(env))){
+                goto error;
+            }
+            if(len <= 0){
+                JVM_ThreadLocalDataRestor(jvm_tld, &jectx);
+                JVM_PopFrame(env);
+                return NULL;
+            }
+            readerCtx->batchLen = len;
+            readerCtx->batchIndex = 0;
+        }
+        obj = (*env)->GetObjectArrayElement(env, readerCtx->batch, readerCtx->batchIndex);
+        // release the buffer slot so the record will not be kept alive by it
+        (*env)->SetObjectArrayElement(env, readerCtx->batch, readerCtx->batchIndex++, NULL);
+        if((err = JVM_GetException(env))){
+            goto error;
+        }
+        goto create_record;
+    }
+
     bool hasNext = (*env)->CallBooleanMethod(env, readerCtx->iterator, iteratorHasNextMethodId);
 
     if((err = JVM_GetException(env))){
@@ -4040,6 +4783,7 @@ static Record* JVM_ReaderNext(ExecutionCtx* ectx, void* ctx){
         goto error;
     }
 
+create_record:
     if(!obj){
         err = RG_STRDUP("Got NULL object on reader");
         goto error;
@@ -4069,8 +4813,20 @@ static void JVM_ReaderFree(void* ctx){
         (*env)->DeleteGlobalRef(env, readerCtx->reader);
     }
     if(readerCtx->iterator){
+        if((*env)->IsInstanceOf(env, readerCtx->iterator, autoCloseableCls)){
+            // stop any background reading that is still running on the iterator
+            (*env)->CallVoidMethod(env, readerCtx->iterator, autoCloseableCloseMethodId);
+            char* err = NULL;
+            if((err = JVM_GetException(env))){
+                RedisModule_Log(NULL, "warning", "Exception throw on closing reader iterator, error='%s'", err);
+                RG_FREE(err);
+            }
+        }
         (*env)->DeleteGlobalRef(env, readerCtx->iterator);
     }
+    if(readerCtx->batch){
+        (*env)->DeleteGlobalRef(env, readerCtx->batch);
+    }
 
     RG_FREE(readerCtx);
 
@@ -4107,6 +4863,9 @@ static int JVM_ReaderDeserialize(ExecutionCtx* ectx, void* ctx, Gears_BufferRead
 static Reader* JVM_CreateReader(void* arg){
     JVMReaderCtx* readerCtx = RG_ALLOC(sizeof(*readerCtx));
     readerCtx->iterator = NULL;
+    readerCtx->batch = NULL;
+    readerCtx->batchLen = 0;
+    readerCtx->batchIndex = 0;
     if(arg){
         readerCtx->reader = arg;
     }
@@ -4305,6 +5064,9 @@ int RedisGears_OnLoad(RedisModuleCtx *ctx) {
     RedisGears_RegisterFlatExecutionPrivateDataType(jvmSessionType);
 
     RGM_KeysReaderRegisterReadRecordCallback(JVM_KeyReaderReadRecord);
+    RGM_KeysReaderRegisterDupRecordCallback(JVM_KeyReaderReadRecord, JVM_KeyReaderDupRecord);
+    RGM_StreamReaderRegisterReadRecordCallback(JVM_StreamReaderReadRecord);
+    RGM_StreamReaderRegisterReadBatchCallback(JVM_StreamReaderReadBatch);
 
     RGM_RegisterFlatExecutionOnRegisteredCallback(JVM_OnRegistered, jvmObjectType);
     RGM_RegisterFlatExecutionOnUnregisteredCallback(JVM_OnUnregistered, jvmObjectType);
@@ -1543,6 +1543,34 @@ static int registerStrKeyTypeToInt(const char* keyType){
     return -1;
 }
 
+/*
+ * Read an optional integer argument which must be at least minVal.
+ * Return false and set a python error if the argument is invalid.
+ */
+static bool registerGetSizeArg(PyObject *kargs, const char* name, size_t minVal, size_t* val){
+    PyObject* pyVal = GearsPyDict_GetItemString(kargs, name);
+    if(!pyVal || pyVal == Py_None){
+        return true;
+    }
+    if(!PyNumber_Check(pyVal)){
+        PyErr_Format(GearsError, "%s argument must be a number", name);
+        return false;
+    }
+    Py_ssize_t res = PyNumber_AsSsize_t(pyVal, NULL);
+    if(PyErr_Occurred()){
+        // not an integer (float for example)
+        PyErr_Clear();
+        PyErr_Format(GearsError, "%s argument must be an integer", name);
+        return false;
+    }
+    if(res < 0 || (size_t)res < minVal){
+        PyErr_Format(GearsError, "%s argument must be at least %zu", name, minVal);
+        return false;
+    }
+    *val = res;
+    return true;
+}
+
 static void* registerCreateKeysArgs(PyObject *kargs, const char* prefix, ExecutionMode mode){
     Arr(char*) eventTypes = NULL;
     Arr(int) keyTypes = NULL;
@@ -1645,13 +1673,48 @@ static void* registerCreateKeysArgs(PyObject *kargs, const char* prefix, Executi
         }
     }
 
+    size_t coalesceWindowMs = 0;
+    if(!registerGetSizeArg(kargs, "coalesceWindowMs", 0, &coalesceWindowMs)){
+        goto error;
+    }
+
+    size_t batch = 1;
+    if(!registerGetSizeArg(kargs, "batch", 1, &batch)){
+        goto error;
+    }
+
+    size_t durationMS = 0;
+    if(!registerGetSizeArg(kargs, "duration", 1, &durationMS)){
+        goto error;
+    }
+
     KeysReaderTriggerArgs* args = RedisGears_KeysReaderTriggerArgsCreate(prefix, eventTypes, keyTypes, readValue);
 
     if(hookCommands){
         RedisGears_KeysReaderTriggerArgsSetHookCommands(args, hookCommands);
     }
 
+    if(coalesceWindowMs){
+        RedisGears_KeysReaderTriggerArgsSetCoalesceWindow(args, coalesceWindowMs);
+    }
+
+    if(batch > 1){
+        RedisGears_KeysReaderTriggerArgsSetBatch(args, batch, durationMS);
+    }
+
     return args;
+
+error:
+    if(eventTypes){
+        array_free_ex(eventTypes, RG_FREE(*(Arr(char*))ptr));
+    }
+    if(keyTypes){
+        array_free(keyTypes);
+    }
+    if(hookCommands){
+        array_free_ex(hookCommands, RG_FREE(*(Arr(char*))ptr));
+    }
+    return NULL;
 }
 
 static OnFailedPolicy getOnFailedPolicy(const char* onFailurePolicyStr){
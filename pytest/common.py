@@ -156,6 +156,9 @@ def restoreDefaultConfig(env):
     env.broadcast('RG.CONFIGSET', 'ExecutionMaxIdleTime', '5000')
     env.broadcast('RG.CONFIGSET', 'PythonInstallReqMaxIdleTime', '30000')
     env.broadcast('RG.CONFIGSET', 'SendMsgRetries', '3')
+    env.broadcast('RG.CONFIGSET', 'ShuffleFrameSize', '100')
+    env.broadcast('RG.CONFIGSET', 'ClusterMsgCompressionThreshold', '0')
+    env.broadcast('RG.CONFIGSET', 'AccumulateByMaxGroupsInMemory', '0')
 
 def gearsTest(skipTest=False,
               skipOnCluster=False,
@@ -285,6 +285,113 @@ def testKeyWithUnparsedValue(env):
     conn.execute_command('sadd', 'x', '1', '2', '3')
     env.expect('RG.PYEXECUTE', "GB().map(lambda x: execute('smembers', x['key'])).flatmap(lambda x:x).sort().run()").contains(['1', '2', '3'])
 
+def getClusterSentStats(env):
+    # sum the sent counters reported by RG.INFOCLUSTER over all the shards
+    stats = {'msgsSent': 0, 'rawBytesSent': 0, 'wireBytesSent': 0}
+    for s in range(1, env.shardsCount + 1):
+        info = env.getConnection(shardId=s).execute_command('RG.INFOCLUSTER')
+        for n in info[4]:
+            n = dict(zip(n[::2], n[1::2]))
+            if n['id'] == info[1]:
+                continue
+            for k in stats:
+                stats[k] += n[k]
+    return stats
+
+@gearsTest()
+def testShuffleFrameSize(env):
+    conn = getConnectionByEnv(env)
+    for i in range(1000):
+        conn.execute_command('set', str(i), str(i % 10))
+
+    res = env.cmd('RG.CONFIGSET', 'ShuffleFrameSize', '0')
+    env.assertTrue('(error)' in str(res[0]))
+    for frameSize in ['1', '7', '100', '10000']:
+        env.broadcast('RG.CONFIGSET', 'ShuffleFrameSize', frameSize)
+        res = env.cmd('RG.PYEXECUTE', "GB().countby(lambda x: x['value']).map(lambda x: (x['key'], x['value'])).run()")
+        env.assertEqual(len(res[1]), 0)
+        env.assertEqual(sorted([eval(r) for r in res[0]]), [(str(i), 100) for i in range(10)])
+        res = env.cmd('RG.PYEXECUTE', "GB().map(lambda x: x['key']).collect().count().run()")
+        env.assertEqual(res[0], ['1000'])
+
+@gearsTest(skipOnSingleShard=True)
+def testShuffleFrameSizeMessages(env):
+    conn = getConnectionByEnv(env)
+    for i in range(1000):
+        conn.execute_command('set', str(i), str(i))
+
+    # records that are collected from the other shards to the shard that runs the execution
+    remoteRecords = 1000 - env.getConnection(shardId=1).execute_command('dbsize')
+    msgsSent = {}
+    for frameSize in ['1', '1000']:
+        env.broadcast('RG.CONFIGSET', 'ShuffleFrameSize', frameSize)
+        before = getClusterSentStats(env)
+        res = env.cmd('RG.PYEXECUTE', "GB().map(lambda x: x['key']).collect().count().run()")
+        env.assertEqual(res[0], ['1000'])
+        msgsSent[frameSize] = getClusterSentStats(env)['msgsSent'] - before['msgsSent']
+
+    # each record in its own message vs all the records of a shard in a single frame
+    env.assertTrue(msgsSent['1'] >= remoteRecords)
+    env.assertTrue(msgsSent['1000'] < remoteRecords / 10)
+
+@gearsTest(skipOnSingleShard=True)
+def testClusterMsgCompression(env):
+    res = env.cmd('RG.CONFIGSET', 'ClusterMsgCompressionThreshold', '-1')
+    env.assertTrue('(error)' in str(res[0]))
+
+    # compression is negotiated on connect, getConnectionByEnv refreshes the cluster
+    env.broadcast('RG.CONFIGSET', 'ClusterMsgCompressionThreshold', '64')
+    conn = getConnectionByEnv(env)
+    for s in range(1, env.shardsCount + 1):
+        info = env.getConnection(shardId=s).execute_command('RG.INFOCLUSTER')
+        for n in info[4]:
+            n = dict(zip(n[::2], n[1::2]))
+            if n['id'] != info[1]:
+                env.assertEqual(n['compression'], 1)
+
+    for i in range(1000):
+        conn.execute_command('set', str(i), 'x' * 100 + str(i % 10))
+
+    sent = {}
+    for threshold in ['0', '64']:
+        env.broadcast('RG.CONFIGSET', 'ClusterMsgCompressionThreshold', threshold)
+        before = getClusterSentStats(env)
+        res = env.cmd('RG.PYEXECUTE', "GB().map(lambda x: x['value']).collect().count().run()")
+        env.assertEqual(res[0], ['1000'])
+        after = getClusterSentStats(env)
+        sent[threshold] = (after['rawBytesSent'] - before['rawBytesSent'], after['wireBytesSent'] - before['wireBytesSent'])
+
+    # disabled, the messages are sent as is
+    env.assertEqual(sent['0'][0], sent['0'][1])
+    # enabled, the repeated values compress well
+    env.assertTrue(sent['64'][1] < sent['64'][0] / 2)
+
+def getAccumulateBySpills(env):
+    return sum([env.getConnection(shardId=s).execute_command('info', 'rg')['rg_naccumulatebyspills'] for s in range(1, env.shardsCount + 1)])
+
+@gearsTest()
+def testAccumulateBySpill(env):
+    conn = getConnectionByEnv(env)
+    for i in range(1000):
+        conn.execute_command('set', str(i), str(i))
+
+    res = env.cmd('RG.CONFIGSET', 'AccumulateByMaxGroupsInMemory', '-1')
+    env.assertTrue('(error)' in str(res[0]))
+
+    spills = {}
+    for maxGroups in ['0', '10']:
+        env.broadcast('RG.CONFIGSET', 'AccumulateByMaxGroupsInMemory', maxGroups)
+        before = getAccumulateBySpills(env)
+        res = env.cmd('RG.PYEXECUTE', "GB().countby(lambda x: x['value']).map(lambda x: (x['key'], x['value'])).run()")
+        env.assertEqual(len(res[1]), 0)
+        env.assertEqual(sorted([eval(r) for r in res[0]]), sorted([(str(i), 1) for i in range(1000)]))
+        spills[maxGroups] = getAccumulateBySpills(env) - before
+
+    env.assertEqual(spills['0'], 0)
+    # each shard splits its groups into 16 partitions, more spills means that partitions
+    # which did not fit in memory when they were loaded back were split again
+    env.assertTrue(spills['10'] > 16 * env.shardsCount)
+
 @gearsTest(envArgs={'moduleArgs': 'MaxExecutions 3'})
 def testMaxExecutions(env):
     ## todo: currently there is a problem with MaxExecutions which might cause running executions to be drop and the redis server
@@ -800,6 +907,7 @@ def testInfo(env):
     env.assertTrue(res.has_key('rg_CurrAllocated'))
     env.assertTrue(res.has_key('rg_nexecutions'))
     env.assertTrue(res.has_key('rg_nregistrations'))
+    env.assertTrue(res.has_key('rg_naccumulatebyspills'))
 
 @gearsTest()
 def testSlowlogReportOnRun(env):
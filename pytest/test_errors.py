@@ -327,6 +327,24 @@ class testStepsWrongArgs:
     def testKeysReadeReadValueBadValue(self):
         self.env.expect('rg.pyexecute', 'GearsBuilder().register(readValue=1)').error()
 
+    def testKeysReaderBatchBadValue(self):
+        self.env.expect('rg.pyexecute', 'GearsBuilder().register(mode="async_local", batch="test", duration=100)').error().contains('batch argument must be a number')
+        self.env.expect('rg.pyexecute', 'GearsBuilder().register(mode="async_local", batch=-1, duration=100)').error().contains('batch argument must be at least 1')
+        self.env.expect('rg.pyexecute', 'GearsBuilder().register(mode="async_local", batch=0, duration=100)').error().contains('batch argument must be at least 1')
+        self.env.expect('rg.pyexecute', 'GearsBuilder().register(mode="async_local", batch=2.5, duration=100)').error().contains('batch argument must be an integer')
+        self.env.expect('rg.pyexecute', 'GearsBuilder().register(mode="async_local", batch=10000000, duration=100)').error().contains('Batch size is too big')
+
+    def testKeysReaderBatchDurationBadValue(self):
+        self.env.expect('rg.pyexecute', 'GearsBuilder().register(mode="async_local", batch=10, duration="test")').error().contains('duration argument must be a number')
+        self.env.expect('rg.pyexecute', 'GearsBuilder().register(mode="async_local", batch=10, duration=-1)').error().contains('duration argument must be at least 1')
+        self.env.expect('rg.pyexecute', 'GearsBuilder().register(mode="async_local", batch=10, duration=0)').error().contains('duration argument must be at least 1')
+        self.env.expect('rg.pyexecute', 'GearsBuilder().register(mode="async_local", batch=10, duration=100000000000)').error().contains('Batch duration is too long')
+
+    def testKeysReaderCoalesceWindowBadValue(self):
+        self.env.expect('rg.pyexecute', 'GearsBuilder().register(mode="async", coalesceWindowMs="test")').error().contains('coalesceWindowMs argument must be a number')
+        self.env.expect('rg.pyexecute', 'GearsBuilder().register(mode="async", coalesceWindowMs=-1)').error().contains('coalesceWindowMs argument must be at least 0')
+        self.env.expect('rg.pyexecute', 'GearsBuilder().register(mode="async", coalesceWindowMs=1.5)').error().contains('coalesceWindowMs argument must be an integer')
+
     def testKeysOnlyReadeBadCount(self):
         res = self.env.cmd('rg.pyexecute', 'GearsBuilder("KeysOnlyReader").run(count="noNunber")')
         self.env.assertContains('value is not an integer', res[1][0])
@@ -1071,6 +1071,20 @@ GB("CommandReader").map(doHset).register(hook="hset", mode="sync")
     res = conn.execute_command('hget', 'h3', '__time2')
     env.assertNotEqual(res, None)
 
+@gearsTest(skipOnCluster=True)
+def testCommandHookByKeyPrefixWithoutKeys(env):
+    conn = getConnectionByEnv(env)
+    env.expect('rg.pyexecute', "GB('CommandReader').map(lambda x: call_next(*x[1:])).register(hook='blpop', mode='sync', keyprefix='l')").ok()
+    env.expect('rg.pyexecute', "GB('CommandReader').map(lambda x: call_next(*x[1:])).register(hook='hset', mode='sync', keyprefix='h')").ok()
+
+    # not enough arguments to find any key, the hook is skipped and redis reports the arity error
+    env.expect('blpop').error().contains('wrong number of arguments')
+    env.expect('blpop', '0').error().contains('wrong number of arguments')
+    env.expect('hset').error().contains('wrong number of arguments')
+
+    conn.execute_command('rpush', 'l1', 'foo')
+    env.expect('blpop', 'l1', '0').equal(['l1', 'foo'])
+
 @gearsTest()
 def testCommandOverrideHsetByKeyPrefix(env):
     conn = getConnectionByEnv(env)
@@ -1751,3 +1765,23 @@ GB('StreamReader').foreach(test).register(mode='sync')
             if 'avgEstimatedLagMS' in d.keys():
                 env.assertEqual(d['avgEstimatedLagMS'], '-nan')
             
+
+@gearsTest(skipOnCluster=True)
+def testKeysReaderBatchEvents(env):
+    env.expect('rg.pyexecute', "GB().foreach(lambda x: execute('incr', 'batched_records'))."
+                               "register(prefix='b:*', mode='async_local', batch=10, duration=200)").ok()
+
+    for i in range(25):
+        env.cmd('set', 'b:%d' % i, '1')
+
+    try:
+        with TimeLimit(5):
+            while env.cmd('get', 'batched_records') != '25':
+                time.sleep(0.1)
+    except Exception as e:
+        env.assertTrue(False, message='Failed waiting for batched executions')
+
+    res = env.cmd('RG.DUMPREGISTRATIONS')
+    env.assertEqual(res[0][7][3], 3) # numTriggered, 2 full batches and one on timeout
+    env.assertEqual(res[0][7][19][11], 10) # batchSize
+    env.assertEqual(res[0][7][19][13], 200) # batchDurationMS
@@ -5,8 +5,10 @@
 #include "config.h"
 #include "utils/dict.h"
 #include "utils/adlist.h"
+#include "utils/lz_block.h"
 
 #include <stdlib.h>
+#include <strings.h>
 #include <assert.h>
 #include <event2/event.h>
 #include <async.h>
@@ -18,6 +20,11 @@
 
 #define RUN_ID_SIZE 40
 
+#define HELLO_COMPRESSION_CAPABILITY "COMPRESSION"
+
+#define INNER_MSG_ARGC 6
+#define INNER_COMPRESSED_MSG_ARGC 7 // the last argument is the decompressed size
+
 // forward declaration
 static void RG_HelloResponseArrived(struct redisAsyncContext* c, void* a, void* b);
 
@@ -42,6 +49,13 @@ typedef struct Node{
     struct event *reconnectEvent;
     struct event *resendHelloMessage;
     bool sendClusterTopologyOnNextConnect;
+    bool supportsCompression;
+    size_t rawBytesSent;
+    size_t wireBytesSent;
+    size_t rawBytesReceived;
+    size_t wireBytesReceived;
+    size_t msgsSent;
+    size_t msgsReceived;
 }Node;
 
 Gears_dict* nodesMsgIds;
@@ -134,8 +148,9 @@ static void FreeNode(Node* n){
 }
 
 typedef struct SentMessages{
-    size_t sizes[6];
-    char* args[6];
+    size_t sizes[INNER_COMPRESSED_MSG_ARGC];
+    char* args[INNER_COMPRESSED_MSG_ARGC];
+    size_t argc;
     size_t retries;
 }SentMessages;
 
@@ -144,9 +159,37 @@ static void SentMessages_Free(void* ptr){
     RG_FREE(msg->args[3]);
     RG_FREE(msg->args[4]);
     RG_FREE(msg->args[5]);
+    if(msg->argc == INNER_COMPRESSED_MSG_ARGC){
+        RG_FREE(msg->args[6]);
+    }
     RG_FREE(msg);
 }
 
+/*
+ * Turn a compressed message back to a regular one, used when the message
+ * needs to be resent to a shard that no longer supports compression.
+ */
+static void SentMessages_Decompress(SentMessages* msg){
+    size_t rawLen = strtoull(msg->args[6], NULL, 10);
+    char* raw = RG_ALLOC(sizeof(char) * rawLen);
+    int res = Gears_LZBlockDecompress(msg->args[4], msg->sizes[4], raw, rawLen);
+    RedisModule_Assert(res);
+    RG_FREE(msg->args[4]);
+    RG_FREE(msg->args[6]);
+    msg->args[4] = raw;
+    msg->sizes[4] = rawLen;
+    msg->argc = INNER_MSG_ARGC;
+}
+
+static void Cluster_SendHello(redisAsyncContext* c, Node* n){
+    if(GearsConfig_ClusterMsgCompressionThreshold() > 0){
+        // advertise compression support, shards that are not aware of it ignore the extra argument
+        redisAsyncCommand(c, RG_HelloResponseArrived, n, "RG.HELLO %s", HELLO_COMPRESSION_CAPABILITY);
+    }else{
+        redisAsyncCommand(c, RG_HelloResponseArrived, n, "RG.HELLO");
+    }
+}
+
 static void Cluster_ConnectCallback(const struct redisAsyncContext* c, int status);
 static void Cluster_DisconnectCallback(const struct redisAsyncContext* c, int status);
 
@@ -184,7 +227,7 @@ static void Cluster_ResendHelloMessage(evutil_socket_t s, short what, void *arg)
     }
 
     RedisModule_Log(staticCtx, "notice", "Resending hello request to %s (%s:%d)", n->id, n->ip, n->port);
-    redisAsyncCommand(n->c, RG_HelloResponseArrived, n, "RG.HELLO");
+    Cluster_SendHello(n->c, n);
 }
 
 static void Cluster_Reconnect(evutil_socket_t s, short what, void *arg){
@@ -210,6 +253,13 @@ static Node* CreateNode(const char* id, const char* ip, unsigned short port, con
             .status = NodeStatus_Disconnected,
             .sendClusterTopologyOnNextConnect = false,
             .runId = NULL,
+            .supportsCompression = false,
+            .rawBytesSent = 0,
+            .wireBytesSent = 0,
+            .rawBytesReceived = 0,
+            .wireBytesReceived = 0,
+            .msgsSent = 0,
+            .msgsReceived = 0,
     };
     n->reconnectEvent = event_new(main_base, -1, 0, Cluster_Reconnect, n);
     n->resendHelloMessage = event_new(main_base, -1, 0, Cluster_ResendHelloMessage, n);
@@ -287,8 +337,20 @@ static void RG_HelloResponseArrived(struct redisAsyncContext* c, void* a, void*
         return;
     }
 
-    if(reply->type != REDIS_REPLY_STRING){
-        // we did not got a string reply
+    const char* runId = NULL;
+    bool supportsCompression = false;
+    if(reply->type == REDIS_REPLY_STRING){
+        runId = reply->str;
+    }else if(reply->type == REDIS_REPLY_ARRAY && reply->elements == 2 &&
+            reply->element[0]->type == REDIS_REPLY_STRING &&
+            reply->element[1]->type == REDIS_REPLY_STRING){
+        // the shard replied with its run id followed by the capability it agreed on
+        runId = reply->element[0]->str;
+        supportsCompression = strcasecmp(reply->element[1]->str, HELLO_COMPRESSION_CAPABILITY) == 0;
+    }
+
+    if(!runId){
+        // we did not got a valid reply
         // the shard is probably not yet up.
         // we will try again in one second.
         if(reply->type == REDIS_REPLY_ERROR && strncmp(reply->str, CLUSTER_ERROR, strlen(CLUSTER_ERROR)) == 0){
@@ -306,8 +368,10 @@ static void RG_HelloResponseArrived(struct redisAsyncContext* c, void* a, void*
 
     bool resendPendingMessages = true;;
 
+    n->supportsCompression = supportsCompression;
+
     if(n->runId){
-        if(strcmp(n->runId, reply->str) != 0){
+        if(strcmp(n->runId, runId) != 0){
             /* here we know that the shard has crashed
              * There is no need to send pending messages
              */
@@ -326,7 +390,10 @@ static void RG_HelloResponseArrived(struct redisAsyncContext* c, void* a, void*
             SentMessages* sentMsg = Gears_listNodeValue(node);
             ++sentMsg->retries;
             if(GearsConfig_SendMsgRetries() == 0 || sentMsg->retries < GearsConfig_SendMsgRetries()){
-                redisAsyncCommandArgv(c, OnResponseArrived, n, 6, (const char**)sentMsg->args, sentMsg->sizes);
+                if(sentMsg->argc == INNER_COMPRESSED_MSG_ARGC && !n->supportsCompression){
+                    SentMessages_Decompress(sentMsg);
+                }
+                redisAsyncCommandArgv(c, OnResponseArrived, n, sentMsg->argc, (const char**)sentMsg->args, sentMsg->sizes);
             }else{
                 RedisModule_Log(staticCtx, "warning", "Gave up of message because failed to send it for more than %lld time", GearsConfig_SendMsgRetries());
                 Gears_listDelNode(n->pendingMessages, node);
@@ -334,7 +401,7 @@ static void RG_HelloResponseArrived(struct redisAsyncContext* c, void* a, void*
         }
         Gears_listReleaseIterator(iter);
     }
-    n->runId = RG_STRDUP(reply->str);
+    n->runId = RG_STRDUP(runId);
     n->status = NodeStatus_Connected;
 }
 
@@ -377,7 +444,7 @@ static void Cluster_ConnectCallback(const struct redisAsyncContext* c, int statu
             CurrCluster->clusterSetCommand[CLUSTER_SET_MY_ID_INDEX] = NULL;
             n->sendClusterTopologyOnNextConnect = false;
         }
-        redisAsyncCommand((redisAsyncContext*)c, RG_HelloResponseArrived, n, "RG.HELLO");
+        Cluster_SendHello((redisAsyncContext*)c, n);
         n->status = NodeStatus_HelloSent;
     }
 }
@@ -594,6 +661,7 @@ static void Cluster_FreeMsg(Msg* msg){
 
 static void Cluster_SendMsgToNode(Node* node, SendMsg* msg){
     SentMessages* sentMsg = RG_ALLOC(sizeof(SentMessages));
+    sentMsg->argc = INNER_MSG_ARGC;
     sentMsg->retries = 0;
     sentMsg->args[0] = RG_INNER_MSG_COMMAND;
     sentMsg->sizes[0] = strlen(sentMsg->args[0]);
@@ -603,9 +671,39 @@ static void Cluster_SendMsgToNode(Node* node, SendMsg* msg){
     sentMsg->sizes[2] = strlen(CurrCluster->runId);
     sentMsg->args[3] = RG_STRDUP(msg->function);
     sentMsg->sizes[3] = strlen(sentMsg->args[3]);
-    sentMsg->args[4] = RG_ALLOC(sizeof(char) * msg->msgLen);
-    memcpy(sentMsg->args[4], msg->msg, msg->msgLen);
-    sentMsg->sizes[4] = msg->msgLen;
+    sentMsg->args[4] = NULL;
+
+    long long compressionThreshold = GearsConfig_ClusterMsgCompressionThreshold();
+    if(node->supportsCompression && compressionThreshold > 0 && msg->msgLen >= (size_t)compressionThreshold){
+        // only keep the compressed payload if it is actually smaller
+        char* compressed = RG_ALLOC(sizeof(char) * (msg->msgLen - 1));
+        size_t compressedLen = Gears_LZBlockCompress(msg->msg, msg->msgLen, compressed, msg->msgLen - 1);
+        if(compressedLen > 0){
+            sentMsg->args[4] = RG_REALLOC(compressed, sizeof(char) * compressedLen);
+            sentMsg->sizes[4] = compressedLen;
+
+            RedisModuleString *rawLenStr = RedisModule_CreateStringFromLongLong(NULL, msg->msgLen);
+            size_t rawLenStrLen;
+            const char* rawLenCStr = RedisModule_StringPtrLen(rawLenStr, &rawLenStrLen);
+            sentMsg->args[6] = RG_STRDUP(rawLenCStr);
+            sentMsg->sizes[6] = rawLenStrLen;
+            RedisModule_FreeString(NULL, rawLenStr);
+
+            sentMsg->argc = INNER_COMPRESSED_MSG_ARGC;
+        }else{
+            RG_FREE(compressed);
+        }
+    }
+
+    if(!sentMsg->args[4]){
+        sentMsg->args[4] = RG_ALLOC(sizeof(char) * msg->msgLen);
+        memcpy(sentMsg->args[4], msg->msg, msg->msgLen);
+        sentMsg->sizes[4] = msg->msgLen;
+    }
+
+    node->rawBytesSent += msg->msgLen;
+    node->wireBytesSent += sentMsg->sizes[4];
+    ++node->msgsSent;
 
     RedisModuleString *msgIdStr = RedisModule_CreateStringFromLongLong(NULL, node->msgId++);
     size_t msgIdStrLen;
@@ -617,7 +715,7 @@ static void Cluster_SendMsgToNode(Node* node, SendMsg* msg){
     RedisModule_FreeString(NULL, msgIdStr);
 
     if(node->status == NodeStatus_Connected){
-        redisAsyncCommandArgv(node->c, OnResponseArrived, node, 6, (const char**)sentMsg->args, sentMsg->sizes);
+        redisAsyncCommandArgv(node->c, OnResponseArrived, node, sentMsg->argc, (const char**)sentMsg->args, sentMsg->sizes);
     }else{
         RedisModule_Log(staticCtx, "warning", "message was not sent because status is not connected");
     }
@@ -838,6 +936,13 @@ int Cluster_RedisGearsHello(RedisModuleCtx *ctx, RedisModuleString **argv, int a
         RedisModule_Log(staticCtx, "warning", "Got hello msg while cluster is NULL");
         return RedisModule_ReplyWithError(ctx, "ERRCLUSTER NULL cluster state on hello msg");
     }
+    if(argc > 1 && strcasecmp(RedisModule_StringPtrLen(argv[1], NULL), HELLO_COMPRESSION_CAPABILITY) == 0){
+        // the sender is able to send compressed messages, let it know we can read them
+        RedisModule_ReplyWithArray(ctx, 2);
+        RedisModule_ReplyWithStringBuffer(ctx, CurrCluster->runId, strlen(CurrCluster->runId));
+        RedisModule_ReplyWithStringBuffer(ctx, HELLO_COMPRESSION_CAPABILITY, strlen(HELLO_COMPRESSION_CAPABILITY));
+        return REDISMODULE_OK;
+    }
     RedisModule_ReplyWithStringBuffer(ctx, CurrCluster->runId, strlen(CurrCluster->runId));
     return REDISMODULE_OK;
 }
@@ -858,7 +963,7 @@ int Cluster_GetClusterInfo(RedisModuleCtx *ctx, RedisModuleString **argv, int ar
     Gears_dictEntry *entry = NULL;
     while((entry = Gears_dictNext(iter))){
         Node* n = Gears_dictGetVal(entry);
-        RedisModule_ReplyWithArray(ctx, 16);
+        RedisModule_ReplyWithArray(ctx, 30);
         RedisModule_ReplyWithStringBuffer(ctx, "id", strlen("id"));
         RedisModule_ReplyWithStringBuffer(ctx, n->id, strlen(n->id));
         RedisModule_ReplyWithStringBuffer(ctx, "ip", strlen("ip"));
@@ -888,6 +993,20 @@ int Cluster_GetClusterInfo(RedisModuleCtx *ctx, RedisModuleString **argv, int ar
         RedisModule_ReplyWithLongLong(ctx, n->maxSlot);
         RedisModule_ReplyWithStringBuffer(ctx, "pendingMessages", strlen("pendingMessages"));
         RedisModule_ReplyWithLongLong(ctx, Gears_listLength(n->pendingMessages));
+        RedisModule_ReplyWithStringBuffer(ctx, "compression", strlen("compression"));
+        RedisModule_ReplyWithLongLong(ctx, n->supportsCompression);
+        RedisModule_ReplyWithStringBuffer(ctx, "rawBytesSent", strlen("rawBytesSent"));
+        RedisModule_ReplyWithLongLong(ctx, n->rawBytesSent);
+        RedisModule_ReplyWithStringBuffer(ctx, "wireBytesSent", strlen("wireBytesSent"));
+        RedisModule_ReplyWithLongLong(ctx, n->wireBytesSent);
+        RedisModule_ReplyWithStringBuffer(ctx, "rawBytesReceived", strlen("rawBytesReceived"));
+        RedisModule_ReplyWithLongLong(ctx, n->rawBytesReceived);
+        RedisModule_ReplyWithStringBuffer(ctx, "wireBytesReceived", strlen("wireBytesReceived"));
+        RedisModule_ReplyWithLongLong(ctx, n->wireBytesReceived);
+        RedisModule_ReplyWithStringBuffer(ctx, "msgsSent", strlen("msgsSent"));
+        RedisModule_ReplyWithLongLong(ctx, n->msgsSent);
+        RedisModule_ReplyWithStringBuffer(ctx, "msgsReceived", strlen("msgsReceived"));
+        RedisModule_ReplyWithLongLong(ctx, n->msgsReceived);
 
     }
     Gears_dictReleaseIterator(iter);
@@ -895,7 +1014,7 @@ int Cluster_GetClusterInfo(RedisModuleCtx *ctx, RedisModuleString **argv, int ar
 }
 
 int Cluster_OnMsgArrive(RedisModuleCtx *ctx, RedisModuleString **argv, int argc){
-    if(argc != 6){
+    if(argc != INNER_MSG_ARGC && argc != INNER_COMPRESSED_MSG_ARGC){
         return RedisModule_WrongArity(ctx);
     }
 
@@ -922,6 +1041,28 @@ int Cluster_OnMsgArrive(RedisModuleCtx *ctx, RedisModuleString **argv, int argc)
         return REDISMODULE_OK;
     }
 
+    size_t msgLen;
+    const char* msgStr = RedisModule_StringPtrLen(msg, &msgLen);
+    size_t wireMsgLen = msgLen;
+    char* decompressedMsg = NULL;
+    if(argc == INNER_COMPRESSED_MSG_ARGC){
+        long long rawLen;
+        if(RedisModule_StringToLongLong(argv[6], &rawLen) != REDISMODULE_OK || rawLen <= 0){
+            RedisModule_Log(staticCtx, "warning", "bad decompressed msg size given");
+            RedisModule_ReplyWithError(ctx, "bad decompressed msg size given");
+            return REDISMODULE_OK;
+        }
+        decompressedMsg = RG_ALLOC(sizeof(char) * rawLen);
+        if(!Gears_LZBlockDecompress(msgStr, msgLen, decompressedMsg, rawLen)){
+            RG_FREE(decompressedMsg);
+            RedisModule_Log(staticCtx, "warning", "failed decompressing msg");
+            RedisModule_ReplyWithError(ctx, "failed decompressing msg");
+            return REDISMODULE_OK;
+        }
+        msgStr = decompressedMsg;
+        msgLen = rawLen;
+    }
+
     size_t senderIdLen;
     const char* senderIdStr = RedisModule_StringPtrLen(senderId, &senderIdLen);
     size_t senderRunIdLen;
@@ -942,21 +1083,35 @@ int Cluster_OnMsgArrive(RedisModuleCtx *ctx, RedisModuleString **argv, int argc)
     if(msgId <= currId){
         RedisModule_Log(staticCtx, "warning", "duplicate message ignored, msgId: %lld, currId: %lld", msgId, currId);
         RedisModule_ReplyWithSimpleString(ctx, "duplicate message ignored");
+        if(decompressedMsg){
+            RG_FREE(decompressedMsg);
+        }
         return REDISMODULE_OK;
     }
     Gears_dictSetSignedIntegerVal(entity, msgId);
     const char* functionToCallStr = RedisModule_StringPtrLen(functionToCall, NULL);
-    size_t msgLen;
-    const char* msgStr = RedisModule_StringPtrLen(msg, &msgLen);
+
+    Node* sender = GetNode(senderIdStr);
+    if(sender){
+        sender->rawBytesReceived += msgLen;
+        sender->wireBytesReceived += wireMsgLen;
+        ++sender->msgsReceived;
+    }
 
     Gears_dictEntry *entry = Gears_dictFind(RemoteCallbacks, functionToCallStr);
     if(!entry){
         RedisModule_Log(staticCtx, "warning", "can not find the callback requested : %s", functionToCallStr);
         RedisModule_ReplyWithError(ctx, "can not find the callback requested");
+        if(decompressedMsg){
+            RG_FREE(decompressedMsg);
+        }
         return REDISMODULE_OK;
     }
     RedisModuleClusterMessageReceiver receiver = Gears_dictGetVal(entry);
     receiver(ctx, senderIdStr, 0, msgStr, msgLen);
+    if(decompressedMsg){
+        RG_FREE(decompressedMsg);
+    }
 
     RedisModule_ReplyWithSimpleString(ctx, "OK");
     return REDISMODULE_OK;
@@ -6,6 +6,7 @@
 #include "utils/adlist.h"
 
 #include <errno.h>
+#include <time.h>
 
 static RedisModuleCommandFilter *cmdFilter = NULL;
 static Gears_dict* HookRegistrations = NULL;
@@ -32,8 +33,113 @@ typedef struct CommandHookCtx{
     void* pd;
     CommandInfo info;
     Gears_listNode* listNode;
+    size_t numCalls;
+    long long totalCallsDuration;
 }CommandHookCtx;
 
+/*
+ * All the hooks registered on a single command.
+ * Hooks with a key prefix are also indexed so we can quickly tell
+ * if any of the command keys matches any of the hooks.
+ */
+typedef struct CommandHooks{
+    Gears_list* hooks; // all the hooks in the order they should be checked
+    CommandKeysIndex index;
+}CommandHooks;
+
+void CommandKeysIndex_Init(CommandKeysIndex* index, int firstKey, int lastKey, int jump){
+    *index = (CommandKeysIndex){
+        .prefixes = Gears_TrieCreate(),
+        .numMatchAll = 0,
+        .firstKey = firstKey,
+        .lastKey = lastKey,
+        .jump = jump,
+    };
+}
+
+void CommandKeysIndex_Clear(CommandKeysIndex* index){
+    Gears_TrieFree(index->prefixes);
+    index->prefixes = NULL;
+}
+
+void CommandKeysIndex_Add(CommandKeysIndex* index, const char* keyPrefix, size_t len, bool isPrefix, void* val){
+    if(!keyPrefix){
+        ++index->numMatchAll;
+        return;
+    }
+    Gears_TrieAdd(index->prefixes, keyPrefix, len, isPrefix, val);
+}
+
+void CommandKeysIndex_Delete(CommandKeysIndex* index, const char* keyPrefix, size_t len, bool isPrefix, void* val){
+    if(!keyPrefix){
+        --index->numMatchAll;
+        return;
+    }
+    int res = Gears_TrieDelete(index->prefixes, keyPrefix, len, isPrefix, val);
+    RedisModule_Assert(res);
+}
+
+bool CommandKeysIndex_Match(CommandKeysIndex* index, RedisModuleCommandFilterCtx *filter){
+    if(index->numMatchAll > 0){
+        return true;
+    }
+
+    if(Gears_TrieSize(index->prefixes) == 0){
+        return false;
+    }
+
+    size_t nArgs = RedisModule_CommandFilterArgsCount(filter);
+    int first = index->firstKey;
+    int last = index->lastKey;
+    int jump = index->jump;
+
+    if(last < 0){
+        last = nArgs + last;
+    }
+    if(last >= (int)nArgs){
+        last = nArgs - 1;
+    }
+
+    if(first > last){
+        // Could not find any key, must be a command arity error, we will let Redis handle it.
+        return false;
+    }
+
+    for(int i = first ; i <= last ; i+=jump){
+        size_t keyLen;
+        const RedisModuleString* key = RedisModule_CommandFilterArgGet(filter, i);
+        const char* keyCStr = RedisModule_StringPtrLen(key, &keyLen);
+        if(Gears_TrieHasMatch(index->prefixes, keyCStr, keyLen)){
+            return true;
+        }
+    }
+
+    return false;
+}
+
+static bool CommandHook_IsMatchAll(CommandHookCtx* hook){
+    return !hook->keyPrefix || hook->keyPrefix[0] == '*';
+}
+
+static void CommandHook_IndexAdd(CommandHooks* hooks, CommandHookCtx* hook){
+    if(CommandHook_IsMatchAll(hook)){
+        CommandKeysIndex_Add(&hooks->index, NULL, 0, false, hook);
+        return;
+    }
+    // prefix which ends with '*' matches any key starting with it, otherwise only the exact key.
+    bool isPrefix = hook->keyPrefix[hook->prefixLen - 1] == '*';
+    CommandKeysIndex_Add(&hooks->index, hook->keyPrefix, isPrefix ? hook->prefixLen - 1 : hook->prefixLen, isPrefix, hook);
+}
+
+static void CommandHook_IndexDelete(CommandHooks* hooks, CommandHookCtx* hook){
+    if(CommandHook_IsMatchAll(hook)){
+        CommandKeysIndex_Delete(&hooks->index, NULL, 0, false, hook);
+        return;
+    }
+    bool isPrefix = hook->keyPrefix[hook->prefixLen - 1] == '*';
+    CommandKeysIndex_Delete(&hooks->index, hook->keyPrefix, isPrefix ? hook->prefixLen - 1 : hook->prefixLen, isPrefix, hook);
+}
+
 static CommandInfo CommandHook_CreateInfo(const char* cmd, char** err){
     CommandInfo info;
 
@@ -118,11 +224,17 @@ static void CommandHook_Filter(RedisModuleCommandFilterCtx *filter){
 
     const RedisModuleString* cmd = RedisModule_CommandFilterArgGet(filter, 0);
     const char* cmdCStr = RedisModule_StringPtrLen(cmd, NULL);
-    Gears_list* l = Gears_dictFetchValue(HookRegistrations, cmdCStr);
-    if(!l){
+    CommandHooks* hooks = Gears_dictFetchValue(HookRegistrations, cmdCStr);
+    if(!hooks){
         return;
     }
-    Gears_listNode* node = Gears_listFirst(l);
+
+    if(!CommandKeysIndex_Match(&hooks->index, filter)){
+        // none of the hooks matches this invocation
+        return;
+    }
+
+    Gears_listNode* node = Gears_listFirst(hooks->hooks);
 
     currHook = NULL;
 
@@ -189,12 +301,15 @@ static void CommandHook_Filter(RedisModuleCommandFilterCtx *filter){
 }
 
 void* CommandHook_Unhook(CommandHookCtx* hook){
-    Gears_list* l = Gears_dictFetchValue(HookRegistrations, hook->cmd);
-    Gears_listDelNode(l, hook->listNode);
+    CommandHooks* hooks = Gears_dictFetchValue(HookRegistrations, hook->cmd);
+    Gears_listDelNode(hooks->hooks, hook->listNode);
+    CommandHook_IndexDelete(hooks, hook);
 
-    if(Gears_listLength(l) == 0){
+    if(Gears_listLength(hooks->hooks) == 0){
         Gears_dictDelete(HookRegistrations, hook->cmd);
-        Gears_listRelease(l);
+        Gears_listRelease(hooks->hooks);
+        CommandKeysIndex_Clear(&hooks->index);
+        RG_FREE(hooks);
     }
 
     if(Gears_dictSize(HookRegistrations) == 0){
@@ -281,19 +396,38 @@ CommandHookCtx* CommandHook_Hook(const char* cmd, const char* keyPrefix, HookCal
         .callback = callback,
         .pd = pd,
         .info = info,
+        .numCalls = 0,
+        .totalCallsDuration = 0,
     };
     hook->prefixLen = keyPrefix? strlen(keyPrefix) : 0;
 
-    Gears_list* l = Gears_dictFetchValue(HookRegistrations, cmd);
-    if(!l){
-        l = Gears_listCreate();
-        Gears_dictAdd(HookRegistrations, hook->cmd, l);
+    CommandHooks* hooks = Gears_dictFetchValue(HookRegistrations, cmd);
+    if(!hooks){
+        hooks = RG_ALLOC(sizeof(*hooks));
+        *hooks = (CommandHooks){
+            .hooks = Gears_listCreate(),
+        };
+        CommandKeysIndex_Init(&hooks->index, info.firstKey, info.lastKey, info.jump);
+        Gears_dictAdd(HookRegistrations, hook->cmd, hooks);
     }
-    Gears_listAddNodeTail(l, hook);
-    hook->listNode = Gears_listLast(l);
+    Gears_listAddNodeTail(hooks->hooks, hook);
+    hook->listNode = Gears_listLast(hooks->hooks);
+    CommandHook_IndexAdd(hooks, hook);
     return hook;
 }
 
+const char* CommandHook_GetCommand(CommandHookCtx* hook){
+    return hook->cmd;
+}
+
+size_t CommandHook_GetNumCalls(CommandHookCtx* hook){
+    return hook->numCalls;
+}
+
+long long CommandHook_GetTotalCallsDuration(CommandHookCtx* hook){
+    return hook->totalCallsDuration;
+}
+
 #define GEARS_HOOK_COMMAND "RG.INNERHOOK"
 
 void CommandHook_DeclareKeys(RedisModuleCtx *ctx, RedisModuleString **argv, int argc) {
@@ -378,8 +512,15 @@ int CommandHook_HookCommand(RedisModuleCtx *ctx, RedisModuleString **argv, int a
         }
     }
 
+    struct timespec start, end;
+    clock_gettime(CLOCK_REALTIME, &start);
+
     int ret = hook->callback(ctx, argv + 1, argc - 1, hook->pd);
 
+    clock_gettime(CLOCK_REALTIME, &end);
+    ++hook->numCalls;
+    hook->totalCallsDuration += (long long)1000000000 * (end.tv_sec - start.tv_sec) + (end.tv_nsec - start.tv_nsec);
+
     noFilter = false;
     return ret;
 }
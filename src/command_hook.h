@@ -2,9 +2,42 @@
 #define SRC_COMMAND_HOOK_H_
 
 #include "redismodule.h"
+#include "utils/trie.h"
+
+#include <stdbool.h>
 
 typedef struct CommandHookCtx CommandHookCtx;
 
+/*
+ * Index over the key prefixes registered on a single command, used by the command
+ * filters to quickly skip invocations that none of the registrations matches.
+ */
+typedef struct CommandKeysIndex{
+    Gears_Trie* prefixes; // entries with key prefix, indexed by the prefix
+    size_t numMatchAll; // number of entries that match any invocation of the command
+    int firstKey;
+    int lastKey;
+    int jump;
+}CommandKeysIndex;
+
+void CommandKeysIndex_Init(CommandKeysIndex* index, int firstKey, int lastKey, int jump);
+void CommandKeysIndex_Clear(CommandKeysIndex* index);
+
+/*
+ * Add an entry to the index, an entry with NULL key prefix matches any invocation.
+ * If isPrefix is true the entry matches any key starting with the given prefix,
+ * otherwise only the exact key.
+ */
+void CommandKeysIndex_Add(CommandKeysIndex* index, const char* keyPrefix, size_t len, bool isPrefix, void* val);
+void CommandKeysIndex_Delete(CommandKeysIndex* index, const char* keyPrefix, size_t len, bool isPrefix, void* val);
+
+/*
+ * Return true if any of the entries might match the given invocation.
+ */
+bool CommandKeysIndex_Match(CommandKeysIndex* index, RedisModuleCommandFilterCtx *filter);
+
+#define CommandKeysIndex_Size(i) ((i)->numMatchAll + Gears_TrieSize((i)->prefixes))
+
 typedef int (*HookCallback)(RedisModuleCtx* ctx, RedisModuleString** argv, size_t argc, void* pd);
 
 /*
@@ -17,6 +50,18 @@ void* CommandHook_Unhook(CommandHookCtx* hook);
  */
 CommandHookCtx* CommandHook_Hook(const char* cmd, const char* keyPrefix, HookCallback callback, void* pd, char** err);
 
+/*
+ * Return the command the hook is registered on.
+ */
+const char* CommandHook_GetCommand(CommandHookCtx* hook);
+
+/*
+ * Return the number of times the hook was called and the total
+ * duration (in nano seconds) of those calls.
+ */
+size_t CommandHook_GetNumCalls(CommandHookCtx* hook);
+long long CommandHook_GetTotalCallsDuration(CommandHookCtx* hook);
+
 /*
  * Verify that it is possible to hook the command
  * On success return REDISMODULE_OK and REDISMODULE_ERR on error.
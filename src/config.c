@@ -53,6 +53,9 @@ typedef struct RedisGears_Config{
     ConfigVal executionThreads;
     ConfigVal executionMaxIdleTime;
     ConfigVal sendMsgRetries;
+    ConfigVal shuffleFrameSize;
+    ConfigVal clusterMsgCompressionThreshold;
+    ConfigVal accumulateByMaxGroupsInMemory;
     ConfigVal plugins;
 }RedisGears_Config;
 
@@ -153,6 +156,66 @@ static bool ConfigVal_SendMsgRetriesSet(ArgsIterator* iter){
     }
 }
 
+static const ConfigVal* ConfigVal_ShuffleFrameSizeGet(){
+    return &DefaultGearsConfig.shuffleFrameSize;
+}
+
+static bool ConfigVal_ShuffleFrameSizeSet(ArgsIterator* iter){
+    RedisModuleString* val = ArgsIterator_Next(iter);
+    if(!val) return false;
+    long long n;
+
+    if (RedisModule_StringToLongLong(val, &n) == REDISMODULE_OK) {
+        if(n <= 0){
+            return false;
+        }
+        DefaultGearsConfig.shuffleFrameSize.val.longVal = n;
+        return true;
+    } else {
+        return false;
+    }
+}
+
+static const ConfigVal* ConfigVal_ClusterMsgCompressionThresholdGet(){
+    return &DefaultGearsConfig.clusterMsgCompressionThreshold;
+}
+
+static bool ConfigVal_ClusterMsgCompressionThresholdSet(ArgsIterator* iter){
+    RedisModuleString* val = ArgsIterator_Next(iter);
+    if(!val) return false;
+    long long n;
+
+    if (RedisModule_StringToLongLong(val, &n) == REDISMODULE_OK) {
+        if(n < 0){
+            return false;
+        }
+        DefaultGearsConfig.clusterMsgCompressionThreshold.val.longVal = n;
+        return true;
+    } else {
+        return false;
+    }
+}
+
+static const ConfigVal* ConfigVal_AccumulateByMaxGroupsInMemoryGet(){
+    return &DefaultGearsConfig.accumulateByMaxGroupsInMemory;
+}
+
+static bool ConfigVal_AccumulateByMaxGroupsInMemorySet(ArgsIterator* iter){
+    RedisModuleString* val = ArgsIterator_Next(iter);
+    if(!val) return false;
+    long long n;
+
+    if (RedisModule_StringToLongLong(val, &n) == REDISMODULE_OK) {
+        if(n < 0){
+            return false;
+        }
+        DefaultGearsConfig.accumulateByMaxGroupsInMemory.val.longVal = n;
+        return true;
+    } else {
+        return false;
+    }
+}
+
 static const ConfigVal* ConfigVal_ExecutionThreadsGet(){
     return &DefaultGearsConfig.executionThreads;
 }
@@ -232,6 +295,24 @@ static Gears_ConfigVal Gears_ConfigVals[] = {
         .setter = ConfigVal_SendMsgRetriesSet,
         .configurableAtRunTime = true,
     },
+    {
+        .name = "ShuffleFrameSize",
+        .getter = ConfigVal_ShuffleFrameSizeGet,
+        .setter = ConfigVal_ShuffleFrameSizeSet,
+        .configurableAtRunTime = true,
+    },
+    {
+        .name = "ClusterMsgCompressionThreshold",
+        .getter = ConfigVal_ClusterMsgCompressionThresholdGet,
+        .setter = ConfigVal_ClusterMsgCompressionThresholdSet,
+        .configurableAtRunTime = true,
+    },
+    {
+        .name = "AccumulateByMaxGroupsInMemory",
+        .getter = ConfigVal_AccumulateByMaxGroupsInMemoryGet,
+        .setter = ConfigVal_AccumulateByMaxGroupsInMemorySet,
+        .configurableAtRunTime = true,
+    },
     {
         .name = "Plugin",
         .getter = ConfigVal_PluginsGet,
@@ -463,6 +544,18 @@ long long GearsConfig_SendMsgRetries(){
     return DefaultGearsConfig.sendMsgRetries.val.longVal;
 }
 
+long long GearsConfig_ShuffleFrameSize(){
+    return DefaultGearsConfig.shuffleFrameSize.val.longVal;
+}
+
+long long GearsConfig_ClusterMsgCompressionThreshold(){
+    return DefaultGearsConfig.clusterMsgCompressionThreshold.val.longVal;
+}
+
+long long GearsConfig_AccumulateByMaxGroupsInMemory(){
+    return DefaultGearsConfig.accumulateByMaxGroupsInMemory.val.longVal;
+}
+
 static char* GearsConfig_ArrayConfigValToStr(void* val){
     return RG_STRDUP(val);
 }
@@ -542,6 +635,18 @@ int GearsConfig_Init(RedisModuleCtx* ctx, RedisModuleString** argv, int argc){
             .val.longVal = 3,
             .type = LONG,
         },
+        .shuffleFrameSize = {
+            .val.longVal = 100,
+            .type = LONG,
+        },
+        .clusterMsgCompressionThreshold = {
+            .val.longVal = 0,
+            .type = LONG,
+        },
+        .accumulateByMaxGroupsInMemory = {
+            .val.longVal = 0,
+            .type = LONG,
+        },
         .plugins = {
             .val.vals = array_new(char*, 10),
             .type = ARRAY,
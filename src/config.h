@@ -20,6 +20,9 @@ long long GearsConfig_ForceDownloadDepsOnEnterprise();
 long long GearsConfig_ExecutionThreads();
 long long GearsConfig_ExecutionMaxIdleTime();
 long long GearsConfig_SendMsgRetries();
+long long GearsConfig_ShuffleFrameSize();
+long long GearsConfig_ClusterMsgCompressionThreshold();
+long long GearsConfig_AccumulateByMaxGroupsInMemory();
 const char* GearsConfig_GetExtraConfigVals(const char* key);
 char** GearsConfig_GetPlugins();
 
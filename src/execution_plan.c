@@ -11,11 +11,14 @@
 #include "lock_handler.h"
 #include "utils/thpool.h"
 #include "version.h"
+#include "common.h"
 
 #include <assert.h>
 
 #include <pthread.h>
 #include <unistd.h>
+#include <errno.h>
+#include <sys/mman.h>
 #include <time.h>
 #include <event2/event.h>
 
@@ -115,6 +118,7 @@ ExecutionPlansData epData;
 
 static long long lastEPId = 0;
 static long long lastFEPId = 0;
+static size_t accumulateBySpills = 0;
 
 static Record* ExecutionPlan_NextRecord(ExecutionPlan* ep, ExecutionStep* step, RedisModuleCtx* rctx);
 static ExecutionPlan* ExecutionPlan_New(FlatExecutionPlan* fep, ExecutionMode mode, void* arg);
@@ -974,24 +978,46 @@ end:
     return record;
 }
 
+/*
+ * Pull the next element of the pending iterator record, the iterator is freed once exhausted.
+ * Returns NULL if the iterator is exhausted.
+ */
+static Record* ExecutionPlan_FlatMapIteratorNext(ExecutionPlan* ep, ExecutionStep* step, RedisModuleCtx* rctx){
+    ExecutionCtx ectx = ExecutionCtx_Initialize(rctx, ep, step);
+    Record* r = RG_IteratorRecordNext(&ectx, step->flatMap.pendings);
+    if(!r){
+        RedisGears_FreeRecord(step->flatMap.pendings);
+        step->flatMap.pendings = NULL;
+        if(ectx.err){
+            r = RG_ErrorRecordCreate(ectx.err, strlen(ectx.err));
+        }
+    }
+    return r;
+}
+
 static Record* ExecutionPlan_FlatMapNextRecord(ExecutionPlan* ep, ExecutionStep* step, RedisModuleCtx* rctx){
 	Record* r = NULL;
 
     INIT_TIMER;
 	if(step->flatMap.pendings){
         START_TIMER;
-        r = RedisGears_ListRecordPop(step->flatMap.pendings);
-        if(RedisGears_ListRecordLen(step->flatMap.pendings) == 0){
-            RedisGears_FreeRecord(step->flatMap.pendings);
-            step->flatMap.pendings = NULL;
+        if(RedisGears_RecordGetType(step->flatMap.pendings) == iteratorRecordType){
+            r = ExecutionPlan_FlatMapIteratorNext(ep, step, rctx);
+            if(r){
+                goto end;
+            }
+            // the iterator is exhausted, continue with the next record
+            ADD_DURATION(step->executionDuration);
+        }else{
+            r = RedisGears_ListRecordPop(step->flatMap.pendings);
+            if(RedisGears_ListRecordLen(step->flatMap.pendings) == 0){
+                RedisGears_FreeRecord(step->flatMap.pendings);
+                step->flatMap.pendings = NULL;
+            }
+            goto end;
         }
-        goto end;
     }
-    do{
-        if(r){
-            // if we reach here r is an empty list record
-            RedisGears_FreeRecord(r);
-        }
+    while(true){
         r = ExecutionPlan_NextRecord(ep, step->prev, rctx);
         START_TIMER;
         if(r == NULL){
@@ -1003,12 +1029,22 @@ static Record* ExecutionPlan_FlatMapNextRecord(ExecutionPlan* ep, ExecutionStep*
         if(RedisGears_RecordGetType(r) == errorRecordType){
             goto end;
         }
-        if(RedisGears_RecordGetType(r) != listRecordType){
+        if(RedisGears_RecordGetType(r) == iteratorRecordType){
+            // keep only the iterator, the elements are pulled as the next steps ask for them
+            step->flatMap.pendings = r;
+            r = ExecutionPlan_FlatMapIteratorNext(ep, step, rctx);
+            if(r){
+                goto end;
+            }
+        }else if(RedisGears_RecordGetType(r) != listRecordType){
             goto end;
+        }else if(RedisGears_ListRecordLen(r) > 0){
+            break;
+        }else{
+            RedisGears_FreeRecord(r);
         }
     	ADD_DURATION(step->executionDuration);
-    }while(RedisGears_ListRecordLen(r) == 0);
-    START_TIMER;
+    }
     if(RedisGears_ListRecordLen(r) == 1){
         Record* ret;
         ret = RedisGears_ListRecordPop(r);
@@ -1138,13 +1174,95 @@ end:
     return record;
 }
 
+/*
+ * Serialize the given records into a single frame and send it to the given shard.
+ * The records are serialized one after the other on the same execution ctx so the
+ * records serializers can continue their serialization state between records of
+ * the same frame (see RedisGears_ContinueSerializationFrame).
+ * The records are freed and the array is emptied.
+ */
+static void ExecutionPlan_SendFrame(ExecutionPlan* ep, ExecutionStep* step, RedisModuleCtx* rctx, const char* shardId, Record** frame){
+    if(array_len(frame) == 0){
+        return;
+    }
+
+    ExecutionCtx ectx = ExecutionCtx_Initialize(rctx, ep, step);
+    ectx.serializationFrameTypes = array_new(RecordType*, 2);
+    Gears_Buffer* buff = Gears_BufferCreate();
+    Gears_BufferWriter bw;
+    Gears_BufferWriterInit(&bw, buff);
+    RedisGears_BWWriteBuffer(&bw, ep->id, ID_LEN); // serialize execution plan id
+    RedisGears_BWWriteLong(&bw, step->stepId); // serialize step id
+    RedisGears_BWWriteLong(&bw, array_len(frame)); // serialize number of records
+
+    for(size_t i = 0 ; i < array_len(frame) ; ++i){
+        Record* record = frame[i];
+        size_t recordStart = buff->size;
+        int serializationRes = RG_SerializeRecord(&ectx, &bw, record);
+        RedisGears_FreeRecord(record);
+        if(serializationRes != REDISMODULE_OK){
+            if(!ectx.err){
+                ectx.err = RG_STRDUP("Failed serializing record");
+            }
+            // drop the partially serialized record and send an error record instead
+            buff->size = recordStart;
+            record = RG_ErrorRecordCreate(ectx.err, strlen(ectx.err));
+            ectx.err = NULL;
+            serializationRes = RG_SerializeRecord(&ectx, &bw, record);
+            RedisModule_Assert(serializationRes == REDISMODULE_OK);
+            RedisGears_FreeRecord(record);
+            // the serializers state might be broken, the next records must start over
+            ectx.serializationFrameTypes = array_trimm_len(ectx.serializationFrameTypes, 0);
+        }
+    }
+    array_free(ectx.serializationFrameTypes);
+
+    if(step->type == REPARTITION){
+        Cluster_SendMsgM(shardId, ExecutionPlan_OnRepartitionFrameReceived, buff->buff, buff->size);
+    }else{
+        Cluster_SendMsgM(shardId, ExecutionPlan_CollectOnFrameReceived, buff->buff, buff->size);
+    }
+
+    Gears_BufferFree(buff);
+}
+
+static void ExecutionPlan_SendRepartitionFrames(ExecutionPlan* ep, ExecutionStep* step, RedisModuleCtx* rctx){
+    Gears_dictIterator* iter = Gears_dictGetIterator(step->repartion.frames);
+    Gears_dictEntry* entry = NULL;
+    while((entry = Gears_dictNext(iter))){
+        Record** frame = Gears_dictGetVal(entry);
+        ExecutionPlan_SendFrame(ep, step, rctx, Gears_dictGetKey(entry), frame);
+        frame = array_trimm_len(frame, 0);
+    }
+    Gears_dictReleaseIterator(iter);
+}
+
+static void ExecutionPlan_FreeRepartitionFrames(ExecutionStep* step){
+    Gears_dictIterator* iter = Gears_dictGetIterator(step->repartion.frames);
+    Gears_dictEntry* entry = NULL;
+    while((entry = Gears_dictNext(iter))){
+        Record** frame = Gears_dictGetVal(entry);
+        for(size_t i = 0 ; i < array_len(frame) ; ++i){
+            RedisGears_FreeRecord(frame[i]);
+        }
+        array_free(frame);
+    }
+    Gears_dictReleaseIterator(iter);
+    Gears_dictEmpty(step->repartion.frames, NULL);
+}
+
+static void ExecutionPlan_FreeCollectFrame(ExecutionStep* step){
+    for(size_t i = 0 ; i < array_len(step->collect.frame) ; ++i){
+        RedisGears_FreeRecord(step->collect.frame[i]);
+    }
+    step->collect.frame = array_trimm_len(step->collect.frame, 0);
+}
+
 static Record* ExecutionPlan_RepartitionNextRecord(ExecutionPlan* ep, ExecutionStep* step, RedisModuleCtx* rctx){
     Record* record = NULL;
     Gears_Buffer* buff;
     Gears_BufferWriter bw;
 
-    ExecutionCtx ectx = ExecutionCtx_Initialize(rctx, ep, step);
-
     if(!Cluster_IsClusterMode() || EPIsFlagOn(ep, EFIsLocal)){
         return ExecutionPlan_NextRecord(ep, step->prev, rctx);
     }
@@ -1162,19 +1280,18 @@ static Record* ExecutionPlan_RepartitionNextRecord(ExecutionPlan* ep, ExecutionS
         record = &StopRecord;
         goto end;
     }
-    buff = Gears_BufferCreate();
     STOP_TIMER;
 	step->executionDuration += DURATION;
 
     while((record = ExecutionPlan_NextRecord(ep, step->prev, rctx)) != NULL){
         START_TIMER;
         if(record == &StopRecord || record == &WaitRecord){
-            Gears_BufferFree(buff);
+            // the execution is going to pause, do not hold the buffered records until it continues
+            ExecutionPlan_SendRepartitionFrames(ep, step, rctx);
             goto end;
         }
         if(RedisGears_RecordGetType(record) == errorRecordType){
             // this is an error record which should stay with us so lets return it
-            Gears_BufferFree(buff);
             goto end;
         }
         size_t len;
@@ -1182,39 +1299,36 @@ static Record* ExecutionPlan_RepartitionNextRecord(ExecutionPlan* ep, ExecutionS
         const char* shardIdToSendRecord = Cluster_GetNodeIdByKey(key);
         if(memcmp(shardIdToSendRecord, Cluster_GetMyId(), REDISMODULE_NODE_ID_LEN) == 0){
             // this record should stay with us, lets return it.
-        	Gears_BufferFree(buff);
             goto end;
         }
         else{
-            // we need to send the record to another shard
-            Gears_BufferWriterInit(&bw, buff);
-            RedisGears_BWWriteBuffer(&bw, ep->id, ID_LEN); // serialize execution plan id
-            RedisGears_BWWriteLong(&bw, step->stepId); // serialize step id
-            int serializationRes = RG_SerializeRecord(&ectx, &bw, record);
-            RedisGears_FreeRecord(record);
-            if(serializationRes != REDISMODULE_OK){
-                if(!ectx.err){
-                    ectx.err = RG_STRDUP("Failed serializing record");
-                }
-                // we need to clear and rewrite cause buff contains garbage
-                Gears_BufferClear(buff);
-                RedisGears_BWWriteBuffer(&bw, ep->id, ID_LEN); // serialize execution plan id
-                RedisGears_BWWriteLong(&bw, step->stepId); // serialize step id
-                record = RG_ErrorRecordCreate(ectx.err, strlen(ectx.err));
-                ectx.err = NULL;
-                serializationRes = RG_SerializeRecord(&ectx, &bw, record);
-                RedisModule_Assert(serializationRes == REDISMODULE_OK);
-                RedisGears_FreeRecord(record);
+            // we need to send the record to another shard, add it to the shard frame
+            Gears_dictEntry* entry = Gears_dictFind(step->repartion.frames, shardIdToSendRecord);
+            Record** frame;
+            if(entry){
+                frame = Gears_dictGetVal(entry);
+            }else{
+                frame = array_new(Record*, 10);
+            }
+            frame = array_append(frame, record);
+            if(array_len(frame) >= GearsConfig_ShuffleFrameSize()){
+                ExecutionPlan_SendFrame(ep, step, rctx, shardIdToSendRecord, frame);
+                frame = array_trimm_len(frame, 0);
+            }
+            if(entry){
+                Gears_dictSetVal(step->repartion.frames, entry, frame);
+            }else{
+                Gears_dictAdd(step->repartion.frames, (char*)shardIdToSendRecord, frame);
             }
-
-            Cluster_SendMsgM(shardIdToSendRecord, ExecutionPlan_OnRepartitionRecordReceived, buff->buff, buff->size);
-
-            Gears_BufferClear(buff);
         }
     	ADD_DURATION(step->executionDuration);
     }
 
     START_TIMER;
+    // send the leftovers before notifying we are done
+    ExecutionPlan_SendRepartitionFrames(ep, step, rctx);
+
+    buff = Gears_BufferCreate();
     Gears_BufferWriterInit(&bw, buff);
     RedisGears_BWWriteBuffer(&bw, ep->id, ID_LEN); // serialize execution plan id
     RedisGears_BWWriteLong(&bw, step->stepId); // serialize step id
@@ -1242,8 +1356,6 @@ static Record* ExecutionPlan_CollectNextRecord(ExecutionPlan* ep, ExecutionStep*
 	Gears_Buffer* buff;;
 	Gears_BufferWriter bw;
 
-	ExecutionCtx ectx = ExecutionCtx_Initialize(rctx, ep, step);
-
 	if(!Cluster_IsClusterMode() || EPIsFlagOn(ep, EFIsLocal)){
 		return ExecutionPlan_NextRecord(ep, step->prev, rctx);
 	}
@@ -1263,43 +1375,24 @@ static Record* ExecutionPlan_CollectNextRecord(ExecutionPlan* ep, ExecutionStep*
         goto end;
 	}
 
-	buff = Gears_BufferCreate();
 	ADD_DURATION(step->executionDuration);
 
 	while((record = ExecutionPlan_NextRecord(ep, step->prev, rctx)) != NULL){
         START_TIMER;
 		if(record == &StopRecord || record == &WaitRecord){
-			Gears_BufferFree(buff);
+		    // the execution is going to pause, do not hold the buffered records until it continues
+		    ExecutionPlan_SendFrame(ep, step, rctx, ep->id, step->collect.frame);
+		    step->collect.frame = array_trimm_len(step->collect.frame, 0);
 			goto end;
 		}
 		if(Cluster_IsMyId(ep->id)){
-			Gears_BufferFree(buff);
 			goto end; // record should stay here, just return it.
 		}else{
-			Gears_BufferWriterInit(&bw, buff);
-			RedisGears_BWWriteBuffer(&bw, ep->id, ID_LEN); // serialize execution plan id
-			RedisGears_BWWriteLong(&bw, step->stepId); // serialize step id
-			int serializationRes = RG_SerializeRecord(&ectx, &bw, record);
-			RedisGears_FreeRecord(record);
-			if(serializationRes != REDISMODULE_OK){
-			    if(!ectx.err){
-			        ectx.err = RG_STRDUP("Failed serializing record");
-			    }
-			    // we need to clear and rewrite cause buff contains garbage
-			    Gears_BufferClear(buff);
-			    RedisGears_BWWriteBuffer(&bw, ep->id, ID_LEN); // serialize execution plan id
-			    RedisGears_BWWriteLong(&bw, step->stepId); // serialize step id
-			    record = RG_ErrorRecordCreate(ectx.err, strlen(ectx.err));
-			    ectx.err = NULL;
-			    serializationRes = RG_SerializeRecord(&ectx, &bw, record);
-			    RedisModule_Assert(serializationRes == REDISMODULE_OK);
-			    RedisGears_FreeRecord(record);
-			}
-
-
-			Cluster_SendMsgM(ep->id, ExecutionPlan_CollectOnRecordReceived, buff->buff, buff->size);
-
-			Gears_BufferClear(buff);
+		    step->collect.frame = array_append(step->collect.frame, record);
+		    if(array_len(step->collect.frame) >= GearsConfig_ShuffleFrameSize()){
+		        ExecutionPlan_SendFrame(ep, step, rctx, ep->id, step->collect.frame);
+		        step->collect.frame = array_trimm_len(step->collect.frame, 0);
+		    }
 		}
     	ADD_DURATION(step->executionDuration);
 	}
@@ -1308,7 +1401,6 @@ static Record* ExecutionPlan_CollectNextRecord(ExecutionPlan* ep, ExecutionStep*
 	step->collect.stoped = true;
 
 	if(Cluster_IsMyId(ep->id)){
-		Gears_BufferFree(buff);
 		if(array_len(step->collect.pendings) > 0){
 			record = array_pop(step->collect.pendings);
             goto end;
@@ -1319,6 +1411,11 @@ static Record* ExecutionPlan_CollectNextRecord(ExecutionPlan* ep, ExecutionStep*
 		}
 		record = &StopRecord; // now we should wait for record to arrive from the other shards
 	}else{
+	    // send the leftovers before notifying we are done
+	    ExecutionPlan_SendFrame(ep, step, rctx, ep->id, step->collect.frame);
+	    step->collect.frame = array_trimm_len(step->collect.frame, 0);
+
+	    buff = Gears_BufferCreate();
 		Gears_BufferWriterInit(&bw, buff);
 		RedisGears_BWWriteBuffer(&bw, ep->id, ID_LEN); // serialize execution plan id
 		RedisGears_BWWriteLong(&bw, step->stepId); // serialize step id
@@ -1367,8 +1464,30 @@ end:
     return record;
 }
 
+/*
+ * Return true if none of the steps up to the reader (including the given step)
+ * waits for records from other shards.
+ */
+static bool ExecutionPlan_IsLocalPipe(ExecutionStep* step){
+    for(; step ; step = step->prev){
+        if(step->type == REPARTITION || step->type == COLLECT){
+            return false;
+        }
+    }
+    return true;
+}
+
 static Record* ExecutionPlan_LimitNextRecord(ExecutionPlan* ep, ExecutionStep* step, RedisModuleCtx* rctx){
     Record* record = NULL;    
+    LimitExecutionStepArg* arg = (LimitExecutionStepArg*)step->limit.stepArg.stepArg;
+
+    if(step->limit.currRecordIndex >= arg->offset + arg->len && ExecutionPlan_IsLocalPipe(step->prev)){
+        // limit already reached, no need to keep pulling (and dropping) records
+        // from the previous steps, this also stops the reader from reading more data.
+        // Steps that wait for other shards must be drained so the execution will
+        // finish correctly on all the shards.
+        return NULL;
+    }
 
     INIT_TIMER;
     while((record = ExecutionPlan_NextRecord(ep, step->prev, rctx))){
@@ -1383,7 +1502,6 @@ static Record* ExecutionPlan_LimitNextRecord(ExecutionPlan* ep, ExecutionStep* s
             goto end;
         }
 
-        LimitExecutionStepArg* arg = (LimitExecutionStepArg*)step->limit.stepArg.stepArg;
         if(step->limit.currRecordIndex >= arg->offset &&
                 step->limit.currRecordIndex < arg->offset + arg->len){
             ++step->limit.currRecordIndex;
@@ -1463,6 +1581,389 @@ end:
     return record;
 }
 
+/*
+ * Accumulate a value into its group, returns an error record on failure.
+ */
+static Record* ExecutionPlan_AccumulateByKeyAdd(ExecutionPlan* ep, ExecutionStep* step, RedisModuleCtx* rctx, char* key, Record* val){
+    Record* accumulator = NULL;
+    Gears_dictEntry *entry = Gears_dictFind(step->accumulateByKey.accumulators, key);
+    Record* keyRecord = NULL;
+    bool addKeyRecordToDict;
+    if(entry){
+        keyRecord = Gears_dictGetVal(entry);
+        accumulator = RedisGears_KeyRecordGetVal(keyRecord);
+        addKeyRecordToDict = false;
+    }else{
+        keyRecord = RedisGears_KeyRecordCreate();
+        RedisGears_KeyRecordSetKey(keyRecord, RG_STRDUP(key), strlen(key));
+        addKeyRecordToDict = true;
+    }
+    ExecutionCtx ectx = ExecutionCtx_Initialize(rctx, ep, step);
+    ectx.actualPlaceHolder = &(((KeyRecord*)keyRecord)->record);
+    accumulator = step->accumulateByKey.accumulate(&ectx, key, accumulator, val, step->accumulate.stepArg.stepArg);
+    if(ectx.asyncRecordCreated){
+        // the async record holds a pointer to the group, it must stay in memory
+        step->accumulateByKey.spillDisabled = true;
+    }
+    if(ectx.err){
+        if(ectx.asyncRecordCreated){
+            // this is a miss use so as long as we do not crash or leak we can do whatever we want
+            // we log the error and continue.
+            RedisModule_Log(staticCtx, "warning", "Error happened on accumulateby that created async record, err='%s'", ectx.err);
+            RG_FREE(ectx.err);
+            ectx.err = NULL;
+        }else{
+            if(accumulator){
+                RedisGears_FreeRecord(accumulator);
+            }
+            if(keyRecord){
+                RedisGears_KeyRecordSetVal(keyRecord, NULL);
+                RedisGears_FreeRecord(keyRecord);
+            }
+            Gears_dictDelete(step->accumulateByKey.accumulators, key);
+            return RG_ErrorRecordCreate(ectx.err, strlen(ectx.err));
+        }
+    }
+    if(addKeyRecordToDict){
+        RedisModule_Assert(Gears_dictFetchValue(step->accumulateByKey.accumulators, key) == NULL);
+        Gears_dictAdd(step->accumulateByKey.accumulators, key, keyRecord);
+    }
+    if(accumulator != &DummyRecord){
+        if(ectx.asyncRecordCreated){
+            RedisModule_Log(staticCtx, "warning", "%s", "an api violation, aggregateby created an async record and returned accumulator,"
+                    " its unsafe to use this accumulate, the accumulator will be freed and we will"
+                    " wait for the async record.");
+            RedisGears_FreeRecord(accumulator);
+        }else{
+            RedisGears_KeyRecordSetVal(keyRecord, accumulator);
+        }
+    }
+    return NULL;
+}
+
+#define ACCUMULATE_BY_KEY_SPILL_WRITE_SIZE (64 * 1024)
+#define ACCUMULATE_BY_KEY_SPILL_FILE_TEMPLATE "gears-accumulateby-spill-XXXXXX"
+
+typedef enum AccumulateByKeySpillEntryType{
+    AccumulateByKeySpillEntryType_Accumulator, AccumulateByKeySpillEntryType_Value,
+}AccumulateByKeySpillEntryType;
+
+static size_t ExecutionPlan_AccumulateByKeyGetPartition(const char* key, size_t level){
+    uint64_t hash = Gears_dictGenHashFunction(key, strlen(key));
+    return (hash >> (level * ACCUMULATE_BY_KEY_SPILL_LEVEL_BITS)) % ACCUMULATE_BY_KEY_SPILL_PARTITIONS;
+}
+
+/*
+ * Returns the level that splits the in memory groups or NULL
+ * if nothing was spilled on this level yet.
+ */
+static AccumulateByKeySpillLevel* ExecutionPlan_AccumulateByKeyGetCurrLevel(ExecutionStep* step){
+    if(!step->accumulateByKey.spillLevels || array_len(step->accumulateByKey.spillLevels) == 0){
+        return NULL;
+    }
+    // levels are loaded depth first so the current level, if exists, is always the last one
+    AccumulateByKeySpillLevel* l = array_tail(step->accumulateByKey.spillLevels);
+    return l->level == step->accumulateByKey.currLevel ? l : NULL;
+}
+
+/*
+ * Returns the spilled partition of the given key or NULL if the key group is kept in memory.
+ */
+static AccumulateByKeySpillPartition* ExecutionPlan_AccumulateByKeyGetSpilledPartition(ExecutionStep* step, const char* key){
+    AccumulateByKeySpillLevel* l = ExecutionPlan_AccumulateByKeyGetCurrLevel(step);
+    if(!l){
+        return NULL;
+    }
+    AccumulateByKeySpillPartition* p = l->partitions + ExecutionPlan_AccumulateByKeyGetPartition(key, l->level);
+    return p->fd >= 0 ? p : NULL;
+}
+
+static int ExecutionPlan_AccumulateByKeySpillFlush(AccumulateByKeySpillPartition* p, char** err){
+    size_t written = 0;
+    while(written < p->pending->size){
+        ssize_t n = write(p->fd, p->pending->buff + written, p->pending->size - written);
+        if(n < 0){
+            if(errno == EINTR){
+                continue;
+            }
+            rg_asprintf(err, "Failed writing accumulateby spill file, %s", strerror(errno));
+            return REDISMODULE_ERR;
+        }
+        written += n;
+    }
+    p->size += written;
+    Gears_BufferClear(p->pending);
+    return REDISMODULE_OK;
+}
+
+/*
+ * Append an entry to the partition spill file, on failure nothing is written.
+ * The record is not freed.
+ */
+static int ExecutionPlan_AccumulateByKeySpillWrite(ExecutionPlan* ep, ExecutionStep* step, RedisModuleCtx* rctx,
+                                                   AccumulateByKeySpillPartition* p, AccumulateByKeySpillEntryType type,
+                                                   const char* key, Record* r, char** err){
+    ExecutionCtx ectx = ExecutionCtx_Initialize(rctx, ep, step);
+    Gears_BufferWriter bw;
+    Gears_BufferWriterInit(&bw, p->pending);
+    size_t entryStart = p->pending->size;
+    RedisGears_BWWriteLong(&bw, type);
+    RedisGears_BWWriteString(&bw, key);
+    RedisGears_BWWriteLong(&bw, r ? 1 : 0);
+    if(r && RG_SerializeRecord(&ectx, &bw, r) != REDISMODULE_OK){
+        p->pending->size = entryStart;
+        *err = ectx.err ? ectx.err : RG_STRDUP("Failed serializing record");
+        return REDISMODULE_ERR;
+    }
+    if(p->pending->size >= ACCUMULATE_BY_KEY_SPILL_WRITE_SIZE){
+        return ExecutionPlan_AccumulateByKeySpillFlush(p, err);
+    }
+    return REDISMODULE_OK;
+}
+
+static void ExecutionPlan_AccumulateByKeyFreePartition(AccumulateByKeySpillPartition* p){
+    if(p->fd >= 0){
+        close(p->fd);
+    }
+    if(p->pending){
+        Gears_BufferFree(p->pending);
+    }
+    p->fd = -1;
+    p->pending = NULL;
+    p->size = 0;
+}
+
+static void ExecutionPlan_AccumulateByKeyFreeLevel(AccumulateByKeySpillLevel* l){
+    for(size_t i = 0 ; i < ACCUMULATE_BY_KEY_SPILL_PARTITIONS ; ++i){
+        ExecutionPlan_AccumulateByKeyFreePartition(l->partitions + i);
+    }
+    RG_FREE(l);
+}
+
+static void ExecutionPlan_AccumulateByKeyFreePartitions(ExecutionStep* step){
+    if(!step->accumulateByKey.spillLevels){
+        return;
+    }
+    for(size_t i = 0 ; i < array_len(step->accumulateByKey.spillLevels) ; ++i){
+        ExecutionPlan_AccumulateByKeyFreeLevel(step->accumulateByKey.spillLevels[i]);
+    }
+    array_free(step->accumulateByKey.spillLevels);
+    step->accumulateByKey.spillLevels = NULL;
+    step->accumulateByKey.currLevel = 0;
+}
+
+/*
+ * Move the groups of the partition holding most groups to a spill file,
+ * from now on records of this partition are appended to the file.
+ * Returns an error record on failure.
+ */
+static Record* ExecutionPlan_AccumulateByKeySpill(ExecutionPlan* ep, ExecutionStep* step, RedisModuleCtx* rctx){
+    long long maxGroups = GearsConfig_AccumulateByMaxGroupsInMemory();
+    if(maxGroups == 0 || Gears_dictSize(step->accumulateByKey.accumulators) <= maxGroups){
+        return NULL;
+    }
+    if(step->accumulateByKey.spillDisabled){
+        return NULL;
+    }
+    if(step->accumulateByKey.currLevel >= ACCUMULATE_BY_KEY_SPILL_MAX_LEVELS){
+        // all the hash bits were used, the groups can not be split any further
+        return NULL;
+    }
+
+    AccumulateByKeySpillLevel* l = ExecutionPlan_AccumulateByKeyGetCurrLevel(step);
+    if(!l){
+        l = RG_ALLOC(sizeof(*l));
+        l->level = step->accumulateByKey.currLevel;
+        l->nextPartitionToLoad = 0;
+        for(size_t i = 0 ; i < ACCUMULATE_BY_KEY_SPILL_PARTITIONS ; ++i){
+            l->partitions[i] = (AccumulateByKeySpillPartition){
+                    .fd = -1,
+                    .pending = NULL,
+                    .size = 0,
+            };
+        }
+        if(!step->accumulateByKey.spillLevels){
+            step->accumulateByKey.spillLevels = array_new(AccumulateByKeySpillLevel*, 1);
+        }
+        step->accumulateByKey.spillLevels = array_append(step->accumulateByKey.spillLevels, l);
+    }
+
+    size_t groups[ACCUMULATE_BY_KEY_SPILL_PARTITIONS] = {0};
+    Gears_dictIterator* iter = Gears_dictGetIterator(step->accumulateByKey.accumulators);
+    Gears_dictEntry* entry = NULL;
+    while((entry = Gears_dictNext(iter))){
+        ++groups[ExecutionPlan_AccumulateByKeyGetPartition(Gears_dictGetKey(entry), l->level)];
+    }
+    Gears_dictReleaseIterator(iter);
+
+    size_t partition = 0;
+    for(size_t i = 1 ; i < ACCUMULATE_BY_KEY_SPILL_PARTITIONS ; ++i){
+        if(groups[i] > groups[partition]){
+            partition = i;
+        }
+    }
+    AccumulateByKeySpillPartition* p = l->partitions + partition;
+    // groups of an already spilled partition are never kept in memory
+    RedisModule_Assert(p->fd < 0);
+
+    char* err = NULL;
+    char path[] = ACCUMULATE_BY_KEY_SPILL_FILE_TEMPLATE;
+    int fd = mkstemp(path);
+    if(fd < 0){
+        rg_asprintf(&err, "Failed creating accumulateby spill file, %s", strerror(errno));
+        return RG_ErrorRecordCreate(err, strlen(err));
+    }
+    // the file is removed as soon as it is closed
+    unlink(path);
+    p->fd = fd;
+    p->pending = Gears_BufferCreate();
+    __atomic_add_fetch(&accumulateBySpills, 1, __ATOMIC_SEQ_CST);
+
+    iter = Gears_dictGetSafeIterator(step->accumulateByKey.accumulators);
+    while((entry = Gears_dictNext(iter))){
+        char* key = Gears_dictGetKey(entry);
+        if(ExecutionPlan_AccumulateByKeyGetPartition(key, l->level) != partition){
+            continue;
+        }
+        Record* keyRecord = Gears_dictGetVal(entry);
+        char* currErr = NULL;
+        if(!err && ExecutionPlan_AccumulateByKeySpillWrite(ep, step, rctx, p, AccumulateByKeySpillEntryType_Accumulator,
+                                                           key, RedisGears_KeyRecordGetVal(keyRecord), &currErr) != REDISMODULE_OK){
+            // the group is lost, we report the first error only
+            err = currErr;
+        }
+        RedisGears_FreeRecord(keyRecord);
+        Gears_dictDelete(step->accumulateByKey.accumulators, key);
+    }
+    Gears_dictReleaseIterator(iter);
+
+    if(err){
+        return RG_ErrorRecordCreate(err, strlen(err));
+    }
+    return NULL;
+}
+
+/*
+ * Accumulate a value into its group (or restore a saved group accumulator),
+ * if the group partition was spilled the entry is appended to the spill file instead.
+ * Spills a partition if the in memory groups exceeded the limit.
+ * The value is consumed, returns an error record on failure.
+ */
+static Record* ExecutionPlan_AccumulateByKeyAddOrSpill(ExecutionPlan* ep, ExecutionStep* step, RedisModuleCtx* rctx,
+                                                       AccumulateByKeySpillEntryType type, char* key, Record* val){
+    AccumulateByKeySpillPartition* p = ExecutionPlan_AccumulateByKeyGetSpilledPartition(step, key);
+    if(p){
+        // the partition was spilled, the entry will be processed when the partition is loaded back
+        Record* errRecord = NULL;
+        char* err = NULL;
+        if(ExecutionPlan_AccumulateByKeySpillWrite(ep, step, rctx, p, type, key, val, &err) != REDISMODULE_OK){
+            errRecord = RG_ErrorRecordCreate(err, strlen(err));
+        }
+        if(val){
+            RedisGears_FreeRecord(val);
+        }
+        return errRecord;
+    }
+
+    if(type == AccumulateByKeySpillEntryType_Accumulator){
+        Record* keyRecord = RedisGears_KeyRecordCreate();
+        RedisGears_KeyRecordSetKey(keyRecord, RG_STRDUP(key), strlen(key));
+        RedisGears_KeyRecordSetVal(keyRecord, val);
+        Gears_dictAdd(step->accumulateByKey.accumulators, key, keyRecord);
+    }else{
+        Record* errRecord = ExecutionPlan_AccumulateByKeyAdd(ep, step, rctx, key, val);
+        if(errRecord){
+            return errRecord;
+        }
+    }
+    return ExecutionPlan_AccumulateByKeySpill(ep, step, rctx);
+}
+
+/*
+ * Load the next spilled partition into the (empty) accumulators dictionary
+ * and accumulate the records that were written to it after it was spilled.
+ * If the partition groups do not fit in memory they are spilled again, split
+ * by the next level, and loaded right after this partition.
+ * Returns false if there are no more partitions to load.
+ */
+static bool ExecutionPlan_AccumulateByKeyLoadNextPartition(ExecutionPlan* ep, ExecutionStep* step, RedisModuleCtx* rctx, Record** errRecord){
+    *errRecord = NULL;
+    if(!step->accumulateByKey.spillLevels){
+        return false;
+    }
+    AccumulateByKeySpillPartition* p = NULL;
+    while(array_len(step->accumulateByKey.spillLevels) > 0){
+        AccumulateByKeySpillLevel* l = array_tail(step->accumulateByKey.spillLevels);
+        while(l->nextPartitionToLoad < ACCUMULATE_BY_KEY_SPILL_PARTITIONS){
+            AccumulateByKeySpillPartition* curr = l->partitions + l->nextPartitionToLoad++;
+            if(curr->fd >= 0){
+                p = curr;
+                break;
+            }
+        }
+        if(p){
+            step->accumulateByKey.currLevel = l->level + 1;
+            break;
+        }
+        array_pop(step->accumulateByKey.spillLevels);
+        ExecutionPlan_AccumulateByKeyFreeLevel(l);
+    }
+    if(!p){
+        return false;
+    }
+
+    char* err = NULL;
+    if(ExecutionPlan_AccumulateByKeySpillFlush(p, &err) != REDISMODULE_OK){
+        *errRecord = RG_ErrorRecordCreate(err, strlen(err));
+        goto done;
+    }
+    if(p->size == 0){
+        goto done;
+    }
+
+    char* data = mmap(NULL, p->size, PROT_READ, MAP_PRIVATE, p->fd, 0);
+    if(data == MAP_FAILED){
+        rg_asprintf(&err, "Failed mapping accumulateby spill file, %s", strerror(errno));
+        *errRecord = RG_ErrorRecordCreate(err, strlen(err));
+        goto done;
+    }
+
+    Gears_Buffer buff = {
+            .cap = p->size,
+            .size = p->size,
+            .buff = data,
+    };
+    Gears_BufferReader br;
+    Gears_BufferReaderInit(&br, &buff);
+    ExecutionCtx ectx = ExecutionCtx_Initialize(rctx, ep, step);
+    while(br.location < buff.size){
+        AccumulateByKeySpillEntryType type = RedisGears_BRReadLong(&br);
+        char* key = RedisGears_BRReadString(&br);
+        Record* r = NULL;
+        if(RedisGears_BRReadLong(&br)){
+            // records deserializers might keep a per execution state which is also used by the
+            // main thread when records arrive from other shards, the lock protects this state.
+            LockHandler_Acquire(rctx);
+            r = RG_DeserializeRecord(&ectx, &br);
+            LockHandler_Release(rctx);
+        }
+        Record* res = ExecutionPlan_AccumulateByKeyAddOrSpill(ep, step, rctx, type, key, r);
+        if(res){
+            if(*errRecord){
+                // we report the first error only
+                RedisGears_FreeRecord(res);
+            }else{
+                *errRecord = res;
+            }
+        }
+    }
+    munmap(data, p->size);
+
+done:
+    ExecutionPlan_AccumulateByKeyFreePartition(p);
+    return true;
+}
+
 static Record* ExecutionPlan_AccumulateByKeyNextRecord(ExecutionPlan* ep, ExecutionStep* step, RedisModuleCtx* rctx){
 	Record* record = NULL;
 
@@ -1483,73 +1984,36 @@ static Record* ExecutionPlan_AccumulateByKeyNextRecord(ExecutionPlan* ep, Execut
 		char* key = RedisGears_KeyRecordGetKey(record, NULL);
 		Record* val = RedisGears_KeyRecordGetVal(record);
 		RedisGears_KeyRecordSetVal(record, NULL);
-		Record* accumulator = NULL;
-		Gears_dictEntry *entry = Gears_dictFind(step->accumulateByKey.accumulators, key);
-		Record* keyRecord = NULL;
-		bool addKeyRecordToDict;
-		if(entry){
-			keyRecord = Gears_dictGetVal(entry);
-			accumulator = RedisGears_KeyRecordGetVal(keyRecord);
-			addKeyRecordToDict = false;
-		}else{
-            keyRecord = RedisGears_KeyRecordCreate();
-            RedisGears_KeyRecordSetKey(keyRecord, RG_STRDUP(key), strlen(key));
-            addKeyRecordToDict = true;
-		}
-		ExecutionCtx ectx = ExecutionCtx_Initialize(rctx, ep, step);
-		ectx.actualPlaceHolder = &(((KeyRecord*)keyRecord)->record);
-		accumulator = step->accumulateByKey.accumulate(&ectx, key, accumulator, val, step->accumulate.stepArg.stepArg);
-		if(ectx.err){
-		    if(ectx.asyncRecordCreated){
-                // this is a miss use so as long as we do not crash or leak we can do whatever we want
-                // we log the error and continue.
-                RedisModule_Log(staticCtx, "warning", "Error happened on accumulateby that created async record, err='%s'", ectx.err);
-                RG_FREE(ectx.err);
-                ectx.err = NULL;
-            }else{
-                if(accumulator){
-                    RedisGears_FreeRecord(accumulator);
-                }
-                if(keyRecord){
-                    RedisGears_KeyRecordSetVal(keyRecord, NULL);
-                    RedisGears_FreeRecord(keyRecord);
-                }
-                Gears_dictDelete(step->accumulateByKey.accumulators, key);
-                RedisGears_FreeRecord(record);
-                record = RG_ErrorRecordCreate(ectx.err, strlen(ectx.err));
-                goto end;
-            }
-		}
-		if(addKeyRecordToDict){
-			RedisModule_Assert(Gears_dictFetchValue(step->accumulateByKey.accumulators, key) == NULL);
-			Gears_dictAdd(step->accumulateByKey.accumulators, key, keyRecord);
-		}
-		if(accumulator != &DummyRecord){
-		    if(ectx.asyncRecordCreated){
-                RedisModule_Log(staticCtx, "warning", "%s", "an api violation, aggregateby created an async record and returned accumulator,"
-                        " its unsafe to use this accumulate, the accumulator will be freed and we will"
-                        " wait for the async record.");
-                RedisGears_FreeRecord(accumulator);
-            }else{
-                RedisGears_KeyRecordSetVal(keyRecord, accumulator);
-            }
-		}
+		Record* errRecord = ExecutionPlan_AccumulateByKeyAddOrSpill(ep, step, rctx, AccumulateByKeySpillEntryType_Value, key, val);
 		RedisGears_FreeRecord(record);
-		record = &DummyRecord; // we will get the next record or hold
+		record = errRecord ? errRecord : &DummyRecord; // on success we will get the next record or hold
     	goto end;
 	}
 	START_TIMER;
-    if(!step->accumulateByKey.iter){
-		step->accumulateByKey.iter = Gears_dictGetIterator(step->accumulateByKey.accumulators);
-	}
-	Gears_dictEntry *entry = Gears_dictNext(step->accumulateByKey.iter);
-	if(!entry){
-		Gears_dictReleaseIterator(step->accumulateByKey.iter);
-		Gears_dictRelease(step->accumulateByKey.accumulators);
-		step->accumulateByKey.iter = NULL;
-		step->accumulateByKey.accumulators = NULL;
-		record = NULL;
-        goto end;
+	Gears_dictEntry *entry = NULL;
+	while(true){
+	    if(!step->accumulateByKey.iter){
+	        step->accumulateByKey.iter = Gears_dictGetIterator(step->accumulateByKey.accumulators);
+	    }
+	    entry = Gears_dictNext(step->accumulateByKey.iter);
+	    if(entry){
+	        break;
+	    }
+	    Gears_dictReleaseIterator(step->accumulateByKey.iter);
+	    step->accumulateByKey.iter = NULL;
+	    // the returned groups are owned by the next step
+	    Gears_dictEmpty(step->accumulateByKey.accumulators, NULL);
+	    if(ExecutionPlan_AccumulateByKeyLoadNextPartition(ep, step, rctx, &record)){
+	        if(record){
+	            goto end;
+	        }
+	        continue;
+	    }
+	    ExecutionPlan_AccumulateByKeyFreePartitions(step);
+	    Gears_dictRelease(step->accumulateByKey.accumulators);
+	    step->accumulateByKey.accumulators = NULL;
+	    record = NULL;
+	    goto end;
 	}
 	record = Gears_dictGetVal(entry);
 	RedisModule_Assert(RedisGears_RecordGetType(record) == keyRecordType);
@@ -2149,6 +2613,7 @@ static void ExecutionStep_Reset(ExecutionStep* es){
                 RedisGears_FreeRecord(r);
             }
         }
+        ExecutionPlan_FreeRepartitionFrames(es);
         es->repartion.stoped = false;
         es->repartion.totalShardsCompleted = 0;
         break;
@@ -2159,6 +2624,7 @@ static void ExecutionStep_Reset(ExecutionStep* es){
                 RedisGears_FreeRecord(r);
             }
         }
+        ExecutionPlan_FreeCollectFrame(es);
         es->collect.totalShardsCompleted = 0;
         es->collect.stoped = false;
         break;
@@ -2203,6 +2669,8 @@ static void ExecutionStep_Reset(ExecutionStep* es){
         }else{
             es->accumulateByKey.accumulators = Gears_dictCreate(&Gears_dictTypeHeapStrings, NULL);
         }
+        ExecutionPlan_AccumulateByKeyFreePartitions(es);
+        es->accumulateByKey.spillDisabled = false;
         break;
     default:
         RedisModule_Assert(false);
@@ -2295,6 +2763,107 @@ static void ExecutionPlan_RunSync(ExecutionPlan* ep){
     RedisModule_FreeThreadSafeContext(rctx);
 }
 
+bool FlatExecutionPlan_IsSimple(FlatExecutionPlan* fep){
+    for(size_t i = 0 ; i < array_len(fep->steps) ; ++i){
+        switch(fep->steps[i].type){
+        case MAP:
+        case FILTER:
+        case FOREACH:
+            break;
+        default:
+            return false;
+        }
+    }
+    return true;
+}
+
+/*
+ * Run a simple flat execution plan (only map, filter and foreach steps, see FlatExecutionPlan_IsSimple)
+ * on a single record, directly on the caller thread and without creating an execution.
+ * The steps get an execution that lives on the stack and is not allowed to create async records.
+ * Must be called while holding the Redis GIL.
+ *
+ * Returns the output record, an error record if one of the steps failed or NULL if the
+ * record was filtered out. The input record is consumed.
+ */
+Record* FlatExecutionPlan_RunSimple(FlatExecutionPlan* fep, RedisModuleCtx* rctx, Record* record, long long* duration){
+    struct timespec _ts = {0}, _te = {0};
+    GETTIME(&_ts);
+
+    ExecutionPlan ep = {0};
+    ep.fep = fep;
+    ep.mode = ExecutionModeSync;
+    ep.runFlags = RFNoAsync;
+    ep.status = RUNNING;
+    ep.flags = EFIsLocal | EFStarted;
+    ep.onStartCallback = fep->onExecutionStartStep.stepName ? ExecutionOnStartsMgmt_Get(fep->onExecutionStartStep.stepName) : NULL;
+    ep.onUnpausedCallback = fep->onUnpausedStep.stepName ? ExecutionOnUnpausedsMgmt_Get(fep->onUnpausedStep.stepName) : NULL;
+
+    LockHandler_Acquire(rctx);
+
+    if(ep.onStartCallback){
+        ExecutionCtx ectx = ExecutionCtx_Initialize(rctx, &ep, NULL);
+        ep.onStartCallback(&ectx, fep->onExecutionStartStep.arg.stepArg);
+    }
+
+    if(ep.onUnpausedCallback){
+        ExecutionCtx ectx = ExecutionCtx_Initialize(rctx, &ep, NULL);
+        ep.onUnpausedCallback(&ectx, fep->onUnpausedStep.arg.stepArg);
+    }
+
+    for(size_t i = 0 ; i < array_len(fep->steps) ; ++i){
+        FlatExecutionStep* s = fep->steps + i;
+        ExecutionStep es = {0};
+        es.type = s->type;
+        es.stepId = array_len(fep->steps) - 1 - i;
+        ExecutionCtx ectx = ExecutionCtx_Initialize(rctx, &ep, &es);
+        ectx.originRecord = record;
+        int res = RedisGears_StepSuccess;
+        switch(s->type){
+        case MAP:
+            record = MapsMgmt_Get(s->bStep.stepName)(&ectx, record, s->bStep.arg.stepArg);
+            if(ectx.err && record){
+                RedisGears_FreeRecord(record);
+                record = NULL;
+            }
+            break;
+        case FILTER:
+            res = FiltersMgmt_Get(s->bStep.stepName)(&ectx, record, s->bStep.arg.stepArg);
+            break;
+        case FOREACH:
+            res = ForEachsMgmt_Get(s->bStep.stepName)(&ectx, record, s->bStep.arg.stepArg);
+            break;
+        default:
+            RedisModule_Assert(false);
+        }
+
+        if(ectx.err){
+            if(s->type != MAP){
+                RedisGears_FreeRecord(record);
+            }
+            record = RG_ErrorRecordCreate(ectx.err, strlen(ectx.err));
+            break;
+        }
+
+        if(res != RedisGears_StepSuccess){
+            // filtered out
+            RedisGears_FreeRecord(record);
+            record = NULL;
+        }
+
+        if(!record){
+            break;
+        }
+    }
+
+    LockHandler_Release(rctx);
+
+    GETTIME(&_te);
+    *duration = DURATION;
+
+    return record;
+}
+
 static ExecutionPlan* FlatExecutionPlan_RunOnly(FlatExecutionPlan* fep, char* eid, ExecutionMode mode, void* arg, RedisGears_OnExecutionDoneCallback callback, void* privateData, WorkerData* worker, RunFlags runFlags){
     ExecutionPlan* ep = FlatExecutionPlan_CreateExecution(fep, eid, mode, arg, callback, privateData);
 
@@ -2536,6 +3105,44 @@ static void ExecutionPlan_OnRepartitionRecordReceived(RedisModuleCtx *ctx, const
     ExectuionPlan_WorkerMsgSend(ep->assignWorker, msg);
 }
 
+static void ExecutionPlan_OnFrameReceived(RedisModuleCtx *ctx, const unsigned char *payload, uint32_t len, enum StepType stepType){
+    Gears_Buffer buff;
+    buff.buff = (char*)payload;
+    buff.size = len;
+    buff.cap = len;
+    Gears_BufferReader br;
+    Gears_BufferReaderInit(&br, &buff);
+    size_t epIdLen;
+    char* epId = RedisGears_BRReadBuffer(&br, &epIdLen);
+    ExecutionPlan* ep = ExecutionPlan_FindById(epId);
+    if(!ep){
+        RedisModule_Log(staticCtx, "warning", "On ExecutionPlan_OnFrameReceived, Could not find execution");
+        return;
+    }
+    if(ep->status == ABORTED){
+        RedisModule_Log(staticCtx, "warning", "On ExecutionPlan_OnFrameReceived, execution aborted");
+        return;
+    }
+    size_t stepId = RedisGears_BRReadLong(&br);
+    RedisModule_Assert(epIdLen == ID_LEN);
+    size_t nRecords = RedisGears_BRReadLong(&br);
+    ExecutionCtx ectx = ExecutionCtx_Initialize(ctx, ep, NULL);
+    // records must be deserialized in the same order they were serialized
+    for(size_t i = 0 ; i < nRecords ; ++i){
+        Record* r = RG_DeserializeRecord(&ectx, &br);
+        WorkerMsg* msg = ExectuionPlan_WorkerMsgCreateAddRecord(ep, stepId, r, stepType);
+        ExectuionPlan_WorkerMsgSend(ep->assignWorker, msg);
+    }
+}
+
+static void ExecutionPlan_OnRepartitionFrameReceived(RedisModuleCtx *ctx, const char *sender_id, uint8_t type, const unsigned char *payload, uint32_t len){
+    ExecutionPlan_OnFrameReceived(ctx, payload, len, REPARTITION);
+}
+
+static void ExecutionPlan_CollectOnFrameReceived(RedisModuleCtx *ctx, const char *sender_id, uint8_t type, const unsigned char *payload, uint32_t len){
+    ExecutionPlan_OnFrameReceived(ctx, payload, len, COLLECT);
+}
+
 static void FlatExecutionPlan_AddBasicStep(FlatExecutionPlan* fep, const char* callbackName, void* arg, enum StepType type){
     FlatExecutionStep s;
     s.type = type;
@@ -2871,6 +3478,8 @@ void ExecutionPlan_Initialize(){
     Cluster_RegisterMsgReceiverM(ExecutionPlan_CollectDoneSendingRecords);
     Cluster_RegisterMsgReceiverM(ExecutionPlan_OnRepartitionRecordReceived);
     Cluster_RegisterMsgReceiverM(ExecutionPlan_DoneRepartition);
+    Cluster_RegisterMsgReceiverM(ExecutionPlan_OnRepartitionFrameReceived);
+    Cluster_RegisterMsgReceiverM(ExecutionPlan_CollectOnFrameReceived);
     Cluster_RegisterMsgReceiverM(ExecutionPlan_NotifyExecutionDone);
     Cluster_RegisterMsgReceiverM(FlatExecutionPlan_RegisterKeySpaceEvent);
     Cluster_RegisterMsgReceiverM(ExecutionPlan_TeminateExecution);
@@ -3189,11 +3798,13 @@ static ExecutionStep* ExecutionPlan_NewExecutionStep(FlatExecutionStep* step){
         es->repartion.stoped = false;
         es->repartion.pendings = array_new(Record*, PENDING_INITIAL_SIZE);
         es->repartion.totalShardsCompleted = 0;
+        es->repartion.frames = Gears_dictCreate(&Gears_dictTypeHeapStrings, NULL);
         break;
     case COLLECT:
     	es->collect.totalShardsCompleted = 0;
     	es->collect.stoped = false;
     	es->collect.pendings = array_new(Record*, PENDING_INITIAL_SIZE);
+    	es->collect.frame = array_new(Record*, 10);
     	break;
     case FOREACH:
         es->forEach.forEach = ForEachsMgmt_Get(step->bStep.stepName);
@@ -3214,6 +3825,9 @@ static ExecutionStep* ExecutionPlan_NewExecutionStep(FlatExecutionStep* step){
 		es->accumulateByKey.accumulate = AccumulateByKeysMgmt_Get(step->bStep.stepName);
 		es->accumulateByKey.accumulators = Gears_dictCreate(&Gears_dictTypeHeapStrings, NULL);
 		es->accumulateByKey.iter = NULL;
+		es->accumulateByKey.spillLevels = NULL;
+		es->accumulateByKey.currLevel = 0;
+		es->accumulateByKey.spillDisabled = false;
 		break;
     default:
         RedisModule_Assert(false);
@@ -3315,6 +3929,8 @@ static void ExecutionStep_Free(ExecutionStep* es){
 			}
 			array_free(es->repartion.pendings);
 		}
+		ExecutionPlan_FreeRepartitionFrames(es);
+		Gears_dictRelease(es->repartion.frames);
 		break;
     case COLLECT:
     	if(es->collect.pendings){
@@ -3324,6 +3940,8 @@ static void ExecutionStep_Free(ExecutionStep* es){
 			}
 			array_free(es->collect.pendings);
     	}
+    	ExecutionPlan_FreeCollectFrame(es);
+    	array_free(es->collect.frame);
 		break;
     case GROUP:
         if(es->group.groupedRecords){
@@ -3361,6 +3979,7 @@ static void ExecutionStep_Free(ExecutionStep* es){
 			Gears_dictReleaseIterator(iter);
 			Gears_dictRelease(es->accumulateByKey.accumulators);
     	}
+    	ExecutionPlan_AccumulateByKeyFreePartitions(es);
 		break;
 	default:
 	    RedisModule_Assert(false);
@@ -3711,6 +4330,16 @@ void FlatExecutionPlan_AddLocalAccumulateByKeyStep(FlatExecutionPlan* fep, const
     FlatExecutionPlan_AddBasicStep(fep, accumulateName, accumulateArg, ACCUMULATE_BY_KEY);
 }
 
+void FlatExecutionPlan_AddAggregateByKeyStep(FlatExecutionPlan* fep, const char* extraxtorName, void* extractorArg,
+                                             const char* accumulateName, void* accumulateArg,
+                                             const char* combineName, void* combineArg){
+    // the local accumulate by key returns key records so no need to extract the key again before the repartition
+    FlatExecutionPlan_AddBasicStep(fep, extraxtorName, extractorArg, EXTRACTKEY);
+    FlatExecutionPlan_AddBasicStep(fep, accumulateName, accumulateArg, ACCUMULATE_BY_KEY);
+    FlatExecutionPlan_AddBasicStep(fep, stepsNames[REPARTITION], NULL, REPARTITION);
+    FlatExecutionPlan_AddBasicStep(fep, combineName, combineArg, ACCUMULATE_BY_KEY);
+}
+
 void FlatExecutionPlan_AddCollectStep(FlatExecutionPlan* fep){
 	FlatExecutionPlan_AddBasicStep(fep, stepsNames[COLLECT], NULL, COLLECT);
 }
@@ -3771,6 +4400,10 @@ size_t ExecutionPlan_NExecutions() {
     return Gears_dictSize(epData.epDict);
 }
 
+size_t ExecutionPlan_NAccumulateBySpills() {
+    return __atomic_load_n(&accumulateBySpills, __ATOMIC_SEQ_CST);
+}
+
 void ExecutionPlan_DumpSingleRegistration(RedisModuleCtx *ctx, FlatExecutionPlan* fep, int flags) {
     int withPD = !(flags & REGISTRATION_DUMP_NO_PD);
     RedisModule_ReplyWithArray(ctx, withPD ? 12 : 10);
@@ -82,12 +82,14 @@ typedef struct RepartitionExecutionStep{
     bool stoped;
     Record** pendings;
     size_t totalShardsCompleted;
+    Gears_dict* frames; // shard id -> records waiting to be sent to this shard
 }RepartitionExecutionStep;
 
 typedef struct CollectExecutionStep{
     bool stoped;
     Record** pendings;
     size_t totalShardsCompleted;
+    Record** frame; // records waiting to be sent to the initiator
 }CollectExecutionStep;
 
 typedef struct LimitExecutionStep{
@@ -111,11 +113,35 @@ typedef struct AccumulateExecutionStep{
     bool isDone;
 }AccumulateExecutionStep;
 
+#define ACCUMULATE_BY_KEY_SPILL_PARTITIONS 16
+#define ACCUMULATE_BY_KEY_SPILL_LEVEL_BITS 4 // log2(ACCUMULATE_BY_KEY_SPILL_PARTITIONS)
+#define ACCUMULATE_BY_KEY_SPILL_MAX_LEVELS (64 / ACCUMULATE_BY_KEY_SPILL_LEVEL_BITS)
+
+typedef struct AccumulateByKeySpillPartition{
+    int fd; // -1 as long as the partition was not spilled
+    Gears_Buffer* pending; // serialized data not yet written to the spill file
+    size_t size; // number of bytes written to the spill file
+}AccumulateByKeySpillPartition;
+
+/*
+ * The groups are split into partitions by ACCUMULATE_BY_KEY_SPILL_LEVEL_BITS bits
+ * of their hash, each level uses the next bits so a partition that does not fit
+ * in memory when it is loaded back is split again on the next level.
+ */
+typedef struct AccumulateByKeySpillLevel{
+    size_t level;
+    size_t nextPartitionToLoad; // next spilled partition to load once all the records arrived
+    AccumulateByKeySpillPartition partitions[ACCUMULATE_BY_KEY_SPILL_PARTITIONS];
+}AccumulateByKeySpillLevel;
+
 typedef struct AccumulateByKeyExecutionStep{
     RedisGears_AccumulateByKeyCallback accumulate;
     ExecutionStepArg stepArg;
     Gears_dict* accumulators;
     Gears_dictIterator *iter;
+    AccumulateByKeySpillLevel** spillLevels; // stack of levels with spilled partitions, NULL as long as nothing was spilled
+    size_t currLevel; // level used to split the in memory groups, grows while a spilled partition is loaded
+    bool spillDisabled; // set once an async record was created, it points to an in memory group
 }AccumulateByKeyExecutionStep;
 
 typedef struct ExecutionPendingCtx ExecutionPendingCtx;
@@ -340,6 +366,8 @@ typedef struct ExecutionCtx{
     Record* originRecord;
     Record** actualPlaceHolder;
     Record* asyncRecordCreated;
+    RecordType** serializationFrameTypes; // records types serialized so far on the current frame, NULL if not serializing a frame
+    RecordType* serializedType; // type of the record currently being serialized
 }ExecutionCtx;
 
 #define ExecutionCtx_Initialize(c, e, s) (ExecutionCtx){ \
@@ -350,6 +378,8 @@ typedef struct ExecutionCtx{
         .originRecord = NULL, \
         .actualPlaceHolder = NULL, \
         .asyncRecordCreated = NULL, \
+        .serializationFrameTypes = NULL, \
+        .serializedType = NULL, \
     }
 
 extern char* statusesNames[];
@@ -381,6 +411,14 @@ void FlatExecutionPlan_AddAccumulateByKeyStep(FlatExecutionPlan* fep, const char
                                               const char* accumulateName, void* accumulateArg);
 void FlatExecutionPlan_AddLocalAccumulateByKeyStep(FlatExecutionPlan* fep, const char* extraxtorName, void* extractorArg,
                                               const char* accumulateName, void* accumulateArg);
+/*
+ * Two phases accumulate by key, records are first accumulated locally by key,
+ * only the partial accumulators are moved to the shard that owns the key and
+ * merged there using the combine callback.
+ */
+void FlatExecutionPlan_AddAggregateByKeyStep(FlatExecutionPlan* fep, const char* extraxtorName, void* extractorArg,
+                                             const char* accumulateName, void* accumulateArg,
+                                             const char* combineName, void* combineArg);
 void FlatExecutionPlan_AddCollectStep(FlatExecutionPlan* fep);
 void FlatExecutionPlan_AddLimitStep(FlatExecutionPlan* fep, size_t offset, size_t len);
 void FlatExecutionPlan_AddRepartitionStep(FlatExecutionPlan* fep, const char* extraxtorName, void* extractorArg);
@@ -391,6 +429,8 @@ Record* FlatExecutionPlane_RegistrationCtxUpgrade(ExecutionCtx* rctx, Record *da
 void FlatExecutionPlan_Register(SessionRegistrationCtx *srctx);
 const char* FlatExecutionPlan_GetReader(FlatExecutionPlan* fep);
 ExecutionPlan* FlatExecutionPlan_Run(FlatExecutionPlan* fep, ExecutionMode mode, void* arg, RedisGears_OnExecutionDoneCallback callback, void* privateData, WorkerData* worker, char** err, RunFlags runFlags);
+bool FlatExecutionPlan_IsSimple(FlatExecutionPlan* fep);
+Record* FlatExecutionPlan_RunSimple(FlatExecutionPlan* fep, RedisModuleCtx* rctx, Record* record, long long* duration);
 long long FlatExecutionPlan_GetExecutionDuration(ExecutionPlan* ep);
 long long FlatExecutionPlan_GetReadDuration(ExecutionPlan* ep);
 void FlatExecutionPlan_Free(FlatExecutionPlan* fep);
@@ -405,6 +445,7 @@ void ExecutionPlan_DumpSingleRegistration(RedisModuleCtx *ctx, FlatExecutionPlan
 int ExecutionPlan_DumpRegistrations(RedisModuleCtx *ctx, RedisModuleString **argv, int argc);
 size_t ExecutionPlan_NRegistrations();
 size_t ExecutionPlan_NExecutions();
+size_t ExecutionPlan_NAccumulateBySpills();
 void ExecutionPlan_InfoRegistrations(RedisModuleInfoCtx *ctx, int for_crash_report);
 int ExecutionPlan_InnerUnregisterExecution(RedisModuleCtx *ctx, RedisModuleString **argv, int argc);
 int ExecutionPlan_UnregisterExecution(RedisModuleCtx *ctx, RedisModuleString **argv, int argc);
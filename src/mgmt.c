@@ -45,6 +45,8 @@ GENERATE(ExecutionOnUnpaused)
 GENERATE(FlatExecutionOnRegistered)
 GENERATE(FlatExecutionOnUnregistered)
 GENERATE(KeysReaderReadRecord)
+GENERATE(StreamReaderReadRecord)
+GENERATE(StreamReaderReadBatch)
 
 void Mgmt_Init(){
     FiltersMgmt_Init();
@@ -61,4 +63,6 @@ void Mgmt_Init(){
     FlatExecutionOnRegisteredsMgmt_Init();
     FlatExecutionOnUnregisteredsMgmt_Init();
     KeysReaderReadRecordsMgmt_Init();
+    StreamReaderReadRecordsMgmt_Init();
+    StreamReaderReadBatchsMgmt_Init();
 }
@@ -88,6 +88,14 @@ bool KeysReaderReadRecordsMgmt_Add(const char* name, RedisGears_KeysReaderReadRe
 RedisGears_KeysReaderReadRecordCallback KeysReaderReadRecordsMgmt_Get(const char* name);
 ArgType* KeysReaderReadRecordsMgmt_GetArgType(const char* name);
 
+bool StreamReaderReadRecordsMgmt_Add(const char* name, RedisGears_StreamReaderReadRecordCallback callback, ArgType* type);
+RedisGears_StreamReaderReadRecordCallback StreamReaderReadRecordsMgmt_Get(const char* name);
+ArgType* StreamReaderReadRecordsMgmt_GetArgType(const char* name);
+
+bool StreamReaderReadBatchsMgmt_Add(const char* name, RedisGears_StreamReaderReadBatchCallback callback, ArgType* type);
+RedisGears_StreamReaderReadBatchCallback StreamReaderReadBatchsMgmt_Get(const char* name);
+ArgType* StreamReaderReadBatchsMgmt_GetArgType(const char* name);
+
 void Mgmt_Init();
 
 
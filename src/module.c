@@ -20,6 +20,7 @@
 #include "readers/streams_reader.h"
 #include "readers/command_reader.h"
 #include "readers/shardid_reader.h"
+#include "readers/timer_reader.h"
 #include "mappers.h"
 #include "lock_handler.h"
 #include "command_hook.h"
@@ -210,6 +211,11 @@ static int RG_LocalAccumulateBy(FlatExecutionPlan* fep, char* extraxtorName, voi
     return 1;
 }
 
+static int RG_AggregateBy(FlatExecutionPlan* fep, char* extraxtorName, void* extractorArg, char* accumulatorName, void* accumulatorArg, char* combineName, void* combineArg){
+    FlatExecutionPlan_AddAggregateByKeyStep(fep, extraxtorName, extractorArg, accumulatorName, accumulatorArg, combineName, combineArg);
+    return 1;
+}
+
 static int RG_Collect(FlatExecutionPlan* fep){
     FlatExecutionPlan_AddCollectStep(fep);
 	return 1;
@@ -344,6 +350,46 @@ static void RG_StreamReaderTriggerArgsFree(StreamReaderTriggerArgs* args){
     return StreamReaderTriggerArgs_Free(args);
 }
 
+static int RG_StreamReaderTriggerArgsSetReadRecordCallback(StreamReaderTriggerArgs* srta, const char* name){
+    return StreamReaderTriggerArgs_SetReadRecordCallback(srta, name);
+}
+
+static int RG_StreamReaderSetReadRecordCallback(StreamReaderCtx* readerCtx, const char* name){
+    return StreamReaderCtx_SetReadRecordCallback(readerCtx, name);
+}
+
+static void RG_StreamReaderRegisterReadRecordCallback(const char* name, RedisGears_StreamReaderReadRecordCallback callback){
+    StreamReaderReadRecordsMgmt_Add(name, callback, NULL);
+}
+
+static int RG_StreamReaderTriggerArgsSetReadBatchCallback(StreamReaderTriggerArgs* srta, const char* name){
+    return StreamReaderTriggerArgs_SetReadBatchCallback(srta, name);
+}
+
+static int RG_StreamReaderSetReadBatchCallback(StreamReaderCtx* readerCtx, const char* name){
+    return StreamReaderCtx_SetReadBatchCallback(readerCtx, name);
+}
+
+static void RG_StreamReaderRegisterReadBatchCallback(const char* name, RedisGears_StreamReaderReadBatchCallback callback){
+    StreamReaderReadBatchsMgmt_Add(name, callback, NULL);
+}
+
+static void RG_StreamReaderTriggerArgsSetDeliverAsBatch(StreamReaderTriggerArgs* srta, bool deliverAsBatch){
+    StreamReaderTriggerArgs_SetDeliverAsBatch(srta, deliverAsBatch);
+}
+
+static void RG_StreamReaderTriggerArgsSetAdaptiveBatch(StreamReaderTriggerArgs* srta, size_t minBatchSize, size_t maxBatchSize, size_t targetLatencyMS){
+    StreamReaderTriggerArgs_SetAdaptiveBatch(srta, minBatchSize, maxBatchSize, targetLatencyMS);
+}
+
+static void RG_StreamReaderTriggerArgsSetScheduling(StreamReaderTriggerArgs* srta, size_t maxConcurrentBatches, bool orderedPerStream){
+    StreamReaderTriggerArgs_SetScheduling(srta, maxConcurrentBatches, orderedPerStream);
+}
+
+static void RG_StreamReaderSetDeliverAsBatch(StreamReaderCtx* readerCtx, bool deliverAsBatch){
+    StreamReaderCtx_SetDeliverAsBatch(readerCtx, deliverAsBatch);
+}
+
 static KeysReaderTriggerArgs* RG_KeysReaderTriggerArgsCreate(const char* prefix, char** eventTypes, int* keyTypes, bool readValue){
     return KeysReaderTriggerArgs_Create(prefix, eventTypes, keyTypes, readValue);
 }
@@ -360,10 +406,22 @@ static CommandReaderTriggerArgs* RG_CommandReaderTriggerArgsCreateHook(const cha
     return CommandReaderTriggerArgs_CreateHook(hook, prefix, inOrder);
 }
 
+static void RG_CommandReaderTriggerArgsSetFastPath(CommandReaderTriggerArgs* args, int fastPath){
+    CommandReaderTriggerArgs_SetFastPath(args, fastPath);
+}
+
 static void RG_CommandReaderTriggerArgsFree(CommandReaderTriggerArgs* args){
     CommandReaderTriggerArgs_Free(args);
 }
 
+static TimerReaderTriggerArgs* RG_TimerReaderTriggerArgsCreate(long long intervalMS, int fixedDelay, long long jitterMS){
+    return TimerReaderTriggerArgs_Create(intervalMS, fixedDelay, jitterMS);
+}
+
+static void RG_TimerReaderTriggerArgsFree(TimerReaderTriggerArgs* args){
+    TimerReaderTriggerArgs_Free(args);
+}
+
 static CommandReaderTriggerCtx* RG_GetCommandReaderTriggerCtx(ExecutionCtx* ectx){
     return CommandReaderTriggerCtx_Get(ectx);
 }
@@ -388,6 +446,14 @@ static int RG_KeysReaderSetAvoidEvents(int avoidEvents){
     return KeyReader_SetAvoidEvents(avoidEvents);
 }
 
+static size_t RG_KeysReaderGetCoalescedEvents(){
+    return KeysReader_GetCoalescedEvents();
+}
+
+static int RG_KeysReaderPatternMatch(const char* pattern, size_t patternLen, const char* key, size_t keyLen){
+    return KeysReader_PatternMatch(pattern, patternLen, key, keyLen);
+}
+
 static CommandCtx* RG_CommandCtxGetShallowCopy(CommandCtx* cmdCtx){
     return KeyReader_CommandCtxGetShallowCopy(cmdCtx);
 }
@@ -557,6 +623,10 @@ static RunFlags RG_GetRunFlags(ExecutionCtx* ectx){
     return ectx->ep->runFlags;
 }
 
+static int RG_ContinueSerializationFrame(ExecutionCtx* ectx){
+    return RG_SerializationFrameContinued(ectx);
+}
+
 static ArgType* RG_CreateType(char* name,
                               int version,
                               ArgFree free,
@@ -806,6 +876,26 @@ static void RG_KeysReaderRegisterReadRecordCallback(const char* name, RedisGears
     KeysReaderReadRecordsMgmt_Add(name, callback, NULL);
 }
 
+static void RG_KeysReaderSetHashFields(KeysReaderCtx* krCtx, Arr(char*) hashFields){
+    KeysReaderCtx_SetHashFields(krCtx, hashFields);
+}
+
+static void RG_KeysReaderTriggerArgsSetHashFields(KeysReaderTriggerArgs* krta, Arr(char*) hashFields){
+    KeysReaderTriggerArgs_SetHashFields(krta, hashFields);
+}
+
+static void RG_KeysReaderTriggerArgsSetCoalesceWindow(KeysReaderTriggerArgs* krta, size_t coalesceWindowMS){
+    KeysReaderTriggerArgs_SetCoalesceWindow(krta, coalesceWindowMS);
+}
+
+static void RG_KeysReaderRegisterDupRecordCallback(const char* name, RedisGears_KeysReaderDupRecordCallback callback){
+    KeysReader_RegisterDupRecordCallback(name, callback);
+}
+
+static void RG_KeysReaderTriggerArgsSetBatch(KeysReaderTriggerArgs* krta, size_t batchSize, size_t batchDurationMS){
+    KeysReaderTriggerArgs_SetBatch(krta, batchSize, batchDurationMS);
+}
+
 static Gears_Buffer* RG_BufferCreate(size_t initCap){
     return Gears_BufferNew(initCap);
 }
@@ -1083,6 +1173,7 @@ static int RedisGears_RegisterApi(RedisModuleCtx* ctx){
     REGISTER_API(Accumulate, ctx);
     REGISTER_API(AccumulateBy, ctx);
     REGISTER_API(LocalAccumulateBy, ctx);
+    REGISTER_API(AggregateBy, ctx);
     REGISTER_API(FlatMap, ctx);
     REGISTER_API(Filter, ctx);
     REGISTER_API(GroupBy, ctx);
@@ -1107,10 +1198,22 @@ static int RedisGears_RegisterApi(RedisModuleCtx* ctx){
     REGISTER_API(KeysReaderCtxFree, ctx);
     REGISTER_API(StreamReaderTriggerArgsCreate, ctx);
     REGISTER_API(StreamReaderTriggerArgsFree, ctx);
+    REGISTER_API(StreamReaderTriggerArgsSetReadRecordCallback, ctx);
+    REGISTER_API(StreamReaderSetReadRecordCallback, ctx);
+    REGISTER_API(StreamReaderRegisterReadRecordCallback, ctx);
+    REGISTER_API(StreamReaderTriggerArgsSetReadBatchCallback, ctx);
+    REGISTER_API(StreamReaderSetReadBatchCallback, ctx);
+    REGISTER_API(StreamReaderRegisterReadBatchCallback, ctx);
+    REGISTER_API(StreamReaderTriggerArgsSetDeliverAsBatch, ctx);
+    REGISTER_API(StreamReaderTriggerArgsSetAdaptiveBatch, ctx);
+    REGISTER_API(StreamReaderTriggerArgsSetScheduling, ctx);
+    REGISTER_API(StreamReaderSetDeliverAsBatch, ctx);
     REGISTER_API(KeysReaderTriggerArgsCreate, ctx);
     REGISTER_API(KeysReaderTriggerArgsSetHookCommands, ctx);
     REGISTER_API(KeysReaderTriggerArgsFree, ctx);
     REGISTER_API(KeysReaderSetAvoidEvents, ctx);
+    REGISTER_API(KeysReaderGetCoalescedEvents, ctx);
+    REGISTER_API(KeysReaderPatternMatch, ctx);
     REGISTER_API(CommandCtxGetShallowCopy, ctx);
     REGISTER_API(CommandCtxFree, ctx);
     REGISTER_API(CommandCtxOverrideReply, ctx);
@@ -1118,7 +1221,10 @@ static int RedisGears_RegisterApi(RedisModuleCtx* ctx){
     REGISTER_API(CommandCtxGet, ctx);
     REGISTER_API(CommandReaderTriggerArgsCreate, ctx);
     REGISTER_API(CommandReaderTriggerArgsCreateHook, ctx);
+    REGISTER_API(CommandReaderTriggerArgsSetFastPath, ctx);
     REGISTER_API(CommandReaderTriggerArgsFree, ctx);
+    REGISTER_API(TimerReaderTriggerArgsCreate, ctx);
+    REGISTER_API(TimerReaderTriggerArgsFree, ctx);
     REGISTER_API(GetCommandReaderTriggerCtx, ctx);
     REGISTER_API(CommandReaderTriggerCtxGetShallowCopy, ctx);
     REGISTER_API(CommandReaderTriggerCtxNext, ctx);
@@ -1128,6 +1234,7 @@ static int RedisGears_RegisterApi(RedisModuleCtx* ctx){
     REGISTER_API(GetFepById, ctx);
     REGISTER_API(DumpRegistration, ctx);
     REGISTER_API(GetRunFlags, ctx);
+    REGISTER_API(ContinueSerializationFrame, ctx);
     REGISTER_API(GetFep, ctx);
     REGISTER_API(IsDone, ctx);
     REGISTER_API(GetRecordsLen, ctx);
@@ -1159,6 +1266,7 @@ static int RedisGears_RegisterApi(RedisModuleCtx* ctx){
     REGISTER_API(ListRecordAdd, ctx);
     REGISTER_API(ListRecordGet, ctx);
     REGISTER_API(ListRecordPop, ctx);
+    REGISTER_API(IteratorRecordCreate, ctx);
     REGISTER_API(StringRecordCreate, ctx);
     REGISTER_API(ErrorRecordCreate, ctx);
     REGISTER_API(StringRecordGet, ctx);
@@ -1256,6 +1364,11 @@ static int RedisGears_RegisterApi(RedisModuleCtx* ctx){
     REGISTER_API(KeysReaderSetReadRecordCallback, ctx);
     REGISTER_API(KeysReaderTriggerArgsSetReadRecordCallback, ctx);
     REGISTER_API(KeysReaderRegisterReadRecordCallback, ctx);
+    REGISTER_API(KeysReaderSetHashFields, ctx);
+    REGISTER_API(KeysReaderTriggerArgsSetHashFields, ctx);
+    REGISTER_API(KeysReaderTriggerArgsSetCoalesceWindow, ctx);
+    REGISTER_API(KeysReaderTriggerArgsSetBatch, ctx);
+    REGISTER_API(KeysReaderRegisterDupRecordCallback, ctx);
 
     REGISTER_API(GetRedisVersion, ctx);
 
@@ -1346,6 +1459,7 @@ static void RedisGears_InfoFunc(RedisModuleInfoCtx *ctx, int for_crash_report) {
         // default section
         RedisModule_InfoAddFieldULongLong(ctx, "nexecutions", ExecutionPlan_NExecutions());
         RedisModule_InfoAddFieldULongLong(ctx, "nregistrations", ExecutionPlan_NRegistrations());
+        RedisModule_InfoAddFieldULongLong(ctx, "naccumulatebyspills", ExecutionPlan_NAccumulateBySpills());
     }
 
     if (RedisModule_InfoAddSection(ctx, "regisrations") == REDISMODULE_OK) {
@@ -1455,6 +1569,7 @@ int RedisGears_OnLoad(RedisModuleCtx *ctx, RedisModuleString **argv, int argc) {
     RGM_RegisterReader(StreamReader);
     RGM_RegisterReader(CommandReader);
     RGM_RegisterReader(ShardIDReader);
+    RGM_RegisterReader(TimerReader);
     RGM_RegisterMap(GetValueMapper, NULL);
     ExecutionPlan_Initialize();
 
@@ -38,6 +38,8 @@ typedef struct CommandReaderTriggerArgs{
     TriggerType triggerType;
     int inOrder; // it true, fire the events in the order they arrive,
                  // i.e, do not start the next event before the last one finished.
+    int fastPath; // if true, sync triggers of simple registrations (only map, filter and foreach steps)
+                  // run the steps directly without creating an execution (async records are not allowed).
 }CommandReaderTriggerArgs;
 
 typedef struct CommandReaderTriggerCtx{
@@ -55,6 +57,7 @@ typedef struct CommandReaderTriggerCtx{
     Gears_dict* pendingExections;
     Gears_listNode* listNode;
     WorkerData* wd;
+    bool fastPath;
 }CommandReaderTriggerCtx;
 
 typedef struct CommandReaderArgs{
@@ -149,6 +152,10 @@ CommandReaderTriggerArgs* CommandReaderTriggerArgs_CreateHook(const char* hook,
     return ret;
 }
 
+void CommandReaderTriggerArgs_SetFastPath(CommandReaderTriggerArgs* crtArgs, int fastPath){
+    crtArgs->fastPath = fastPath;
+}
+
 void CommandReaderTriggerArgs_Free(CommandReaderTriggerArgs* crtArgs){
     switch(crtArgs->triggerType){
     case TriggerType_Trigger:
@@ -170,6 +177,12 @@ void CommandReaderTriggerArgs_Free(CommandReaderTriggerArgs* crtArgs){
 Gears_dict* CommandRegistrations = NULL;
 Gears_dict* HookRegistrations = NULL;
 
+/*
+ * Key prefix index (CommandKeysIndex) per hooked command, used by the command filter
+ * to skip invocations that none of the hooks matches without going over the hooks list.
+ */
+static Gears_dict* HookIndexes = NULL;
+
 static CommandReaderTriggerCtx* CommandReaderTriggerCtx_Create(FlatExecutionPlan* fep, ExecutionMode mode, CommandReaderTriggerArgs* args){
     CommandReaderTriggerCtx* ret = RG_ALLOC(sizeof(*ret));
     *ret = (CommandReaderTriggerCtx){
@@ -187,12 +200,18 @@ static CommandReaderTriggerCtx* CommandReaderTriggerCtx_Create(FlatExecutionPlan
             .pendingExections = Gears_dictCreate(&Gears_dictTypeHeapStrings, NULL),
             .listNode = NULL,
             .wd = args->inOrder? RedisGears_WorkerDataCreate(fep->executionThreadPool) : NULL,
+            .fastPath = args->fastPath && args->triggerType == TriggerType_Trigger &&
+                        mode == ExecutionModeSync && FlatExecutionPlan_IsSimple(fep),
     };
     return ret;
 }
 
 CommandReaderTriggerCtx* CommandReaderTriggerCtx_Get(ExecutionCtx* eCtx){
     ExecutionPlan* ep = RedisGears_GetExecutionFromCtx(eCtx);
+    if(!ep->steps){
+        // execution that was run on the fast path, it has no reader step.
+        return NULL;
+    }
     ExecutionStep* reader = ep->steps[array_len(ep->steps) - 1];
     RedisModule_Assert(reader->type == READER);
     Reader* r = reader->reader.r;
@@ -321,6 +340,39 @@ static Reader* CommandReader_Create(void* arg){
     return reader;
 }
 
+static void CommandReader_HookIndexAdd(CommandReaderTriggerCtx* crtCtx){
+    CommandReaderTriggerArgs* crtArgs = crtCtx->args;
+    if(!HookIndexes){
+        HookIndexes = Gears_dictCreate(&Gears_dictTypeHeapStringsCaseInsensitive, NULL);
+    }
+    CommandKeysIndex* index = Gears_dictFetchValue(HookIndexes, crtArgs->hookData.hook);
+    if(!index){
+        CommandReaderTriggerInfo* info = &crtArgs->hookData.info;
+        index = RG_ALLOC(sizeof(*index));
+        CommandKeysIndex_Init(index, info->firstKey, info->lastKey, info->jump);
+        Gears_dictAdd(HookIndexes, crtArgs->hookData.hook, index);
+    }
+    const char* keyPrefix = crtArgs->hookData.keyPrefix;
+    CommandKeysIndex_Add(index, keyPrefix, keyPrefix ? strlen(keyPrefix) : 0, true, crtCtx);
+}
+
+static void CommandReader_HookIndexFree(CommandKeysIndex* index){
+    CommandKeysIndex_Clear(index);
+    RG_FREE(index);
+}
+
+static void CommandReader_HookIndexDelete(CommandReaderTriggerCtx* crtCtx){
+    CommandReaderTriggerArgs* crtArgs = crtCtx->args;
+    CommandKeysIndex* index = Gears_dictFetchValue(HookIndexes, crtArgs->hookData.hook);
+    RedisModule_Assert(index);
+    const char* keyPrefix = crtArgs->hookData.keyPrefix;
+    CommandKeysIndex_Delete(index, keyPrefix, keyPrefix ? strlen(keyPrefix) : 0, true, crtCtx);
+    if(CommandKeysIndex_Size(index) == 0){
+        Gears_dictDelete(HookIndexes, crtArgs->hookData.hook);
+        CommandReader_HookIndexFree(index);
+    }
+}
+
 static int CommandReader_InnerRegister(FlatExecutionPlan* fep, ExecutionMode mode, CommandReaderTriggerArgs* crtArgs, char** err){
     CommandReaderTriggerCtx* crtCtx = NULL;
     switch(crtArgs->triggerType){
@@ -351,6 +403,7 @@ static int CommandReader_InnerRegister(FlatExecutionPlan* fep, ExecutionMode mod
         crtCtx = CommandReaderTriggerCtx_Create(fep, mode, crtArgs);
         Gears_listAddNodeHead(Gears_dictGetVal(entry), crtCtx);
         crtCtx->listNode = Gears_listFirst(((Gears_list*)Gears_dictGetVal(entry)));
+        CommandReader_HookIndexAdd(crtCtx);
         break;
     default:
         RedisModule_Assert(false);
@@ -565,6 +618,7 @@ static void CommandReader_UnregisterTrigger(FlatExecutionPlan* fep, bool abortPe
             Gears_list* l = Gears_dictFetchValue(HookRegistrations, crtCtx->args->hookData.hook);
             Gears_listDelNode(l, crtCtx->listNode);
             crtCtx->listNode = NULL;
+            CommandReader_HookIndexDelete(crtCtx);
             if(Gears_listLength(l) == 0){
                 Gears_listRelease(l);
                 Gears_dictDelete(HookRegistrations, crtCtx->args->hookData.hook);
@@ -582,6 +636,7 @@ static void CommandReader_SerializeArgs(void* var, Gears_BufferWriter* bw){
     CommandReaderTriggerArgs* crtArgs = var;
     RedisGears_BWWriteLong(bw, crtArgs->triggerType);
     RedisGears_BWWriteLong(bw, crtArgs->inOrder);
+    RedisGears_BWWriteLong(bw, crtArgs->fastPath);
     switch(crtArgs->triggerType){
     case TriggerType_Trigger:
         RedisGears_BWWriteString(bw, crtArgs->trigger);
@@ -606,6 +661,7 @@ static void* CommandReader_DeserializeArgs(Gears_BufferReader* br, int encver){
     const char* hook;
     const char* keyPrefix;
     int inOrder = 0;
+    int fastPath = 0;
     CommandReaderTriggerArgs* crtArgs = NULL;
     TriggerType triggerType = TriggerType_Trigger;
     if(encver >= VERSION_WITH_COMMAND_HOOKS){
@@ -614,6 +670,9 @@ static void* CommandReader_DeserializeArgs(Gears_BufferReader* br, int encver){
     if (encver >= VERSION_WITH_COMMAND_READER_IN_ORDER) {
         inOrder = RedisGears_BRReadLong(br);
     }
+    if (encver >= VERSION_WITH_COMMAND_READER_FAST_PATH) {
+        fastPath = RedisGears_BRReadLong(br);
+    }
     switch(triggerType){
     case TriggerType_Trigger:
         trigger = RedisGears_BRReadString(br);
@@ -633,6 +692,7 @@ static void* CommandReader_DeserializeArgs(Gears_BufferReader* br, int encver){
     default:
         RedisModule_Assert(false);
     }
+    crtArgs->fastPath = fastPath;
     return crtArgs;
 }
 
@@ -659,6 +719,7 @@ static void CommandReader_DumpRegistrationInfo(FlatExecutionPlan* fep, RedisModu
     RedisModule_InfoAddFieldCString(ctx, "lastError", crtCtx->lastError ? crtCtx->lastError : "None");
     RedisModule_InfoAddFieldCString(ctx, "trigger", crtCtx->args->trigger);
     RedisModule_InfoAddFieldULongLong(ctx, "inorder", crtCtx->args->inOrder);
+    RedisModule_InfoAddFieldULongLong(ctx, "fastpath", crtCtx->args->fastPath);
 }
 
 static void CommandReader_DumpRegistrationData(RedisModuleCtx* ctx, FlatExecutionPlan* fep){
@@ -696,11 +757,13 @@ static void CommandReader_DumpRegistrationData(RedisModuleCtx* ctx, FlatExecutio
         RedisModule_ReplyWithNull(ctx);
     }
     RedisModule_ReplyWithStringBuffer(ctx, "args", strlen("args"));
-    RedisModule_ReplyWithArray(ctx, 4);
+    RedisModule_ReplyWithArray(ctx, 6);
     RedisModule_ReplyWithStringBuffer(ctx, "trigger", strlen("trigger"));
     RedisModule_ReplyWithStringBuffer(ctx, crtCtx->args->trigger, strlen(crtCtx->args->trigger));
     RedisModule_ReplyWithStringBuffer(ctx, "inorder", strlen("inorder"));
     RedisModule_ReplyWithLongLong(ctx, crtCtx->args->inOrder);
+    RedisModule_ReplyWithStringBuffer(ctx, "fastpath", strlen("fastpath"));
+    RedisModule_ReplyWithLongLong(ctx, crtCtx->args->fastPath);
 }
 
 static void CommandReader_RdbSaveSingleRegistration(RedisModuleIO *rdb, Gears_Buffer* buff, CommandReaderTriggerCtx* crtCtx){
@@ -897,6 +960,16 @@ static void CommandReader_Clear(){
         Gears_dictEmpty(HookRegistrations, NULL);
     }
 
+    if(HookIndexes){
+        Gears_dictIterator *iter = Gears_dictGetIterator(HookIndexes);
+        Gears_dictEntry *entry = NULL;
+        while((entry = Gears_dictNext(iter))){
+            CommandReader_HookIndexFree(Gears_dictGetVal(entry));
+        }
+        Gears_dictReleaseIterator(iter);
+        Gears_dictEmpty(HookIndexes, NULL);
+    }
+
 
 }
 
@@ -1013,6 +1086,49 @@ static void CommandReader_ExectionHoldingCallback(ExecutionPlan* ep, void* priva
     RedisModule_BlockedClientMeasureTimeEnd(privateData);
 }
 
+/*
+ * Run a trigger of a fast path registration (see CommandReaderTriggerArgs::fastPath),
+ * the steps are invoked directly on the command argv and the result is replied right away.
+ */
+static void CommandReader_FastPathTrigger(RedisModuleCtx *ctx, CommandReaderTriggerCtx* crtCtx, RedisModuleString **argv, int argc){
+    Record* argvRecord = RedisGears_ListRecordCreate(argc);
+    for(size_t i = 0 ; i < argc ; ++i){
+        const char* arg = RedisModule_StringPtrLen(argv[i], NULL);
+        Record* strRecord = RedisGears_StringRecordCreate(RG_STRDUP(arg), strlen(arg));
+        RedisGears_ListRecordAdd(argvRecord, strRecord);
+    }
+
+    ++crtCtx->numTriggered;
+
+    long long duration;
+    Record* r = FlatExecutionPlan_RunSimple(crtCtx->fep, ctx, argvRecord, &duration);
+
+    crtCtx->lastRunDuration = duration;
+    crtCtx->totalRunDuration += crtCtx->lastRunDuration;
+
+    if(r && RedisGears_RecordGetType(r) == errorRecordType){
+        ++crtCtx->numFailures;
+        const char* lastError = RedisGears_StringRecordGet(r, NULL);
+        if(crtCtx->lastError){
+            RG_FREE(crtCtx->lastError);
+        }
+        crtCtx->lastError = RG_STRDUP(lastError);
+        RedisModule_ReplyWithError(ctx, lastError);
+    }else{
+        ++crtCtx->numSuccess;
+        if(r){
+            RedisModule_ReplyWithArray(ctx, 1);
+            Command_ReturnResult(ctx, r);
+        }else{
+            RedisModule_ReplyWithArray(ctx, 0);
+        }
+    }
+
+    if(r){
+        RedisGears_FreeRecord(r);
+    }
+}
+
 static int CommandReader_Trigger(RedisModuleCtx *ctx, RedisModuleString **argv, int argc){
     /* Handle getkeys-api introspection */
     if (RedisModule_IsKeysPositionRequest(ctx)) {
@@ -1089,6 +1205,11 @@ static int CommandReader_Trigger(RedisModuleCtx *ctx, RedisModuleString **argv,
         VERIFY_CLUSTER_INITIALIZE(ctx);
     }
 
+    if(crtCtx->fastPath){
+        CommandReader_FastPathTrigger(ctx, crtCtx, argv + 1, argc - 1);
+        return REDISMODULE_OK;
+    }
+
     char* err = NULL;
     CommandReaderArgs* args = CommandReaderArgs_Create(argv + 1, argc - 1, crtCtx);
     ExecutionPlan* ep = RedisGears_RunWithFlags(crtCtx->fep, crtCtx->mode, args, CommandReader_OnDone,
@@ -1149,6 +1270,12 @@ void CommandReader_CommandFilter(RedisModuleCommandFilterCtx *filter){
 
     const RedisModuleString* cmd = RedisModule_CommandFilterArgGet(filter, 0);
     const char* cmdCStr = RedisModule_StringPtrLen(cmd, NULL);
+    CommandKeysIndex* index = HookIndexes ? Gears_dictFetchValue(HookIndexes, cmdCStr) : NULL;
+    if(!index || !CommandKeysIndex_Match(index, filter)){
+        // command is not hooked or none of the hooks matches this invocation
+        return;
+    }
+
     Gears_listNode* node = Gears_dictFetchValue(startNodes, cmdCStr);
 
     if (node == &noOveride) {
@@ -8,6 +8,7 @@ extern RedisGears_ReaderCallbacks CommandReader;
 int CommandReader_Initialize(RedisModuleCtx* ctx);
 CommandReaderTriggerArgs* CommandReaderTriggerArgs_CreateTrigger(const char* trigger, int inOrder);
 CommandReaderTriggerArgs* CommandReaderTriggerArgs_CreateHook(const char* hook, const char* keyPrefix, int inOrder);
+void CommandReaderTriggerArgs_SetFastPath(CommandReaderTriggerArgs* crtArgs, int fastPath);
 void CommandReaderTriggerArgs_Free(CommandReaderTriggerArgs* crtArgs);
 
 CommandReaderTriggerCtx* CommandReaderTriggerCtx_Get(ExecutionCtx* eCtx);
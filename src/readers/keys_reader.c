@@ -15,6 +15,7 @@
 #include <errno.h>
 #include "../command_hook.h"
 #include "readers_common.h"
+#include "utils/trie.h"
 
 #define KEYS_NAME_FIELD "key_name"
 #define KEYS_SPEC_NAME "keys_spec"
@@ -39,13 +40,41 @@ typedef struct KeysReaderRegisterData{
     Gears_list* localDoneExecutions;
     WorkerData* wd;
     CommandHookCtx** hooks;
+    size_t seq; // registration order, registrations are fired by this order
+    bool registered;
+    Gears_dict* coalescedEvents; // key -> KeysReaderCoalescedEvent waiting for the coalesce window to end
+    unsigned long long numCoalesced;
+    struct KeysReaderBatchEntry* pendingBatch; // events waiting to be fired as a single execution
+    RedisModuleTimerID batchTimer;
+    bool batchTimerSet;
 }KeysReaderRegisterData;
 
+/*
+ * Events on the same key that arrived during the coalesce window,
+ * a single execution will be triggered for all of them when the window ends.
+ */
+typedef struct KeysReaderCoalescedEvent{
+    KeysReaderRegisterData* rData;
+    char* key;
+    char* event; // the last event
+    size_t numEvents;
+}KeysReaderCoalescedEvent;
+
 Gears_list* keysReaderRegistration = NULL;
 
+/*
+ * Index over the registrations by event type and key prefix so a key space
+ * notification only goes over the registrations that might fire on it.
+ */
+static Gears_dict* keysReaderEventsIndex = NULL; // event type -> trie of the registrations on this event
+static Gears_Trie* keysReaderAllEventsIndex = NULL; // trie of the registrations on all events
+static size_t keysReaderRegistrationSeq = 0;
+
 RedisModuleDict *keysDict = NULL;
 
 static Record* KeysReader_Next(ExecutionCtx* ectx, void* ctx);
+static int KeysReader_RegistrationEventsClasses(KeysReaderTriggerArgs* args);
+static void KeysReader_ReplyWithEventsClasses(RedisModuleCtx* ctx, int events);
 
 typedef struct CommandCtx{
     size_t refCount;
@@ -57,8 +86,20 @@ typedef struct CommandCtx{
     RedisModuleBlockedClient* bc;
 }CommandCtx;
 
+#define KEYS_READER_INITIAL_BATCH_CAP 16
+#define KEYS_READER_MAX_BATCH_SIZE 1000000
+#define KEYS_READER_MAX_BATCH_DURATION_MS 86400000 // one day
+
+typedef struct KeysReaderBatchEntry{
+    char* key;
+    char* event;
+    size_t coalescedEvents;
+}KeysReaderBatchEntry;
+
 static bool ignoreKeysEvents = false;
 static CommandCtx* currCmdCtx = NULL;
+static size_t currCoalescedEvents = 0; // number of coalesced events of the key currently read
+static Gears_dict* keysReaderDupRecords = NULL; // read record callback name -> dup record callback
 
 typedef struct KeysReaderCtx{
     char* match;
@@ -72,7 +113,11 @@ typedef struct KeysReaderCtx{
     bool noScan;
     char* readRecordStr;
     RedisGears_KeysReaderReadRecordCallback readRecord;
+    char** hashFields;
     CommandCtx* cmdCtx;
+    size_t coalescedEvents;
+    KeysReaderBatchEntry* batch; // keys to read when the execution was triggered by a batch of events
+    Record* snapshot; // value already read on the event, shared with the other registrations fired by the event
 }KeysReaderCtx;
 
 typedef struct KeysReaderTriggerArgs{
@@ -83,6 +128,11 @@ typedef struct KeysReaderTriggerArgs{
     bool readValue;
     char* readRecordStr;
     RedisGears_KeysReaderReadRecordCallback readRecord;
+    RedisGears_KeysReaderDupRecordCallback dupRecord;
+    char** hashFields;
+    size_t coalesceWindowMS;
+    size_t batchSize;
+    size_t batchDurationMS;
 }KeysReaderTriggerArgs;
 
 static CommandCtx* KeyReader_CommandCtxCreate(RedisModuleCtx* clientCtx, RedisModuleString** argv, size_t argc){
@@ -182,6 +232,10 @@ int KeyReader_SetAvoidEvents(int avoidEvents){
 
 CommandCtx* KeyReader_CommandCtxGet(ExecutionCtx* eCtx){
     ExecutionPlan* ep = RedisGears_GetExecutionFromCtx(eCtx);
+    if(!ep->steps){
+        // execution that was run on the fast path, it has no reader step.
+        return NULL;
+    }
     ExecutionStep* reader = ep->steps[array_len(ep->steps) - 1];
     RedisModule_Assert(reader->type == READER);
     Reader* r = reader->reader.r;
@@ -209,6 +263,9 @@ void KeysReaderTriggerArgs_Free(KeysReaderTriggerArgs* args){
     if(args->readRecordStr){
         RG_FREE(args->readRecordStr);
     }
+    if(args->hashFields){
+        array_free_ex(args->hashFields, RG_FREE(*(char**)ptr));
+    }
     RG_FREE(args);
 }
 
@@ -241,8 +298,12 @@ static void KeysReaderRegisterData_Free(KeysReaderRegisterData* rData){
             array_free(rData->hooks);
         }
 
+        // each coalesced event holds a reference to the registration
+        RedisModule_Assert(Gears_dictSize(rData->coalescedEvents) == 0);
+
         Gears_dictRelease(rData->localPendingExecutions);
         Gears_listRelease(rData->localDoneExecutions);
+        Gears_dictRelease(rData->coalescedEvents);
 
         if(rData->lastError){
             RG_FREE(rData->lastError);
@@ -272,6 +333,12 @@ static KeysReaderRegisterData* KeysReaderRegisterData_Create(FlatExecutionPlan*
         .localDoneExecutions = Gears_listCreate(),
         .wd = RedisGears_WorkerDataCreate(fep->executionThreadPool),
         .hooks = hooks,
+        .seq = keysReaderRegistrationSeq++,
+        .registered = false,
+        .coalescedEvents = Gears_dictCreate(&Gears_dictTypeHeapStrings, NULL),
+        .numCoalesced = 0,
+        .pendingBatch = NULL,
+        .batchTimerSet = false,
     };
     return rData;
 }
@@ -296,8 +363,12 @@ KeysReaderCtx* KeysReaderCtx_Create(const char* match, bool readValue, const cha
         .pendingRecords = array_new(Record*, PENDING_KEYS_INIT_CAP),
         .readRecordStr = NULL,
         .readRecord = NULL,
+        .hashFields = NULL,
         .cursorIndex = 0,
         .cmdCtx = NULL,
+        .coalescedEvents = 0,
+        .batch = NULL,
+        .snapshot = NULL,
     };
     return krctx;
 }
@@ -319,6 +390,32 @@ int KeysReaderCtx_SetReadRecordCallback(KeysReaderCtx* krCtx, const char* readRe
     return REDISMODULE_OK;
 }
 
+static char** KeysReader_HashFieldsDup(char** hashFields){
+    if(!hashFields){
+        return NULL;
+    }
+    char** res = array_new(char*, array_len(hashFields));
+    for(size_t i = 0 ; i < array_len(hashFields) ; ++i){
+        res = array_append(res, RG_STRDUP(hashFields[i]));
+    }
+    return res;
+}
+
+void KeysReaderCtx_SetHashFields(KeysReaderCtx* krCtx, char** hashFields){
+    if(krCtx->hashFields){
+        array_free_ex(krCtx->hashFields, RG_FREE(*(char**)ptr));
+    }
+    krCtx->hashFields = hashFields;
+}
+
+static void KeysReader_BatchFree(KeysReaderBatchEntry* batch){
+    for(size_t i = 0 ; i < array_len(batch) ; ++i){
+        RG_FREE(batch[i].key);
+        RG_FREE(batch[i].event);
+    }
+    array_free(batch);
+}
+
 void KeysReaderCtx_Free(void* ctx){
     KeysReaderCtx* krctx = ctx;
     if(krctx->cmdCtx){
@@ -334,6 +431,15 @@ void KeysReaderCtx_Free(void* ctx){
     if(krctx->readRecordStr){
         RG_FREE(krctx->readRecordStr);
     }
+    if(krctx->hashFields){
+        array_free_ex(krctx->hashFields, RG_FREE(*(char**)ptr));
+    }
+    if(krctx->batch){
+        KeysReader_BatchFree(krctx->batch);
+    }
+    if(krctx->snapshot){
+        RedisGears_FreeRecord(krctx->snapshot);
+    }
     RedisModule_ScanCursorDestroy(krctx->cursor);
     for(size_t i = 0 ; i < array_len(krctx->pendingRecords) ; ++i){
         RedisGears_FreeRecord(krctx->pendingRecords[i]);
@@ -361,6 +467,15 @@ static int RG_KeysReaderCtxSerialize(ExecutionCtx* ectx, void* ctx, Gears_Buffer
     }else{
         RedisGears_BWWriteLong(bw, 0);
     }
+    if(krctx->hashFields){
+        RedisGears_BWWriteLong(bw, 1); // hashFields exists
+        RedisGears_BWWriteLong(bw, array_len(krctx->hashFields));
+        for(size_t i = 0 ; i < array_len(krctx->hashFields) ; ++i){
+            RedisGears_BWWriteString(bw, krctx->hashFields[i]);
+        }
+    }else{
+        RedisGears_BWWriteLong(bw, 0); // hashFields does not exist
+    }
     return REDISMODULE_OK;
 }
 
@@ -384,6 +499,14 @@ static int RG_KeysReaderCtxDeserialize(ExecutionCtx* ectx, void* ctx, Gears_Buff
         krctx->readRecord = KeysReaderReadRecordsMgmt_Get(readRecordCallbackName);
         RedisModule_Assert(krctx->readRecord);
     }
+    krctx->hashFields = NULL;
+    if(RedisGears_BRReadLong(br)){
+        size_t len = RedisGears_BRReadLong(br);
+        krctx->hashFields = array_new(char*, len);
+        for(size_t i = 0 ; i < len ; ++i){
+            krctx->hashFields = array_append(krctx->hashFields, RG_STRDUP(RedisGears_BRReadString(br)));
+        }
+    }
     return REDISMODULE_OK;
 }
 
@@ -437,6 +560,42 @@ static Record* ValueToHashSetMapper(const char* keyStr, RedisModuleCtx* ctx){
     return hashSetRecord;
 }
 
+static Record* ValueToHashSetFieldsMapper(RedisModuleKey* handler, const char* keyStr, char** hashFields, RedisModuleCtx* ctx){
+    Record *hashSetRecord = RedisGears_HashSetRecordCreate();
+    for(size_t i = 0 ; i < array_len(hashFields) ; ++i){
+        RedisModuleString* val = NULL;
+        RedisModuleCallReply *reply = NULL;
+        const char* valStr = NULL;
+        size_t valStrLen;
+        if(!gearsIsCrdt){
+            RedisModule_HashGet(handler, REDISMODULE_HASH_CFIELDS, hashFields[i], &val, NULL);
+            if(!val){
+                continue;
+            }
+            valStr = RedisModule_StringPtrLen(val, &valStrLen);
+        }else{
+            // on crdt the hash llapi is not supported so we need to use rm_call
+            reply = RedisModule_Call(ctx, "HGET", "cc", keyStr, hashFields[i]);
+            if(RedisModule_CallReplyType(reply) != REDISMODULE_REPLY_STRING){
+                RedisModule_FreeCallReply(reply);
+                continue;
+            }
+            valStr = RedisModule_CallReplyStringPtr(reply, &valStrLen);
+        }
+        char* valCStr = RG_ALLOC(valStrLen + 1);
+        memcpy(valCStr, valStr, valStrLen);
+        valCStr[valStrLen] = '\0';
+        RedisGears_HashSetRecordSet(hashSetRecord, hashFields[i], RedisGears_StringRecordCreate(valCStr, valStrLen));
+        if(val){
+            RedisModule_FreeString(ctx, val);
+        }
+        if(reply){
+            RedisModule_FreeCallReply(reply);
+        }
+    }
+    return hashSetRecord;
+}
+
 static Record* ValueToListMapper(const char* keyStr, RedisModuleCtx* ctx){
     RedisModuleCallReply *reply = RedisModule_Call(ctx, "lrange", "cll", keyStr, 0, -1);
     RedisModule_Assert(RedisModule_CallReplyType(reply) == REDISMODULE_REPLY_ARRAY);
@@ -459,7 +618,7 @@ static Record* ValueToListMapper(const char* keyStr, RedisModuleCtx* ctx){
     return listRecord;
 }
 
-static Record* GetValueRecord(RedisModuleCtx* rctx, const char* keyStr, RedisModuleKey* handler){
+static Record* GetValueRecord(RedisModuleCtx* rctx, const char* keyStr, RedisModuleKey* handler, char** hashFields){
     switch(RedisModule_KeyType(handler)){
     case REDISMODULE_KEYTYPE_STRING:
         return GetStringValueRecord(handler, rctx, keyStr);
@@ -468,6 +627,9 @@ static Record* GetValueRecord(RedisModuleCtx* rctx, const char* keyStr, RedisMod
         return ValueToListMapper(keyStr, rctx);
         break;
     case REDISMODULE_KEYTYPE_HASH:
+        if(hashFields){
+            return ValueToHashSetFieldsMapper(handler, keyStr, hashFields, rctx);
+        }
         return ValueToHashSetMapper(keyStr, rctx);
         break;
     default:
@@ -503,9 +665,12 @@ static Record* GetTypeRecord(RedisModuleKey* handler){
     return RedisGears_StringRecordCreate(RG_STRDUP(typeStr), strlen(typeStr));
 }
 
-static Record* KeysReader_ReadKey(RedisModuleCtx* rctx, KeysReaderCtx* readerCtx, RedisModuleString* key, RedisModuleKey* keyPtr){
+static Record* KeysReader_ReadKeyWithEvent(RedisModuleCtx* rctx, KeysReaderCtx* readerCtx, RedisModuleString* key, RedisModuleKey* keyPtr,
+                                          const char* event, size_t coalescedEvents){
     if(readerCtx->readRecord){
-        Record* res = readerCtx->readRecord(rctx, key, keyPtr, readerCtx->readValue, readerCtx->event);
+        currCoalescedEvents = coalescedEvents;
+        Record* res = readerCtx->readRecord(rctx, key, keyPtr, readerCtx->readValue, event, readerCtx->hashFields);
+        currCoalescedEvents = 0;
         if(res){
             return res;
         }
@@ -531,7 +696,7 @@ static Record* KeysReader_ReadKey(RedisModuleCtx* rctx, KeysReaderCtx* readerCtx
         KeyReader_SetAvoidEvents(oldAvoidEvents);
         if(keyHandler){
             Record* keyType = GetTypeRecord(keyHandler);
-            Record* val = GetValueRecord(rctx, keyCStr, keyHandler);
+            Record* val = GetValueRecord(rctx, keyCStr, keyHandler, readerCtx->hashFields);
             RedisGears_HashSetRecordSet(record, "value", val);
             RedisGears_HashSetRecordSet(record, "type", keyType);
             if (!keyPtr) {
@@ -544,16 +709,24 @@ static Record* KeysReader_ReadKey(RedisModuleCtx* rctx, KeysReaderCtx* readerCtx
         }
     }
 
-    if(readerCtx->event){
-        Record* eventRecord = RedisGears_StringRecordCreate(RG_STRDUP(readerCtx->event), strlen(readerCtx->event));
+    if(event){
+        Record* eventRecord = RedisGears_StringRecordCreate(RG_STRDUP(event), strlen(event));
         RedisGears_HashSetRecordSet(record, "event", eventRecord);
     }else{
         RedisGears_HashSetRecordSet(record, "event", NULL);
     }
 
+    if(coalescedEvents > 0){
+        RedisGears_HashSetRecordSet(record, "coalesced", RedisGears_LongRecordCreate(coalescedEvents));
+    }
+
     return record;
 }
 
+static Record* KeysReader_ReadKey(RedisModuleCtx* rctx, KeysReaderCtx* readerCtx, RedisModuleString* key, RedisModuleKey* keyPtr){
+    return KeysReader_ReadKeyWithEvent(rctx, readerCtx, key, keyPtr, readerCtx->event, readerCtx->coalescedEvents);
+}
+
 /* Glob-style pattern matching. */
 static int GearsStringmatchlen(const char *pattern, int patternLen,
         const char *string, int stringLen, int nocase)
@@ -679,6 +852,10 @@ static int GearsStringmatchlen(const char *pattern, int patternLen,
     return 0;
 }
 
+int KeysReader_PatternMatch(const char* pattern, size_t patternLen, const char* key, size_t keyLen){
+    return GearsStringmatchlen(pattern, patternLen, key, keyLen, 0);
+}
+
 static void KeysReader_ScanCallback(RedisModuleCtx *ctx, RedisModuleString *keyname, RedisModuleKey *key, void *privdata){
     KeysReaderCtx* readerCtx = privdata;
     size_t len;
@@ -769,15 +946,49 @@ static Record* KeysReader_ScanNextKey(RedisModuleCtx* rctx, KeysReaderCtx* reade
     return NULL;
 }
 
+/*
+ * Read all the batch keys at once, so the lock is only taken once for the entire batch.
+ */
+static Record* KeysReader_BatchNextKey(RedisModuleCtx* rctx, KeysReaderCtx* readerCtx){
+    if(!readerCtx->isDone){
+        LockHandler_Acquire(rctx);
+        // pending records are popped from the end so we read the batch backward
+        for(size_t i = array_len(readerCtx->batch) ; i > 0 ; --i){
+            KeysReaderBatchEntry* entry = &readerCtx->batch[i - 1];
+            RedisModuleString* key = RedisModule_CreateString(NULL, entry->key, strlen(entry->key));
+            Record* record = KeysReader_ReadKeyWithEvent(rctx, readerCtx, key, NULL, entry->event, entry->coalescedEvents);
+            RedisModule_FreeString(NULL, key);
+            if(record){
+                readerCtx->pendingRecords = array_append(readerCtx->pendingRecords, record);
+            }
+        }
+        LockHandler_Release(rctx);
+        readerCtx->isDone = true;
+    }
+    if(array_len(readerCtx->pendingRecords) == 0){
+        return NULL;
+    }
+    return array_pop(readerCtx->pendingRecords);
+}
+
 static Record* KeysReader_Next(ExecutionCtx* ectx, void* ctx){
     KeysReaderCtx* readerCtx = ctx;
     Record* record = NULL;
     if(!readerCtx->noScan){
         record = KeysReader_ScanNextKeyFunc(RedisGears_GetRedisModuleCtx(ectx), readerCtx);
+    }else if(readerCtx->batch){
+        record = KeysReader_BatchNextKey(RedisGears_GetRedisModuleCtx(ectx), readerCtx);
     }else{
         if(readerCtx->isDone){
             return NULL;
         }
+        if(readerCtx->snapshot){
+            // the value was already read when the event arrived
+            record = readerCtx->snapshot;
+            readerCtx->snapshot = NULL;
+            readerCtx->isDone = true;
+            return record;
+        }
         RedisModuleString* key = RedisModule_CreateString(NULL, readerCtx->match, strlen(readerCtx->match));
         RedisModuleCtx* rctx = RedisGears_GetRedisModuleCtx(ectx);
         LockHandler_Acquire(rctx);
@@ -907,6 +1118,333 @@ static int KeysReader_ShouldFire(RedisModuleCtx *ctx, KeysReaderTriggerArgs* arg
     return KeysReader_IsKeyMatch(args->prefix, keyCStr);
 }
 
+static void KeysReader_IndexTrieUpdate(Gears_Trie* t, KeysReaderRegisterData* rData, bool add){
+    const char* prefix = rData->args->prefix;
+    size_t len = strlen(prefix);
+    // prefix which ends with '*' matches any key starting with it, otherwise only the exact key.
+    bool isPrefix = len > 0 && prefix[len - 1] == '*';
+    if(isPrefix){
+        --len;
+    }
+    if(add){
+        Gears_TrieAdd(t, prefix, len, isPrefix, rData);
+    }else{
+        int res = Gears_TrieDelete(t, prefix, len, isPrefix, rData);
+        RedisModule_Assert(res);
+    }
+}
+
+static void KeysReader_IndexAdd(KeysReaderRegisterData* rData){
+    if(!keysReaderEventsIndex){
+        keysReaderEventsIndex = Gears_dictCreate(&Gears_dictTypeHeapStringsCaseInsensitive, NULL);
+        keysReaderAllEventsIndex = Gears_TrieCreate();
+    }
+    if(!rData->args->eventTypes){
+        KeysReader_IndexTrieUpdate(keysReaderAllEventsIndex, rData, true);
+        return;
+    }
+    for(size_t i = 0 ; i < array_len(rData->args->eventTypes) ; ++i){
+        Gears_Trie* t = Gears_dictFetchValue(keysReaderEventsIndex, rData->args->eventTypes[i]);
+        if(!t){
+            t = Gears_TrieCreate();
+            Gears_dictAdd(keysReaderEventsIndex, rData->args->eventTypes[i], t);
+        }
+        KeysReader_IndexTrieUpdate(t, rData, true);
+    }
+}
+
+static void KeysReader_IndexDelete(KeysReaderRegisterData* rData){
+    if(!rData->args->eventTypes){
+        KeysReader_IndexTrieUpdate(keysReaderAllEventsIndex, rData, false);
+        return;
+    }
+    for(size_t i = 0 ; i < array_len(rData->args->eventTypes) ; ++i){
+        Gears_Trie* t = Gears_dictFetchValue(keysReaderEventsIndex, rData->args->eventTypes[i]);
+        RedisModule_Assert(t);
+        KeysReader_IndexTrieUpdate(t, rData, false);
+        if(Gears_TrieSize(t) == 0){
+            Gears_dictDelete(keysReaderEventsIndex, rData->args->eventTypes[i]);
+            Gears_TrieFree(t);
+        }
+    }
+}
+
+static void KeysReader_AddRegistration(KeysReaderRegisterData* rData){
+    Gears_listAddNodeTail(keysReaderRegistration, rData);
+    KeysReader_IndexAdd(rData);
+    rData->registered = true;
+}
+
+static void KeysReader_DropPendingBatch(KeysReaderRegisterData* rData){
+    if(rData->batchTimerSet){
+        RedisModule_StopTimer(staticCtx, rData->batchTimer, NULL);
+        rData->batchTimerSet = false;
+    }
+    if(rData->pendingBatch){
+        KeysReader_BatchFree(rData->pendingBatch);
+        rData->pendingBatch = NULL;
+    }
+}
+
+static void KeysReader_RemoveRegistration(KeysReaderRegisterData* rData, Gears_listNode* node){
+    Gears_listDelNode(keysReaderRegistration, node);
+    KeysReader_IndexDelete(rData);
+    KeysReader_DropPendingBatch(rData);
+    rData->registered = false;
+}
+
+static int KeysReader_CollectCandidate(void* val, void* pd){
+    KeysReaderRegisterData*** candidates = pd;
+    if(!*candidates){
+        *candidates = array_new(KeysReaderRegisterData*, 10);
+    }
+    *candidates = array_append(*candidates, val);
+    return 0;
+}
+
+static int KeysReader_CandidatesCmp(const void* a, const void* b){
+    const KeysReaderRegisterData* r1 = *(const KeysReaderRegisterData**)a;
+    const KeysReaderRegisterData* r2 = *(const KeysReaderRegisterData**)b;
+    return r1->seq < r2->seq ? -1 : (r1->seq > r2->seq ? 1 : 0);
+}
+
+static KeysReaderCtx* KeysReader_CreateTriggerCtx(KeysReaderRegisterData* rData, const char *event, const char* keyCStr, CommandCtx* cmdCtx){
+    KeysReaderCtx* arg = KeysReaderCtx_CreateWithCmdCtx(keyCStr, rData->args->readValue, event, true, cmdCtx);
+    if(rData->args->readRecord){
+        arg->readRecordStr = RG_STRDUP(rData->args->readRecordStr);
+        arg->readRecord = rData->args->readRecord;
+    }
+    arg->hashFields = KeysReader_HashFieldsDup(rData->args->hashFields);
+    return arg;
+}
+
+static void KeysReader_RunExecution(KeysReaderRegisterData* rData, KeysReaderCtx* arg, CommandCtx* cmdCtx){
+    ++rData->numTriggered;
+    RedisGears_OnExecutionDoneCallback callback = NULL;
+    void* privateData = NULL;
+    callback = KeysReader_ExecutionDone;
+    privateData = KeysReaderRegisterData_GetShallowCopy(rData);
+    char* err = NULL;
+    ExecutionPlan* ep = RedisGears_Run(rData->fep, rData->mode, arg, callback, privateData, rData->wd, &err);
+    if(!ep){
+        ++rData->numAborted;
+        RedisModule_Log(staticCtx, "warning", "could not execute flat execution on trigger, %s", err);
+        if(err){
+            RG_FREE(err);
+        }
+        RedisGears_KeysReaderCtxFree(arg);
+        return;
+    }
+    RedisModule_Assert(rData->mode != ExecutionModeSync || EPIsFlagOn(ep, EFDone));
+    if(EPIsFlagOn(ep, EFIsLocal) && EPIsFlagOff(ep, EFDone)){
+        // execution is local
+        // If execution is SYNC it will be added to localDoneExecutions on done
+        // Otherwise, save it to the registration pending execution list.
+        // currently we are not save global executions and those will not be listed
+        // in the registration execution list nor will be drop on unregister.
+        // todo: handle none local executions
+        Gears_dictAdd(rData->localPendingExecutions, ep->idStr, NULL);
+    }
+
+    if(EPIsFlagOff(ep, EFDone)){
+        // execution is not done, if he client is not yet blocked we need to block it.
+        // the client will be release when the command ctx will be released by all its owners.
+        if(cmdCtx){
+            // check if we are allow to block
+            int ctxFlags = RedisModule_GetContextFlags(currCmdCtx->clientCtx);
+            if((ctxFlags & REDISMODULE_CTX_FLAGS_MULTI) ||
+               (ctxFlags & REDISMODULE_CTX_FLAGS_LUA) ||
+               (ctxFlags & REDISMODULE_CTX_FLAGS_DENY_BLOCKING)){
+                // we are not allow to block, we will free the cmdCtx
+                KeyReader_CommandCtxFree(cmdCtx);
+                arg->cmdCtx = NULL;
+            } else{
+                if(!currCmdCtx->bc){
+                    currCmdCtx->bc = RedisModule_BlockClient(currCmdCtx->clientCtx, NULL, NULL, NULL, 0);
+                }
+            }
+        }
+
+    }
+}
+
+/*
+ * Create the trigger ctx of the registration and run it, snapshot (if given) is
+ * the already read value of the key and is owned by the trigger ctx.
+ */
+static void KeysReader_FireInternal(KeysReaderRegisterData* rData, const char *event, const char* keyCStr, size_t coalescedEvents, Record* snapshot){
+    CommandCtx* cmdCtx = NULL;
+    if(rData->args->hookCommands){
+        // we were asked to hook the command so we must have the cmdCtx
+        RedisModule_Assert(currCmdCtx);
+        cmdCtx = currCmdCtx;
+    }
+    KeysReaderCtx* arg = KeysReader_CreateTriggerCtx(rData, event, keyCStr, cmdCtx);
+    arg->coalescedEvents = coalescedEvents;
+    arg->snapshot = snapshot;
+    KeysReader_RunExecution(rData, arg, cmdCtx);
+}
+
+static void KeysReader_Fire(RedisModuleCtx *ctx, KeysReaderRegisterData* rData, const char *event, const char* keyCStr, size_t coalescedEvents){
+    KeysReader_FireInternal(rData, event, keyCStr, coalescedEvents, NULL);
+}
+
+/*
+ * A value read once on an event and shared by all the registrations fired
+ * by this event that read the value the same way.
+ */
+typedef struct KeysReaderSnapshot{
+    Record* record;
+    KeysReaderTriggerArgs* args; // args of the registration that read the snapshot
+}KeysReaderSnapshot;
+
+static bool KeysReader_HashFieldsEqual(char** hashFields1, char** hashFields2){
+    if(!hashFields1 || !hashFields2){
+        return hashFields1 == hashFields2;
+    }
+    if(array_len(hashFields1) != array_len(hashFields2)){
+        return false;
+    }
+    for(size_t i = 0 ; i < array_len(hashFields1) ; ++i){
+        if(strcmp(hashFields1[i], hashFields2[i]) != 0){
+            return false;
+        }
+    }
+    return true;
+}
+
+/*
+ * Sync registrations run right away and might change the key, so they always
+ * read the value themselves. Coalesced and batched registrations read the value
+ * only when the window ends.
+ */
+static bool KeysReader_CanShareSnapshot(KeysReaderRegisterData* rData){
+    return rData->mode != ExecutionModeSync &&
+           rData->args->readValue &&
+           rData->args->dupRecord &&
+           !rData->args->coalesceWindowMS &&
+           rData->args->batchSize <= 1;
+}
+
+static void KeysReader_FireWithSnapshot(RedisModuleCtx *ctx, KeysReaderRegisterData* rData, const char *event, RedisModuleString* key,
+                                        const char* keyCStr, KeysReaderSnapshot* snapshot){
+    if(snapshot->record && (snapshot->args->readRecord != rData->args->readRecord ||
+                            !KeysReader_HashFieldsEqual(snapshot->args->hashFields, rData->args->hashFields))){
+        // the value is read differently, can not use the snapshot
+        KeysReader_Fire(ctx, rData, event, keyCStr, 0);
+        return;
+    }
+    if(!snapshot->record){
+        snapshot->record = rData->args->readRecord(ctx, key, NULL, true, event, rData->args->hashFields);
+        if(!snapshot->record){
+            KeysReader_Fire(ctx, rData, event, keyCStr, 0);
+            return;
+        }
+        snapshot->args = rData->args;
+    }
+    KeysReader_FireInternal(rData, event, keyCStr, 0, rData->args->dupRecord(snapshot->record));
+}
+
+static void KeysReader_FireBatch(KeysReaderRegisterData* rData){
+    if(rData->batchTimerSet){
+        RedisModule_StopTimer(staticCtx, rData->batchTimer, NULL);
+        rData->batchTimerSet = false;
+    }
+    KeysReaderBatchEntry* batch = rData->pendingBatch;
+    rData->pendingBatch = NULL;
+
+    KeysReaderBatchEntry* last = &batch[array_len(batch) - 1];
+    KeysReaderCtx* arg = KeysReader_CreateTriggerCtx(rData, last->event, last->key, NULL);
+    arg->batch = batch;
+    KeysReader_RunExecution(rData, arg, NULL);
+}
+
+static void KeysReader_OnBatchTimeout(RedisModuleCtx *ctx, void *data){
+    KeysReaderRegisterData* rData = data;
+    rData->batchTimerSet = false;
+    if(!(RedisModule_GetContextFlags(ctx) & REDISMODULE_CTX_FLAGS_MASTER)){
+        // we are not the master anymore
+        KeysReader_DropPendingBatch(rData);
+        return;
+    }
+    KeysReader_FireBatch(rData);
+}
+
+/*
+ * Add the event to the registration pending batch, the batch is fired
+ * when it reaches the batch size or when the batch duration passed.
+ */
+static void KeysReader_AddToBatch(RedisModuleCtx *ctx, KeysReaderRegisterData* rData, const char *event, const char* keyCStr, size_t coalescedEvents){
+    if(!rData->pendingBatch){
+        // start small and let the array grow, the batch size is user controlled
+        rData->pendingBatch = array_new(KeysReaderBatchEntry, KEYS_READER_INITIAL_BATCH_CAP);
+        // the timer is always stopped when the registration is removed so it does not need to hold a reference
+        rData->batchTimer = RedisModule_CreateTimer(ctx, rData->args->batchDurationMS, KeysReader_OnBatchTimeout, rData);
+        rData->batchTimerSet = true;
+    }
+    KeysReaderBatchEntry entry = {
+        .key = RG_STRDUP(keyCStr),
+        .event = RG_STRDUP(event),
+        .coalescedEvents = coalescedEvents,
+    };
+    rData->pendingBatch = array_append(rData->pendingBatch, entry);
+    if(array_len(rData->pendingBatch) >= rData->args->batchSize){
+        KeysReader_FireBatch(rData);
+    }
+}
+
+static void KeysReader_Trigger(RedisModuleCtx *ctx, KeysReaderRegisterData* rData, const char *event, const char* keyCStr, size_t coalescedEvents){
+    if(rData->args->batchSize > 1){
+        KeysReader_AddToBatch(ctx, rData, event, keyCStr, coalescedEvents);
+    }else{
+        KeysReader_Fire(ctx, rData, event, keyCStr, coalescedEvents);
+    }
+}
+
+static void KeysReader_OnCoalesceWindowEnd(RedisModuleCtx *ctx, void *data){
+    KeysReaderCoalescedEvent* ce = data;
+    KeysReaderRegisterData* rData = ce->rData;
+    Gears_dictDelete(rData->coalescedEvents, ce->key);
+
+    // the registration might have been unregistered while we waited
+    // or we might not be the master anymore
+    if(rData->registered && (RedisModule_GetContextFlags(ctx) & REDISMODULE_CTX_FLAGS_MASTER)){
+        KeysReader_Trigger(ctx, rData, ce->event, ce->key, ce->numEvents);
+    }
+
+    RG_FREE(ce->key);
+    RG_FREE(ce->event);
+    RG_FREE(ce);
+    KeysReaderRegisterData_Free(rData);
+}
+
+/*
+ * Collapse the event into the pending coalesced event of the key,
+ * start a new coalesce window if there is no such pending event.
+ */
+static void KeysReader_Coalesce(RedisModuleCtx *ctx, KeysReaderRegisterData* rData, const char *event, const char* keyCStr){
+    KeysReaderCoalescedEvent* ce = Gears_dictFetchValue(rData->coalescedEvents, keyCStr);
+    if(ce){
+        if(strcmp(ce->event, event) != 0){
+            RG_FREE(ce->event);
+            ce->event = RG_STRDUP(event);
+        }
+        ++ce->numEvents;
+        ++rData->numCoalesced;
+        return;
+    }
+
+    ce = RG_ALLOC(sizeof(*ce));
+    *ce = (KeysReaderCoalescedEvent){
+        .rData = KeysReaderRegisterData_GetShallowCopy(rData),
+        .key = RG_STRDUP(keyCStr),
+        .event = RG_STRDUP(event),
+        .numEvents = 1,
+    };
+    Gears_dictAdd(rData->coalescedEvents, ce->key, ce);
+    RedisModule_CreateTimer(ctx, rData->args->coalesceWindowMS, KeysReader_OnCoalesceWindowEnd, ce);
+}
+
 static int KeysReader_OnKeyTouched(RedisModuleCtx *ctx, int type, const char *event, RedisModuleString *key){
     if(ignoreKeysEvents){
         return REDISMODULE_OK;
@@ -920,73 +1458,74 @@ static int KeysReader_OnKeyTouched(RedisModuleCtx *ctx, int type, const char *ev
         // we are not executing registrations on slave
         return REDISMODULE_OK;
     }
-    Gears_listIter *iter = Gears_listGetIterator(keysReaderRegistration, AL_START_HEAD);
-    Gears_listNode* node = NULL;
-    const char* keyCStr = RedisModule_StringPtrLen(key, NULL);
-    while((node = Gears_listNext(iter))){
-        KeysReaderRegisterData* rData = Gears_listNodeValue(node);
+    if(!keysReaderEventsIndex){
+        return REDISMODULE_OK;
+    }
+
+    size_t keyLen;
+    const char* keyCStr = RedisModule_StringPtrLen(key, &keyLen);
+
+    // collect the registrations that might fire on this event
+    KeysReaderRegisterData** candidates = NULL;
+    Gears_TrieMatch(keysReaderAllEventsIndex, keyCStr, keyLen, KeysReader_CollectCandidate, &candidates);
+    Gears_Trie* eventIndex = Gears_dictFetchValue(keysReaderEventsIndex, event);
+    if(eventIndex){
+        Gears_TrieMatch(eventIndex, keyCStr, keyLen, KeysReader_CollectCandidate, &candidates);
+    }
+
+    if(!candidates){
+        return REDISMODULE_OK;
+    }
+
+    // fire by registration order, the same registration might be collected more
+    // than once if it lists the same event twice.
+    qsort(candidates, array_len(candidates), sizeof(*candidates), KeysReader_CandidatesCmp);
+    size_t numCanShare = 0;
+    for(size_t i = 0 ; i < array_len(candidates) ; ++i){
+        KeysReaderRegisterData_GetShallowCopy(candidates[i]);
+        if((i == 0 || candidates[i - 1] != candidates[i]) && KeysReader_CanShareSnapshot(candidates[i])){
+            ++numCanShare;
+        }
+    }
+
+    // the value is read once and shared only if more than one registration might use it
+    bool shareSnapshot = numCanShare > 1;
+    KeysReaderSnapshot snapshot = {0};
+
+    for(size_t i = 0 ; i < array_len(candidates) ; ++i){
+        KeysReaderRegisterData* rData = candidates[i];
+        if(i > 0 && candidates[i - 1] == rData){
+            continue;
+        }
+        if(!rData->registered){
+            // unregistered by one of the previous executions
+            continue;
+        }
         if(KeysReader_ShouldFire(ctx, rData->args, key, event)){
-            ++rData->numTriggered;
-            RedisGears_OnExecutionDoneCallback callback = NULL;
-            void* privateData = NULL;
-            callback = KeysReader_ExecutionDone;
-            privateData = KeysReaderRegisterData_GetShallowCopy(rData);
-            char* err = NULL;
-            CommandCtx* cmdCtx = NULL;
-            if(rData->args->hookCommands){
-                // we were asked to hook the command so we must have the cmdCtx
-                RedisModule_Assert(currCmdCtx);
-                cmdCtx = currCmdCtx;
-            }
-            KeysReaderCtx* arg = KeysReaderCtx_CreateWithCmdCtx(keyCStr, rData->args->readValue, event, true, cmdCtx);
-            if(rData->args->readRecord){
-                arg->readRecordStr = RG_STRDUP(rData->args->readRecordStr);
-                arg->readRecord = rData->args->readRecord;
-            }
-            ExecutionPlan* ep = RedisGears_Run(rData->fep, rData->mode, arg, callback, privateData, rData->wd, &err);
-            if(!ep){
-                ++rData->numAborted;
-                RedisModule_Log(staticCtx, "warning", "could not execute flat execution on trigger, %s", err);
-                if(err){
-                    RG_FREE(err);
+            if(rData->args->coalesceWindowMS){
+                KeysReader_Coalesce(ctx, rData, event, keyCStr);
+            }else if(shareSnapshot && KeysReader_CanShareSnapshot(rData)){
+                KeysReader_FireWithSnapshot(ctx, rData, event, key, keyCStr, &snapshot);
+            }else{
+                KeysReader_Trigger(ctx, rData, event, keyCStr, 0);
+                if(rData->mode == ExecutionModeSync && snapshot.record){
+                    // sync execution might have changed the key, the snapshot is not valid anymore
+                    RedisGears_FreeRecord(snapshot.record);
+                    snapshot.record = NULL;
                 }
-                RedisGears_KeysReaderCtxFree(arg);
-                continue;
-            }
-            RedisModule_Assert(rData->mode != ExecutionModeSync || EPIsFlagOn(ep, EFDone));
-            if(EPIsFlagOn(ep, EFIsLocal) && EPIsFlagOff(ep, EFDone)){
-                // execution is local
-                // If execution is SYNC it will be added to localDoneExecutions on done
-                // Otherwise, save it to the registration pending execution list.
-                // currently we are not save global executions and those will not be listed
-                // in the registration execution list nor will be drop on unregister.
-                // todo: handle none local executions
-                Gears_dictAdd(rData->localPendingExecutions, ep->idStr, NULL);
             }
+        }
+    }
 
-            if(EPIsFlagOff(ep, EFDone)){
-                // execution is not done, if he client is not yet blocked we need to block it.
-                // the client will be release when the command ctx will be released by all its owners.
-                if(cmdCtx){
-                    // check if we are allow to block
-                    int ctxFlags = RedisModule_GetContextFlags(currCmdCtx->clientCtx);
-                    if((ctxFlags & REDISMODULE_CTX_FLAGS_MULTI) ||
-                       (ctxFlags & REDISMODULE_CTX_FLAGS_LUA) ||
-                       (ctxFlags & REDISMODULE_CTX_FLAGS_DENY_BLOCKING)){
-                        // we are not allow to block, we will free the cmdCtx
-                        KeyReader_CommandCtxFree(cmdCtx);
-                        arg->cmdCtx = NULL;
-                    } else{
-                        if(!currCmdCtx->bc){
-                            currCmdCtx->bc = RedisModule_BlockClient(currCmdCtx->clientCtx, NULL, NULL, NULL, 0);
-                        }
-                    }
-                }
+    if(snapshot.record){
+        RedisGears_FreeRecord(snapshot.record);
+    }
 
-            }
-        }
+    for(size_t i = 0 ; i < array_len(candidates) ; ++i){
+        KeysReaderRegisterData_Free(candidates[i]);
     }
-    Gears_listReleaseIterator(iter);
+    array_free(candidates);
+
     return REDISMODULE_OK;
 }
 
@@ -999,7 +1538,7 @@ static KeysReaderRegisterData* KeysReader_FindRegistrationData(FlatExecutionPlan
         KeysReaderRegisterData* rData = Gears_listNodeValue(node);
         if(rData->fep == fep){
             if(flags & FindRegistrationDataFlagPop){
-                Gears_listDelNode(keysReaderRegistration, node);
+                KeysReader_RemoveRegistration(rData, node);
             }
             Gears_listReleaseIterator(iter);
             return rData;
@@ -1050,6 +1589,20 @@ static void KeysReader_SerializeArgs(void* var, Gears_BufferWriter* bw){
     }else{
         RedisGears_BWWriteLong(bw, 0);
     }
+
+    if(args->hashFields){
+        RedisGears_BWWriteLong(bw, 1); // hashFields exists
+        RedisGears_BWWriteLong(bw, array_len(args->hashFields));
+        for(size_t i = 0 ; i < array_len(args->hashFields) ; ++i){
+            RedisGears_BWWriteString(bw, args->hashFields[i]);
+        }
+    }else{
+        RedisGears_BWWriteLong(bw, 0); // hashFields does not exist
+    }
+
+    RedisGears_BWWriteLong(bw, args->coalesceWindowMS);
+    RedisGears_BWWriteLong(bw, args->batchSize);
+    RedisGears_BWWriteLong(bw, args->batchDurationMS);
 }
 
 static void* KeysReader_DeserializeArgs(Gears_BufferReader* br, int encver){
@@ -1099,10 +1652,28 @@ static void* KeysReader_DeserializeArgs(Gears_BufferReader* br, int encver){
             if(KeysReaderTriggerArgs_SetReadRecordCallback(ret, readRecordCallback) != REDISMODULE_OK){
                 RedisModule_Log(staticCtx, "warning", "Failed loading readRecordCallback");
                 KeysReaderTriggerArgs_Free(ret);
-                ret = NULL;
+                return NULL;
             }
         }
     }
+    if(encver >= VERSION_WITH_KEYS_READER_HASH_FIELDS){
+        if(RedisGears_BRReadLong(br)){
+            size_t len = RedisGears_BRReadLong(br);
+            char** hashFields = array_new(char*, len);
+            for(size_t i = 0 ; i < len ; ++i){
+                hashFields = array_append(hashFields, RG_STRDUP(RedisGears_BRReadString(br)));
+            }
+            KeysReaderTriggerArgs_SetHashFields(ret, hashFields);
+        }
+    }
+    if(encver >= VERSION_WITH_KEYS_READER_COALESCE){
+        KeysReaderTriggerArgs_SetCoalesceWindow(ret, RedisGears_BRReadLong(br));
+    }
+    if(encver >= VERSION_WITH_KEYS_READER_BATCH){
+        size_t batchSize = RedisGears_BRReadLong(br);
+        size_t batchDurationMS = RedisGears_BRReadLong(br);
+        KeysReaderTriggerArgs_SetBatch(ret, batchSize, batchDurationMS);
+    }
     return ret;
 }
 
@@ -1202,6 +1773,11 @@ static void KeysReader_DumpRegistrationInfo(FlatExecutionPlan* fep, RedisModuleI
     RedisModule_InfoAddFieldCString(ctx, "keyTypes", keyTypesStr? keyTypesStr : "None");
     RG_FREE(keyTypesStr);
 
+    RedisModule_InfoAddFieldULongLong(ctx, "coalesceWindowMS", rData->args->coalesceWindowMS);
+    RedisModule_InfoAddFieldULongLong(ctx, "numCoalesced", rData->numCoalesced);
+    RedisModule_InfoAddFieldULongLong(ctx, "batchSize", rData->args->batchSize);
+    RedisModule_InfoAddFieldULongLong(ctx, "batchDurationMS", rData->args->batchDurationMS);
+
     char* hookCommandsStr = rData->args->hookCommands? ArrToStr((void**)rData->args->hookCommands, array_len(rData->args->hookCommands), KeysReader_StrToStr, '|') : NULL;
     RedisModule_InfoAddFieldCString(ctx, "hookCommands", hookCommandsStr? hookCommandsStr : "None");
     RG_FREE(hookCommandsStr);
@@ -1210,7 +1786,7 @@ static void KeysReader_DumpRegistrationInfo(FlatExecutionPlan* fep, RedisModuleI
 static void KeysReader_DumpRegistrationData(RedisModuleCtx* ctx, FlatExecutionPlan* fep){
     KeysReaderRegisterData* rData = KeysReader_FindRegistrationData(fep, 0);
     RedisModule_Assert(rData);
-    RedisModule_ReplyWithArray(ctx, 20);
+    RedisModule_ReplyWithArray(ctx, 26);
     RedisModule_ReplyWithStringBuffer(ctx, "mode", strlen("mode"));
     if(rData->mode == ExecutionModeSync){
         RedisModule_ReplyWithStringBuffer(ctx, "sync", strlen("sync"));
@@ -1242,7 +1818,7 @@ static void KeysReader_DumpRegistrationData(RedisModuleCtx* ctx, FlatExecutionPl
         RedisModule_ReplyWithNull(ctx);
     }
     RedisModule_ReplyWithStringBuffer(ctx, "args", strlen("args"));
-    RedisModule_ReplyWithArray(ctx, 8);
+    RedisModule_ReplyWithArray(ctx, 14);
     RedisModule_ReplyWithStringBuffer(ctx, "regex", strlen("regex"));
     RedisModule_ReplyWithStringBuffer(ctx, rData->args->prefix, strlen(rData->args->prefix));
     RedisModule_ReplyWithStringBuffer(ctx, "eventTypes", strlen("eventTypes"));
@@ -1273,24 +1849,238 @@ static void KeysReader_DumpRegistrationData(RedisModuleCtx* ctx, FlatExecutionPl
     }else{
         RedisModule_ReplyWithNull(ctx);
     }
+    RedisModule_ReplyWithStringBuffer(ctx, "coalesceWindowMS", strlen("coalesceWindowMS"));
+    RedisModule_ReplyWithLongLong(ctx, rData->args->coalesceWindowMS);
+    RedisModule_ReplyWithStringBuffer(ctx, "batchSize", strlen("batchSize"));
+    RedisModule_ReplyWithLongLong(ctx, rData->args->batchSize);
+    RedisModule_ReplyWithStringBuffer(ctx, "batchDurationMS", strlen("batchDurationMS"));
+    RedisModule_ReplyWithLongLong(ctx, rData->args->batchDurationMS);
+    RedisModule_ReplyWithStringBuffer(ctx, "hooksStats", strlen("hooksStats"));
+    if(rData->hooks){
+        RedisModule_ReplyWithArray(ctx, array_len(rData->hooks));
+        for(size_t i = 0 ; i < array_len(rData->hooks) ; ++i){
+            CommandHookCtx* hook = rData->hooks[i];
+            const char* cmd = CommandHook_GetCommand(hook);
+            size_t numCalls = CommandHook_GetNumCalls(hook);
+            long long totalCallsDuration = CommandHook_GetTotalCallsDuration(hook);
+            RedisModule_ReplyWithArray(ctx, 8);
+            RedisModule_ReplyWithStringBuffer(ctx, "command", strlen("command"));
+            RedisModule_ReplyWithStringBuffer(ctx, cmd, strlen(cmd));
+            RedisModule_ReplyWithStringBuffer(ctx, "numCalls", strlen("numCalls"));
+            RedisModule_ReplyWithLongLong(ctx, numCalls);
+            RedisModule_ReplyWithStringBuffer(ctx, "totalCallsDurationMS", strlen("totalCallsDurationMS"));
+            RedisModule_ReplyWithLongLong(ctx, DURATION2MS(totalCallsDuration));
+            RedisModule_ReplyWithStringBuffer(ctx, "avgCallDurationMS", strlen("avgCallDurationMS"));
+            RedisModule_ReplyWithDouble(ctx, numCalls ? (double)totalCallsDuration / numCalls / 1000000 : 0);
+        }
+    }else{
+        RedisModule_ReplyWithNull(ctx);
+    }
+    RedisModule_ReplyWithStringBuffer(ctx, "numCoalesced", strlen("numCoalesced"));
+    RedisModule_ReplyWithLongLong(ctx, rData->numCoalesced);
+    RedisModule_ReplyWithStringBuffer(ctx, "eventsClasses", strlen("eventsClasses"));
+    KeysReader_ReplyWithEventsClasses(ctx, KeysReader_RegistrationEventsClasses(rData->args));
 }
 
-static void KeysReader_RegisterKeySpaceEvent(){
-    if(!keysReaderRegistration){
-        RedisModuleCtx * ctx = RedisModule_GetThreadSafeContext(NULL);
-        keysReaderRegistration = Gears_listCreate();
-        int event = REDISMODULE_NOTIFY_ALL | REDISMODULE_NOTIFY_KEY_MISS;
-        if(currVesion.redisMajorVersion >= 6 && IsEnterprise()){
-            // we get the trimmed notification on enterprise only from redis v6 and above
-            event |= REDISMODULE_NOTIFY_TRIMMED;
+/*
+ * Key space notification classes we are already subscribed to.
+ * There is no way to unsubscribe from key space notifications so this mask only grows.
+ */
+static int keysReaderSubscribedEvents = 0;
+
+typedef struct KeysReaderEventClass{
+    const char* event;
+    int eventClass;
+}KeysReaderEventClass;
+
+static KeysReaderEventClass keysReaderEventsClasses[] = {
+    {"del", REDISMODULE_NOTIFY_GENERIC},
+    {"rename_from", REDISMODULE_NOTIFY_GENERIC},
+    {"rename_to", REDISMODULE_NOTIFY_GENERIC},
+    {"move_from", REDISMODULE_NOTIFY_GENERIC},
+    {"move_to", REDISMODULE_NOTIFY_GENERIC},
+    {"copy_to", REDISMODULE_NOTIFY_GENERIC},
+    {"restore", REDISMODULE_NOTIFY_GENERIC},
+    {"expire", REDISMODULE_NOTIFY_GENERIC},
+    {"persist", REDISMODULE_NOTIFY_GENERIC},
+    {"new", REDISMODULE_NOTIFY_GENERIC},
+    {"set", REDISMODULE_NOTIFY_STRING},
+    {"setrange", REDISMODULE_NOTIFY_STRING},
+    {"incrby", REDISMODULE_NOTIFY_STRING},
+    {"incrbyfloat", REDISMODULE_NOTIFY_STRING},
+    {"append", REDISMODULE_NOTIFY_STRING},
+    {"lpush", REDISMODULE_NOTIFY_LIST},
+    {"rpush", REDISMODULE_NOTIFY_LIST},
+    {"lpop", REDISMODULE_NOTIFY_LIST},
+    {"rpop", REDISMODULE_NOTIFY_LIST},
+    {"linsert", REDISMODULE_NOTIFY_LIST},
+    {"lset", REDISMODULE_NOTIFY_LIST},
+    {"lrem", REDISMODULE_NOTIFY_LIST},
+    {"ltrim", REDISMODULE_NOTIFY_LIST},
+    {"sortstore", REDISMODULE_NOTIFY_LIST},
+    {"sadd", REDISMODULE_NOTIFY_SET},
+    {"srem", REDISMODULE_NOTIFY_SET},
+    {"spop", REDISMODULE_NOTIFY_SET},
+    {"sinterstore", REDISMODULE_NOTIFY_SET},
+    {"sunionstore", REDISMODULE_NOTIFY_SET},
+    {"sdiffstore", REDISMODULE_NOTIFY_SET},
+    {"hset", REDISMODULE_NOTIFY_HASH},
+    {"hincrby", REDISMODULE_NOTIFY_HASH},
+    {"hincrbyfloat", REDISMODULE_NOTIFY_HASH},
+    {"hdel", REDISMODULE_NOTIFY_HASH},
+    {"zincr", REDISMODULE_NOTIFY_ZSET},
+    {"zadd", REDISMODULE_NOTIFY_ZSET},
+    {"zrem", REDISMODULE_NOTIFY_ZSET},
+    {"zrembyscore", REDISMODULE_NOTIFY_ZSET},
+    {"zrembyrank", REDISMODULE_NOTIFY_ZSET},
+    {"zrembylex", REDISMODULE_NOTIFY_ZSET},
+    {"zinterstore", REDISMODULE_NOTIFY_ZSET},
+    {"zunionstore", REDISMODULE_NOTIFY_ZSET},
+    {"zdiffstore", REDISMODULE_NOTIFY_ZSET},
+    {"zrangestore", REDISMODULE_NOTIFY_ZSET},
+    {"zpopmin", REDISMODULE_NOTIFY_ZSET},
+    {"zpopmax", REDISMODULE_NOTIFY_ZSET},
+    {"expired", REDISMODULE_NOTIFY_EXPIRED},
+    {"evicted", REDISMODULE_NOTIFY_EVICTED},
+    {"xadd", REDISMODULE_NOTIFY_STREAM},
+    {"xtrim", REDISMODULE_NOTIFY_STREAM},
+    {"xdel", REDISMODULE_NOTIFY_STREAM},
+    {"xgroup-create", REDISMODULE_NOTIFY_STREAM},
+    {"xgroup-createconsumer", REDISMODULE_NOTIFY_STREAM},
+    {"xgroup-delconsumer", REDISMODULE_NOTIFY_STREAM},
+    {"xgroup-destroy", REDISMODULE_NOTIFY_STREAM},
+    {"xgroup-setid", REDISMODULE_NOTIFY_STREAM},
+    {"xsetid", REDISMODULE_NOTIFY_STREAM},
+    {"xclaim", REDISMODULE_NOTIFY_STREAM},
+    {"xautoclaim", REDISMODULE_NOTIFY_STREAM},
+    {"keymiss", REDISMODULE_NOTIFY_KEY_MISS},
+    {"trimmed", REDISMODULE_NOTIFY_TRIMMED},
+    {NULL, 0},
+};
+
+static KeysReaderEventClass keysReaderEventsClassesNames[] = {
+    {"generic", REDISMODULE_NOTIFY_GENERIC},
+    {"string", REDISMODULE_NOTIFY_STRING},
+    {"list", REDISMODULE_NOTIFY_LIST},
+    {"set", REDISMODULE_NOTIFY_SET},
+    {"hash", REDISMODULE_NOTIFY_HASH},
+    {"zset", REDISMODULE_NOTIFY_ZSET},
+    {"expired", REDISMODULE_NOTIFY_EXPIRED},
+    {"evicted", REDISMODULE_NOTIFY_EVICTED},
+    {"stream", REDISMODULE_NOTIFY_STREAM},
+    {"module", REDISMODULE_NOTIFY_MODULE},
+    {"keymiss", REDISMODULE_NOTIFY_KEY_MISS},
+    {"trimmed", REDISMODULE_NOTIFY_TRIMMED},
+    {NULL, 0},
+};
+
+static void KeysReader_ReplyWithEventsClasses(RedisModuleCtx* ctx, int events){
+    size_t len = 0;
+    for(KeysReaderEventClass* ec = keysReaderEventsClassesNames ; ec->event ; ++ec){
+        if(events & ec->eventClass){
+            ++len;
         }
-        if(RedisModule_SubscribeToKeyspaceEvents(ctx, event, KeysReader_OnKeyTouched) != REDISMODULE_OK){
-            RedisModule_Log(staticCtx, "warning", "Failed register on key space notification of KeysReader");
+    }
+    RedisModule_ReplyWithArray(ctx, len);
+    for(KeysReaderEventClass* ec = keysReaderEventsClassesNames ; ec->event ; ++ec){
+        if(events & ec->eventClass){
+            RedisModule_ReplyWithStringBuffer(ctx, ec->event, strlen(ec->event));
         }
-        RedisModule_FreeThreadSafeContext(ctx);
     }
 }
 
+/*
+ * We get the trimmed notification on enterprise only from redis v6 and above,
+ * other servers do not raise it so there is no need to subscribe to it.
+ */
+static int KeysReader_TrimmedEventClass(){
+    if(currVesion.redisMajorVersion >= 6 && IsEnterprise()){
+        return REDISMODULE_NOTIFY_TRIMMED;
+    }
+    return 0;
+}
+
+static int KeysReader_AllEventsClasses(){
+    return REDISMODULE_NOTIFY_ALL | REDISMODULE_NOTIFY_KEY_MISS | KeysReader_TrimmedEventClass();
+}
+
+static int KeysReader_EventClass(const char* event){
+    for(KeysReaderEventClass* ec = keysReaderEventsClasses ; ec->event ; ++ec){
+        if(strcasecmp(ec->event, event) == 0){
+            if(ec->eventClass == REDISMODULE_NOTIFY_TRIMMED){
+                return KeysReader_TrimmedEventClass();
+            }
+            return ec->eventClass;
+        }
+    }
+    // unknown event (might be raised by another module), we can not tell its class
+    return KeysReader_AllEventsClasses();
+}
+
+static int KeysReader_KeyTypeClass(int keyType){
+    switch(keyType){
+    case REDISMODULE_KEYTYPE_STRING:
+        return REDISMODULE_NOTIFY_STRING;
+    case REDISMODULE_KEYTYPE_LIST:
+        return REDISMODULE_NOTIFY_LIST;
+    case REDISMODULE_KEYTYPE_HASH:
+        return REDISMODULE_NOTIFY_HASH;
+    case REDISMODULE_KEYTYPE_SET:
+        return REDISMODULE_NOTIFY_SET;
+    case REDISMODULE_KEYTYPE_ZSET:
+        return REDISMODULE_NOTIFY_ZSET;
+    case REDISMODULE_KEYTYPE_STREAM:
+        return REDISMODULE_NOTIFY_STREAM;
+    default:
+        // module types might raise notification of any class
+        return REDISMODULE_NOTIFY_ALL;
+    }
+}
+
+/*
+ * Return the key space notification classes the given registration might fire on.
+ */
+static int KeysReader_RegistrationEventsClasses(KeysReaderTriggerArgs* args){
+    if(args->eventTypes){
+        int events = 0;
+        for(size_t i = 0 ; i < array_len(args->eventTypes) ; ++i){
+            events |= KeysReader_EventClass(args->eventTypes[i]);
+        }
+        return events;
+    }
+    if(args->keyTypes){
+        // key miss notifications are never raised on an existing key so they can not
+        // pass the key type filter, generic notifications are raised on any key type.
+        int events = REDISMODULE_NOTIFY_GENERIC | REDISMODULE_NOTIFY_EXPIRED | REDISMODULE_NOTIFY_EVICTED;
+        for(size_t i = 0 ; i < array_len(args->keyTypes) ; ++i){
+            events |= KeysReader_KeyTypeClass(args->keyTypes[i]);
+        }
+        return events;
+    }
+    return KeysReader_AllEventsClasses();
+}
+
+static void KeysReader_RegisterKeySpaceEvent(int events){
+    if(!keysReaderRegistration){
+        keysReaderRegistration = Gears_listCreate();
+    }
+
+    // subscribe only to the classes we are not yet subscribed to, this way
+    // the subscriptions are disjoint and each notification is delivered once.
+    int newEvents = events & ~keysReaderSubscribedEvents;
+    if(!newEvents){
+        return;
+    }
+
+    RedisModuleCtx * ctx = RedisModule_GetThreadSafeContext(NULL);
+    if(RedisModule_SubscribeToKeyspaceEvents(ctx, newEvents, KeysReader_OnKeyTouched) != REDISMODULE_OK){
+        RedisModule_Log(staticCtx, "warning", "Failed register on key space notification of KeysReader");
+    }else{
+        keysReaderSubscribedEvents |= newEvents;
+    }
+    RedisModule_FreeThreadSafeContext(ctx);
+}
+
 static int KeysReader_CommandHook(RedisModuleCtx* ctx, RedisModuleString** argv, size_t argc, void* pd){
     currCmdCtx = KeyReader_CommandCtxCreate(ctx, argv, argc);
 
@@ -1311,6 +2101,38 @@ static int KeysReader_CommandHook(RedisModuleCtx* ctx, RedisModuleString** argv,
 
 static int KeysReader_VerifyRegister(SessionRegistrationCtx *srctx, FlatExecutionPlan* fep, ExecutionMode mode, void* args, char** err){
     KeysReaderTriggerArgs* readerArgs = args;
+    if(readerArgs->coalesceWindowMS){
+        if(mode == ExecutionModeSync){
+            *err = RG_STRDUP("Coalesce window can not be used on sync registrations");
+            return REDISMODULE_ERR;
+        }
+        if(readerArgs->hookCommands){
+            *err = RG_STRDUP("Coalesce window can not be used with commands hooks");
+            return REDISMODULE_ERR;
+        }
+    }
+    if(readerArgs->batchSize > 1){
+        if(mode != ExecutionModeAsyncLocal){
+            *err = RG_STRDUP("Batching events is only supported on async_local registrations");
+            return REDISMODULE_ERR;
+        }
+        if(readerArgs->hookCommands){
+            *err = RG_STRDUP("Batching events can not be used with commands hooks");
+            return REDISMODULE_ERR;
+        }
+        if(readerArgs->batchDurationMS == 0){
+            *err = RG_STRDUP("Batch duration must be positive when batching events");
+            return REDISMODULE_ERR;
+        }
+        if(readerArgs->batchSize > KEYS_READER_MAX_BATCH_SIZE){
+            *err = RG_STRDUP("Batch size is too big, max batch size is " STR(KEYS_READER_MAX_BATCH_SIZE));
+            return REDISMODULE_ERR;
+        }
+        if(readerArgs->batchDurationMS > KEYS_READER_MAX_BATCH_DURATION_MS){
+            *err = RG_STRDUP("Batch duration is too long, max batch duration is " STR(KEYS_READER_MAX_BATCH_DURATION_MS) " milliseconds");
+            return REDISMODULE_ERR;
+        }
+    }
     if(readerArgs->hookCommands){
         for(size_t i = 0 ; i < array_len(readerArgs->hookCommands) ; ++i){
             if (CommandHook_VerifyHook(readerArgs->hookCommands[i], readerArgs->prefix, err) != REDISMODULE_OK) {
@@ -1341,11 +2163,11 @@ static int KeysReader_RegisrterTrigger(FlatExecutionPlan* fep, ExecutionMode mod
         }
     }
 
-    KeysReader_RegisterKeySpaceEvent();
+    KeysReader_RegisterKeySpaceEvent(KeysReader_RegistrationEventsClasses(readerArgs));
 
     KeysReaderRegisterData* rData = KeysReaderRegisterData_Create(fep, args, mode, hooks);
 
-    Gears_listAddNodeTail(keysReaderRegistration, rData);
+    KeysReader_AddRegistration(rData);
     return REDISMODULE_OK;
 }
 
@@ -1373,7 +2195,12 @@ KeysReaderTriggerArgs* KeysReaderTriggerArgs_Create(const char* prefix, char** e
         .readValue = readValue,
         .readRecordStr = NULL,
         .readRecord = NULL,
+        .dupRecord = NULL,
         .hookCommands = NULL,
+        .hashFields = NULL,
+        .coalesceWindowMS = 0,
+        .batchSize = 1,
+        .batchDurationMS = 0,
     };
     return ret;
 }
@@ -1388,9 +2215,37 @@ int KeysReaderTriggerArgs_SetReadRecordCallback(KeysReaderTriggerArgs* krta, con
         return REDISMODULE_ERR;
     }
     krta->readRecordStr = RG_STRDUP(readRecordCallback);
+    krta->dupRecord = keysReaderDupRecords ? Gears_dictFetchValue(keysReaderDupRecords, readRecordCallback) : NULL;
     return REDISMODULE_OK;
 }
 
+void KeysReader_RegisterDupRecordCallback(const char* readRecordCallback, RedisGears_KeysReaderDupRecordCallback dupRecord){
+    if(!keysReaderDupRecords){
+        keysReaderDupRecords = Gears_dictCreate(&Gears_dictTypeHeapStrings, NULL);
+    }
+    Gears_dictReplace(keysReaderDupRecords, (char*)readRecordCallback, dupRecord);
+}
+
+void KeysReaderTriggerArgs_SetHashFields(KeysReaderTriggerArgs* krta, char** hashFields){
+    if(krta->hashFields){
+        array_free_ex(krta->hashFields, RG_FREE(*(char**)ptr));
+    }
+    krta->hashFields = hashFields;
+}
+
+void KeysReaderTriggerArgs_SetCoalesceWindow(KeysReaderTriggerArgs* krta, size_t coalesceWindowMS){
+    krta->coalesceWindowMS = coalesceWindowMS;
+}
+
+void KeysReaderTriggerArgs_SetBatch(KeysReaderTriggerArgs* krta, size_t batchSize, size_t batchDurationMS){
+    krta->batchSize = batchSize;
+    krta->batchDurationMS = batchDurationMS;
+}
+
+size_t KeysReader_GetCoalescedEvents(){
+    return currCoalescedEvents;
+}
+
 static Reader* KeysReader_Create(void* arg){
     KeysReaderCtx* ctx = arg;
     if(!ctx){
@@ -1529,8 +2384,8 @@ static void GenricKeysReader_Clear(bool (*shouldClear)(FlatExecutionPlan*)){
             continue;
         }
         FlatExecutionPlan_RemoveFromRegisterDict(rData->fep);
+        KeysReader_RemoveRegistration(rData, node);
         KeysReaderRegisterData_Free(rData);
-        Gears_listDelNode(keysReaderRegistration, node);
     }
     Gears_listReleaseIterator(iter);
 }
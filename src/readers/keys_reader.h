@@ -17,11 +17,33 @@ int KeysReader_Initialize(RedisModuleCtx* ctx);
 KeysReaderTriggerArgs* KeysReaderTriggerArgs_Create(const char* prefix, char** eventTypes, int* keyTypes, bool readValue);
 void KeysReaderTriggerArgs_SetTriggerHookCommands(KeysReaderTriggerArgs* krta, char** hookCommands);
 int KeysReaderTriggerArgs_SetReadRecordCallback(KeysReaderTriggerArgs* krta, const char* readRecordCallback);
+/*
+ * Register a callback that duplicates the records created by the given read record callback.
+ * When given, a value read on a key space event is read once and copied to all the async
+ * registrations fired by the event instead of being read by each one of them.
+ */
+void KeysReader_RegisterDupRecordCallback(const char* readRecordCallback, RedisGears_KeysReaderDupRecordCallback dupRecord);
+/*
+ * Only fetch the given fields when reading hash values.
+ * hashFields - array of fields names, function takes ownership on this value, the caller should not use it anymore
+ */
+void KeysReaderTriggerArgs_SetHashFields(KeysReaderTriggerArgs* krta, char** hashFields);
+/*
+ * Collapse events on the same key that arrive within the given window (in ms)
+ * into a single execution, 0 means trigger an execution on each event.
+ */
+void KeysReaderTriggerArgs_SetCoalesceWindow(KeysReaderTriggerArgs* krta, size_t coalesceWindowMS);
+/*
+ * Fire a single execution for up to batchSize events, or for the events that
+ * arrived within batchDurationMS of the first one. Only valid on async_local registrations.
+ */
+void KeysReaderTriggerArgs_SetBatch(KeysReaderTriggerArgs* krta, size_t batchSize, size_t batchDurationMS);
 void KeysReaderTriggerArgs_Free(KeysReaderTriggerArgs* args);
 
 
 KeysReaderCtx* KeysReaderCtx_Create(const char* match, bool readValue, const char* event, bool exactMatch);
 int KeysReaderCtx_SetReadRecordCallback(KeysReaderCtx* krCtx, const char* readRecordCallback);
+void KeysReaderCtx_SetHashFields(KeysReaderCtx* krCtx, char** hashFields);
 void KeysReaderCtx_Free(void* ctx);
 
 CommandCtx* KeyReader_CommandCtxGetShallowCopy(CommandCtx* cmdCtx);
@@ -32,4 +54,15 @@ CommandCtx* KeyReader_CommandCtxGet(ExecutionCtx* eCtx);
 
 int KeyReader_SetAvoidEvents(int avoidEvents);
 
+/*
+ * Return the number of events coalesced into the key currently being read,
+ * only valid inside a read record callback, 0 if events are not coalesced.
+ */
+size_t KeysReader_GetCoalescedEvents();
+
+/*
+ * Glob-style match of the given key against the given pattern, same matching used by the keys reader scan.
+ */
+int KeysReader_PatternMatch(const char* pattern, size_t patternLen, const char* key, size_t keyLen);
+
 #endif /* SRC_KEYS_READER_H_ */
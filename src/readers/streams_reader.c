@@ -9,6 +9,8 @@
 #include "record.h"
 #include "config.h"
 #include "readers_common.h"
+#include "mgmt.h"
+#include "version.h"
 #include <pthread.h>
 #include <errno.h>
 #include <unistd.h>
@@ -34,6 +36,13 @@ typedef struct StreamReaderCtx{
     RedisModuleString** batchIds;
     StreamId lastReadId;
     long long batchStartTime;
+    char* readRecordStr;
+    RedisGears_StreamReaderReadRecordCallback readRecord;
+    char* readBatchStr;
+    RedisGears_StreamReaderReadBatchCallback readBatch;
+    bool deliverAsBatch;
+    bool countedInFlight; // local only, the batch is counted on the registration in flight batches
+    size_t scheduleGeneration; // local only, the registration streams data generation at trigger time
 }StreamReaderCtx;
 
 typedef struct StreamReaderTriggerArgs{
@@ -43,6 +52,17 @@ typedef struct StreamReaderTriggerArgs{
     OnFailedPolicy onFailedPolicy;
     size_t retryInterval;
     bool trimStream;
+    char* readRecordStr;
+    RedisGears_StreamReaderReadRecordCallback readRecord;
+    char* readBatchStr;
+    RedisGears_StreamReaderReadBatchCallback readBatch;
+    bool deliverAsBatch;
+    bool adaptive;
+    size_t minBatchSize;
+    size_t maxBatchSize;
+    size_t targetLatencyMS;
+    size_t maxConcurrentBatches; // 0 means no limit
+    bool orderedPerStream;
 }StreamReaderTriggerArgs;
 
 typedef enum StreamRegistrationStatus{
@@ -67,6 +87,13 @@ typedef struct StreamReaderTriggerCtx{
     long long totalRunDuration;
     long long lastBatchLag;
     long long totalBatchLag;
+    size_t effectiveBatchSize;
+    size_t effectiveDurationMS;
+    size_t inFlightBatches;
+    Gears_list* readyStreams; // streams waiting for their turn to run, in round robin order
+    size_t streamsDataGeneration; // increased each time the single streams data is cleaned
+    bool dispatching;
+    bool abortingPendings; // pending executions are being aborted, do not run new batches
     char* lastError;
     pthread_t scanThread;
     Gears_dict* localPendingExecutions;
@@ -83,6 +110,11 @@ typedef struct SingleStreamReaderCtx{
     StreamReaderTriggerCtx* srtctx; // weak ptr to the StreamReaderCtx
     char* keyName;
     StreamId lastId;
+    size_t numInFlight;
+    bool queued;
+    size_t queuedBatch;
+    bool queuedReadPending;
+    long long lastBatchLag;
 }SingleStreamReaderCtx;
 
 static void* StreamReader_ScanForStreams(void* pd);
@@ -150,11 +182,68 @@ StreamReaderTriggerArgs* StreamReaderTriggerArgs_Create(const char* streamPrefix
     readerArgs->onFailedPolicy = onFailedPolicy;
     readerArgs->retryInterval = retryInterval;
     readerArgs->trimStream = trimStream;
+    readerArgs->readRecordStr = NULL;
+    readerArgs->readRecord = NULL;
+    readerArgs->readBatchStr = NULL;
+    readerArgs->readBatch = NULL;
+    readerArgs->deliverAsBatch = false;
+    readerArgs->adaptive = false;
+    readerArgs->minBatchSize = batchSize;
+    readerArgs->maxBatchSize = batchSize;
+    readerArgs->targetLatencyMS = 0;
+    readerArgs->maxConcurrentBatches = 0;
+    readerArgs->orderedPerStream = false;
     return readerArgs;
 }
 
+void StreamReaderTriggerArgs_SetScheduling(StreamReaderTriggerArgs* srta, size_t maxConcurrentBatches, bool orderedPerStream){
+    srta->maxConcurrentBatches = maxConcurrentBatches;
+    srta->orderedPerStream = orderedPerStream;
+}
+
+void StreamReaderTriggerArgs_SetAdaptiveBatch(StreamReaderTriggerArgs* srta, size_t minBatchSize, size_t maxBatchSize, size_t targetLatencyMS){
+    srta->adaptive = true;
+    srta->minBatchSize = minBatchSize;
+    srta->maxBatchSize = maxBatchSize;
+    srta->targetLatencyMS = targetLatencyMS;
+    if(srta->batchSize < minBatchSize){
+        srta->batchSize = minBatchSize;
+    }
+    if(srta->batchSize > maxBatchSize){
+        srta->batchSize = maxBatchSize;
+    }
+}
+
+void StreamReaderTriggerArgs_SetDeliverAsBatch(StreamReaderTriggerArgs* srta, bool deliverAsBatch){
+    srta->deliverAsBatch = deliverAsBatch;
+}
+
+int StreamReaderTriggerArgs_SetReadRecordCallback(StreamReaderTriggerArgs* srta, const char* readRecordCallback){
+    srta->readRecord = StreamReaderReadRecordsMgmt_Get(readRecordCallback);
+    if(!srta->readRecord){
+        return REDISMODULE_ERR;
+    }
+    srta->readRecordStr = RG_STRDUP(readRecordCallback);
+    return REDISMODULE_OK;
+}
+
+int StreamReaderTriggerArgs_SetReadBatchCallback(StreamReaderTriggerArgs* srta, const char* readBatchCallback){
+    srta->readBatch = StreamReaderReadBatchsMgmt_Get(readBatchCallback);
+    if(!srta->readBatch){
+        return REDISMODULE_ERR;
+    }
+    srta->readBatchStr = RG_STRDUP(readBatchCallback);
+    return REDISMODULE_OK;
+}
+
 void StreamReaderTriggerArgs_Free(StreamReaderTriggerArgs* args){
     RG_FREE(args->streamPrefix);
+    if(args->readRecordStr){
+        RG_FREE(args->readRecordStr);
+    }
+    if(args->readBatchStr){
+        RG_FREE(args->readBatchStr);
+    }
     RG_FREE(args);
 }
 
@@ -207,6 +296,11 @@ static SingleStreamReaderCtx* SingleStreamReaderCtx_Create(RedisModuleCtx* ctx,
     ssrctx->timerIsSet = false;
     ssrctx->freeOnNextTimeEvent = false;
     ssrctx->batchStartTime = 0;
+    ssrctx->numInFlight = 0;
+    ssrctx->queued = false;
+    ssrctx->queuedBatch = 0;
+    ssrctx->queuedReadPending = false;
+    ssrctx->lastBatchLag = 0;
     if(!StreamReader_ReadLastId(ctx, ssrctx)){
     	RG_FREE(ssrctx->keyName);
     	RG_FREE(ssrctx);
@@ -235,6 +329,10 @@ static void StreamReaderTriggerCtx_CleanSingleStreamsData(StreamReaderTriggerCtx
     Gears_dictReleaseIterator(iter);
     Gears_dictRelease(srtctx->singleStreamData);
     srtctx->singleStreamData = Gears_dictCreate(&Gears_dictTypeHeapStrings, NULL);
+    // the queued streams was just freed, batches that are still in flight
+    // belongs to the old generation and will not touch the new streams data.
+    Gears_listEmpty(srtctx->readyStreams);
+    ++srtctx->streamsDataGeneration;
 }
 
 static void StreamReaderTriggerCtx_Free(StreamReaderTriggerCtx* srtctx){
@@ -265,6 +363,7 @@ static void StreamReaderTriggerCtx_Free(StreamReaderTriggerCtx* srtctx){
 
         StreamReaderTriggerCtx_CleanSingleStreamsData(srtctx);
         Gears_dictRelease(srtctx->singleStreamData);
+        Gears_listRelease(srtctx->readyStreams);
         StreamReaderTriggerArgs_Free(srtctx->args);
         FlatExecutionPlan_Free(srtctx->fep);
         RedisGears_WorkerDataFree(srtctx->wd);
@@ -291,6 +390,13 @@ static StreamReaderTriggerCtx* StreamReaderTriggerCtx_Create(FlatExecutionPlan*
         .totalRunDuration = 0,
         .lastBatchLag = 0,
         .totalBatchLag = 0,
+        .effectiveBatchSize = args->batchSize,
+        .effectiveDurationMS = args->durationMS,
+        .inFlightBatches = 0,
+        .readyStreams = Gears_listCreate(),
+        .streamsDataGeneration = 0,
+        .dispatching = false,
+        .abortingPendings = false,
         .lastError = NULL,
         .localPendingExecutions = Gears_dictCreate(&Gears_dictTypeHeapStrings, NULL),
         .localDoneExecutions = Gears_listCreate(),
@@ -312,10 +418,39 @@ StreamReaderCtx* StreamReaderCtx_Create(const char* streamName, const char* stre
             .readPenging = false,
             .lastReadId = StreamIdZero,
             .batchStartTime = 0,
+            .readRecordStr = NULL,
+            .readRecord = NULL,
+            .readBatchStr = NULL,
+            .readBatch = NULL,
+            .deliverAsBatch = false,
+            .countedInFlight = false,
+            .scheduleGeneration = 0,
     };
     return readerCtx;
 }
 
+void StreamReaderCtx_SetDeliverAsBatch(StreamReaderCtx* readerCtx, bool deliverAsBatch){
+    readerCtx->deliverAsBatch = deliverAsBatch;
+}
+
+int StreamReaderCtx_SetReadRecordCallback(StreamReaderCtx* readerCtx, const char* readRecordCallback){
+    readerCtx->readRecord = StreamReaderReadRecordsMgmt_Get(readRecordCallback);
+    if(!readerCtx->readRecord){
+        return REDISMODULE_ERR;
+    }
+    readerCtx->readRecordStr = RG_STRDUP(readRecordCallback);
+    return REDISMODULE_OK;
+}
+
+int StreamReaderCtx_SetReadBatchCallback(StreamReaderCtx* readerCtx, const char* readBatchCallback){
+    readerCtx->readBatch = StreamReaderReadBatchsMgmt_Get(readBatchCallback);
+    if(!readerCtx->readBatch){
+        return REDISMODULE_ERR;
+    }
+    readerCtx->readBatchStr = RG_STRDUP(readBatchCallback);
+    return REDISMODULE_OK;
+}
+
 void StreamReaderCtx_Free(StreamReaderCtx* readerCtx){
     StreamReader_Free(readerCtx);
 }
@@ -333,6 +468,13 @@ static StreamReaderCtx* StreamReaderCtx_CreateWithConsumerGroup(const char* stre
             .readPenging = readPenging,
             .lastReadId = StreamIdZero,
             .batchStartTime = batchStartTime,
+            .readRecordStr = NULL,
+            .readRecord = NULL,
+            .readBatchStr = NULL,
+            .readBatch = NULL,
+            .deliverAsBatch = false,
+            .countedInFlight = false,
+            .scheduleGeneration = 0,
     };
     return readerCtx;
 }
@@ -350,6 +492,42 @@ static RedisModuleCallReply* StreamReader_ReadFromGroup(RedisModuleCtx* ctx, Str
     return reply;
 }
 
+static Record* StreamReader_EntryToHashRecord(StreamReaderCtx* readerCtx, RedisModuleCallReply *element){
+    RedisModuleCallReply *id = RedisModule_CallReplyArrayElement(element, 0);
+    size_t len;
+    const char* idStr = RedisModule_CallReplyStringPtr(id, &len);
+    Record* r = RedisGears_HashSetRecordCreate();
+    Record* recordValues = RedisGears_HashSetRecordCreate();
+    char* idCStr = RG_ALLOC((len + 1)* sizeof(char));
+    memcpy(idCStr, idStr, len);
+    idCStr[len] = '\0';
+
+    Record* valRecord = RedisGears_StringRecordCreate(idCStr, len);
+    Record* keyRecord = RedisGears_StringRecordCreate(RG_STRDUP(readerCtx->streamKeyName), strlen(readerCtx->streamKeyName));
+    RedisGears_HashSetRecordSet(r, "id", valRecord);
+    RedisGears_HashSetRecordSet(r, "value", recordValues);
+    RedisGears_HashSetRecordSet(r, "key", keyRecord);
+    RedisModuleCallReply *values = RedisModule_CallReplyArrayElement(element, 1);
+    if (RedisModule_CallReplyType(values) == REDISMODULE_REPLY_ARRAY) {
+        RedisModule_Assert(RedisModule_CallReplyLength(values) % 2 == 0);
+        for(size_t j = 0 ; j < RedisModule_CallReplyLength(values) ; j+=2){
+            RedisModuleCallReply *key = RedisModule_CallReplyArrayElement(values, j);
+            const char* keyStr = RedisModule_CallReplyStringPtr(key, &len);
+            char keyCStr[len + 1];
+            memcpy(keyCStr, keyStr, len);
+            keyCStr[len] = '\0';
+            RedisModuleCallReply *val = RedisModule_CallReplyArrayElement(values, j + 1);
+            const char* valStr = RedisModule_CallReplyStringPtr(val, &len);
+            char* valCStr = RG_ALLOC((len + 1)* sizeof(char));
+            memcpy(valCStr, valStr, len);
+            valCStr[len] = '\0';
+            Record* valRecord = RedisGears_StringRecordCreate(valCStr, len);
+            RedisGears_HashSetRecordSet(recordValues, keyCStr, valRecord);
+        }
+    }
+    return r;
+}
+
 static void StreamReader_ReadRecords(RedisModuleCtx* ctx, StreamReaderCtx* readerCtx){
     if(readerCtx->isDone){
         return;
@@ -403,9 +581,19 @@ static void StreamReader_ReadRecords(RedisModuleCtx* ctx, StreamReaderCtx* reade
     RedisModule_Assert(RedisModule_CallReplyLength(streamReply) == 2);
     RedisModuleCallReply *elements = RedisModule_CallReplyArrayElement(streamReply, 1);
     RedisModule_Assert(RedisModule_CallReplyType(elements) == REDISMODULE_REPLY_ARRAY);
+    Record* batchRecord = NULL;
+    bool batchFallback = false;
+    if(readerCtx->deliverAsBatch && RedisModule_CallReplyLength(elements) > 0){
+        if(readerCtx->readBatch){
+            batchRecord = readerCtx->readBatch(ctx, readerCtx->streamKeyName, elements);
+        }
+        if(!batchRecord){
+            // fall back to a list of the entries records
+            batchRecord = RedisGears_ListRecordCreate(RedisModule_CallReplyLength(elements));
+            batchFallback = true;
+        }
+    }
     for(size_t i = 0 ; i < RedisModule_CallReplyLength(elements) ; ++i){
-        Record* r = RedisGears_HashSetRecordCreate();
-        Record* recordValues = RedisGears_HashSetRecordCreate();
         RedisModuleCallReply *element = RedisModule_CallReplyArrayElement(elements, i);
         RedisModule_Assert(RedisModule_CallReplyType(element) == REDISMODULE_REPLY_ARRAY);
         RedisModuleCallReply *id = RedisModule_CallReplyArrayElement(element, 0);
@@ -413,38 +601,33 @@ static void StreamReader_ReadRecords(RedisModuleCtx* ctx, StreamReaderCtx* reade
 
         size_t len;
         lastReadId = RedisModule_CallReplyStringPtr(id, &len);
-        char* idCStr = RG_ALLOC((len + 1)* sizeof(char));
-        memcpy(idCStr, lastReadId, len);
-        idCStr[len] = '\0';
 
         if(readerCtx->batchIds){
             readerCtx->batchIds = array_append(readerCtx->batchIds, RedisModule_CreateString(NULL, lastReadId, len));
         }
 
-        Record* valRecord = RedisGears_StringRecordCreate(idCStr, len);
-        Record* keyRecord = RedisGears_StringRecordCreate(RG_STRDUP(readerCtx->streamKeyName), strlen(readerCtx->streamKeyName));
-        RedisGears_HashSetRecordSet(r, "id", valRecord);
-        RedisGears_HashSetRecordSet(r, "value", recordValues);
-        RedisGears_HashSetRecordSet(r, "key", keyRecord);
-        RedisModuleCallReply *values = RedisModule_CallReplyArrayElement(element, 1);
-        if (RedisModule_CallReplyType(values) == REDISMODULE_REPLY_ARRAY) {
-            RedisModule_Assert(RedisModule_CallReplyLength(values) % 2 == 0);
-            for(size_t j = 0 ; j < RedisModule_CallReplyLength(values) ; j+=2){
-                RedisModuleCallReply *key = RedisModule_CallReplyArrayElement(values, j);
-                const char* keyStr = RedisModule_CallReplyStringPtr(key, &len);
-                char keyCStr[len + 1];
-                memcpy(keyCStr, keyStr, len);
-                keyCStr[len] = '\0';
-                RedisModuleCallReply *val = RedisModule_CallReplyArrayElement(values, j + 1);
-                const char* valStr = RedisModule_CallReplyStringPtr(val, &len);
-                char* valCStr = RG_ALLOC((len + 1)* sizeof(char));
-                memcpy(valCStr, valStr, len);
-                valCStr[len] = '\0';
-                Record* valRecord = RedisGears_StringRecordCreate(valCStr, len);
-                RedisGears_HashSetRecordSet(recordValues, keyCStr, valRecord);
-            }
+        if(batchRecord && !batchFallback){
+            continue;
         }
-        Gears_listAddNodeHead(readerCtx->records, r);
+
+        Record* r = NULL;
+        if(readerCtx->readRecord){
+            r = readerCtx->readRecord(ctx, readerCtx->streamKeyName, element);
+        }
+        if(!r){
+            // fall back to usual read
+            r = StreamReader_EntryToHashRecord(readerCtx, element);
+        }
+
+        if(batchRecord){
+            RedisGears_ListRecordAdd(batchRecord, r);
+        }else{
+            Gears_listAddNodeHead(readerCtx->records, r);
+        }
+    }
+
+    if(batchRecord){
+        Gears_listAddNodeHead(readerCtx->records, batchRecord);
     }
 
     if(lastReadId){
@@ -466,6 +649,22 @@ static int StreamReader_CtxDeserialize(ExecutionCtx* ectx, void* ctx, Gears_Buff
     }
 
     readerCtx->batchSize = RedisGears_BRReadLong(br);
+
+    if(RedisGears_BRReadLong(br)){
+        const char* readRecordCallbackName = RedisGears_BRReadString(br);
+        readerCtx->readRecord = StreamReaderReadRecordsMgmt_Get(readRecordCallbackName);
+        RedisModule_Assert(readerCtx->readRecord);
+        readerCtx->readRecordStr = RG_STRDUP(readRecordCallbackName);
+    }
+
+    if(RedisGears_BRReadLong(br)){
+        const char* readBatchCallbackName = RedisGears_BRReadString(br);
+        readerCtx->readBatch = StreamReaderReadBatchsMgmt_Get(readBatchCallbackName);
+        RedisModule_Assert(readerCtx->readBatch);
+        readerCtx->readBatchStr = RG_STRDUP(readBatchCallbackName);
+    }
+
+    readerCtx->deliverAsBatch = RedisGears_BRReadLong(br);
     return REDISMODULE_OK;
 }
 
@@ -489,6 +688,23 @@ static int StreamReader_CtxSerialize(ExecutionCtx* ectx, void* ctx, Gears_Buffer
     }
 
     RedisGears_BWWriteLong(bw, readerCtx->batchSize);
+
+    if(readerCtx->readRecord){
+        // readRecord callback exists
+        RedisGears_BWWriteLong(bw, 1);
+        RedisGears_BWWriteString(bw, readerCtx->readRecordStr);
+    }else{
+        RedisGears_BWWriteLong(bw, 0);
+    }
+
+    if(readerCtx->readBatch){
+        RedisGears_BWWriteLong(bw, 1);
+        RedisGears_BWWriteString(bw, readerCtx->readBatchStr);
+    }else{
+        RedisGears_BWWriteLong(bw, 0);
+    }
+
+    RedisGears_BWWriteLong(bw, readerCtx->deliverAsBatch);
     return REDISMODULE_OK;
 }
 
@@ -503,6 +719,12 @@ static void StreamReader_Free(void* ctx){
     if(readerCtx->consumerGroup){
         RG_FREE(readerCtx->consumerGroup);
     }
+    if(readerCtx->readRecordStr){
+        RG_FREE(readerCtx->readRecordStr);
+    }
+    if(readerCtx->readBatchStr){
+        RG_FREE(readerCtx->readBatchStr);
+    }
     if(readerCtx->records){
         while(Gears_listLength(readerCtx->records) > 0){
             Gears_listNode* node = Gears_listLast(readerCtx->records);
@@ -618,7 +840,7 @@ static void StreamReader_TriggerAnotherExecutionIfNeeded(StreamReaderTriggerCtx*
     // either way we need to trigger another execution.
     SingleStreamReaderCtx* ssrctx = Gears_dictFetchValue(srctx->singleStreamData, readerCtx->streamKeyName);
     if(StreamReader_StreamIdCompare(ssrctx->lastId, readerCtx->lastReadId) > 0){
-        StreamReader_RunOnEvent(ssrctx, srctx->args->batchSize, false);
+        StreamReader_RunOnEvent(ssrctx, srctx->effectiveBatchSize, false);
     }
 }
 
@@ -643,12 +865,17 @@ static void StreamReader_AbortPendings(StreamReaderTriggerCtx* srctx){
     }
     Gears_dictReleaseIterator(iter);
 
+    // each abort finishes a batch and might dispatch a waiting stream while the status is still OK,
+    // the waiting streams must not run before the registration status is updated by the caller.
+    bool abortingPendings = srctx->abortingPendings;
+    srctx->abortingPendings = true;
     for(size_t i = 0 ; i < array_len(abortEpArray) ; ++i){
         // we can not free while iterating so we add to the epArr and free after
         if(RedisGears_AbortExecution(abortEpArray[i]) != REDISMODULE_OK){
             RedisModule_Log(staticCtx, "warning", "Failed aborting execution on unregister.");
         }
     }
+    srctx->abortingPendings = abortingPendings;
 
     array_free(abortEpArray);
 }
@@ -664,6 +891,106 @@ static void StreamReader_StartScanThread(RedisModuleCtx *ctx, void *data){
     pthread_detach(srctx->scanThread);
 }
 
+static bool StreamReader_MustQueue(StreamReaderTriggerCtx* srtctx, SingleStreamReaderCtx* ssrctx){
+    if(ssrctx->queued){
+        // already waiting for its turn, do not let it pass the other streams
+        return true;
+    }
+    if(srtctx->args->orderedPerStream && ssrctx->numInFlight > 0){
+        return true;
+    }
+    if(srtctx->args->maxConcurrentBatches > 0 && srtctx->inFlightBatches >= srtctx->args->maxConcurrentBatches){
+        return true;
+    }
+    return false;
+}
+
+/*
+ * Run the streams that are waiting for their turn, in round robin order.
+ * Each stream appears at most once on the ready list so a hot stream gets
+ * a single batch per round like any other stream.
+ */
+static void StreamReader_DispatchReadyStreams(StreamReaderTriggerCtx* srtctx){
+    if(srtctx->dispatching || srtctx->abortingPendings || srtctx->status != StreamRegistrationStatus_OK){
+        return;
+    }
+    srtctx->dispatching = true;
+    size_t len = Gears_listLength(srtctx->readyStreams);
+    for(size_t i = 0 ; i < len ; ++i){
+        if(srtctx->args->maxConcurrentBatches > 0 && srtctx->inFlightBatches >= srtctx->args->maxConcurrentBatches){
+            break;
+        }
+        Gears_listNode* node = Gears_listFirst(srtctx->readyStreams);
+        SingleStreamReaderCtx* ssrctx = Gears_listNodeValue(node);
+        Gears_listDelNode(srtctx->readyStreams, node);
+        if(srtctx->args->orderedPerStream && ssrctx->numInFlight > 0){
+            // previous batch of this stream is still running, keep it waiting
+            Gears_listAddNodeTail(srtctx->readyStreams, ssrctx);
+            continue;
+        }
+        ssrctx->queued = false;
+        StreamReader_RunOnEvent(ssrctx, ssrctx->queuedBatch, ssrctx->queuedReadPending);
+    }
+    srtctx->dispatching = false;
+}
+
+static void StreamReader_OnBatchDone(StreamReaderTriggerCtx* srtctx, StreamReaderCtx* readerCtx){
+    if(!readerCtx->countedInFlight){
+        return;
+    }
+    readerCtx->countedInFlight = false;
+    --srtctx->inFlightBatches;
+    if(readerCtx->scheduleGeneration == srtctx->streamsDataGeneration){
+        SingleStreamReaderCtx* ssrctx = Gears_dictFetchValue(srtctx->singleStreamData, readerCtx->streamKeyName);
+        if(ssrctx && ssrctx->numInFlight > 0){
+            --ssrctx->numInFlight;
+        }
+    }
+    StreamReader_DispatchReadyStreams(srtctx);
+}
+
+/*
+ * Adjust the effective batch size and duration of an adaptive registration
+ * according to the last batch processing time and lag:
+ *  1. If the stream still has unread entries we are behind, grow the batch to reduce the per batch overhead.
+ *  2. If the lag exceeded the target latency, shrink the batch so it will fill up faster.
+ *  3. If the lag is less then half the target latency, there is room to grow the batch.
+ * The duration is set to the target latency minus the processing time so a partial batch
+ * will not wait more then the target latency.
+ */
+static void StreamReader_AdaptBatch(StreamReaderTriggerCtx* srctx, StreamReaderCtx* readerCtx, long long batchLag){
+    StreamReaderTriggerArgs* args = srctx->args;
+    if(!args->adaptive || srctx->status != StreamRegistrationStatus_OK){
+        return;
+    }
+
+    long long runMS = DURATION2MS(srctx->lastRunDuration);
+    long long lagMS = batchLag ? DURATION2MS(batchLag) : runMS;
+    long long targetMS = args->targetLatencyMS;
+
+    bool hasBacklog = false;
+    SingleStreamReaderCtx* ssrctx = Gears_dictFetchValue(srctx->singleStreamData, readerCtx->streamKeyName);
+    if(ssrctx && !StreamIdIsZero(readerCtx->lastReadId)){
+        hasBacklog = StreamReader_StreamIdCompare(ssrctx->lastId, readerCtx->lastReadId) > 0;
+    }
+
+    size_t batchSize = srctx->effectiveBatchSize;
+    if(hasBacklog || lagMS < targetMS / 2){
+        batchSize *= 2;
+    }else if(lagMS > targetMS){
+        batchSize /= 2;
+    }
+    if(batchSize < args->minBatchSize){
+        batchSize = args->minBatchSize;
+    }
+    if(batchSize > args->maxBatchSize){
+        batchSize = args->maxBatchSize;
+    }
+    srctx->effectiveBatchSize = batchSize;
+
+    srctx->effectiveDurationMS = runMS < targetMS ? targetMS - runMS : 1;
+}
+
 static void StreamReader_ExecutionDone(ExecutionPlan* ctx, void* privateData){
     StreamReaderTriggerCtx* srctx = privateData;
 
@@ -735,6 +1062,8 @@ static void StreamReader_ExecutionDone(ExecutionPlan* ctx, void* privateData){
         ++srctx->numSuccess;
     }
 
+    StreamReader_OnBatchDone(srctx, ExecutionPlan_GetReader(ctx)->ctx);
+
     if(ackAndTrim && EPIsFlagOn(ctx, EFIsLocal)){
         // we only ack and trim local executions.
         // distributed executions on stream is tricky and should be considered
@@ -756,6 +1085,7 @@ static void StreamReader_ExecutionDone(ExecutionPlan* ctx, void* privateData){
     /* calculate lag */
     Reader* reader = ExecutionPlan_GetReader(ctx);
     StreamReaderCtx* readerCtx = reader->ctx;
+    long long batchLag = 0;
     if (readerCtx->batchStartTime) {
         /* no need to calculate lag if batchStartTime is not set.
          * In such case its either:
@@ -766,6 +1096,15 @@ static void StreamReader_ExecutionDone(ExecutionPlan* ctx, void* privateData){
         long long currTime = ((long long)1000000000 * (currTimeSpec.tv_sec) + (currTimeSpec.tv_nsec));
         srctx->lastBatchLag = currTime - readerCtx->batchStartTime;
         srctx->totalBatchLag += srctx->lastBatchLag;
+        batchLag = srctx->lastBatchLag;
+        SingleStreamReaderCtx* ssrctx = Gears_dictFetchValue(srctx->singleStreamData, readerCtx->streamKeyName);
+        if(ssrctx && readerCtx->scheduleGeneration == srctx->streamsDataGeneration){
+            ssrctx->lastBatchLag = batchLag;
+        }
+    }
+
+    if(EPIsFlagOn(ctx, EFIsLocal) && ctx->status != ABORTED){
+        StreamReader_AdaptBatch(srctx, readerCtx, batchLag);
     }
 
 
@@ -774,13 +1113,42 @@ static void StreamReader_ExecutionDone(ExecutionPlan* ctx, void* privateData){
 
 static void StreamReader_RunOnEvent(SingleStreamReaderCtx* ssrctx, size_t batch, bool readPending){
     StreamReaderTriggerCtx* srtctx = ssrctx->srtctx;
+    if(StreamReader_MustQueue(srtctx, ssrctx)){
+        if(!ssrctx->queued){
+            ssrctx->queued = true;
+            ssrctx->queuedBatch = batch;
+            ssrctx->queuedReadPending = readPending;
+            Gears_listAddNodeTail(srtctx->readyStreams, ssrctx);
+        }else{
+            ssrctx->queuedReadPending |= readPending;
+            if(batch > ssrctx->queuedBatch){
+                ssrctx->queuedBatch = batch;
+            }
+        }
+        return;
+    }
     StreamReaderCtx* readerCtx = StreamReaderCtx_CreateWithConsumerGroup(ssrctx->keyName, GEARS_CONSUMER_GROUP, batch, readPending, ssrctx->batchStartTime);
+    if(srtctx->args->readRecord){
+        readerCtx->readRecordStr = RG_STRDUP(srtctx->args->readRecordStr);
+        readerCtx->readRecord = srtctx->args->readRecord;
+    }
+    if(srtctx->args->readBatch){
+        readerCtx->readBatchStr = RG_STRDUP(srtctx->args->readBatchStr);
+        readerCtx->readBatch = srtctx->args->readBatch;
+    }
+    readerCtx->deliverAsBatch = srtctx->args->deliverAsBatch;
+    readerCtx->countedInFlight = true;
+    readerCtx->scheduleGeneration = srtctx->streamsDataGeneration;
+    ++srtctx->inFlightBatches;
+    ++ssrctx->numInFlight;
     RedisGears_OnExecutionDoneCallback callback = StreamReader_ExecutionDone;
     void* privateData = StreamReaderTriggerCtx_GetShallowCopy(srtctx);
     ++srtctx->numTriggered;
     char* err = NULL;
     ExecutionPlan* ep = RedisGears_Run(srtctx->fep, srtctx->mode, readerCtx, callback, privateData, srtctx->wd, &err);
     if(!ep){
+        --srtctx->inFlightBatches;
+        --ssrctx->numInFlight;
         ++srtctx->numAborted;
         RedisModule_Log(staticCtx, "warning", "could not execute flat execution on trigger, %s", err);
         if(err){
@@ -831,7 +1199,7 @@ static void StreamReader_OnTime(RedisModuleCtx *ctx, void *data){
         RG_FREE(ssrctx);
         return;
     }
-    StreamReader_RunOnEvent(ssrctx, ssrctx->srtctx->args->batchSize,false);
+    StreamReader_RunOnEvent(ssrctx, ssrctx->srtctx->effectiveBatchSize,false);
     ssrctx->timerIsSet = false;
     ssrctx->numTriggered = 0;
 }
@@ -876,18 +1244,18 @@ static int StreamReader_OnKeyTouched(RedisModuleCtx *ctx, int type, const char *
                 clock_gettime(CLOCK_REALTIME, &t);
                 ssrctx->batchStartTime = ((long long)1000000000 * (t.tv_sec) + (t.tv_nsec));
             }
-            if(srctx->args->batchSize <= ++ssrctx->numTriggered){
-                StreamReader_RunOnEvent(ssrctx, srctx->args->batchSize, false);
+            if(srctx->effectiveBatchSize <= ++ssrctx->numTriggered){
+                StreamReader_RunOnEvent(ssrctx, srctx->effectiveBatchSize, false);
                 ssrctx->numTriggered = 0;
                 // we finish the run, if timer is set lets remove it.
-                if(!ssrctx->timerIsSet && srctx->args->durationMS > 0){
+                if(!ssrctx->timerIsSet && srctx->effectiveDurationMS > 0){
                     RedisModule_StopTimer(ctx, ssrctx->lastTimerId, NULL);
                     ssrctx->timerIsSet = false;
                 }
             }else{
                 // if we did not run execution we need to set timer if its not already set
-                if(!ssrctx->timerIsSet && srctx->args->durationMS > 0){
-                    ssrctx->lastTimerId = RedisModule_CreateTimer(ctx, srctx->args->durationMS, StreamReader_OnTime, ssrctx);
+                if(!ssrctx->timerIsSet && srctx->effectiveDurationMS > 0){
+                    ssrctx->lastTimerId = RedisModule_CreateTimer(ctx, srctx->effectiveDurationMS, StreamReader_OnTime, ssrctx);
                     ssrctx->timerIsSet = true;
                 }
             }
@@ -1074,6 +1442,27 @@ static void StreamReader_SerializeArgs(void* args, Gears_BufferWriter* bw){
     RedisGears_BWWriteLong(bw, triggerArgs->onFailedPolicy);
     RedisGears_BWWriteLong(bw, triggerArgs->retryInterval);
     RedisGears_BWWriteLong(bw, triggerArgs->trimStream);
+    if(triggerArgs->readRecord){
+        RedisGears_BWWriteLong(bw, 1);
+        RedisGears_BWWriteString(bw, triggerArgs->readRecordStr);
+    }else{
+        RedisGears_BWWriteLong(bw, 0);
+    }
+    if(triggerArgs->readBatch){
+        RedisGears_BWWriteLong(bw, 1);
+        RedisGears_BWWriteString(bw, triggerArgs->readBatchStr);
+    }else{
+        RedisGears_BWWriteLong(bw, 0);
+    }
+    RedisGears_BWWriteLong(bw, triggerArgs->deliverAsBatch);
+    RedisGears_BWWriteLong(bw, triggerArgs->adaptive);
+    if(triggerArgs->adaptive){
+        RedisGears_BWWriteLong(bw, triggerArgs->minBatchSize);
+        RedisGears_BWWriteLong(bw, triggerArgs->maxBatchSize);
+        RedisGears_BWWriteLong(bw, triggerArgs->targetLatencyMS);
+    }
+    RedisGears_BWWriteLong(bw, triggerArgs->maxConcurrentBatches);
+    RedisGears_BWWriteLong(bw, triggerArgs->orderedPerStream);
 }
 
 static void* StreamReader_DeserializeArgs(Gears_BufferReader* br, int encver){
@@ -1083,7 +1472,42 @@ static void* StreamReader_DeserializeArgs(Gears_BufferReader* br, int encver){
     OnFailedPolicy onFailedPolicy = RedisGears_BRReadLong(br);
     size_t retryInterval = RedisGears_BRReadLong(br);
     bool trimStream = RedisGears_BRReadLong(br);
-    return StreamReaderTriggerArgs_Create(stream, batchSize, durationMS, onFailedPolicy, retryInterval, trimStream);
+    StreamReaderTriggerArgs* ret = StreamReaderTriggerArgs_Create(stream, batchSize, durationMS, onFailedPolicy, retryInterval, trimStream);
+    if(encver >= VERSION_WITH_STREAM_READER_READ_CALLBACK){
+        if(RedisGears_BRReadLong(br)){
+            const char* readRecordCallback = RedisGears_BRReadString(br);
+            if(StreamReaderTriggerArgs_SetReadRecordCallback(ret, readRecordCallback) != REDISMODULE_OK){
+                RedisModule_Log(staticCtx, "warning", "Failed loading readRecordCallback");
+                StreamReaderTriggerArgs_Free(ret);
+                return NULL;
+            }
+        }
+    }
+    if(encver >= VERSION_WITH_STREAM_READER_DELIVER_AS_BATCH){
+        if(RedisGears_BRReadLong(br)){
+            const char* readBatchCallback = RedisGears_BRReadString(br);
+            if(StreamReaderTriggerArgs_SetReadBatchCallback(ret, readBatchCallback) != REDISMODULE_OK){
+                RedisModule_Log(staticCtx, "warning", "Failed loading readBatchCallback");
+                StreamReaderTriggerArgs_Free(ret);
+                return NULL;
+            }
+        }
+        ret->deliverAsBatch = RedisGears_BRReadLong(br);
+    }
+    if(encver >= VERSION_WITH_STREAM_READER_ADAPTIVE_BATCH){
+        if(RedisGears_BRReadLong(br)){
+            size_t minBatchSize = RedisGears_BRReadLong(br);
+            size_t maxBatchSize = RedisGears_BRReadLong(br);
+            size_t targetLatencyMS = RedisGears_BRReadLong(br);
+            StreamReaderTriggerArgs_SetAdaptiveBatch(ret, minBatchSize, maxBatchSize, targetLatencyMS);
+        }
+    }
+    if(encver >= VERSION_WITH_STREAM_READER_SCHEDULING){
+        size_t maxConcurrentBatches = RedisGears_BRReadLong(br);
+        bool orderedPerStream = RedisGears_BRReadLong(br);
+        StreamReaderTriggerArgs_SetScheduling(ret, maxConcurrentBatches, orderedPerStream);
+    }
+    return ret;
 }
 
 static void StreamReader_DumpRegistrationInfo(FlatExecutionPlan* fep, RedisModuleInfoCtx *ctx, int for_crash_report) {
@@ -1111,6 +1535,19 @@ static void StreamReader_DumpRegistrationInfo(FlatExecutionPlan* fep, RedisModul
     RedisModule_InfoAddFieldCString(ctx, "lastError", srctx->lastError ? srctx->lastError : "None");
     RedisModule_InfoAddFieldULongLong(ctx, "batchSize", srctx->args->batchSize);
     RedisModule_InfoAddFieldULongLong(ctx, "durationMS", srctx->args->durationMS);
+    if(srctx->args->adaptive){
+        RedisModule_InfoAddFieldULongLong(ctx, "minBatchSize", srctx->args->minBatchSize);
+        RedisModule_InfoAddFieldULongLong(ctx, "maxBatchSize", srctx->args->maxBatchSize);
+        RedisModule_InfoAddFieldULongLong(ctx, "targetLatencyMS", srctx->args->targetLatencyMS);
+    }
+    RedisModule_InfoAddFieldULongLong(ctx, "effectiveBatchSize", srctx->effectiveBatchSize);
+    RedisModule_InfoAddFieldULongLong(ctx, "effectiveDurationMS", srctx->effectiveDurationMS);
+    if(srctx->args->maxConcurrentBatches > 0 || srctx->args->orderedPerStream){
+        RedisModule_InfoAddFieldULongLong(ctx, "maxConcurrentBatches", srctx->args->maxConcurrentBatches);
+        RedisModule_InfoAddFieldULongLong(ctx, "orderedPerStream", srctx->args->orderedPerStream);
+    }
+    RedisModule_InfoAddFieldULongLong(ctx, "inFlightBatches", srctx->inFlightBatches);
+    RedisModule_InfoAddFieldULongLong(ctx, "queuedStreams", Gears_listLength(srctx->readyStreams));
     RedisModule_InfoAddFieldCString(ctx, "stream", srctx->args->streamPrefix);
     switch(srctx->status){
     case StreamRegistrationStatus_OK:
@@ -1147,7 +1584,7 @@ static void StreamReader_DumpRegistrationInfo(FlatExecutionPlan* fep, RedisModul
 static void StreamReader_DumpRegistrationData(RedisModuleCtx* ctx, FlatExecutionPlan* fep){
     StreamReaderTriggerCtx* srctx = StreamReader_GetStreamTriggerCtxByFep(fep, 0);
     RedisModule_Assert(srctx);
-    RedisModule_ReplyWithArray(ctx, 26);
+    RedisModule_ReplyWithArray(ctx, 34);
     RedisModule_ReplyWithStringBuffer(ctx, "mode", strlen("mode"));
     if(srctx->mode == ExecutionModeSync){
         RedisModule_ReplyWithStringBuffer(ctx, "sync", strlen("sync"));
@@ -1183,13 +1620,28 @@ static void StreamReader_DumpRegistrationData(RedisModuleCtx* ctx, FlatExecution
         RedisModule_ReplyWithNull(ctx);
     }
     RedisModule_ReplyWithStringBuffer(ctx, "args", strlen("args"));
-    RedisModule_ReplyWithArray(ctx, 6);
+    bool hasScheduling = srctx->args->maxConcurrentBatches > 0 || srctx->args->orderedPerStream;
+    RedisModule_ReplyWithArray(ctx, 6 + (srctx->args->adaptive ? 6 : 0) + (hasScheduling ? 4 : 0));
     RedisModule_ReplyWithStringBuffer(ctx, "batchSize", strlen("batchSize"));
     RedisModule_ReplyWithLongLong(ctx, srctx->args->batchSize);
     RedisModule_ReplyWithStringBuffer(ctx, "durationMS", strlen("durationMS"));
     RedisModule_ReplyWithLongLong(ctx, srctx->args->durationMS);
     RedisModule_ReplyWithStringBuffer(ctx, "stream", strlen("stream"));
     RedisModule_ReplyWithStringBuffer(ctx, srctx->args->streamPrefix, strlen(srctx->args->streamPrefix));
+    if(srctx->args->adaptive){
+        RedisModule_ReplyWithStringBuffer(ctx, "minBatchSize", strlen("minBatchSize"));
+        RedisModule_ReplyWithLongLong(ctx, srctx->args->minBatchSize);
+        RedisModule_ReplyWithStringBuffer(ctx, "maxBatchSize", strlen("maxBatchSize"));
+        RedisModule_ReplyWithLongLong(ctx, srctx->args->maxBatchSize);
+        RedisModule_ReplyWithStringBuffer(ctx, "targetLatencyMS", strlen("targetLatencyMS"));
+        RedisModule_ReplyWithLongLong(ctx, srctx->args->targetLatencyMS);
+    }
+    if(hasScheduling){
+        RedisModule_ReplyWithStringBuffer(ctx, "maxConcurrentBatches", strlen("maxConcurrentBatches"));
+        RedisModule_ReplyWithLongLong(ctx, srctx->args->maxConcurrentBatches);
+        RedisModule_ReplyWithStringBuffer(ctx, "orderedPerStream", strlen("orderedPerStream"));
+        RedisModule_ReplyWithLongLong(ctx, srctx->args->orderedPerStream);
+    }
     RedisModule_ReplyWithStringBuffer(ctx, "status", strlen("status"));
     switch(srctx->status){
     case StreamRegistrationStatus_OK:
@@ -1204,6 +1656,31 @@ static void StreamReader_DumpRegistrationData(RedisModuleCtx* ctx, FlatExecution
     default:
         RedisModule_Assert(false);
     }
+    RedisModule_ReplyWithStringBuffer(ctx, "effectiveBatchSize", strlen("effectiveBatchSize"));
+    RedisModule_ReplyWithLongLong(ctx, srctx->effectiveBatchSize);
+    RedisModule_ReplyWithStringBuffer(ctx, "effectiveDurationMS", strlen("effectiveDurationMS"));
+    RedisModule_ReplyWithLongLong(ctx, srctx->effectiveDurationMS);
+    RedisModule_ReplyWithStringBuffer(ctx, "inFlightBatches", strlen("inFlightBatches"));
+    RedisModule_ReplyWithLongLong(ctx, srctx->inFlightBatches);
+    RedisModule_ReplyWithStringBuffer(ctx, "streams", strlen("streams"));
+    RedisModule_ReplyWithArray(ctx, Gears_dictSize(srctx->singleStreamData));
+    Gears_dictIterator *iter = Gears_dictGetIterator(srctx->singleStreamData);
+    Gears_dictEntry* entry = NULL;
+    while((entry = Gears_dictNext(iter))){
+        SingleStreamReaderCtx* ssrctx = Gears_dictGetVal(entry);
+        RedisModule_ReplyWithArray(ctx, 10);
+        RedisModule_ReplyWithStringBuffer(ctx, "stream", strlen("stream"));
+        RedisModule_ReplyWithStringBuffer(ctx, ssrctx->keyName, strlen(ssrctx->keyName));
+        RedisModule_ReplyWithStringBuffer(ctx, "lastEstimatedLagMS", strlen("lastEstimatedLagMS"));
+        RedisModule_ReplyWithLongLong(ctx, DURATION2MS(ssrctx->lastBatchLag));
+        RedisModule_ReplyWithStringBuffer(ctx, "pendingEvents", strlen("pendingEvents"));
+        RedisModule_ReplyWithLongLong(ctx, ssrctx->numTriggered);
+        RedisModule_ReplyWithStringBuffer(ctx, "inFlightBatches", strlen("inFlightBatches"));
+        RedisModule_ReplyWithLongLong(ctx, ssrctx->numInFlight);
+        RedisModule_ReplyWithStringBuffer(ctx, "queued", strlen("queued"));
+        RedisModule_ReplyWithLongLong(ctx, ssrctx->queued);
+    }
+    Gears_dictReleaseIterator(iter);
 }
 
 static void StreamReader_RdbSave(RedisModuleIO *rdb){
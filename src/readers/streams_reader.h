@@ -15,5 +15,13 @@ StreamReaderCtx* StreamReaderCtx_Create(const char* streamName, const char* stre
 void StreamReaderCtx_Free(StreamReaderCtx* readerCtx);
 StreamReaderTriggerArgs* StreamReaderTriggerArgs_Create(const char* streamPrefix, size_t batchSize, size_t durationMS, OnFailedPolicy onFailedPolicy, size_t retryInterval, bool trimStream);
 void StreamReaderTriggerArgs_Free(StreamReaderTriggerArgs* args);
+int StreamReaderTriggerArgs_SetReadRecordCallback(StreamReaderTriggerArgs* srta, const char* readRecordCallback);
+int StreamReaderCtx_SetReadRecordCallback(StreamReaderCtx* readerCtx, const char* readRecordCallback);
+int StreamReaderTriggerArgs_SetReadBatchCallback(StreamReaderTriggerArgs* srta, const char* readBatchCallback);
+int StreamReaderCtx_SetReadBatchCallback(StreamReaderCtx* readerCtx, const char* readBatchCallback);
+void StreamReaderTriggerArgs_SetDeliverAsBatch(StreamReaderTriggerArgs* srta, bool deliverAsBatch);
+void StreamReaderTriggerArgs_SetAdaptiveBatch(StreamReaderTriggerArgs* srta, size_t minBatchSize, size_t maxBatchSize, size_t targetLatencyMS);
+void StreamReaderTriggerArgs_SetScheduling(StreamReaderTriggerArgs* srta, size_t maxConcurrentBatches, bool orderedPerStream);
+void StreamReaderCtx_SetDeliverAsBatch(StreamReaderCtx* readerCtx, bool deliverAsBatch);
 
 #endif /* SRC_STREAMS_READER_H_ */
@@ -0,0 +1,667 @@
+#include "timer_reader.h"
+#include "utils/arr_rm_alloc.h"
+#include "utils/adlist.h"
+#include "utils/dict.h"
+#include "redisgears_memory.h"
+#include "execution_plan.h"
+#include "record.h"
+#include "config.h"
+#include "cluster.h"
+#include "readers_common.h"
+#include "mgmt.h"
+#include "version.h"
+
+#include <string.h>
+
+typedef struct TimerReaderTriggerArgs{
+    long long intervalMS;
+    int fixedDelay; // if true, the next run is scheduled 'intervalMS' after the last run finished,
+                    // otherwise runs are scheduled every 'intervalMS' regardless of the run duration.
+    long long jitterMS; // maximum offset added to the first run, the offset is different on each shard
+                        // so the runs of the same registration will be spread across the shards.
+}TimerReaderTriggerArgs;
+
+typedef struct TimerReaderTriggerCtx{
+    size_t refCount;
+    TimerReaderTriggerArgs* args;
+    ExecutionMode mode;
+    FlatExecutionPlan* fep;
+    size_t numTriggered;
+    size_t numSuccess;
+    size_t numFailures;
+    size_t numAborted;
+    size_t numSkipped; // fixed rate runs that was skipped because the last run did not yet finished
+    size_t lastRunDuration;
+    size_t totalRunDuration;
+    char* lastError;
+    long long nextRunMS;
+    RedisModuleTimerID timerId;
+    bool timerSet;
+    bool running;
+    bool unregistered;
+    Gears_dict* localPendingExecutions;
+    Gears_list* localDoneExecutions;
+    Gears_listNode* listNode;
+    WorkerData* wd;
+}TimerReaderTriggerCtx;
+
+typedef struct TimerReaderArgs{
+    long long runMS; // the time this run was scheduled to
+}TimerReaderArgs;
+
+typedef struct TimerReaderCtx{
+    TimerReaderArgs* args;
+    bool isDone;
+}TimerReaderCtx;
+
+Gears_list* TimerRegistrations = NULL;
+
+static void TimerReader_OnTime(RedisModuleCtx *ctx, void *data);
+
+TimerReaderTriggerArgs* TimerReaderTriggerArgs_Create(long long intervalMS, int fixedDelay, long long jitterMS){
+    TimerReaderTriggerArgs* ret = RG_ALLOC(sizeof(*ret));
+    *ret = (TimerReaderTriggerArgs){
+        .intervalMS = intervalMS,
+        .fixedDelay = fixedDelay,
+        .jitterMS = jitterMS,
+    };
+    return ret;
+}
+
+void TimerReaderTriggerArgs_Free(TimerReaderTriggerArgs* trtArgs){
+    RG_FREE(trtArgs);
+}
+
+static TimerReaderTriggerCtx* TimerReaderTriggerCtx_Create(FlatExecutionPlan* fep, ExecutionMode mode, TimerReaderTriggerArgs* args){
+    TimerReaderTriggerCtx* ret = RG_ALLOC(sizeof(*ret));
+    *ret = (TimerReaderTriggerCtx){
+            .fep = fep,
+            .mode = mode,
+            .args = args,
+            .refCount = 1,
+            .numTriggered = 0,
+            .numSuccess = 0,
+            .numFailures = 0,
+            .numAborted = 0,
+            .numSkipped = 0,
+            .lastRunDuration = 0,
+            .totalRunDuration = 0,
+            .lastError = NULL,
+            .nextRunMS = 0,
+            .timerSet = false,
+            .running = false,
+            .unregistered = false,
+            .localPendingExecutions = Gears_dictCreate(&Gears_dictTypeHeapStrings, NULL),
+            .localDoneExecutions = Gears_listCreate(),
+            .listNode = NULL,
+            .wd = RedisGears_WorkerDataCreate(fep->executionThreadPool),
+    };
+    return ret;
+}
+
+static TimerReaderTriggerCtx* TimerReaderTriggerCtx_GetShallowCopy(TimerReaderTriggerCtx* trCtx){
+    ++trCtx->refCount;
+    return trCtx;
+}
+
+static void TimerReaderTriggerCtx_ResetStats(TimerReaderTriggerCtx* trCtx){
+    resetStats(trCtx);
+    trCtx->numSkipped = 0;
+}
+
+static void TimerReaderTriggerCtx_Free(TimerReaderTriggerCtx* trCtx){
+    RedisModule_Assert(trCtx->refCount > 0);
+    if((--trCtx->refCount) > 0){
+        return;
+    }
+
+    // if we free registration there must not be any pending executions.
+    // either all executions was finished or aborted
+    RedisModule_Assert(Gears_dictSize(trCtx->localPendingExecutions) == 0);
+
+    Gears_listNode* n = NULL;
+    while((n = Gears_listFirst(trCtx->localDoneExecutions))){
+        char* epIdStr = Gears_listNodeValue(n);
+        Gears_listDelNode(trCtx->localDoneExecutions, n);
+        ExecutionPlan* ep = RedisGears_GetExecution(epIdStr);
+        RG_FREE(epIdStr);
+        if(!ep){
+            RedisModule_Log(staticCtx, "info", "Failed finding done execution to drop on unregister. Execution was probably already dropped.");
+            continue;
+        }
+        // all the executions here are done, will just drop it.
+        RedisGears_DropExecution(ep);
+    }
+
+    if(trCtx->lastError){
+        RG_FREE(trCtx->lastError);
+    }
+    Gears_dictRelease(trCtx->localPendingExecutions);
+    Gears_listRelease(trCtx->localDoneExecutions);
+    TimerReaderTriggerArgs_Free(trCtx->args);
+    FlatExecutionPlan_Free(trCtx->fep);
+    RedisGears_WorkerDataFree(trCtx->wd);
+    RG_FREE(trCtx);
+}
+
+static TimerReaderArgs* TimerReaderArgs_Create(long long runMS){
+    TimerReaderArgs* ret = RG_ALLOC(sizeof(*ret));
+    ret->runMS = runMS;
+    return ret;
+}
+
+static void TimerReaderArgs_Free(TimerReaderArgs* trArgs){
+    RG_FREE(trArgs);
+}
+
+static Record* TimerReader_Next(ExecutionCtx* rctx, void* ctx){
+    TimerReaderCtx* readerCtx = ctx;
+    if(readerCtx->isDone || !readerCtx->args){
+        return NULL;
+    }
+    readerCtx->isDone = true;
+    return RedisGears_LongRecordCreate(readerCtx->args->runMS);
+}
+
+static void TimerReader_Free(void* ctx){
+    TimerReaderCtx* readerCtx = ctx;
+    if(readerCtx->args){
+        TimerReaderArgs_Free(readerCtx->args);
+    }
+    RG_FREE(readerCtx);
+}
+
+static void TimerReader_Reset(void* ctx, void * arg){
+    TimerReaderCtx* readerCtx = ctx;
+    if(readerCtx->args){
+        TimerReaderArgs_Free(readerCtx->args);
+    }
+    readerCtx->args = arg;
+    readerCtx->isDone = false;
+}
+
+static int TimerReader_Serialize(ExecutionCtx* ectx, void* ctx, Gears_BufferWriter* bw){
+    TimerReaderCtx* readerCtx = ctx;
+    RedisGears_BWWriteLong(bw, readerCtx->args->runMS);
+    return REDISMODULE_OK;
+}
+
+static int TimerReader_Deserialize(ExecutionCtx* ectx, void* ctx, Gears_BufferReader* br){
+    TimerReaderCtx* readerCtx = ctx;
+    readerCtx->args = TimerReaderArgs_Create(RedisGears_BRReadLong(br));
+    return REDISMODULE_OK;
+}
+
+static Reader* TimerReader_Create(void* arg){
+    TimerReaderCtx* readerCtx = RG_ALLOC(sizeof(*readerCtx));
+    readerCtx->args = arg;
+    readerCtx->isDone = false;
+    Reader* reader = RG_ALLOC(sizeof(*reader));
+    *reader = (Reader){
+        .ctx = readerCtx,
+        .next = TimerReader_Next,
+        .free = TimerReader_Free,
+        .reset = TimerReader_Reset,
+        .serialize = TimerReader_Serialize,
+        .deserialize = TimerReader_Deserialize,
+    };
+    return reader;
+}
+
+static void TimerReader_ScheduleAt(TimerReaderTriggerCtx* trCtx, long long runMS){
+    RedisModule_Assert(!trCtx->timerSet);
+    long long delayMS = runMS - RedisModule_Milliseconds();
+    if(delayMS < 0){
+        delayMS = 0;
+    }
+    trCtx->nextRunMS = runMS;
+    trCtx->timerId = RedisModule_CreateTimer(staticCtx, delayMS, TimerReader_OnTime, trCtx);
+    trCtx->timerSet = true;
+}
+
+static void TimerReader_StopTimer(TimerReaderTriggerCtx* trCtx){
+    if(trCtx->timerSet){
+        RedisModule_StopTimer(staticCtx, trCtx->timerId, NULL);
+        trCtx->timerSet = false;
+    }
+}
+
+/*
+ * Returns the offset of the first run on this shard. The offset is taken from
+ * the shard id and the registration id so it is stable for a given shard while
+ * different shards (and different registrations) will be spread over the jitter window.
+ */
+static long long TimerReader_GetJitter(TimerReaderTriggerCtx* trCtx){
+    if(trCtx->args->jitterMS <= 0){
+        return 0;
+    }
+    const char* myId = Cluster_IsClusterMode() ? Cluster_GetMyId() : "1";
+    uint64_t hash = Gears_dictGenHashFunction(myId, strlen(myId));
+    hash ^= Gears_dictGenHashFunction(trCtx->fep->idStr, strlen(trCtx->fep->idStr));
+    return hash % (trCtx->args->jitterMS + 1);
+}
+
+static void TimerReader_ExecutionDone(ExecutionPlan* ep, void* privateData){
+    TimerReaderTriggerCtx* trCtx = privateData;
+
+    if(EPIsFlagOn(ep, EFIsLocal)){
+        Gears_dictDelete(trCtx->localPendingExecutions, ep->idStr);
+
+        char* epIdStr = RG_STRDUP(ep->idStr);
+        // Add the execution id to the localDoneExecutions list
+        Gears_listAddNodeTail(trCtx->localDoneExecutions, epIdStr);
+        if(GearsConfig_GetMaxExecutionsPerRegistration() > 0 && Gears_listLength(trCtx->localDoneExecutions) > GearsConfig_GetMaxExecutionsPerRegistration()){
+            Gears_listNode *head = Gears_listFirst(trCtx->localDoneExecutions);
+            epIdStr = Gears_listNodeValue(head);
+            ExecutionPlan* doneEp = RedisGears_GetExecution(epIdStr);
+            if(doneEp){
+                RedisModule_Assert(EPIsFlagOn(doneEp, EFDone));
+                RedisGears_DropExecution(doneEp);
+            }
+            RG_FREE(epIdStr);
+            Gears_listDelNode(trCtx->localDoneExecutions, head);
+        }
+    }
+
+    trCtx->lastRunDuration = FlatExecutionPlan_GetExecutionDuration(ep);
+    trCtx->totalRunDuration += trCtx->lastRunDuration;
+
+    long long errorsLen = RedisGears_GetErrorsLen(ep);
+    if(errorsLen > 0){
+        ++trCtx->numFailures;
+        Record* r = RedisGears_GetError(ep, 0);
+        RedisModule_Assert(RedisGears_RecordGetType(r) == errorRecordType);
+        if(trCtx->lastError){
+            RG_FREE(trCtx->lastError);
+        }
+        trCtx->lastError = RG_STRDUP(RedisGears_StringRecordGet(r, NULL));
+    } else if(ep->status == ABORTED){
+        ++trCtx->numAborted;
+    } else {
+        ++trCtx->numSuccess;
+    }
+
+    trCtx->running = false;
+    if(trCtx->args->fixedDelay && !trCtx->unregistered){
+        TimerReader_ScheduleAt(trCtx, RedisModule_Milliseconds() + trCtx->args->intervalMS);
+    }
+
+    TimerReaderTriggerCtx_Free(trCtx);
+}
+
+static void TimerReader_Trigger(TimerReaderTriggerCtx* trCtx, long long runMS){
+    char* err = NULL;
+    ++trCtx->numTriggered;
+    trCtx->running = true;
+    TimerReaderArgs* args = TimerReaderArgs_Create(runMS);
+    ExecutionPlan* ep = RedisGears_Run(trCtx->fep, trCtx->mode, args, TimerReader_ExecutionDone,
+                                       TimerReaderTriggerCtx_GetShallowCopy(trCtx), trCtx->wd, &err);
+    if(!ep){
+        ++trCtx->numAborted;
+        RedisModule_Log(staticCtx, "warning", "could not execute flat execution on timer, %s", err);
+        if(trCtx->lastError){
+            RG_FREE(trCtx->lastError);
+        }
+        trCtx->lastError = err ? err : RG_STRDUP("Could not trigger execution");
+        TimerReaderArgs_Free(args);
+        trCtx->running = false;
+        if(trCtx->args->fixedDelay){
+            TimerReader_ScheduleAt(trCtx, RedisModule_Milliseconds() + trCtx->args->intervalMS);
+        }
+        TimerReaderTriggerCtx_Free(trCtx);
+        return;
+    }
+    if(EPIsFlagOn(ep, EFIsLocal) && EPIsFlagOff(ep, EFDone)){
+        // execution is local, save it to the registration pending executions
+        // so it will be aborted on unregister.
+        Gears_dictAdd(trCtx->localPendingExecutions, ep->idStr, NULL);
+    }
+}
+
+static void TimerReader_OnTime(RedisModuleCtx *ctx, void *data){
+    TimerReaderTriggerCtx* trCtx = data;
+    trCtx->timerSet = false;
+
+    long long now = RedisModule_Milliseconds();
+    long long runMS = trCtx->nextRunMS;
+    long long intervalMS = trCtx->args->intervalMS;
+
+    if(!trCtx->args->fixedDelay){
+        // fixed rate, schedule the next run right away so the cadence will not
+        // drift with the run duration. If we are late (event loop was busy)
+        // we realign to the schedule instead of running all the missed runs.
+        long long nextRunMS = runMS + intervalMS;
+        if(nextRunMS <= now){
+            nextRunMS = now + intervalMS - ((now - runMS) % intervalMS);
+        }
+        TimerReader_ScheduleAt(trCtx, nextRunMS);
+    }
+
+    int flags = RedisModule_GetContextFlags(ctx);
+    if(!(flags & REDISMODULE_CTX_FLAGS_MASTER) || (flags & REDISMODULE_CTX_FLAGS_LOADING)){
+        // we are not executing registrations on slave or while loading,
+        // keep the schedule so we will start running if we turn master.
+        if(trCtx->args->fixedDelay){
+            TimerReader_ScheduleAt(trCtx, now + intervalMS);
+        }
+        return;
+    }
+
+    if(trCtx->running){
+        // only possible on fixed rate, the last run did not yet finished.
+        ++trCtx->numSkipped;
+        return;
+    }
+
+    if(trCtx->mode == ExecutionModeAsync && !Cluster_IsInitialized()){
+        ++trCtx->numSkipped;
+        if(trCtx->args->fixedDelay){
+            TimerReader_ScheduleAt(trCtx, now + intervalMS);
+        }
+        return;
+    }
+
+    TimerReader_Trigger(trCtx, runMS);
+}
+
+static int TimerReader_VerifyRegister(SessionRegistrationCtx *srctx, FlatExecutionPlan* fep, ExecutionMode mode, void* args, char** err){
+    TimerReaderTriggerArgs* trtArgs = args;
+    if(trtArgs->intervalMS <= 0){
+        *err = RG_STRDUP("Timer interval must be positive");
+        return REDISMODULE_ERR;
+    }
+    if(trtArgs->jitterMS < 0){
+        *err = RG_STRDUP("Timer jitter can not be negative");
+        return REDISMODULE_ERR;
+    }
+    return REDISMODULE_OK;
+}
+
+static int TimerReader_RegisrterTrigger(FlatExecutionPlan* fep, ExecutionMode mode, void* args, char** err){
+    if(TimerReader_VerifyRegister(NULL, fep, mode, args, err) != REDISMODULE_OK){
+        return REDISMODULE_ERR;
+    }
+
+    if(!TimerRegistrations){
+        TimerRegistrations = Gears_listCreate();
+    }
+
+    TimerReaderTriggerCtx* trCtx = TimerReaderTriggerCtx_Create(fep, mode, args);
+    Gears_listAddNodeTail(TimerRegistrations, trCtx);
+    trCtx->listNode = Gears_listLast(TimerRegistrations);
+
+    TimerReader_ScheduleAt(trCtx, RedisModule_Milliseconds() + trCtx->args->intervalMS + TimerReader_GetJitter(trCtx));
+
+    return REDISMODULE_OK;
+}
+
+static TimerReaderTriggerCtx* TimerReader_FindByFep(FlatExecutionPlan* fep){
+    if(!TimerRegistrations){
+        return NULL;
+    }
+    TimerReaderTriggerCtx* trCtx = NULL;
+    Gears_listIter* iter = Gears_listGetIterator(TimerRegistrations, AL_START_HEAD);
+    Gears_listNode* node = NULL;
+    while((node = Gears_listNext(iter))){
+        TimerReaderTriggerCtx* tempTrCtx = Gears_listNodeValue(node);
+        if(tempTrCtx->fep == fep){
+            trCtx = tempTrCtx;
+            break;
+        }
+    }
+    Gears_listReleaseIterator(iter);
+    return trCtx;
+}
+
+static void TimerReader_AbortPendings(TimerReaderTriggerCtx* trCtx){
+    ExecutionPlan** abortEpArray = array_new(ExecutionPlan*, 10);
+    Gears_dictIterator *iter = Gears_dictGetIterator(trCtx->localPendingExecutions);
+    Gears_dictEntry *entry = NULL;
+    while((entry = Gears_dictNext(iter))){
+        char* idStr = Gears_dictGetKey(entry);
+        ExecutionPlan* ep = RedisGears_GetExecution(idStr);
+        if(!ep){
+            RedisModule_Log(staticCtx, "warning", "Failed finding pending execution to abort on unregister.");
+            continue;
+        }
+
+        // we can not abort right now cause aborting might cause values to be deleted
+        // from localPendingExecutions and it will mess up with the iterator
+        // so we must collect all the exeuctions first and then abort one by one
+        abortEpArray = array_append(abortEpArray, ep);
+    }
+    Gears_dictReleaseIterator(iter);
+
+    for(size_t i = 0 ; i < array_len(abortEpArray) ; ++i){
+        // we can not free while iterating so we add to the abortEpArray and free after
+        if(RedisGears_AbortExecution(abortEpArray[i]) != REDISMODULE_OK){
+            RedisModule_Log(staticCtx, "warning", "Failed aborting execution on unregister.");
+        }
+    }
+
+    array_free(abortEpArray);
+}
+
+static void TimerReader_UnregisterTrigger(FlatExecutionPlan* fep, bool abortPending){
+    TimerReaderTriggerCtx* trCtx = TimerReader_FindByFep(fep);
+    if(!trCtx){
+        return;
+    }
+
+    trCtx->unregistered = true;
+    TimerReader_StopTimer(trCtx);
+
+    if(abortPending){
+        TimerReader_AbortPendings(trCtx);
+    }
+
+    Gears_listDelNode(TimerRegistrations, trCtx->listNode);
+    trCtx->listNode = NULL;
+
+    TimerReaderTriggerCtx_Free(trCtx);
+}
+
+static void TimerReader_SerializeArgs(void* var, Gears_BufferWriter* bw){
+    TimerReaderTriggerArgs* trtArgs = var;
+    RedisGears_BWWriteLong(bw, trtArgs->intervalMS);
+    RedisGears_BWWriteLong(bw, trtArgs->fixedDelay);
+    RedisGears_BWWriteLong(bw, trtArgs->jitterMS);
+}
+
+static void* TimerReader_DeserializeArgs(Gears_BufferReader* br, int encver){
+    long long intervalMS = RedisGears_BRReadLong(br);
+    int fixedDelay = RedisGears_BRReadLong(br);
+    long long jitterMS = RedisGears_BRReadLong(br);
+    return TimerReaderTriggerArgs_Create(intervalMS, fixedDelay, jitterMS);
+}
+
+static const char* TimerReader_ModeToStr(ExecutionMode mode){
+    if(mode == ExecutionModeSync){
+        return "sync";
+    } else if(mode == ExecutionModeAsync){
+        return "async";
+    } else if(mode == ExecutionModeAsyncLocal){
+        return "async_local";
+    }
+    return "unknown";
+}
+
+static void TimerReader_DumpRegistrationInfo(FlatExecutionPlan* fep, RedisModuleInfoCtx *ctx, int for_crash_report) {
+    TimerReaderTriggerCtx* trCtx = TimerReader_FindByFep(fep);
+
+    RedisModule_InfoAddFieldCString(ctx, "mode", (char*)TimerReader_ModeToStr(trCtx->mode));
+    RedisModule_InfoAddFieldULongLong(ctx, "numTriggered", trCtx->numTriggered);
+    RedisModule_InfoAddFieldULongLong(ctx, "numSuccess", trCtx->numSuccess);
+    RedisModule_InfoAddFieldULongLong(ctx, "numFailures", trCtx->numFailures);
+    RedisModule_InfoAddFieldULongLong(ctx, "numAborted", trCtx->numAborted);
+    RedisModule_InfoAddFieldULongLong(ctx, "numSkipped", trCtx->numSkipped);
+    RedisModule_InfoAddFieldULongLong(ctx, "lastRunDurationMS", DURATION2MS(trCtx->lastRunDuration));
+    RedisModule_InfoAddFieldULongLong(ctx, "totalRunDurationMS", totalDurationMS(trCtx));
+    RedisModule_InfoAddFieldDouble(ctx, "avgRunDurationMS", avgDurationMS(trCtx));
+    RedisModule_InfoAddFieldCString(ctx, "lastError", trCtx->lastError ? trCtx->lastError : "None");
+    RedisModule_InfoAddFieldLongLong(ctx, "intervalMS", trCtx->args->intervalMS);
+    RedisModule_InfoAddFieldCString(ctx, "schedule", trCtx->args->fixedDelay ? "fixed_delay" : "fixed_rate");
+    RedisModule_InfoAddFieldLongLong(ctx, "jitterMS", trCtx->args->jitterMS);
+}
+
+static void TimerReader_DumpRegistrationData(RedisModuleCtx* ctx, FlatExecutionPlan* fep){
+    TimerReaderTriggerCtx* trCtx = TimerReader_FindByFep(fep);
+    RedisModule_Assert(trCtx);
+    RedisModule_ReplyWithArray(ctx, 22);
+    RedisModule_ReplyWithStringBuffer(ctx, "mode", strlen("mode"));
+    const char* modeStr = TimerReader_ModeToStr(trCtx->mode);
+    RedisModule_ReplyWithStringBuffer(ctx, modeStr, strlen(modeStr));
+    RedisModule_ReplyWithStringBuffer(ctx, "numTriggered", strlen("numTriggered"));
+    RedisModule_ReplyWithLongLong(ctx, trCtx->numTriggered);
+    RedisModule_ReplyWithStringBuffer(ctx, "numSuccess", strlen("numSuccess"));
+    RedisModule_ReplyWithLongLong(ctx, trCtx->numSuccess);
+    RedisModule_ReplyWithStringBuffer(ctx, "numFailures", strlen("numFailures"));
+    RedisModule_ReplyWithLongLong(ctx, trCtx->numFailures);
+    RedisModule_ReplyWithStringBuffer(ctx, "numAborted", strlen("numAborted"));
+    RedisModule_ReplyWithLongLong(ctx, trCtx->numAborted);
+    RedisModule_ReplyWithStringBuffer(ctx, "numSkipped", strlen("numSkipped"));
+    RedisModule_ReplyWithLongLong(ctx, trCtx->numSkipped);
+    RedisModule_ReplyWithStringBuffer(ctx, "lastRunDurationMS", strlen("lastRunDurationMS"));
+    RedisModule_ReplyWithLongLong(ctx, DURATION2MS(trCtx->lastRunDuration));
+    RedisModule_ReplyWithStringBuffer(ctx, "totalRunDurationMS", strlen("totalRunDurationMS"));
+    RedisModule_ReplyWithLongLong(ctx, totalDurationMS(trCtx));
+    RedisModule_ReplyWithStringBuffer(ctx, "avgRunDurationMS", strlen("avgRunDurationMS"));
+    RedisModule_ReplyWithDouble(ctx, avgDurationMS(trCtx));
+    RedisModule_ReplyWithStringBuffer(ctx, "lastError", strlen("lastError"));
+    if(trCtx->lastError){
+        RedisModule_ReplyWithStringBuffer(ctx, trCtx->lastError, strlen(trCtx->lastError));
+    }else{
+        RedisModule_ReplyWithNull(ctx);
+    }
+    RedisModule_ReplyWithStringBuffer(ctx, "args", strlen("args"));
+    RedisModule_ReplyWithArray(ctx, 6);
+    RedisModule_ReplyWithStringBuffer(ctx, "intervalMS", strlen("intervalMS"));
+    RedisModule_ReplyWithLongLong(ctx, trCtx->args->intervalMS);
+    RedisModule_ReplyWithStringBuffer(ctx, "schedule", strlen("schedule"));
+    const char* scheduleStr = trCtx->args->fixedDelay ? "fixed_delay" : "fixed_rate";
+    RedisModule_ReplyWithStringBuffer(ctx, scheduleStr, strlen(scheduleStr));
+    RedisModule_ReplyWithStringBuffer(ctx, "jitterMS", strlen("jitterMS"));
+    RedisModule_ReplyWithLongLong(ctx, trCtx->args->jitterMS);
+}
+
+static void TimerReader_RdbSave(RedisModuleIO *rdb){
+    if(!TimerRegistrations){
+        RedisModule_SaveUnsigned(rdb, 0);
+        return;
+    }
+    Gears_Buffer* buff = Gears_BufferCreate();
+    RedisModule_SaveUnsigned(rdb, Gears_listLength(TimerRegistrations));
+    Gears_listIter* iter = Gears_listGetIterator(TimerRegistrations, AL_START_HEAD);
+    Gears_listNode* node = NULL;
+    while((node = Gears_listNext(iter))){
+        TimerReaderTriggerCtx* trCtx = Gears_listNodeValue(node);
+        Gears_BufferWriter bw;
+        Gears_BufferWriterInit(&bw, buff);
+
+        char* err = NULL;
+        int res = FlatExecutionPlan_Serialize(&bw, trCtx->fep, &err);
+        if(res != REDISMODULE_OK){
+            RedisModule_Log(staticCtx, "warning", "Failed serializing fep, err='%s'", err);
+            RedisModule_Assert(false); // fep already registered, must be serializable.
+        }
+
+        TimerReader_SerializeArgs(trCtx->args, &bw);
+
+        RedisModule_SaveStringBuffer(rdb, buff->buff, buff->size);
+        RedisModule_SaveUnsigned(rdb, trCtx->mode);
+
+        Gears_BufferClear(buff);
+    }
+    Gears_listReleaseIterator(iter);
+    Gears_BufferFree(buff);
+}
+
+static int TimerReader_RdbLoad(RedisModuleIO *rdb, int encver){
+    size_t len = RedisModule_LoadUnsigned(rdb);
+    for(size_t i = 0 ; i < len ; ++i){
+
+        size_t dataLen;
+        char* data = RedisModule_LoadStringBuffer(rdb, &dataLen);
+        RedisModule_Assert(data);
+
+        Gears_Buffer buff = {
+                .buff = data,
+                .size = dataLen,
+                .cap = dataLen,
+        };
+        Gears_BufferReader br;
+        Gears_BufferReaderInit(&br, &buff);
+
+        char* err = NULL;
+        FlatExecutionPlan* fep = FlatExecutionPlan_Deserialize(&br, &err, encver);
+        if(!fep){
+            RedisModule_Log(staticCtx, "warning", "Could not deserialize flat execution, error='%s'", err);
+            RedisModule_Free(data);
+            return REDISMODULE_ERR;
+        }
+
+        TimerReaderTriggerArgs* args = TimerReader_DeserializeArgs(&br, encver);
+        RedisModule_Free(data);
+
+        int mode = RedisModule_LoadUnsigned(rdb);
+        int ret = TimerReader_RegisrterTrigger(fep, mode, args, &err);
+        if(ret != REDISMODULE_OK){
+            RedisModule_Log(staticCtx, "warning", "Could not register on rdbload execution, error='%s'", err);
+            TimerReaderTriggerArgs_Free(args);
+            FlatExecutionPlan_Free(fep);
+            return REDISMODULE_ERR;
+        }
+
+        FlatExecutionPlan_AddToRegisterDict(fep);
+    }
+    return REDISMODULE_OK;
+}
+
+static void TimerReader_ClearStats(){
+    if(!TimerRegistrations){
+        return;
+    }
+    Gears_listIter* iter = Gears_listGetIterator(TimerRegistrations, AL_START_HEAD);
+    Gears_listNode* node = NULL;
+    while((node = Gears_listNext(iter))){
+        TimerReaderTriggerCtx* trCtx = Gears_listNodeValue(node);
+        TimerReaderTriggerCtx_ResetStats(trCtx);
+    }
+    Gears_listReleaseIterator(iter);
+}
+
+static void TimerReader_Clear(){
+    if(!TimerRegistrations){
+        return;
+    }
+    Gears_listNode* node = NULL;
+    while((node = Gears_listFirst(TimerRegistrations))){
+        TimerReaderTriggerCtx* trCtx = Gears_listNodeValue(node);
+        Gears_listDelNode(TimerRegistrations, node);
+        trCtx->listNode = NULL;
+        trCtx->unregistered = true;
+        TimerReader_StopTimer(trCtx);
+        FlatExecutionPlan_RemoveFromRegisterDict(trCtx->fep);
+        TimerReaderTriggerCtx_Free(trCtx);
+    }
+}
+
+static void TimerReader_FreeArgs(void* args){
+    TimerReaderTriggerArgs_Free(args);
+}
+
+RedisGears_ReaderCallbacks TimerReader = {
+        .create = TimerReader_Create,
+        .verifyRegister = TimerReader_VerifyRegister,
+        .registerTrigger = TimerReader_RegisrterTrigger,
+        .unregisterTrigger = TimerReader_UnregisterTrigger,
+        .serializeTriggerArgs = TimerReader_SerializeArgs,
+        .deserializeTriggerArgs = TimerReader_DeserializeArgs,
+        .freeTriggerArgs = TimerReader_FreeArgs,
+        .dumpRegistratioData = TimerReader_DumpRegistrationData,
+        .dumpRegistratioInfo = TimerReader_DumpRegistrationInfo,
+        .rdbSave = TimerReader_RdbSave,
+        .rdbLoad = TimerReader_RdbLoad,
+        .clear = TimerReader_Clear,
+        .clearStats = TimerReader_ClearStats,
+};
@@ -0,0 +1,11 @@
+#ifndef SRC_READERS_TIMER_READER_H_
+#define SRC_READERS_TIMER_READER_H_
+
+#include "redisgears.h"
+
+extern RedisGears_ReaderCallbacks TimerReader;
+
+TimerReaderTriggerArgs* TimerReaderTriggerArgs_Create(long long intervalMS, int fixedDelay, long long jitterMS);
+void TimerReaderTriggerArgs_Free(TimerReaderTriggerArgs* trtArgs);
+
+#endif /* SRC_READERS_TIMER_READER_H_ */
@@ -23,6 +23,7 @@ RecordType* keyRecordType;
 RecordType* keysHandlerRecordType;
 RecordType* hashSetRecordType;
 RecordType* asyncRecordType;
+RecordType* iteratorRecordType;
 RecordType* nullRecordType;
 
 static RecordType** recordsTypes;
@@ -169,6 +170,23 @@ static int KeysHandlerRecord_Serialize(ExecutionCtx* ctx, Gears_BufferWriter* bw
     return REDISMODULE_OK;
 }
 
+static void IteratorRecord_Free(Record* base){
+    IteratorRecord* r = (IteratorRecord*)base;
+    if(r->free){
+        r->free(r->pd);
+    }
+}
+
+static int IteratorRecord_Serialize(ExecutionCtx* ctx, Gears_BufferWriter* bw, Record* base){
+    ctx->err = RG_STRDUP("can not serialize iterator record");
+    return REDISMODULE_ERR;
+}
+
+static Record* IteratorRecord_Deserialize(ExecutionCtx* ctx, Gears_BufferReader* br){
+    RedisModule_Assert(false && "can not deserialize iterator record");
+    return NULL;
+}
+
 static int AsyncRecord_Serialize(ExecutionCtx* ctx, Gears_BufferWriter* bw, Record* base){
     RedisModule_Assert(false && "can not serialize async record");
     return REDISMODULE_OK;
@@ -339,9 +357,33 @@ static int HashSetRecord_SendReply(Record* base, RedisModuleCtx* rctx){
     return REDISMODULE_OK;
 }
 
+static bool RG_SerializationFrameHasType(ExecutionCtx* ctx, RecordType* type){
+    for(size_t i = 0 ; i < array_len(ctx->serializationFrameTypes) ; ++i){
+        if(ctx->serializationFrameTypes[i] == type){
+            return true;
+        }
+    }
+    return false;
+}
+
+bool RG_SerializationFrameContinued(ExecutionCtx* ctx){
+    if(!ctx->serializationFrameTypes || !ctx->serializedType){
+        return false;
+    }
+    return RG_SerializationFrameHasType(ctx, ctx->serializedType);
+}
+
 int RG_SerializeRecord(ExecutionCtx* ctx, Gears_BufferWriter* bw, Record* r){
     RedisGears_BWWriteLong(bw, r->type->id);
-    return r->type->serialize(ctx, bw, r);
+    RecordType* outerType = ctx->serializedType;
+    ctx->serializedType = r->type;
+    int res = r->type->serialize(ctx, bw, r);
+    ctx->serializedType = outerType;
+    if(res == REDISMODULE_OK && ctx->serializationFrameTypes && !RG_SerializationFrameHasType(ctx, r->type)){
+        // the next records of this type on the frame can continue this record serialization state
+        ctx->serializationFrameTypes = array_append(ctx->serializationFrameTypes, r->type);
+    }
+    return res;
 }
 
 Record* RG_DeserializeRecord(ExecutionCtx* ctx, Gears_BufferReader* br){
@@ -438,6 +480,12 @@ void Record_Initialize(){
                                             AsyncRecord_Deserialize,
                                             AsyncRecord_Free);
 
+    iteratorRecordType = RG_RecordTypeCreate("IteratorRecord", sizeof(IteratorRecord),
+                                             NULL,
+                                             IteratorRecord_Serialize,
+                                             IteratorRecord_Deserialize,
+                                             IteratorRecord_Free);
+
     nullRecordType = RG_RecordTypeCreate("NullRecord", sizeof(NullRecord),
                                           NullRecord_SendReply,
                                           NullRecord_Serialize,
@@ -532,6 +580,20 @@ Record* RG_ListRecordPop(Record* base){
     return array_pop(r->records);
 }
 
+Record* RG_IteratorRecordCreate(RedisGears_IteratorRecordNextCallback next, RedisGears_IteratorRecordFreeCallback free, void* pd){
+    IteratorRecord* ret = (IteratorRecord*)RG_RecordCreate(iteratorRecordType);
+    ret->next = next;
+    ret->free = free;
+    ret->pd = pd;
+    return &ret->base;
+}
+
+Record* RG_IteratorRecordNext(ExecutionCtx* ectx, Record* base){
+    RedisModule_Assert(base->type == iteratorRecordType);
+    IteratorRecord* r = (IteratorRecord*)base;
+    return r->next(ectx, r->pd);
+}
+
 Record* RG_StringRecordCreate(char* val, size_t len){
     StringRecord* ret = (StringRecord*)RG_RecordCreate(stringRecordType);
     ret->str = val;
@@ -48,6 +48,13 @@ typedef struct ListRecord{
     Record** records;
 }ListRecord;
 
+typedef struct IteratorRecord{
+    Record base;
+    RedisGears_IteratorRecordNextCallback next;
+    RedisGears_IteratorRecordFreeCallback free;
+    void* pd;
+}IteratorRecord;
+
 typedef struct KeyRecord{
     Record base;
     char* key;
@@ -78,6 +85,7 @@ extern RecordType* keysHandlerRecordType;
 extern RecordType* hashSetRecordType;
 extern RecordType* nullRecordType;
 extern RecordType* asyncRecordType;
+extern RecordType* iteratorRecordType;
 extern Record StopRecord;
 extern Record WaitRecord;
 extern Record DummyRecord;
@@ -104,6 +112,10 @@ void RG_ListRecordAdd(Record* r, Record* element);
 Record* RG_ListRecordGet(Record* r, size_t index);
 Record* RG_ListRecordPop(Record* r);
 
+/** iterator record api **/
+Record* RG_IteratorRecordCreate(RedisGears_IteratorRecordNextCallback next, RedisGears_IteratorRecordFreeCallback free, void* pd);
+Record* RG_IteratorRecordNext(ExecutionCtx* ectx, Record* r);
+
 /** string record api **/
 Record* RG_StringRecordCreate(char* val, size_t len);
 char* RG_StringRecordGet(Record* r, size_t* len);
@@ -138,6 +150,7 @@ Record* RG_KeyHandlerRecordCreate(RedisModuleKey* handler);
 RedisModuleKey* RG_KeyHandlerRecordGet(Record* r);
 
 int RG_SerializeRecord(ExecutionCtx* ctx, Gears_BufferWriter* bw, Record* r);
+bool RG_SerializationFrameContinued(ExecutionCtx* ctx);
 Record* RG_DeserializeRecord(ExecutionCtx* ctx, Gears_BufferReader* br);
 int RG_RecordSendReply(Record* record, RedisModuleCtx* rctx);
 
@@ -234,29 +234,74 @@ typedef struct StreamReaderTriggerArgs StreamReaderTriggerArgs;
 typedef struct KeysReaderTriggerArgs KeysReaderTriggerArgs;
 typedef struct CommandReaderTriggerArgs CommandReaderTriggerArgs;
 typedef struct CommandReaderTriggerCtx CommandReaderTriggerCtx;
+typedef struct TimerReaderTriggerArgs TimerReaderTriggerArgs;
 typedef struct CommandCtx CommandCtx;
 
-typedef Record* (*RedisGears_KeysReaderReadRecordCallback)(RedisModuleCtx* rctx, RedisModuleString* key, RedisModuleKey* keyPtr, bool readValue, const char* event);
+/*
+ * Creates a record from a single stream entry, entry is the [id, [field, value, ...]] reply element.
+ * Returning NULL will fall back to the default hash set record.
+ */
+typedef Record* (*RedisGears_StreamReaderReadRecordCallback)(RedisModuleCtx* rctx, const char* streamKey, RedisModuleCallReply* entry);
+/*
+ * Creates a single record for an entire batch when the reader delivers as batch, entries is
+ * the array of all the batch entries. Returning NULL will fall back to a list of the entries
+ * records (created by the read record callback if one was set).
+ */
+typedef Record* (*RedisGears_StreamReaderReadBatchCallback)(RedisModuleCtx* rctx, const char* streamKey, RedisModuleCallReply* entries);
+typedef Record* (*RedisGears_KeysReaderReadRecordCallback)(RedisModuleCtx* rctx, RedisModuleString* key, RedisModuleKey* keyPtr, bool readValue, const char* event, Arr(char*) hashFields);
+/*
+ * Returns a copy of the given record (created by a read record callback), the copy
+ * must not share mutable data with the given record, which is still owned by the caller.
+ * Returns NULL on failure, in which case the execution reads the value itself.
+ */
+typedef Record* (*RedisGears_KeysReaderDupRecordCallback)(Record* r);
 
 GEARS_API StreamReaderCtx* MODULE_API_FUNC(RedisGears_StreamReaderCtxCreate)(const char* streamName, const char* streamId);
 GEARS_API void MODULE_API_FUNC(RedisGears_StreamReaderCtxFree)(StreamReaderCtx*);
+GEARS_API int MODULE_API_FUNC(RedisGears_StreamReaderSetReadRecordCallback)(StreamReaderCtx*, const char* name);
+#define RGM_StreamReaderSetReadRecordCallback(ctx, name) RedisGears_StreamReaderSetReadRecordCallback(ctx, #name)
+GEARS_API void MODULE_API_FUNC(RedisGears_StreamReaderRegisterReadRecordCallback)(const char* name, RedisGears_StreamReaderReadRecordCallback callback);
+#define RGM_StreamReaderRegisterReadRecordCallback(name) RedisGears_StreamReaderRegisterReadRecordCallback(#name, name)
+GEARS_API int MODULE_API_FUNC(RedisGears_StreamReaderSetReadBatchCallback)(StreamReaderCtx*, const char* name);
+#define RGM_StreamReaderSetReadBatchCallback(ctx, name) RedisGears_StreamReaderSetReadBatchCallback(ctx, #name)
+GEARS_API void MODULE_API_FUNC(RedisGears_StreamReaderRegisterReadBatchCallback)(const char* name, RedisGears_StreamReaderReadBatchCallback callback);
+#define RGM_StreamReaderRegisterReadBatchCallback(name) RedisGears_StreamReaderRegisterReadBatchCallback(#name, name)
+GEARS_API void MODULE_API_FUNC(RedisGears_StreamReaderSetDeliverAsBatch)(StreamReaderCtx*, bool deliverAsBatch);
 
 GEARS_API KeysReaderCtx* MODULE_API_FUNC(RedisGears_KeysReaderCtxCreate)(const char* match, bool readValue, const char* event, bool noScan);
 GEARS_API int MODULE_API_FUNC(RedisGears_KeysReaderSetReadRecordCallback)(KeysReaderCtx*, const char* name);
 #define RGM_KeysReaderSetReadRecordCallback(ctx, name) RedisGears_KeysReaderSetReadRecordCallback(ctx, #name)
 GEARS_API void MODULE_API_FUNC(RedisGears_KeysReaderRegisterReadRecordCallback)(const char* name, RedisGears_KeysReaderReadRecordCallback callback);
 #define RGM_KeysReaderRegisterReadRecordCallback(name) RedisGears_KeysReaderRegisterReadRecordCallback(#name, name)
+GEARS_API void MODULE_API_FUNC(RedisGears_KeysReaderRegisterDupRecordCallback)(const char* name, RedisGears_KeysReaderDupRecordCallback callback);
+#define RGM_KeysReaderRegisterDupRecordCallback(name, callback) RedisGears_KeysReaderRegisterDupRecordCallback(#name, callback)
+GEARS_API void MODULE_API_FUNC(RedisGears_KeysReaderSetHashFields)(KeysReaderCtx*, Arr(char*) hashFields);
 GEARS_API void MODULE_API_FUNC(RedisGears_KeysReaderCtxFree)(KeysReaderCtx*);
 
 GEARS_API StreamReaderTriggerArgs* MODULE_API_FUNC(RedisGears_StreamReaderTriggerArgsCreate)(const char* prefix, size_t batchSize, size_t durationMS, OnFailedPolicy onFailedPolicy, size_t retryInterval, bool trimStream);
 GEARS_API void MODULE_API_FUNC(RedisGears_StreamReaderTriggerArgsFree)(StreamReaderTriggerArgs* args);
+GEARS_API int MODULE_API_FUNC(RedisGears_StreamReaderTriggerArgsSetReadRecordCallback)(StreamReaderTriggerArgs* srta, const char* name);
+#define RGM_StreamReaderTriggerArgsSetReadRecordCallback(srta, name) RedisGears_StreamReaderTriggerArgsSetReadRecordCallback(srta, #name)
+GEARS_API int MODULE_API_FUNC(RedisGears_StreamReaderTriggerArgsSetReadBatchCallback)(StreamReaderTriggerArgs* srta, const char* name);
+#define RGM_StreamReaderTriggerArgsSetReadBatchCallback(srta, name) RedisGears_StreamReaderTriggerArgsSetReadBatchCallback(srta, #name)
+GEARS_API void MODULE_API_FUNC(RedisGears_StreamReaderTriggerArgsSetDeliverAsBatch)(StreamReaderTriggerArgs* srta, bool deliverAsBatch);
+GEARS_API void MODULE_API_FUNC(RedisGears_StreamReaderTriggerArgsSetAdaptiveBatch)(StreamReaderTriggerArgs* srta, size_t minBatchSize, size_t maxBatchSize, size_t targetLatencyMS);
+GEARS_API void MODULE_API_FUNC(RedisGears_StreamReaderTriggerArgsSetScheduling)(StreamReaderTriggerArgs* srta, size_t maxConcurrentBatches, bool orderedPerStream);
 
 GEARS_API KeysReaderTriggerArgs* MODULE_API_FUNC(RedisGears_KeysReaderTriggerArgsCreate)(const char* prefix, Arr(char*) eventTypes, Arr(int) keyTypes, bool readValue);
 GEARS_API void MODULE_API_FUNC(RedisGears_KeysReaderTriggerArgsSetHookCommands)(KeysReaderTriggerArgs* krta, Arr(char*) hookCommands);
 GEARS_API int MODULE_API_FUNC(RedisGears_KeysReaderTriggerArgsSetReadRecordCallback)(KeysReaderTriggerArgs* krta, const char* name);
 #define RGM_KeysReaderTriggerArgsSetReadRecordCallback(krta, name) RedisGears_KeysReaderTriggerArgsSetReadRecordCallback(krta, #name)
+GEARS_API void MODULE_API_FUNC(RedisGears_KeysReaderTriggerArgsSetHashFields)(KeysReaderTriggerArgs* krta, Arr(char*) hashFields);
+GEARS_API void MODULE_API_FUNC(RedisGears_KeysReaderTriggerArgsSetCoalesceWindow)(KeysReaderTriggerArgs* krta, size_t coalesceWindowMS);
+GEARS_API void MODULE_API_FUNC(RedisGears_KeysReaderTriggerArgsSetBatch)(KeysReaderTriggerArgs* krta, size_t batchSize, size_t batchDurationMS);
 GEARS_API void MODULE_API_FUNC(RedisGears_KeysReaderTriggerArgsFree)(KeysReaderTriggerArgs* args);
 GEARS_API int MODULE_API_FUNC(RedisGears_KeysReaderSetAvoidEvents)(int avoidEvents);
+GEARS_API int MODULE_API_FUNC(RedisGears_KeysReaderPatternMatch)(const char* pattern, size_t patternLen, const char* key, size_t keyLen);
+/*
+ * Number of events coalesced into the key currently read, valid only inside a read record callback.
+ */
+GEARS_API size_t MODULE_API_FUNC(RedisGears_KeysReaderGetCoalescedEvents)();
 
 GEARS_API CommandCtx* MODULE_API_FUNC(RedisGears_CommandCtxGetShallowCopy)(CommandCtx* cmdCtx);
 GEARS_API void MODULE_API_FUNC(RedisGears_CommandCtxFree)(CommandCtx* cmdCtx);
@@ -266,8 +311,17 @@ GEARS_API CommandCtx* MODULE_API_FUNC(RedisGears_CommandCtxGet)(ExecutionCtx* ec
 
 GEARS_API CommandReaderTriggerArgs* MODULE_API_FUNC(RedisGears_CommandReaderTriggerArgsCreate)(const char* trigger, int inOrder);
 GEARS_API CommandReaderTriggerArgs* MODULE_API_FUNC(RedisGears_CommandReaderTriggerArgsCreateHook)(const char* hook, const char* prefix, int inOrder);
+GEARS_API void MODULE_API_FUNC(RedisGears_CommandReaderTriggerArgsSetFastPath)(CommandReaderTriggerArgs* args, int fastPath);
 GEARS_API void MODULE_API_FUNC(RedisGears_CommandReaderTriggerArgsFree)(CommandReaderTriggerArgs* args);
 
+/*
+ * Timer reader registration arguments, run the registration every intervalMS.
+ * If fixedDelay is true the next run is scheduled intervalMS after the last run finished.
+ * jitterMS is the maximum offset of the first run, the offset is different on each shard.
+ */
+GEARS_API TimerReaderTriggerArgs* MODULE_API_FUNC(RedisGears_TimerReaderTriggerArgsCreate)(long long intervalMS, int fixedDelay, long long jitterMS);
+GEARS_API void MODULE_API_FUNC(RedisGears_TimerReaderTriggerArgsFree)(TimerReaderTriggerArgs* args);
+
 /* will return trigger ctx that can be used to call the next command (the one that was overrided) */
 GEARS_API CommandReaderTriggerCtx* MODULE_API_FUNC(RedisGears_GetCommandReaderTriggerCtx)(ExecutionCtx* ectx);
 GEARS_API CommandReaderTriggerCtx* MODULE_API_FUNC(RedisGears_CommandReaderTriggerCtxGetShallowCopy)(CommandReaderTriggerCtx* crtCtx);
@@ -322,6 +376,17 @@ GEARS_API size_t MODULE_API_FUNC(RedisGears_ListRecordLen)(Record* listRecord);
 GEARS_API void MODULE_API_FUNC(RedisGears_ListRecordAdd)(Record* listRecord, Record* r);
 GEARS_API Record* MODULE_API_FUNC(RedisGears_ListRecordGet)(Record* listRecord, size_t index);
 GEARS_API Record* MODULE_API_FUNC(RedisGears_ListRecordPop)(Record* listRecord);
+
+/*
+ * An iterator record produces its elements lazily. When a flatmap step gets an iterator record
+ * it pulls the elements one by one as the next steps ask for records, so only the iterator is kept
+ * instead of all the elements. The next callback returns NULL when the iterator is exhausted or on
+ * error (in which case it should set the error using RedisGears_SetError). The free callback is
+ * called once the record is freed.
+ */
+typedef Record* (*RedisGears_IteratorRecordNextCallback)(ExecutionCtx* ctx, void* pd);
+typedef void (*RedisGears_IteratorRecordFreeCallback)(void* pd);
+GEARS_API Record* MODULE_API_FUNC(RedisGears_IteratorRecordCreate)(RedisGears_IteratorRecordNextCallback next, RedisGears_IteratorRecordFreeCallback free, void* pd);
 GEARS_API Record* MODULE_API_FUNC(RedisGears_StringRecordCreate)(char* val, size_t len);
 GEARS_API Record* MODULE_API_FUNC(RedisGears_ErrorRecordCreate)(char* val, size_t len);
 GEARS_API char* MODULE_API_FUNC(RedisGears_StringRecordGet)(Record* r, size_t* len);
@@ -446,6 +511,15 @@ GEARS_API int MODULE_API_FUNC(RedisGears_LocalAccumulateBy)(FlatExecutionPlan* c
 #define RGM_LocalAccumulateBy(ctx, extractor, extractorArg, accumulate, accumulateArg)\
         RedisGears_LocalAccumulateBy(ctx, #extractor, extractorArg, #accumulate, accumulateArg)
 
+/*
+ * Like AccumulateBy, but the records are first accumulated locally on each shard and only the
+ * partial accumulators are sent to the shard that owns the key, where they are merged using the
+ * combine callback (an accumulate by key callback that gets the partial accumulators as records).
+ */
+GEARS_API int MODULE_API_FUNC(RedisGears_AggregateBy)(FlatExecutionPlan* ctx, char* extraxtorName, void* extractorArg, char* accumulateName, void* accumulateArg, char* combineName, void* combineArg);
+#define RGM_AggregateBy(ctx, extractor, extractorArg, accumulate, accumulateArg, combine, combineArg)\
+        RedisGears_AggregateBy(ctx, #extractor, extractorArg, #accumulate, accumulateArg, #combine, combineArg)
+
 GEARS_API int MODULE_API_FUNC(RedisGears_Collect)(FlatExecutionPlan* ctx);
 #define RGM_Collect(ctx) RedisGears_Collect(ctx)
 
@@ -526,6 +600,15 @@ GEARS_API void MODULE_API_FUNC(RedisGears_SetPrivateData)(ExecutionCtx* ctx, voi
 GEARS_API ExecutionPlan* MODULE_API_FUNC(RedisGears_GetExecutionFromCtx)(ExecutionCtx* ectx);
 GEARS_API RunFlags MODULE_API_FUNC(RedisGears_GetRunFlags)(ExecutionCtx* ctx);
 
+/*
+ * Return 1 if the record currently being serialized is sent on the same frame (message) after another
+ * record of the same type that was serialized with this execution, and 0 otherwise. The records of a frame
+ * are deserialized one after the other on the receiving shard, so a record serializer can use it to keep
+ * state (like a stream dictionary) between the records of the frame instead of starting over on each record.
+ * Records of other types on the frame (like error records) do not affect the returned value.
+ */
+GEARS_API int MODULE_API_FUNC(RedisGears_ContinueSerializationFrame)(ExecutionCtx* ctx);
+
 typedef void (*AbortCallback)(void* abortPD);
 GEARS_API void MODULE_API_FUNC(RedisGears_SetAbortCallback)(ExecutionCtx* ctx, AbortCallback abort, void* abortPD);
 
@@ -893,6 +976,7 @@ static Plugin* RedisGears_Initialize(RedisModuleCtx* ctx, const char* name, int
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, Accumulate);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, AccumulateBy);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, LocalAccumulateBy);
+    REDISGEARS_MODULE_INIT_FUNCTION(ctx, AggregateBy);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, Filter);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, RunWithFlags);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, Run);
@@ -914,12 +998,23 @@ static Plugin* RedisGears_Initialize(RedisModuleCtx* ctx, const char* name, int
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, GetReader);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, StreamReaderCtxCreate);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, StreamReaderCtxFree);
+    REDISGEARS_MODULE_INIT_FUNCTION(ctx, StreamReaderSetReadRecordCallback);
+    REDISGEARS_MODULE_INIT_FUNCTION(ctx, StreamReaderRegisterReadRecordCallback);
+    REDISGEARS_MODULE_INIT_FUNCTION(ctx, StreamReaderSetReadBatchCallback);
+    REDISGEARS_MODULE_INIT_FUNCTION(ctx, StreamReaderRegisterReadBatchCallback);
+    REDISGEARS_MODULE_INIT_FUNCTION(ctx, StreamReaderSetDeliverAsBatch);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, KeysReaderCtxCreate);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, KeysReaderSetReadRecordCallback);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, KeysReaderRegisterReadRecordCallback);
+    REDISGEARS_MODULE_INIT_FUNCTION(ctx, KeysReaderSetHashFields);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, KeysReaderCtxFree);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, StreamReaderTriggerArgsCreate);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, StreamReaderTriggerArgsFree);
+    REDISGEARS_MODULE_INIT_FUNCTION(ctx, StreamReaderTriggerArgsSetReadRecordCallback);
+    REDISGEARS_MODULE_INIT_FUNCTION(ctx, StreamReaderTriggerArgsSetReadBatchCallback);
+    REDISGEARS_MODULE_INIT_FUNCTION(ctx, StreamReaderTriggerArgsSetDeliverAsBatch);
+    REDISGEARS_MODULE_INIT_FUNCTION(ctx, StreamReaderTriggerArgsSetAdaptiveBatch);
+    REDISGEARS_MODULE_INIT_FUNCTION(ctx, StreamReaderTriggerArgsSetScheduling);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, KeysReaderTriggerArgsCreate);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, KeysReaderTriggerArgsSetHookCommands);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, CommandCtxGetShallowCopy);
@@ -928,11 +1023,20 @@ static Plugin* RedisGears_Initialize(RedisModuleCtx* ctx, const char* name, int
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, CommandCtxGetCommand);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, CommandCtxGet);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, KeysReaderTriggerArgsSetReadRecordCallback);
+    REDISGEARS_MODULE_INIT_FUNCTION(ctx, KeysReaderTriggerArgsSetHashFields);
+    REDISGEARS_MODULE_INIT_FUNCTION(ctx, KeysReaderTriggerArgsSetCoalesceWindow);
+    REDISGEARS_MODULE_INIT_FUNCTION(ctx, KeysReaderTriggerArgsSetBatch);
+    REDISGEARS_MODULE_INIT_FUNCTION(ctx, KeysReaderRegisterDupRecordCallback);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, KeysReaderTriggerArgsFree);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, KeysReaderSetAvoidEvents);
+    REDISGEARS_MODULE_INIT_FUNCTION(ctx, KeysReaderPatternMatch);
+    REDISGEARS_MODULE_INIT_FUNCTION(ctx, KeysReaderGetCoalescedEvents);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, CommandReaderTriggerArgsCreate);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, CommandReaderTriggerArgsCreateHook);
+    REDISGEARS_MODULE_INIT_FUNCTION(ctx, CommandReaderTriggerArgsSetFastPath);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, CommandReaderTriggerArgsFree);
+    REDISGEARS_MODULE_INIT_FUNCTION(ctx, TimerReaderTriggerArgsCreate);
+    REDISGEARS_MODULE_INIT_FUNCTION(ctx, TimerReaderTriggerArgsFree);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, GetCommandReaderTriggerCtx);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, CommandReaderTriggerCtxGetShallowCopy);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, CommandReaderTriggerCtxNext);
@@ -942,6 +1046,7 @@ static Plugin* RedisGears_Initialize(RedisModuleCtx* ctx, const char* name, int
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, GetFepById);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, DumpRegistration);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, GetRunFlags);
+    REDISGEARS_MODULE_INIT_FUNCTION(ctx, ContinueSerializationFrame);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, IsDone);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, GetFep);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, GetRecordsLen);
@@ -971,6 +1076,7 @@ static Plugin* RedisGears_Initialize(RedisModuleCtx* ctx, const char* name, int
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, ListRecordAdd);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, ListRecordGet);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, ListRecordPop);
+    REDISGEARS_MODULE_INIT_FUNCTION(ctx, IteratorRecordCreate);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, StringRecordCreate);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, ErrorRecordCreate);
     REDISGEARS_MODULE_INIT_FUNCTION(ctx, StringRecordGet);
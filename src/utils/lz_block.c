@@ -0,0 +1,187 @@
+/*
+ * lz_block.c
+ */
+
+#include "lz_block.h"
+
+#include <stdint.h>
+#include <string.h>
+
+#define LZ_MIN_MATCH 4
+#define LZ_HASH_LOG 12
+#define LZ_MAX_OFFSET 65535
+#define LZ_LAST_LITERALS 5 // the last bytes are always encoded as literals
+#define LZ_MF_LIMIT 12 // a match must start at least that far from the end
+#define LZ_RUN_MASK 15
+
+static inline uint32_t LZ_Read32(const unsigned char* p){
+    uint32_t v;
+    memcpy(&v, p, sizeof(v));
+    return v;
+}
+
+static inline uint32_t LZ_Hash(uint32_t v){
+    return (v * 2654435761U) >> (32 - LZ_HASH_LOG);
+}
+
+static unsigned char* LZ_WriteLength(unsigned char* op, unsigned char* oend, size_t len){
+    for(; len >= 255 ; len -= 255){
+        if(op >= oend){
+            return NULL;
+        }
+        *op++ = 255;
+    }
+    if(op >= oend){
+        return NULL;
+    }
+    *op++ = (unsigned char)len;
+    return op;
+}
+
+/*
+ * Write a single sequence, matchLen 0 means the last (literals only) sequence.
+ * Returns NULL if the output buffer is too small.
+ */
+static unsigned char* LZ_WriteSequence(unsigned char* op, unsigned char* oend,
+                                       const unsigned char* literals, size_t literalsLen,
+                                       size_t offset, size_t matchLen){
+    if(op >= oend){
+        return NULL;
+    }
+    unsigned char* token = op++;
+    size_t matchCode = matchLen ? matchLen - LZ_MIN_MATCH : 0;
+    *token = (unsigned char)(((literalsLen < LZ_RUN_MASK ? literalsLen : LZ_RUN_MASK) << 4) |
+                             (matchCode < LZ_RUN_MASK ? matchCode : LZ_RUN_MASK));
+    if(literalsLen >= LZ_RUN_MASK){
+        if(!(op = LZ_WriteLength(op, oend, literalsLen - LZ_RUN_MASK))){
+            return NULL;
+        }
+    }
+    if((size_t)(oend - op) < literalsLen){
+        return NULL;
+    }
+    memcpy(op, literals, literalsLen);
+    op += literalsLen;
+    if(!matchLen){
+        return op;
+    }
+    if(oend - op < 2){
+        return NULL;
+    }
+    *op++ = (unsigned char)(offset & 0xff);
+    *op++ = (unsigned char)(offset >> 8);
+    if(matchCode >= LZ_RUN_MASK){
+        op = LZ_WriteLength(op, oend, matchCode - LZ_RUN_MASK);
+    }
+    return op;
+}
+
+static int LZ_ReadLength(const unsigned char** ip, const unsigned char* iend, size_t* len){
+    unsigned char b;
+    do{
+        if(*ip >= iend){
+            return 0;
+        }
+        b = *(*ip)++;
+        *len += b;
+    }while(b == 255);
+    return 1;
+}
+
+size_t Gears_LZBlockCompress(const char* src, size_t srcLen, char* dst, size_t dstCap){
+    const unsigned char* base = (const unsigned char*)src;
+    const unsigned char* ip = base;
+    const unsigned char* anchor = base;
+    const unsigned char* iend = base + srcLen;
+    unsigned char* op = (unsigned char*)dst;
+    unsigned char* oend = op + dstCap;
+
+    if(srcLen >= LZ_MF_LIMIT){
+        const unsigned char* mflimit = iend - LZ_MF_LIMIT;
+        const unsigned char* matchlimit = iend - LZ_LAST_LITERALS;
+        // positions of the last occurrence of each hashed 4 bytes sequence
+        uint32_t table[1 << LZ_HASH_LOG] = {0};
+
+        while(ip <= mflimit){
+            uint32_t seq = LZ_Read32(ip);
+            uint32_t h = LZ_Hash(seq);
+            const unsigned char* ref = base + table[h];
+            table[h] = (uint32_t)(ip - base);
+            if(ref >= ip || ip - ref > LZ_MAX_OFFSET || LZ_Read32(ref) != seq){
+                ++ip;
+                continue;
+            }
+
+            size_t matchLen = LZ_MIN_MATCH;
+            while(ip + matchLen < matchlimit && ref[matchLen] == ip[matchLen]){
+                ++matchLen;
+            }
+
+            if(!(op = LZ_WriteSequence(op, oend, anchor, ip - anchor, ip - ref, matchLen))){
+                return 0;
+            }
+            ip += matchLen;
+            anchor = ip;
+        }
+    }
+
+    if(!(op = LZ_WriteSequence(op, oend, anchor, iend - anchor, 0, 0))){
+        return 0;
+    }
+    return op - (unsigned char*)dst;
+}
+
+int Gears_LZBlockDecompress(const char* src, size_t srcLen, char* dst, size_t dstLen){
+    const unsigned char* ip = (const unsigned char*)src;
+    const unsigned char* iend = ip + srcLen;
+    unsigned char* ostart = (unsigned char*)dst;
+    unsigned char* op = ostart;
+    unsigned char* oend = op + dstLen;
+
+    while(ip < iend){
+        unsigned char token = *ip++;
+
+        size_t literalsLen = token >> 4;
+        if(literalsLen == LZ_RUN_MASK && !LZ_ReadLength(&ip, iend, &literalsLen)){
+            return 0;
+        }
+        if((size_t)(iend - ip) < literalsLen || (size_t)(oend - op) < literalsLen){
+            return 0;
+        }
+        memcpy(op, ip, literalsLen);
+        op += literalsLen;
+        ip += literalsLen;
+
+        if(ip == iend){
+            // last sequence, literals only
+            break;
+        }
+
+        if(iend - ip < 2){
+            return 0;
+        }
+        size_t offset = ip[0] | (ip[1] << 8);
+        ip += 2;
+        if(offset == 0 || offset > (size_t)(op - ostart)){
+            return 0;
+        }
+
+        size_t matchLen = token & LZ_RUN_MASK;
+        if(matchLen == LZ_RUN_MASK && !LZ_ReadLength(&ip, iend, &matchLen)){
+            return 0;
+        }
+        matchLen += LZ_MIN_MATCH;
+        if((size_t)(oend - op) < matchLen){
+            return 0;
+        }
+
+        // byte by byte copy, the match might overlap the output
+        const unsigned char* ref = op - offset;
+        for(size_t i = 0 ; i < matchLen ; ++i){
+            op[i] = ref[i];
+        }
+        op += matchLen;
+    }
+
+    return op == oend;
+}
@@ -0,0 +1,29 @@
+/*
+ * lz_block.h
+ *
+ * A small LZ4 style block compressor. The input is encoded as a list of
+ * sequences, each one is a run of literals followed by a back reference
+ * (2 bytes offset, up to 64KB back) into the already decoded data.
+ * The last sequence holds only literals. A block does not hold its
+ * decompressed size, the caller is responsible to pass it along.
+ */
+
+#ifndef SRC_UTILS_LZ_BLOCK_H_
+#define SRC_UTILS_LZ_BLOCK_H_
+
+#include <stddef.h>
+
+/*
+ * Compress srcLen bytes from src into dst.
+ * Returns the compressed size or 0 if the compressed data
+ * does not fit into dstCap bytes.
+ */
+size_t Gears_LZBlockCompress(const char* src, size_t srcLen, char* dst, size_t dstCap);
+
+/*
+ * Decompress a block into dst, dstLen must be the exact decompressed size.
+ * Returns 1 on success and 0 if the block is malformed.
+ */
+int Gears_LZBlockDecompress(const char* src, size_t srcLen, char* dst, size_t dstLen);
+
+#endif /* SRC_UTILS_LZ_BLOCK_H_ */
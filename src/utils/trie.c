@@ -0,0 +1,181 @@
+/*
+ * trie.c
+ */
+
+#include "trie.h"
+
+#include <stdbool.h>
+#include <assert.h>
+#include <string.h>
+
+#include "arr_rm_alloc.h"
+
+struct Gears_TrieNode{
+    char* chars; // children labels, the i'th label belongs to the i'th child
+    Gears_TrieNode** children;
+    void** prefixVals; // values matching any string starting with the node path
+    void** exactVals; // values matching only the node path
+};
+
+static Gears_TrieNode* Gears_TrieNodeCreate(){
+    Gears_TrieNode* n = RG_ALLOC(sizeof(*n));
+    n->chars = array_new(char, 1);
+    n->children = array_new(Gears_TrieNode*, 1);
+    n->prefixVals = NULL;
+    n->exactVals = NULL;
+    return n;
+}
+
+static void Gears_TrieNodeFree(Gears_TrieNode* n){
+    for(size_t i = 0 ; i < array_len(n->children) ; ++i){
+        Gears_TrieNodeFree(n->children[i]);
+    }
+    array_free(n->chars);
+    array_free(n->children);
+    if(n->prefixVals){
+        array_free(n->prefixVals);
+    }
+    if(n->exactVals){
+        array_free(n->exactVals);
+    }
+    RG_FREE(n);
+}
+
+static int Gears_TrieNodeIsEmpty(Gears_TrieNode* n){
+    return array_len(n->children) == 0 &&
+           (!n->prefixVals || array_len(n->prefixVals) == 0) &&
+           (!n->exactVals || array_len(n->exactVals) == 0);
+}
+
+static Gears_TrieNode* Gears_TrieNodeGetChild(Gears_TrieNode* n, char c, size_t* index){
+    for(size_t i = 0 ; i < array_len(n->chars) ; ++i){
+        if(n->chars[i] == c){
+            if(index){
+                *index = i;
+            }
+            return n->children[i];
+        }
+    }
+    return NULL;
+}
+
+static int Gears_TrieNodeDeleteVal(void*** vals, void* val){
+    if(!*vals){
+        return 0;
+    }
+    for(size_t i = 0 ; i < array_len(*vals) ; ++i){
+        if((*vals)[i] == val){
+            array_del(*vals, i);
+            return 1;
+        }
+    }
+    return 0;
+}
+
+Gears_Trie* Gears_TrieCreate(){
+    Gears_Trie* t = RG_ALLOC(sizeof(*t));
+    t->root = Gears_TrieNodeCreate();
+    t->size = 0;
+    return t;
+}
+
+void Gears_TrieFree(Gears_Trie* t){
+    Gears_TrieNodeFree(t->root);
+    RG_FREE(t);
+}
+
+void Gears_TrieAdd(Gears_Trie* t, const char* str, size_t len, int isPrefix, void* val){
+    Gears_TrieNode* n = t->root;
+    for(size_t i = 0 ; i < len ; ++i){
+        Gears_TrieNode* child = Gears_TrieNodeGetChild(n, str[i], NULL);
+        if(!child){
+            child = Gears_TrieNodeCreate();
+            n->chars = array_append(n->chars, str[i]);
+            n->children = array_append(n->children, child);
+        }
+        n = child;
+    }
+    if(isPrefix){
+        if(!n->prefixVals){
+            n->prefixVals = array_new(void*, 1);
+        }
+        n->prefixVals = array_append(n->prefixVals, val);
+    }else{
+        if(!n->exactVals){
+            n->exactVals = array_new(void*, 1);
+        }
+        n->exactVals = array_append(n->exactVals, val);
+    }
+    ++t->size;
+}
+
+int Gears_TrieDelete(Gears_Trie* t, const char* str, size_t len, int isPrefix, void* val){
+    // the path is kept on the heap, prefixes length is controlled by the user
+    Gears_TrieNode** path = RG_ALLOC(sizeof(*path) * (len + 1));
+    size_t* indexes = RG_ALLOC(sizeof(*indexes) * (len + 1));
+    int res = 0;
+    Gears_TrieNode* n = t->root;
+    path[0] = n;
+    for(size_t i = 0 ; i < len ; ++i){
+        n = Gears_TrieNodeGetChild(n, str[i], &indexes[i + 1]);
+        if(!n){
+            goto done;
+        }
+        path[i + 1] = n;
+    }
+
+    if(!Gears_TrieNodeDeleteVal(isPrefix ? &n->prefixVals : &n->exactVals, val)){
+        goto done;
+    }
+    --t->size;
+    res = 1;
+
+    // remove nodes that are no longer in use (never remove the root)
+    for(size_t i = len ; i > 0 && Gears_TrieNodeIsEmpty(path[i]) ; --i){
+        Gears_TrieNode* parent = path[i - 1];
+        Gears_TrieNodeFree(path[i]);
+        array_del_fast(parent->chars, indexes[i]);
+        array_del_fast(parent->children, indexes[i]);
+    }
+
+done:
+    RG_FREE(path);
+    RG_FREE(indexes);
+    return res;
+}
+
+int Gears_TrieMatch(Gears_Trie* t, const char* str, size_t len, Gears_TrieMatchCallback callback, void* pd){
+    Gears_TrieNode* n = t->root;
+    for(size_t i = 0 ; ; ++i){
+        if(n->prefixVals){
+            for(size_t j = 0 ; j < array_len(n->prefixVals) ; ++j){
+                if(callback(n->prefixVals[j], pd)){
+                    return 1;
+                }
+            }
+        }
+        if(i == len){
+            break;
+        }
+        n = Gears_TrieNodeGetChild(n, str[i], NULL);
+        if(!n){
+            return 0;
+        }
+    }
+    if(n->exactVals){
+        for(size_t j = 0 ; j < array_len(n->exactVals) ; ++j){
+            if(callback(n->exactVals[j], pd)){
+                return 1;
+            }
+        }
+    }
+    return 0;
+}
+
+static int Gears_TrieStopOnMatch(void* val, void* pd){
+    return 1;
+}
+
+int Gears_TrieHasMatch(Gears_Trie* t, const char* str, size_t len){
+    return Gears_TrieMatch(t, str, len, Gears_TrieStopOnMatch, NULL);
+}
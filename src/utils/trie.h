@@ -0,0 +1,37 @@
+/*
+ * trie.h
+ *
+ * A simple prefix tree (trie) that maps strings to values.
+ * A value is added either as a prefix value, matching every string
+ * that starts with the given string, or as an exact value, matching
+ * only the given string itself.
+ */
+
+#ifndef SRC_UTILS_TRIE_H_
+#define SRC_UTILS_TRIE_H_
+
+#include <stddef.h>
+
+typedef struct Gears_TrieNode Gears_TrieNode;
+
+typedef struct Gears_Trie{
+    Gears_TrieNode* root;
+    size_t size;
+}Gears_Trie;
+
+/*
+ * Called for each value matching the given string,
+ * return non zero value to stop the matching.
+ */
+typedef int (*Gears_TrieMatchCallback)(void* val, void* pd);
+
+Gears_Trie* Gears_TrieCreate();
+void Gears_TrieFree(Gears_Trie* t);
+void Gears_TrieAdd(Gears_Trie* t, const char* str, size_t len, int isPrefix, void* val);
+int Gears_TrieDelete(Gears_Trie* t, const char* str, size_t len, int isPrefix, void* val);
+int Gears_TrieMatch(Gears_Trie* t, const char* str, size_t len, Gears_TrieMatchCallback callback, void* pd);
+int Gears_TrieHasMatch(Gears_Trie* t, const char* str, size_t len);
+
+#define Gears_TrieSize(t) ((t)->size)
+
+#endif /* SRC_UTILS_TRIE_H_ */
@@ -24,7 +24,7 @@
 // API versions
 #define REDISMODULE_APIVER_1 1
 
-#define REDISGEARS_DATATYPE_VERSION 4
+#define REDISGEARS_DATATYPE_VERSION 5
 #define VERSION_WITH_COMMAND_READER_IN_ORDER 3
 #define VERSION_WITH_ARG_TYPE 2
 #define VERSION_WITH_COMMAND_HOOKS 4
@@ -33,6 +33,14 @@
 #define VERSION_WITH_KEYS_READER_READ_CALLBACK 4
 #define VERSION_WITH_UNREGISTER_CALLBACK 4
 #define VERSION_WITH_CREATED_CALLBACK 4
+#define VERSION_WITH_KEYS_READER_HASH_FIELDS 5
+#define VERSION_WITH_STREAM_READER_READ_CALLBACK 5
+#define VERSION_WITH_STREAM_READER_DELIVER_AS_BATCH 5
+#define VERSION_WITH_STREAM_READER_ADAPTIVE_BATCH 5
+#define VERSION_WITH_STREAM_READER_SCHEDULING 5
+#define VERSION_WITH_COMMAND_READER_FAST_PATH 5
+#define VERSION_WITH_KEYS_READER_COALESCE 5
+#define VERSION_WITH_KEYS_READER_BATCH 5
 #define REDISGEARS_DATATYPE_NAME "GEARS_DT0"
 
 #define REDISGEARS_MODULE_NAME "rg"